@@ -478,6 +478,7 @@ public class FeatureCollectionConfig {
 
     public String lookupTablePath, paramTablePath;         // user defined tables
     public Element paramTable;                             // ??
+    public Set<String> timeSeriesVars;                     // variables to keep in a GribTimeSeriesStore
 
     private boolean explicitDatasets = false;
 
@@ -516,6 +517,14 @@ public class FeatureCollectionConfig {
       if (configElem.getChild("bestNamer", ns) != null)
         bestNamer = configElem.getChild("bestNamer", ns).getAttributeValue("name");
 
+      // <timeSeriesCache variables="Temperature_height_above_ground Pressure_surface"/>
+      Element timeSeriesElem = configElem.getChild("timeSeriesCache", ns);
+      if (timeSeriesElem != null && timeSeriesElem.getAttributeValue("variables") != null) {
+        timeSeriesVars = new HashSet<>();
+        for (String var : timeSeriesElem.getAttributeValue("variables").split("[\\s,]+"))
+          if (!var.isEmpty()) timeSeriesVars.add(var);
+      }
+
       // old way - filesSort element inside the gribConfig element
       Element filesSortElem = configElem.getChild("filesSort", ns);
       if (filesSortElem != null) {
@@ -692,6 +701,7 @@ public class FeatureCollectionConfig {
       if (gdsHash != null) f.format("  gdsHash=%s%n", gdsHash);
       if (gdsNamer != null) f.format("  gdsNamer=%s%n", gdsNamer);
       if (intvFilter != null) f.format("  intvFilter=%s%n", intvFilter);
+      if (timeSeriesVars != null) f.format("  timeSeriesVars=%s%n", timeSeriesVars);
     }
 
     @Override
@@ -712,6 +722,7 @@ public class FeatureCollectionConfig {
       if (filesSortIncreasing != null) sb.append(", filesSortIncreasing=").append(filesSortIncreasing);
       if (intvFilter != null) sb.append(", intvFilter=").append(intvFilter);
       if (userTimeUnit != null) sb.append(", userTimeUnit='").append(userTimeUnit).append('\'');
+      if (timeSeriesVars != null) sb.append(", timeSeriesVars=").append(timeSeriesVars);
       sb.append('}');
       return sb.toString();
     }
@@ -119,7 +119,7 @@ public class TimedCollection {
     this.manager = from.manager;
     datasets = new ArrayList<>(from.datasets.size());
     for (TimedCollection.Dataset d : from.datasets)
-      if (want.intersects(d.getDateRange()))
+      if (d.getDateRange() == null || want.intersects(d.getDateRange())) // a single dataset has no date range
         datasets.add(d);
     this.dateRange = want;
   }
@@ -137,6 +137,15 @@ public class TimedCollection {
     return new TimedCollection(this, range);
   }
 
+  /**
+   * Name of an index file for this collection, in the collection root directory
+   * @param suffix index file suffix
+   * @return index filename, may not exist
+   */
+  public String getIndexFilename(String suffix) {
+    return manager.getIndexFilename(suffix);
+  }
+
   public CalendarDateRange getDateRange() {
     if (dateRange == null) try {
       update();
@@ -163,16 +172,22 @@ public class TimedCollection {
     String location;
     CalendarDateRange dateRange;
     CalendarDate start;
+    long lastModified;
 
     Dataset(MFile f) {
       this.location = f.getPath();
       this.start = manager.extractDate(f);
+      this.lastModified = f.getLastModified();
     }
 
     public String getLocation() {
       return location;
     }
 
+    public long getLastModified() {
+      return lastModified;
+    }
+
     public CalendarDateRange getDateRange() {
       return dateRange;
     }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.ma2;
+
+/**
+ * Copy between the storage of two Arrays a run of contiguous elements at a time.
+ * Dimensions of length 1 are dropped and neighbouring dimensions that are contiguous in both Arrays are merged,
+ * so that the innermost remaining dimension is the longest run that can be copied with System.arraycopy.
+ * This handles sections, slices and any other view whose innermost dimension has stride 1 in both source and destination,
+ * without going element by element through an IndexIterator.
+ */
+final class IndexCopy {
+  static private final int MIN_RUN = 8; // for shorter runs, System.arraycopy costs more than it saves
+
+  private IndexCopy() {
+  }
+
+  /**
+   * Copy all the elements of src into dest, in canonical order.
+   * The two must have the same shape, ignoring dimensions of length 1, and the same storage type.
+   *
+   * @param dest copy to here
+   * @param src  copy from here
+   * @return true if copied, false if this case is not handled or not worth it, in which case nothing was copied.
+   */
+  static boolean copy(Array dest, Array src) {
+    Index si = src.indexCalc;
+    Index di = dest.indexCalc;
+    if ((si instanceof IndexConstant) || (di instanceof IndexConstant) || si.hasvlen || di.hasvlen)
+      return false;
+
+    Object s = src.getStorage();
+    Object d = dest.getStorage();
+    if ((s == null) || (d == null) || (s.getClass() != d.getClass()) || !s.getClass().isArray() ||
+        !s.getClass().getComponentType().isPrimitive())
+      return false;
+
+    long size = si.getSize();
+    if (size != di.getSize())
+      return false;
+    if (size == 0)
+      return true;
+
+    // the dimensions of length > 1, merged where contiguous in both
+    int[] len = new int[si.rank];
+    int[] sstride = new int[si.rank];
+    int[] dstride = new int[si.rank];
+    int n = 0;
+    int j = 0;
+    for (int i = 0; i < si.rank; i++) {
+      if (si.shape[i] == 1) continue;
+      while (j < di.rank && di.shape[j] == 1) j++;
+      if (j == di.rank || si.shape[i] != di.shape[j])
+        return false;
+
+      if (n > 0 && sstride[n - 1] == si.stride[i] * si.shape[i] && dstride[n - 1] == di.stride[j] * di.shape[j]) {
+        len[n - 1] *= si.shape[i];
+        sstride[n - 1] = si.stride[i];
+        dstride[n - 1] = di.stride[j];
+      } else {
+        len[n] = si.shape[i];
+        sstride[n] = si.stride[i];
+        dstride[n] = di.stride[j];
+        n++;
+      }
+      j++;
+    }
+
+    if (n == 0) { // a single element
+      System.arraycopy(s, si.offset, d, di.offset, 1);
+      return true;
+    }
+    int inner = n - 1;
+    if (sstride[inner] != 1 || dstride[inner] != 1)
+      return false;
+
+    int run = len[inner];
+    if (run < MIN_RUN && inner > 0)
+      return false;
+    int spos = si.offset;
+    int dpos = di.offset;
+    int[] counter = new int[inner];
+    for (long nruns = size / run; nruns > 0; nruns--) {
+      System.arraycopy(s, spos, d, dpos, run);
+
+      for (int k = inner - 1; k >= 0; k--) { // odometer over the outer dimensions
+        counter[k]++;
+        spos += sstride[k];
+        dpos += dstride[k];
+        if (counter[k] < len[k])
+          break;
+        spos -= sstride[k] * len[k];
+        dpos -= dstride[k] * len[k];
+        counter[k] = 0;
+      }
+    }
+    return true;
+  }
+
+}
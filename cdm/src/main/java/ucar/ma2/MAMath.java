@@ -273,6 +273,8 @@ public class MAMath {
   public static void copyDouble(Array result, Array a) throws IllegalArgumentException {
     if (!conformable(a, result))
       throw new IllegalArgumentException("copy arrays are not conformable");
+    if (copyStorage(result, a, double.class))
+      return;
 
     IndexIterator iterA = a.getIndexIterator();
     IndexIterator iterR = result.getIndexIterator();
@@ -293,6 +295,8 @@ public class MAMath {
   public static void copyFloat(Array result, Array a) throws IllegalArgumentException {
     if (!conformable(a, result))
       throw new IllegalArgumentException("copy arrays are not conformable");
+    if (copyStorage(result, a, float.class))
+      return;
 
     IndexIterator iterA = a.getIndexIterator();
     IndexIterator iterR = result.getIndexIterator();
@@ -313,6 +317,8 @@ public class MAMath {
   public static void copyLong(Array result, Array a) throws IllegalArgumentException {
     if (!conformable(a, result))
       throw new IllegalArgumentException("copy arrays are not conformable");
+    if (copyStorage(result, a, long.class))
+      return;
 
     IndexIterator iterA = a.getIndexIterator();
     IndexIterator iterR = result.getIndexIterator();
@@ -333,6 +339,8 @@ public class MAMath {
   public static void copyInt(Array result, Array a) throws IllegalArgumentException {
     if (!conformable(a, result))
       throw new IllegalArgumentException("copy arrays are not conformable");
+    if (copyStorage(result, a, int.class))
+      return;
 
     IndexIterator iterA = a.getIndexIterator();
     IndexIterator iterR = result.getIndexIterator();
@@ -353,6 +361,8 @@ public class MAMath {
   public static void copyShort(Array result, Array a) throws IllegalArgumentException {
     if (!conformable(a, result))
       throw new IllegalArgumentException("copy arrays are not conformable");
+    if (copyStorage(result, a, short.class))
+      return;
 
     IndexIterator iterA = a.getIndexIterator();
     IndexIterator iterR = result.getIndexIterator();
@@ -373,6 +383,8 @@ public class MAMath {
   public static void copyChar(Array result, Array a) throws IllegalArgumentException {
     if (!conformable(a, result))
       throw new IllegalArgumentException("copy arrays are not conformable");
+    if (copyStorage(result, a, char.class))
+      return;
 
     IndexIterator iterA = a.getIndexIterator();
     IndexIterator iterR = result.getIndexIterator();
@@ -394,6 +406,8 @@ public class MAMath {
   public static void copyByte(Array result, Array a) throws IllegalArgumentException {
     if (!conformable(a, result))
       throw new IllegalArgumentException("copy arrays are not conformable");
+    if (copyStorage(result, a, byte.class))
+      return;
 
     IndexIterator iterA = a.getIndexIterator();
     IndexIterator iterR = result.getIndexIterator();
@@ -413,6 +427,8 @@ public class MAMath {
   public static void copyBoolean(Array result, Array a) throws IllegalArgumentException {
     if (!conformable(a, result))
       throw new IllegalArgumentException("copy arrays are not conformable");
+    if (copyStorage(result, a, boolean.class))
+      return;
 
     IndexIterator iterA = a.getIndexIterator();
     IndexIterator iterR = result.getIndexIterator();
@@ -440,6 +456,13 @@ public class MAMath {
     }
   }
 
+  // same element type: copy the java arrays directly, a contiguous run at a time, if their layout allows
+  private static boolean copyStorage(Array result, Array a, Class elemType) {
+    if ((a.getElementType() != elemType) || (result.getElementType() != elemType))
+      return false;
+    return IndexCopy.copy(result, a);
+  }
+
   /**
    * Calculate the reduced rank of this shape, by subtracting dimensions with length 1
    * @param shape shape of the array
@@ -455,6 +478,10 @@ public class MAMath {
   }
 
   public static double getMinimum(Array a) {
+    MinMaxBlocks blocks = new MinMaxBlocks(null, Double.NaN);
+    if (forEachBlock(a, blocks))
+      return blocks.min;
+
     IndexIterator iter = a.getIndexIterator();
     double min = Double.MAX_VALUE;
     while (iter.hasNext()) {
@@ -467,6 +494,10 @@ public class MAMath {
   }
 
   public static double getMaximum(Array a) {
+    MinMaxBlocks blocks = new MinMaxBlocks(null, Double.NaN);
+    if (forEachBlock(a, blocks))
+      return blocks.max;
+
     IndexIterator iter = a.getIndexIterator();
     double max = -Double.MAX_VALUE;
     while (iter.hasNext()) {
@@ -485,6 +516,10 @@ public class MAMath {
    * @return MinMax
    */
   public static MAMath.MinMax getMinMax(Array a) {
+    MinMaxBlocks blocks = new MinMaxBlocks(null, Double.NaN);
+    if (forEachBlock(a, blocks))
+      return new MinMax(blocks.min, blocks.max);
+
     IndexIterator iter = a.getIndexIterator();
     double max = -Double.MAX_VALUE;
     double min = Double.MAX_VALUE;
@@ -503,6 +538,10 @@ public class MAMath {
     if (eval == null || !eval.hasMissing())
       return MAMath.getMinMax(a);
 
+    MinMaxBlocks blocks = new MinMaxBlocks(eval, Double.NaN);
+    if (forEachBlock(a, blocks))
+      return new MinMax(blocks.min, blocks.max);
+
     IndexIterator iter = a.getIndexIterator();
     double max = -Double.MAX_VALUE;
     double min = Double.MAX_VALUE;
@@ -520,6 +559,10 @@ public class MAMath {
 
 
   public static double getMinimumSkipMissingData(Array a, double missingValue) {
+    MinMaxBlocks blocks = new MinMaxBlocks(null, missingValue);
+    if (forEachBlock(a, blocks))
+      return blocks.min;
+
     IndexIterator iter = a.getIndexIterator();
     double min = Double.MAX_VALUE;
     while (iter.hasNext()) {
@@ -531,6 +574,10 @@ public class MAMath {
   }
 
   public static double getMaximumSkipMissingData(Array a, double missingValue) {
+    MinMaxBlocks blocks = new MinMaxBlocks(null, missingValue);
+    if (forEachBlock(a, blocks))
+      return blocks.max;
+
     IndexIterator iter = a.getIndexIterator();
     double max = -Double.MAX_VALUE;
     while (iter.hasNext()) {
@@ -542,6 +589,10 @@ public class MAMath {
   }
 
   public static MAMath.MinMax getMinMaxSkipMissingData(Array a, double missingValue) {
+    MinMaxBlocks blocks = new MinMaxBlocks(null, missingValue);
+    if (forEachBlock(a, blocks))
+      return new MinMax(blocks.min, blocks.max);
+
     IndexIterator iter = a.getIndexIterator();
     double max = -Double.MAX_VALUE;
     double min = Double.MAX_VALUE;
@@ -579,6 +630,10 @@ public class MAMath {
    * @return sum of elements
    */
   public static double sumDouble(Array a) {
+    SumBlocks blocks = new SumBlocks(false, Double.NaN);
+    if (forEachBlock(a, blocks))
+      return blocks.sum;
+
     double sum = 0;
     IndexIterator iterA = a.getIndexIterator();
     while (iterA.hasNext()) {
@@ -595,6 +650,10 @@ public class MAMath {
    * @return sum of elements
    */
   public static double sumDoubleSkipMissingData(Array a, double missingValue) {
+    SumBlocks blocks = new SumBlocks(true, missingValue);
+    if (forEachBlock(a, blocks))
+      return blocks.sum;
+
     double sum = 0;
     IndexIterator iterA = a.getIndexIterator();
     while (iterA.hasNext()) {
@@ -606,6 +665,143 @@ public class MAMath {
     return sum;
   }
 
+  ///////////////////////////////////////////////////////////////////////////////
+  // Fast paths for arrays that are a canonical order view of their java storage array.
+  // These loop over the primitive array instead of going through an IndexIterator.
+
+  // elements converted to double at a time
+  private static final int BLOCK_SIZE = 4096;
+
+  /**
+   * The java storage array of a, if it holds the elements of a in canonical order starting at 0.
+   *
+   * @param a the array
+   * @return the storage array, or null if a is a section, permutation, constant or other non-canonical view
+   */
+  static Object contiguousStorage(Array a) {
+    return (a.indexCalc.isFastIterator() && !a.isConstant()) ? a.getStorage() : null;
+  }
+
+  private interface DoubleBlocks {
+    /** called with the next elements, vals[start] to vals[end-1], in canonical order */
+    void accept(double[] vals, int start, int end);
+  }
+
+  /*
+   * If a is numeric and a canonical order view of its storage, pass all its elements as doubles to blocks and
+   * return true. Double storage is passed directly, other types are converted BLOCK_SIZE elements at a time,
+   * honoring isUnsigned(). Otherwise return false, and the caller must use an IndexIterator.
+   */
+  private static boolean forEachBlock(Array a, DoubleBlocks blocks) {
+    Object storage = contiguousStorage(a);
+    if (storage == null)
+      return false;
+    int n = (int) a.getSize();
+    if (storage instanceof double[]) {
+      blocks.accept((double[]) storage, 0, n);
+      return true;
+    }
+
+    boolean unsigned = a.isUnsigned();
+    if (!(storage instanceof float[] || storage instanceof int[] || storage instanceof short[] ||
+          storage instanceof byte[] || (storage instanceof long[] && !unsigned)))
+      return false;
+
+    double[] buff = new double[Math.min(n, BLOCK_SIZE)];
+    for (int start = 0; start < n; start += BLOCK_SIZE) {
+      int len = Math.min(BLOCK_SIZE, n - start);
+      if (storage instanceof float[]) {
+        float[] s = (float[]) storage;
+        for (int i = 0; i < len; i++) buff[i] = s[start + i];
+      } else if (storage instanceof int[]) {
+        int[] s = (int[]) storage;
+        if (unsigned)
+          for (int i = 0; i < len; i++) buff[i] = s[start + i] & 0xffffffffL;
+        else
+          for (int i = 0; i < len; i++) buff[i] = s[start + i];
+      } else if (storage instanceof short[]) {
+        short[] s = (short[]) storage;
+        int mask = unsigned ? 0xffff : -1;
+        for (int i = 0; i < len; i++) buff[i] = s[start + i] & mask;
+      } else if (storage instanceof byte[]) {
+        byte[] s = (byte[]) storage;
+        int mask = unsigned ? 0xff : -1;
+        for (int i = 0; i < len; i++) buff[i] = s[start + i] & mask;
+      } else {
+        long[] s = (long[]) storage;
+        for (int i = 0; i < len; i++) buff[i] = s[start + i];
+      }
+      blocks.accept(buff, 0, len);
+    }
+    return true;
+  }
+
+  // skips values that eval says are missing, else values equal to missingValue, else NaNs
+  private static class MinMaxBlocks implements DoubleBlocks {
+    private final IsMissingEvaluator eval;
+    private final double missingValue;
+    double min = Double.MAX_VALUE;
+    double max = -Double.MAX_VALUE;
+
+    MinMaxBlocks(IsMissingEvaluator eval, double missingValue) {
+      this.eval = eval;
+      this.missingValue = missingValue;
+    }
+
+    public void accept(double[] vals, int start, int end) {
+      double min = this.min, max = this.max;
+      if (eval != null) {
+        for (int i = start; i < end; i++) {
+          double val = vals[i];
+          if (eval.isMissing(val)) continue;
+          if (val > max) max = val;
+          if (val < min) min = val;
+        }
+      } else if (!Double.isNaN(missingValue)) {
+        for (int i = start; i < end; i++) {
+          double val = vals[i];
+          if (val == missingValue) continue;
+          if (val > max) max = val;
+          if (val < min) min = val;
+        }
+      } else {
+        for (int i = start; i < end; i++) {
+          double val = vals[i];    // NaN fails both comparisons
+          if (val > max) max = val;
+          if (val < min) min = val;
+        }
+      }
+      this.min = min;
+      this.max = max;
+    }
+  }
+
+  private static class SumBlocks implements DoubleBlocks {
+    private final boolean skipMissing;
+    private final double missingValue;
+    double sum = 0;
+
+    SumBlocks(boolean skipMissing, double missingValue) {
+      this.skipMissing = skipMissing;
+      this.missingValue = missingValue;
+    }
+
+    public void accept(double[] vals, int start, int end) {
+      double sum = this.sum;
+      if (skipMissing) {
+        for (int i = start; i < end; i++) {
+          double val = vals[i];
+          if ((val == missingValue) || Double.isNaN(val)) continue;
+          sum += val;
+        }
+      } else {
+        for (int i = start; i < end; i++)
+          sum += vals[i];
+      }
+      this.sum = sum;
+    }
+  }
+
   /**
    * Holds a minimum and maximum value.
    */
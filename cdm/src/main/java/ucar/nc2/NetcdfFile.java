@@ -80,6 +80,7 @@ import ucar.nc2.util.IO;
 import ucar.nc2.util.Indent;
 import ucar.nc2.util.rc.RC;
 import ucar.unidata.io.InMemoryRandomAccessFile;
+import ucar.unidata.io.MMapRandomAccessFile;
 import ucar.unidata.io.UncompressInputStream;
 import ucar.unidata.io.bzip2.CBZip2InputStream;
 import ucar.unidata.util.StringUtil2;
@@ -458,7 +459,7 @@ public class NetcdfFile implements ucar.nc2.util.cache.FileCacheable, Closeable
     ucar.unidata.io.RandomAccessFile raf = getRaf(location, buffer_size);
 
     try {
-      return open(raf, location, cancelTask, iospMessage);
+      return open(raf, location, cancelTask, iospMessage, true);
     } catch (Throwable t) {
       raf.close();
       throw new IOException(t);
@@ -537,6 +538,7 @@ public class NetcdfFile implements ucar.nc2.util.cache.FileCacheable, Closeable
     if (bufferSize <= 0)
       bufferSize = default_buffersize;
     ucar.unidata.io.RandomAccessFile raf = ucar.unidata.io.RandomAccessFile.acquire(uriString, bufferSize);
+    raf = mmapForIosp(raf, iospClass);
 
     NetcdfFile result = new NetcdfFile(spi, raf, location, cancelTask);
 
@@ -798,6 +800,12 @@ public class NetcdfFile implements ucar.nc2.util.cache.FileCacheable, Closeable
 
   public static NetcdfFile open(ucar.unidata.io.RandomAccessFile raf, String location, ucar.nc2.util.CancelTask cancelTask,
                                  Object iospMessage) throws IOException {
+    return open(raf, location, cancelTask, iospMessage, false);
+  }
+
+  // ownRaf: the raf was opened here, so may be replaced by a memory mapped one. Never replace one the caller passed in.
+  private static NetcdfFile open(ucar.unidata.io.RandomAccessFile raf, String location, ucar.nc2.util.CancelTask cancelTask,
+                                 Object iospMessage, boolean ownRaf) throws IOException {
 
     IOServiceProvider spi = null;
     if (debugSPI) log.info("NetcdfFile try to open = {}", location);
@@ -849,6 +857,8 @@ public class NetcdfFile implements ucar.nc2.util.cache.FileCacheable, Closeable
       raf.close();
       throw new IOException("Cant read " + location + ": not a valid CDM file.");
     }
+    if (ownRaf)
+      raf = mmapForIosp(raf, spi.getClass());
 
     // send iospMessage before the iosp is opened
     if (iospMessage != null)
@@ -866,6 +876,15 @@ public class NetcdfFile implements ucar.nc2.util.cache.FileCacheable, Closeable
     return result;
   }
 
+  // reopen a local file as a MMapRandomAccessFile, if thats what is wanted for this iosp
+  static private ucar.unidata.io.RandomAccessFile mmapForIosp(ucar.unidata.io.RandomAccessFile raf, Class iospClass) throws IOException {
+    if (raf.getClass() != ucar.unidata.io.RandomAccessFile.class || !MMapRandomAccessFile.useForIosp(iospClass))
+      return raf;
+    ucar.unidata.io.RandomAccessFile mraf = new MMapRandomAccessFile(raf.getLocation(), "r");
+    raf.close();
+    return mraf;
+  }
+
   ////////////////////////////////////////////////////////////////////////////////////////////////
   protected String location, id, title, cacheName;
   protected Group rootGroup = makeRootGroup();
@@ -887,6 +887,23 @@ public class NetcdfFileWriter implements Closeable {
     defineMode = false;
   }
 
+  /**
+   * Instead of create(), leave define mode without creating a file, so that a netcdf-3 file can be written to a stream
+   * with ucar.nc2.iosp.netcdf3.N3outputStreamWriter. Data cannot be written through this NetcdfFileWriter.
+   *
+   * @return the defined NetcdfFile, with no data.
+   */
+  public NetcdfFile createForStreaming() {
+    if (!defineMode)
+      throw new UnsupportedOperationException("not in define mode");
+    if (!isNewFile || version != Version.netcdf3)
+      throw new UnsupportedOperationException("can only stream a new netcdf-3 file");
+
+    ncfile.finish();
+    defineMode = false;
+    return ncfile;
+  }
+
   ////////////////////////////////////////////
   // redefine
 
@@ -281,6 +281,9 @@ class EnhanceScaleMissingImpl implements EnhanceScaleMissing {
         if (rank(scaleType) > rank(convertedDataType))
           convertedDataType = scaleType;
       }
+      // packed byte and short data has less precision than a float, so optionally dont widen it to double
+      if (NetcdfDataset.unpackToFloat && (convertedDataType == DataType.DOUBLE) && (forVar.getDataType().getSize() <= 2))
+        convertedDataType = DataType.FLOAT;
       if (debug) System.out.println("assign dataType = " + convertedDataType);
 
       // validData may be external or internal
@@ -662,6 +665,11 @@ class EnhanceScaleMissingImpl implements EnhanceScaleMissing {
     if (!hasScaleOffset) return in;
     if (debugRead) System.out.println("convertScaleOffset ");
 
+    if ((convertedDataType == DataType.FLOAT) || (convertedDataType == DataType.DOUBLE)) {
+      Array out = convertScaleOffsetBulk(in);
+      if (out != null) return out;
+    }
+
     Array out = Array.factory(convertedDataType, in.getShape());
     IndexIterator iterIn = in.getIndexIterator();
     IndexIterator iterOut = out.getIndexIterator();
@@ -683,6 +691,119 @@ class EnhanceScaleMissingImpl implements EnhanceScaleMissing {
     return out;
   }
 
+  // below this many shorts, its cheaper to convert directly than to build the 64K lookup table
+  static private final int SHORT_TABLE_MIN = 16 * 1024;
+
+  /*
+   * Convert byte, short and int data working directly on the backing java arrays.
+   * Byte data, and short data of at least SHORT_TABLE_MIN elements, goes through a table holding the converted
+   * value (or NaN) of every possible raw value, so the scale/offset and missing tests are done once per raw value
+   * instead of once per element. Returns null if the data type isnt handled here.
+   */
+  private Array convertScaleOffsetBulk(Array in) {
+    boolean unsigned = isUnsigned;
+    boolean checkMissing = useNaNs && hasMissing();
+    boolean toFloat = (convertedDataType == DataType.FLOAT);
+    Class elemType = in.getElementType();
+    int n = (int) in.getSize();
+    Object storage;
+
+    if (elemType == byte.class) {
+      byte[] raw = (byte[]) in.get1DJavaArray(in.getDataType());
+      if (raw.length != n) return null; // constant array
+      double[] table = makeConversionTable(8, unsigned, checkMissing);
+      if (toFloat) {
+        float[] ftable = toFloat(table);
+        float[] out = new float[n];
+        for (int i = 0; i < n; i++)
+          out[i] = ftable[raw[i] & 0xff];
+        storage = out;
+      } else {
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++)
+          out[i] = table[raw[i] & 0xff];
+        storage = out;
+      }
+
+    } else if (elemType == short.class) {
+      short[] raw = (short[]) in.get1DJavaArray(in.getDataType());
+      if (raw.length != n) return null;
+      if (n >= SHORT_TABLE_MIN) {
+        double[] table = makeConversionTable(16, unsigned, checkMissing);
+        if (toFloat) {
+          float[] ftable = toFloat(table);
+          float[] out = new float[n];
+          for (int i = 0; i < n; i++)
+            out[i] = ftable[raw[i] & 0xffff];
+          storage = out;
+        } else {
+          double[] out = new double[n];
+          for (int i = 0; i < n; i++)
+            out[i] = table[raw[i] & 0xffff];
+          storage = out;
+        }
+      } else {
+        int mask = unsigned ? 0xffff : -1;
+        if (toFloat) {
+          float[] out = new float[n];
+          for (int i = 0; i < n; i++)
+            out[i] = (float) convertScaleOffsetBulk(raw[i] & mask, checkMissing);
+          storage = out;
+        } else {
+          double[] out = new double[n];
+          for (int i = 0; i < n; i++)
+            out[i] = convertScaleOffsetBulk(raw[i] & mask, checkMissing);
+          storage = out;
+        }
+      }
+
+    } else if (elemType == int.class) {
+      int[] raw = (int[]) in.get1DJavaArray(in.getDataType());
+      if (raw.length != n) return null;
+      long mask = unsigned ? 0xffffffffL : -1L;
+      if (toFloat) {
+        float[] out = new float[n];
+        for (int i = 0; i < n; i++)
+          out[i] = (float) convertScaleOffsetBulk(raw[i] & mask, checkMissing);
+        storage = out;
+      } else {
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++)
+          out[i] = convertScaleOffsetBulk(raw[i] & mask, checkMissing);
+        storage = out;
+      }
+
+    } else {
+      return null;
+    }
+
+    return Array.factory(convertedDataType, in.getShape(), storage);
+  }
+
+  private double convertScaleOffsetBulk(double raw, boolean checkMissing) {
+    double val = scale * raw + offset;
+    return checkMissing && isMissing_(val) ? Double.NaN : val;
+  }
+
+  // converted value of every nbits raw value, indexed by the unsigned raw value
+  private double[] makeConversionTable(int nbits, boolean unsigned, boolean checkMissing) {
+    int size = 1 << nbits;
+    int shift = 32 - nbits;
+    double[] table = new double[size];
+    for (int i = 0; i < size; i++) {
+      int raw = unsigned ? i : (i << shift) >> shift; // sign extend
+      table[i] = convertScaleOffsetBulk(raw, checkMissing);
+    }
+    return table;
+  }
+
+  private float[] toFloat(double[] table) {
+    float[] result = new float[table.length];
+    for (int i = 0; i < table.length; i++)
+      result[i] = (float) table[i];
+    return result;
+  }
+
   private void convertScaleOffsetUnsignedByte(IndexIterator iterIn, IndexIterator iterOut) {
     boolean checkMissing = useNaNs && hasMissing();
     while (iterIn.hasNext()) {
@@ -719,6 +840,21 @@ class EnhanceScaleMissingImpl implements EnhanceScaleMissing {
   private Array convertMissing(Array in) {
     if (debugRead) System.out.println("convertMissing ");
 
+    // every element of the backing array is in the view, so it can be done in place without an iterator
+    Object storage = in.getStorage();
+    if (storage instanceof double[] && ((double[]) storage).length == in.getSize()) {
+      double[] values = (double[]) storage;
+      for (int i = 0; i < values.length; i++) {
+        if (isMissing_(values[i]))
+          values[i] = Double.NaN;
+      }
+      return in;
+    }
+    if (storage instanceof float[] && ((float[]) storage).length == in.getSize()) {
+      setMissingToNaN((float[]) storage);
+      return in;
+    }
+
     IndexIterator iterIn = in.getIndexIterator();
     if (in.getElementType() == double.class) {
       while (iterIn.hasNext()) {
@@ -47,6 +47,8 @@ import ucar.nc2.stream.CdmRemote;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.CancelTaskImpl;
 import ucar.nc2.util.cache.FileCache;
+import ucar.nc2.util.cache.FileCacheIF;
+import ucar.nc2.util.cache.FileCacheStriped;
 import ucar.nc2.util.cache.FileFactory;
 
 import java.io.IOException;
@@ -259,10 +261,32 @@ public class NetcdfDataset extends ucar.nc2.NetcdfFile {
     return missingDataIsMissing;
   }
 
+  static protected boolean unpackToFloat = false;
+
+  /**
+   * Set whether byte and short data packed with a double scale_factor or add_offset is unpacked to float instead of double.
+   * This halves the memory used by the unpacked data, at the cost of precision the packed data mostly doesnt have.
+   * Only affects variables enhanced after this is called.
+   *
+   * @param b true if want to unpack byte and short data to float (default false)
+   */
+  static public void setUnpackToFloat(boolean b) {
+    unpackToFloat = b;
+  }
+
+  /**
+   * Get whether byte and short packed data is unpacked to float instead of double.
+   *
+   * @return whether byte and short packed data is unpacked to float instead of double
+   */
+  static public boolean getUnpackToFloat() {
+    return unpackToFloat;
+  }
+
   ////////////////////////////////////////////////////////////////////////////////////
   // NetcdfFile caching
 
-  static private ucar.nc2.util.cache.FileCache netcdfFileCache = null;
+  static private ucar.nc2.util.cache.FileCacheIF netcdfFileCache = null;
   static private ucar.nc2.util.cache.FileFactory defaultNetcdfFileFactory = new MyNetcdfFileFactory();
 
   // no state, so a singleton is ok
@@ -300,6 +324,16 @@ public class NetcdfDataset extends ucar.nc2.NetcdfFile {
                                                         hardLimit, period);
   }
 
+  /**
+   * Enable file caching with the given cache, eg a FileCacheStriped. call this before calling acquireFile().
+   * When application terminates, call NetcdfDataset.shutdown().
+   *
+   * @param cache use this cache
+   */
+  static public synchronized void initNetcdfFileCache(ucar.nc2.util.cache.FileCacheIF cache) {
+    netcdfFileCache = cache;
+  }
+
   static public synchronized void disableNetcdfFileCache() {
     if (null != netcdfFileCache) netcdfFileCache.disable();
     netcdfFileCache = null;
@@ -312,6 +346,7 @@ public class NetcdfDataset extends ucar.nc2.NetcdfFile {
   static public synchronized void shutdown() {
     disableNetcdfFileCache();
     FileCache.shutdown();
+    FileCacheStriped.shutdown();
   }
 
   /**
@@ -642,7 +677,7 @@ public class NetcdfDataset extends ucar.nc2.NetcdfFile {
    * @return NetcdfFile object
    * @throws java.io.IOException on read error
    *
-  static private NetcdfFile openOrAcquireFile(FileCache cache, FileFactory factory, Object hashKey, String orgLocation,
+  static private NetcdfFile openOrAcquireFile(FileCacheIF cache, FileFactory factory, Object hashKey, String orgLocation,
                                               int buffer_size, ucar.nc2.util.CancelTask cancelTask, Object spiObject) throws IOException {
 
     if (orgLocation == null)
@@ -653,7 +688,7 @@ public class NetcdfDataset extends ucar.nc2.NetcdfFile {
     return openOrAcquireFile(cache, factory, hashKey, durl, buffer_size, cancelTask, spiObject);
   } */
 
-  static private NetcdfFile openOrAcquireFile(FileCache cache, FileFactory factory, Object hashKey, DatasetUrl durl,
+  static private NetcdfFile openOrAcquireFile(FileCacheIF cache, FileFactory factory, Object hashKey, DatasetUrl durl,
                                               int buffer_size, ucar.nc2.util.CancelTask cancelTask, Object spiObject) throws IOException {
 
     if (durl.serviceType != null) {
@@ -707,7 +742,7 @@ public class NetcdfDataset extends ucar.nc2.NetcdfFile {
    */
   static private final String DAP4_PATH = "dap4.cdm";
 
-  static private NetcdfFile acquireDODS(FileCache cache, FileFactory factory, Object hashKey,
+  static private NetcdfFile acquireDODS(FileCacheIF cache, FileFactory factory, Object hashKey,
                                         String location, int buffer_size, ucar.nc2.util.CancelTask cancelTask, Object spiObject) throws IOException {
     if (cache == null) {
       return openDodsByReflection(location, cancelTask);
@@ -717,7 +752,7 @@ public class NetcdfDataset extends ucar.nc2.NetcdfFile {
     return (NetcdfFile) cache.acquire(factory, hashKey, new DatasetUrl(ServiceType.OPENDAP, location), buffer_size, cancelTask, spiObject);
   }
 
-  static private NetcdfFile acquireDap4(FileCache cache,
+  static private NetcdfFile acquireDap4(FileCacheIF cache,
                                         FileFactory factory,
                                         Object hashKey,
                                         String location,
@@ -811,7 +846,7 @@ public class NetcdfDataset extends ucar.nc2.NetcdfFile {
 
   ////////////////////////////////////////////////////////////////////////////////////
 
-  static private NetcdfFile acquireNcml(FileCache cache, FileFactory factory, Object hashKey,
+  static private NetcdfFile acquireNcml(FileCacheIF cache, FileFactory factory, Object hashKey,
                                         String location, int buffer_size, ucar.nc2.util.CancelTask cancelTask, Object spiObject) throws IOException {
     if (cache == null) return NcMLReader.readNcML(location, cancelTask);
 
@@ -825,7 +860,7 @@ public class NetcdfDataset extends ucar.nc2.NetcdfFile {
     }
   }
 
-  static private NetcdfFile acquireCdmRemote(FileCache cache, FileFactory factory, Object hashKey,
+  static private NetcdfFile acquireCdmRemote(FileCacheIF cache, FileFactory factory, Object hashKey,
                                              String location, int buffer_size, ucar.nc2.util.CancelTask cancelTask, Object spiObject) throws IOException {
     if (cache == null) return new CdmRemote(location);
 
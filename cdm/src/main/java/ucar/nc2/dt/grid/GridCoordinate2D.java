@@ -37,15 +37,17 @@ import ucar.nc2.dataset.CoordinateAxis2D;
 import ucar.nc2.dataset.CoordinateAxis;
 import ucar.nc2.dt.GridCoordSystem;
 import ucar.ma2.ArrayDouble;
+import ucar.ma2.DataType;
 import ucar.ma2.MAMath;
+import ucar.unidata.geoloc.GridCellIndex;
 
 import java.io.IOException;
 
 /**
  * 2D Coordinate System has lat(x,y) and lon(x,y).
  * This class implements finding the index (i,j) from (lat, lon) coord.
- * This is for "one-off" computation, not a systematic lookup table for all points in a pixel array.
- * Hueristic search of the 2D space for the cell that contains the point.
+ * The cells are put into a GridCellIndex the first time it is used, so repeated lookups dont scan the grid.
+ * Hueristic search of the 2D space is used for a best guess when the point is not in any cell.
  *
  * @author caron
  * @since Jul 10, 2009
@@ -61,6 +63,7 @@ public class GridCoordinate2D {
   private final int nrows, ncols;
   private ArrayDouble.D2 latEdge, lonEdge;
   private MAMath.MinMax latMinMax, lonMinMax;
+  private GridCellIndex index;
 
   GridCoordinate2D(CoordinateAxis2D latCoord, CoordinateAxis2D lonCoord) {
     this.latCoord = latCoord;
@@ -74,8 +77,8 @@ public class GridCoordinate2D {
     ncols = shape[1];
   }
 
-  private void findBounds() {
-    if (lonMinMax != null) return;
+  private synchronized void findBounds() {
+    if (index != null) return;
 
     lonEdge = lonCoord.getEdges();
     latEdge = latCoord.getEdges();
@@ -83,6 +86,7 @@ public class GridCoordinate2D {
     // assume missing values have been converted to NaNs
     latMinMax = MAMath.getMinMax(latEdge);
     lonMinMax = MAMath.getMinMax(lonEdge);
+    index = new GridCellIndex((double[]) latEdge.get1DJavaArray(DataType.DOUBLE), (double[]) lonEdge.get1DJavaArray(DataType.DOUBLE), nrows, ncols);
 
     if (debug)
       System.out.printf("Bounds (%d %d): lat= (%f,%f) lon = (%f,%f) %n", nrows, ncols, latMinMax.min, latMinMax.max, lonMinMax.min, lonMinMax.max);
@@ -114,9 +118,20 @@ public class GridCoordinate2D {
     return false;
   }
 
+  /**
+   * Find the index of the cell containing the given lat,lon point, using the cell index.
+   * @param wantLat   lat of point
+   * @param wantLon   lon of point
+   * @param rectIndex return (row,col) index, or best guess here. may not be null
+   *
+   * @return false if not in the grid.
+   */
   public boolean findCoordElement(double wantLat, double wantLon, int[] rectIndex) {
-    return findCoordElementNoForce(wantLat, wantLon,rectIndex);
-  }  
+    findBounds();
+    if (index.findCell(wantLat, wantLon, rectIndex))
+      return true;
+    return findCoordElementNoForce(wantLat, wantLon, rectIndex); // not found, but leave the best guess in rectIndex
+  }
 
 
   /**
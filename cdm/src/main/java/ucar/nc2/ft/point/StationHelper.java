@@ -32,25 +32,32 @@
  */
 package ucar.nc2.ft.point;
 
+import ucar.unidata.geoloc.LatLonPoint;
 import ucar.unidata.geoloc.LatLonPointImpl;
 import ucar.unidata.geoloc.LatLonRect;
 import ucar.unidata.geoloc.Station;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 /**
  * Helper class for Station Collections.
  * This assumes that calling getData( Station s) is cheap, ie that theres no cheaper filtering to do.
+ * Bounding box and nearest station queries use a grid of the stations, made the first time its needed.
  * @author caron
  * @since Feb 5, 2008
  */
 public class StationHelper {
+  private static final int MIN_GRID = 100; // below this, just scan the stations
+
   private List<StationFeature> stations;
   private Map<String, StationFeature> stationHash;
+  private volatile StationGrid grid;
   private static final boolean debug = false;
 
   public StationHelper() {
@@ -61,6 +68,7 @@ public class StationHelper {
   public void addStation( StationFeature s) {
     stations.add(s);
     stationHash.put(s.getName(), s);
+    grid = null;
   }
 
   public void setStations( List<StationFeature> nstations) {
@@ -70,6 +78,15 @@ public class StationHelper {
       addStation(s);
   }
 
+  private StationGrid getGrid() {
+    StationGrid result = grid;
+    if (result == null && stations.size() >= MIN_GRID) {
+      result = new StationGrid(stations);
+      grid = result;
+    }
+    return result;
+  }
+
   private LatLonRect rect;
   public LatLonRect getBoundingBox() {
     if (rect == null) {
@@ -112,30 +129,62 @@ public class StationHelper {
 
   public List<Station> getStations(LatLonRect boundingBox) throws IOException {
     if (boundingBox == null) return getStations();
-    
-    LatLonPointImpl latlonPt = new LatLonPointImpl();
-    List<Station> result = new ArrayList<>();
-    for (StationFeature s : stations) {
-      latlonPt.set(s.getLatitude(), s.getLongitude());
-      if (boundingBox.contains(latlonPt))
-        result.add(s);
-    }
-    return result;
+    return new ArrayList<Station>(getStationFeatures(boundingBox));
   }
 
   public List<StationFeature> getStationFeatures(LatLonRect boundingBox) throws IOException {
     if (boundingBox == null) return stations;
 
-    LatLonPointImpl latlonPt = new LatLonPointImpl();
+    StationGrid g = getGrid();
+    if (g != null) {
+      int[] found = g.find(boundingBox);
+      List<StationFeature> result = new ArrayList<>(found.length);
+      for (int idx : found)
+        result.add(stations.get(idx));
+      return result;
+    }
+
     List<StationFeature> result = new ArrayList<>();
     for (StationFeature s : stations) {
-      latlonPt.set(s.getLatitude(), s.getLongitude());
-      if (boundingBox.contains(latlonPt))
+      if (boundingBox.contains(s.getLatitude(), s.getLongitude()))
         result.add(s);
     }
     return result;
   }
 
+  /**
+   * Find the stations closest to the specified point, nearest first.
+   * The metric is (lat-lat0)**2 + (cos(lat0)*(lon-lon0))**2
+   *
+   * @param pt  the point
+   * @param n   maximum number of stations to return
+   * @return up to n stations, nearest first
+   */
+  public List<StationFeature> getNearestStationFeatures(LatLonPoint pt, int n) {
+    n = Math.min(n, stations.size());
+    if (n <= 0) return new ArrayList<>();
+
+    Nearest nearest = new Nearest(pt, n);
+    StationGrid g = getGrid();
+    if (g != null) {
+      g.findNearest(nearest);
+    } else {
+      for (int i = 0; i < stations.size(); i++)
+        nearest.add(i, stations.get(i));
+    }
+    return nearest.getResult();
+  }
+
+  /**
+   * Find the station closest to the specified point.
+   * @param pt  the point
+   * @return closest station, or null if there are none
+   */
+  public StationFeature getNearestStationFeature(LatLonPoint pt) {
+    List<StationFeature> result = getNearestStationFeatures(pt, 1);
+    return result.isEmpty() ? null : result.get(0);
+  }
+
   public StationFeature getStation(String name) {
     return stationHash.get( name);
   }
@@ -196,5 +245,209 @@ public class StationHelper {
     return result;
   }
 
+  //////////////////////////////////////////////////////////////////////////////////
+
+  // keeps the n closest stations seen so far
+  private class Nearest {
+    final double lat, lon, cos;
+    final int n;
+    final PriorityQueue<double[]> best; // {dist, index}, farthest first
+
+    Nearest(LatLonPoint pt, int n) {
+      this.lat = pt.getLatitude();
+      this.lon = pt.getLongitude();
+      this.cos = Math.cos(Math.toRadians(lat));
+      this.n = n;
+      this.best = new PriorityQueue<>(n, (a, b) -> (a[0] != b[0]) ? Double.compare(b[0], a[0]) : Double.compare(b[1], a[1]));
+    }
+
+    void add(int index, Station s) {
+      double lon1 = LatLonPointImpl.lonNormal(s.getLongitude(), lon);
+      double dy = Math.toRadians(lat - s.getLatitude());
+      double dx = cos * Math.toRadians(lon - lon1);
+      double dist = dy * dy + dx * dx;
+      if (Double.isNaN(dist)) return;
+
+      if (best.size() < n) {
+        best.add(new double[]{dist, index});
+      } else {
+        double[] worst = best.peek();
+        if (dist < worst[0] || (dist == worst[0] && index < worst[1])) {
+          best.poll();
+          best.add(new double[]{dist, index});
+        }
+      }
+    }
+
+    // the distance that a station must beat to be added, infinite until there are n of them
+    double limit() {
+      return (best.size() < n) ? Double.MAX_VALUE : best.peek()[0];
+    }
+
+    List<StationFeature> getResult() {
+      double[][] sorted = best.toArray(new double[best.size()][]);
+      Arrays.sort(sorted, (a, b) -> (a[0] != b[0]) ? Double.compare(a[0], b[0]) : Double.compare(a[1], b[1]));
+      List<StationFeature> result = new ArrayList<>(sorted.length);
+      for (double[] d : sorted)
+        result.add(stations.get((int) d[1]));
+      return result;
+    }
+  }
+
+  // the stations bucketed on a regular lat/lon grid, with about STATIONS_PER_CELL in each cell if evenly spread.
+  // stations with lat/lon outside the normal range are not put on the grid, and are always checked.
+  private class StationGrid {
+    static final int STATIONS_PER_CELL = 4;
+
+    final double latCell, lonCell;  // degrees, exactly 180 / nrows and 360 / ncols, so the cells wrap around evenly
+    final int nrows, ncols;
+    final int[] cellStart;   // the stations in cell k are order[cellStart[k]] .. order[cellStart[k+1]-1]
+    final int[] order;       // station indices, increasing within a cell
+    final int[] outside;     // station indices not on the grid
+
+    StationGrid(List<StationFeature> stns) {
+      int n = stns.size();
+      double cell = Math.min(30.0, Math.max(0.25, Math.sqrt(180.0 * 360.0 * STATIONS_PER_CELL / n)));
+      nrows = (int) Math.ceil(180.0 / cell);
+      ncols = (int) Math.ceil(360.0 / cell);
+      latCell = 180.0 / nrows;
+      lonCell = 360.0 / ncols;
+
+      int[] cellOf = new int[n];
+      int[] counts = new int[nrows * ncols + 1];
+      int nout = 0;
+      for (int i = 0; i < n; i++) {
+        Station s = stns.get(i);
+        double lat = s.getLatitude(), lon = s.getLongitude();
+        if (lat >= -90.0 && lat <= 90.0 && lon >= -180.0 && lon <= 180.0) {
+          cellOf[i] = row(lat) * ncols + col(lon);
+          counts[cellOf[i] + 1]++;
+        } else {
+          cellOf[i] = -1;
+          nout++;
+        }
+      }
+
+      cellStart = counts;
+      for (int k = 1; k < cellStart.length; k++)
+        cellStart[k] += cellStart[k - 1];
+
+      order = new int[n - nout];
+      outside = new int[nout];
+      int[] next = Arrays.copyOf(cellStart, cellStart.length - 1);
+      int nextOut = 0;
+      for (int i = 0; i < n; i++) {
+        if (cellOf[i] < 0)
+          outside[nextOut++] = i;
+        else
+          order[next[cellOf[i]]++] = i;
+      }
+    }
+
+    int row(double lat) {
+      return Math.max(0, Math.min(nrows - 1, (int) Math.floor((lat + 90.0) / latCell)));
+    }
+
+    int col(double lon) {
+      return Math.max(0, Math.min(ncols - 1, (int) Math.floor((lon + 180.0) / lonCell)));
+    }
+
+    // indices of the stations in the box, in station order, same as checking each station with box.contains()
+    int[] find(LatLonRect box) {
+      int row0 = row(box.getLatMin() - 1.0e-9);
+      int row1 = row(box.getLatMax() + 1.0e-9);
+      double lonMin = LatLonPointImpl.lonNormal(box.getLowerLeftPoint().getLongitude());
+      double lonMax = LatLonPointImpl.lonNormal(box.getUpperRightPoint().getLongitude());
+
+      IntList found = new IntList();
+      if (allLongitude(box, lonMin, lonMax)) {
+        addCells(box, row0, row1, 0, ncols - 1, found);
+      } else if (box.crossDateline()) {
+        addCells(box, row0, row1, col(lonMin), ncols - 1, found);
+        addCells(box, row0, row1, 0, Math.min(col(lonMax), col(lonMin) - 1), found);
+      } else {
+        addCells(box, row0, row1, col(lonMin), col(lonMax), found);
+      }
+      for (int idx : outside)
+        if (contains(box, idx)) found.add(idx);
+
+      int[] result = found.toArray();
+      Arrays.sort(result);
+      return result;
+    }
+
+    private void addCells(LatLonRect box, int row0, int row1, int col0, int col1, IntList found) {
+      for (int row = row0; row <= row1; row++) {
+        for (int col = col0; col <= col1; col++) {
+          int k = row * ncols + col;
+          for (int j = cellStart[k]; j < cellStart[k + 1]; j++) {
+            if (contains(box, order[j])) found.add(order[j]);
+          }
+        }
+      }
+    }
+
+    private boolean contains(LatLonRect box, int idx) {
+      Station s = stations.get(idx);
+      return box.contains(s.getLatitude(), s.getLongitude());
+    }
+
+    // LatLonRect doesnt say if it includes all longitudes, so check a longitude outside of [lonMin, lonMax]
+    private boolean allLongitude(LatLonRect box, double lonMin, double lonMax) {
+      if (box.getWidth() >= 360.0) return true;
+      double outsideLon = box.crossDateline() ? (lonMin + lonMax) / 2 : LatLonPointImpl.lonNormal((lonMin + lonMax) / 2 + 180.0);
+      return box.contains((box.getLatMin() + box.getLatMax()) / 2, outsideLon);
+    }
+
+    // search rings of cells around the point, until no unsearched cell can have a closer station
+    void findNearest(Nearest nearest) {
+      for (int idx : outside)
+        nearest.add(idx, stations.get(idx));
+
+      int row0 = row(Math.max(-90.0, Math.min(90.0, nearest.lat)));
+      int col0 = col(LatLonPointImpl.lonNormal(nearest.lon));
+      int dcMin = -(ncols - 1) / 2;  // the columns, relative to col0, each one once
+      int dcMax = dcMin + ncols - 1;
+
+      for (int r = 0; ; r++) {
+        for (int dr = -r; dr <= r; dr++) {
+          int row = row0 + dr;
+          if (row < 0 || row >= nrows) continue;
+          int step = (Math.abs(dr) == r) ? 1 : 2 * r; // top and bottom rows of the ring, else just its sides
+          for (int dc = -r; dc <= r; dc += step) {
+            if (dc < dcMin || dc > dcMax) continue;
+            int k = row * ncols + Math.floorMod(col0 + dc, ncols);
+            for (int j = cellStart[k]; j < cellStart[k + 1]; j++)
+              nearest.add(order[j], stations.get(order[j]));
+          }
+        }
+
+        // unsearched stations are at least r cells away in lat or lon
+        boolean allRows = (row0 - r <= 0) && (row0 + r >= nrows - 1);
+        boolean allCols = (-r <= dcMin) && (r >= dcMax);
+        if (allRows && allCols) return;
+        double latDist = allRows ? Double.MAX_VALUE : Math.toRadians(r * latCell);
+        double lonDist = allCols ? Double.MAX_VALUE : Math.abs(nearest.cos) * Math.toRadians(r * lonCell);
+        double bound = Math.min(latDist, lonDist);
+        if (bound * bound > nearest.limit()) return;
+      }
+    }
+  }
+
+  // growable int array
+  private static class IntList {
+    int[] values = new int[16];
+    int size;
+
+    void add(int v) {
+      if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+      values[size++] = v;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
 }
 
@@ -47,6 +47,7 @@ import ucar.nc2.ft.StationTimeSeriesFeatureCollection;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.time.CalendarDateUnit;
 import ucar.nc2.util.IOIterator;
+import ucar.unidata.geoloc.LatLonPoint;
 import ucar.unidata.geoloc.LatLonRect;
 
 /**
@@ -111,6 +112,16 @@ public abstract class StationTimeSeriesCollectionImpl extends PointFeatureCCImpl
     return getStationHelper().getStation(name);
   }
 
+  /**
+   * Find the stations closest to a point, nearest first.
+   * @param pt  the point
+   * @param n   maximum number of stations to return
+   * @return up to n stations, nearest first
+   */
+  public List<StationFeature> getNearestStationFeatures(LatLonPoint pt, int n) {
+    return getStationHelper().getNearestStationFeatures(pt, n);
+  }
+
   @Override
   public StationTimeSeriesFeature getStationTimeSeriesFeature(StationFeature s) {
     return (StationTimeSeriesFeature) s; // LOOK
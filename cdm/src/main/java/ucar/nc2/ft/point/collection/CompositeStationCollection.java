@@ -32,10 +32,13 @@
  */
 package ucar.nc2.ft.point.collection;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Formatter;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -71,7 +74,11 @@ import ucar.unidata.geoloc.Station;
  * @since May 19, 2009
  */
 public class CompositeStationCollection extends StationTimeSeriesCollectionImpl implements UpdateableCollection {
+  static private org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CompositeStationCollection.class);
+  static private final int MAX_OPEN_DATASETS = 100; // per iteration over the stations
+
   private TimedCollection dataCollection;
+  private CompositeStationIndex stationIndex;
   protected List<VariableSimpleIF> dataVariables;
   protected List<Attribute> globalAttributes;
 
@@ -102,7 +109,7 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
       List<StationFeature> stns = openCollection.getStationFeatures();
 
       for (StationFeature stnFeature : stns) {
-        stationHelper.addStation(new CompositeStationFeature(stnFeature, timeUnit, altUnits, stnFeature.getFeatureData(), this.dataCollection));
+        stationHelper.addStation(new CompositeStationFeature(stnFeature, timeUnit, altUnits, stnFeature.getFeatureData(), this.dataCollection, null));
       }
 
       dataVariables = openDataset.getDataVariables();
@@ -122,9 +129,27 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
     return globalAttributes;
   }
 
+  /**
+   * The index of which stations are in which files, built or brought up to date the first time it is needed.
+   * @return station index for this collection
+   */
+  protected synchronized CompositeStationIndex getStationIndex() {
+    if (stationIndex == null) {
+      stationIndex = CompositeStationIndex.open(dataCollection);
+      try {
+        stationIndex.update(dataCollection.getDatasets());
+      } catch (IOException e) {
+        logger.warn("Failed to write station index " + stationIndex.getIndexFile(), e);
+      }
+    }
+    return stationIndex;
+  }
+
   @Override
   public CalendarDateRange update() throws IOException {
-    return dataCollection.update();
+    CalendarDateRange result = dataCollection.update();
+    getStationIndex().update(dataCollection.getDatasets());  // only reads the new or changed files
+    return result;
   }
 
   // Must override default subsetting implementation for efficiency
@@ -140,6 +165,15 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
     }
   }
 
+  @Override
+  public StationTimeSeriesFeatureCollection subsetFeatures(List<StationFeature> stationsFeatures) throws IOException {
+    if (stationsFeatures == null || stationsFeatures.isEmpty()) {
+      return super.subsetFeatures(stationsFeatures);
+    } else {
+      return new CompositeStationCollectionSubset(this, stationsFeatures);
+    }
+  }
+
   @Override
   public StationTimeSeriesFeatureCollection subset(ucar.unidata.geoloc.LatLonRect boundingBox) throws IOException {
     if (boundingBox == null) {
@@ -159,7 +193,8 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
   @Override
   public PointFeatureCollection flatten(LatLonRect boundingBox, CalendarDateRange dateRange) throws IOException {
     TimedCollection subsetCollection = (dateRange != null) ? dataCollection.subset(dateRange) : dataCollection;
-    return new CompositeStationCollectionFlattened(getName(), getTimeUnit(), getAltUnits(), boundingBox, dateRange, subsetCollection);
+    return new CompositeStationCollectionFlattened(getName(), getTimeUnit(), getAltUnits(), boundingBox, dateRange, subsetCollection,
+            getStationIndex());
 
     //return flatten(stationHelper.getStations(boundingBox), dateRange, null);
   }
@@ -167,7 +202,8 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
   @Override
   public PointFeatureCollection flatten(List<String> stations, CalendarDateRange dateRange, List<VariableSimpleIF> varList) throws IOException {
     TimedCollection subsetCollection = (dateRange != null) ? dataCollection.subset(dateRange) : dataCollection;
-    return new CompositeStationCollectionFlattened(getName(), getTimeUnit(), getAltUnits(), stations, dateRange, varList, subsetCollection);
+    return new CompositeStationCollectionFlattened(getName(), getTimeUnit(), getAltUnits(), stations, dateRange, varList, subsetCollection,
+            getStationIndex());
   }
 
 
@@ -191,17 +227,23 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
 
       for (StationFeature stationFeat : this.stationFeats) {
         stationHelper.addStation(new CompositeStationFeature(
-                stationFeat, timeUnit, altUnits, stationFeat.getFeatureData(), from.dataCollection));
+                stationFeat, timeUnit, altUnits, stationFeat.getFeatureData(), from.dataCollection, null));
       }
 
       return stationHelper;
     }
+
+    @Override
+    protected CompositeStationIndex getStationIndex() {
+      return from.getStationIndex();
+    }
   }
 
   //////////////////////////////////////////////////////////
   // the iterator over StationTimeSeriesFeature objects
-  // problematic - since each station will independently iterate over the datasets.
-  // betterto use the flatten() method, then reconstitute the station with getStation(pointFeature)
+  // each station independently iterates over the datasets, so the datasets opened are shared across the stations,
+  // and the station index is used to skip datasets that dont have the station.
+  // the flatten() method is still better if you dont need the observations grouped by station.
 
   @Override
   public PointFeatureCollectionIterator getPointFeatureCollectionIterator() throws IOException {
@@ -209,33 +251,92 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
     // an anonymous class iterating over the stations
     return new PointFeatureCollectionIterator() {
       Iterator<Station> stationIter = getStationHelper().getStations().iterator();
+      OpenDatasets openDatasets = new OpenDatasets(MAX_OPEN_DATASETS);
 
       @Override
       public boolean hasNext() throws IOException {
-        return stationIter.hasNext();
+        boolean more = stationIter.hasNext();
+        if (!more) close();
+        return more;
       }
 
       @Override
       public PointFeatureCollection next() throws IOException {
-        return (PointFeatureCollection) stationIter.next();
+        Station s = stationIter.next();
+        if (s instanceof CompositeStationFeature)
+          return ((CompositeStationFeature) s).withOpenDatasets(openDatasets);
+        return (PointFeatureCollection) s;
       }
 
       @Override
       public void close() {
+        openDatasets.close();
       }
     };
   }
 
+  // the datasets opened during one iteration over the stations, so each is opened once instead of once per station.
+  // only the first maxOpen are kept; after close() the stations open their own datasets again.
+  private static class OpenDatasets implements Closeable {
+    private final int maxOpen;
+    private final Map<String, FeatureDatasetPoint> datasets = new HashMap<>();
+    private boolean closed = false;
+
+    OpenDatasets(int maxOpen) {
+      this.maxOpen = maxOpen;
+    }
+
+    // return null if the caller must open (and close) the dataset itself
+    StationTimeSeriesFeatureCollection get(String location) throws IOException {
+      if (closed) return null;
+      FeatureDatasetPoint fdp = datasets.get(location);
+      if (fdp == null) {
+        if (datasets.size() >= maxOpen) return null;
+        fdp = openStationDataset(location);
+        datasets.put(location, fdp);
+      }
+      return (StationTimeSeriesFeatureCollection) fdp.getPointFeatureCollectionList().get(0);
+    }
+
+    @Override
+    public void close() {
+      if (closed) return;
+      for (FeatureDatasetPoint fdp : datasets.values()) {
+        try {
+          fdp.close();
+        } catch (IOException e) {
+          logger.warn("Failed to close " + fdp.getLocation(), e);
+        }
+      }
+      datasets.clear();
+      closed = true;
+    }
+  }
+
+  private static FeatureDatasetPoint openStationDataset(String location) throws IOException {
+    Formatter errlog = new Formatter();
+    FeatureDatasetPoint fdp = (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(FeatureType.STATION, location, null, errlog);
+    if (fdp == null)
+      throw new IllegalStateException("Cant open FeatureDatasetPoint " + location);
+    if (CompositeDatasetFactory.debug)
+      System.out.printf("CompositeStationCollection open dataset: %s%n", location);
+    return fdp;
+  }
+
   // the StationTimeSeriesFeature
 
   private class CompositeStationFeature extends StationTimeSeriesFeatureImpl {
     private TimedCollection collForFeature;
     private StructureData sdata;
+    private OpenDatasets openDatasets; // may be null
+    private CalendarDateRange wantRange; // set only by subset(dateRange), the file dates are only estimates
 
-    CompositeStationFeature(StationFeature s, CalendarDateUnit timeUnit, String altUnits, StructureData sdata, TimedCollection collForFeature) {
+    CompositeStationFeature(StationFeature s, CalendarDateUnit timeUnit, String altUnits, StructureData sdata,
+                            TimedCollection collForFeature, OpenDatasets openDatasets) {
       super(s, timeUnit, altUnits, -1);
       this.sdata = sdata;
       this.collForFeature = collForFeature;
+      this.openDatasets = openDatasets;
       CalendarDateRange cdr = collForFeature.getDateRange();
       if (cdr != null) {
         getInfo();
@@ -250,6 +351,13 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
       return new CompositeStationFeatureIterator();
     }
 
+    // same station, using the datasets already opened by the collection iterator
+    CompositeStationFeature withOpenDatasets(OpenDatasets openDatasets) {
+      CompositeStationFeature result = new CompositeStationFeature(s, getTimeUnit(), getAltUnits(), sdata, collForFeature, openDatasets);
+      result.wantRange = wantRange;
+      return result;
+    }
+
     /*
     public StationTimeSeriesFeature subset(DateRange dateRange) throws IOException {
       return subset(CalendarDateRange.of(dateRange));  // Handles dateRange == null.
@@ -277,7 +385,8 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
 
       // Create a new CompositeStationFeature from the subsetted collection.
       CompositeStationFeature compStnFeatSubset =
-              new CompositeStationFeature(s, getTimeUnit(), getAltUnits(), sdata, collectionSubset);
+              new CompositeStationFeature(s, getTimeUnit(), getAltUnits(), sdata, collectionSubset, openDatasets);
+      compStnFeatSubset.wantRange = dateRange;
 
       // We're not done yet! While compStnFeatSubset has been limited to only include datasets that intersect dateRange,
       // it'll often be the case that those datasets contain some times that we don't want. In the example above,
@@ -307,39 +416,54 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
       return subset(dateRange);
     }
 
-    // the iterator over PointFeature - an iterator over iterators, one for each dataset
+    // the iterator over PointFeature - an iterator over iterators, one for each dataset that has the station
 
     private class CompositeStationFeatureIterator extends PointIteratorAbstract {
       private Iterator<TimedCollection.Dataset> iter;
-      private FeatureDatasetPoint currentDataset;
+      private CompositeStationIndex index;
+      private CalendarDateRange range;
+      private FeatureDatasetPoint currentDataset; // only if we opened it, otherwise its in openDatasets
       private PointFeatureIterator pfIter = null;
       private boolean finished = false;
 
       CompositeStationFeatureIterator() {
         iter = collForFeature.getDatasets().iterator();
+        index = getStationIndex();
+        range = wantRange;
       }
 
       private PointFeatureIterator getNextIterator() throws IOException {
-        if (!iter.hasNext()) return null;
-        TimedCollection.Dataset td = iter.next();
-        Formatter errlog = new Formatter();
-        currentDataset = (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(FeatureType.STATION, td.getLocation(), null, errlog);
-        if (currentDataset == null)
-          throw new IllegalStateException("Cant open FeatureDatasetPoint " + td.getLocation());
-
-        List<DsgFeatureCollection> fcList = currentDataset.getPointFeatureCollectionList();
-        StationTimeSeriesFeatureCollection stnCollection = (StationTimeSeriesFeatureCollection) fcList.get(0);
-        StationFeature s = stnCollection.findStationFeature(getName());
-        if (s == null) {
-          System.out.printf("CompositeStationFeatureIterator dataset: %s missing station %s%n",
-                  td.getLocation(), getName());
-          return getNextIterator();
+        while (iter.hasNext()) {
+          TimedCollection.Dataset td = iter.next();
+          if (!index.contains(td.getLocation(), getName(), range))
+            continue;
+
+          StationTimeSeriesFeatureCollection stnCollection = (openDatasets == null) ? null : openDatasets.get(td.getLocation());
+          if (stnCollection == null) {
+            currentDataset = openStationDataset(td.getLocation());
+            List<DsgFeatureCollection> fcList = currentDataset.getPointFeatureCollectionList();
+            stnCollection = (StationTimeSeriesFeatureCollection) fcList.get(0);
+          }
+
+          StationFeature s = stnCollection.findStationFeature(getName());
+          if (s == null) {
+            logger.debug("CompositeStationFeatureIterator dataset: {} missing station {}", td.getLocation(), getName());
+            closeCurrentDataset();
+            continue;
+          }
+
+          StationTimeSeriesFeature stnFeature = stnCollection.getStationTimeSeriesFeature(s);
+          return stnFeature.getPointFeatureIterator();
         }
+        return null;
+      }
 
-        StationTimeSeriesFeature stnFeature = stnCollection.getStationTimeSeriesFeature(s);
+      private void closeCurrentDataset() throws IOException {
+        if (currentDataset == null) return;
+        currentDataset.close();
         if (CompositeDatasetFactory.debug)
-          System.out.printf("CompositeStationFeatureIterator open dataset: %s for %s%n", td.getLocation(), s.getName());
-        return stnFeature.getPointFeatureIterator();
+          System.out.printf("CompositeStationFeatureIterator close dataset: %s%n", currentDataset.getLocation());
+        currentDataset = null;
       }
 
       @Override
@@ -355,9 +479,7 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
 
           if (!pfIter.hasNext()) {
             pfIter.close();
-            currentDataset.close();
-            if (CompositeDatasetFactory.debug)
-              System.out.printf("CompositeStationFeatureIterator close dataset: %s%n", currentDataset.getLocation());
+            closeCurrentDataset();
             pfIter = getNextIterator();
             return hasNext();
           }
@@ -382,14 +504,11 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
         if (pfIter != null)
           pfIter.close();
 
-        if (currentDataset != null)
-          try {
-            currentDataset.close();
-            if (CompositeDatasetFactory.debug)
-              System.out.printf("CompositeStationFeatureIterator close dataset: %s%n", currentDataset.getLocation());
-          } catch (IOException e) {
-            throw new RuntimeException(e);
-          }
+        try {
+          closeCurrentDataset();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
 
         finishCalcBounds();
         finished = true;
@@ -71,23 +71,43 @@ public class CompositeStationCollectionFlattened extends PointCollectionImpl {
   private CalendarDateRange dateRange;
   private List<VariableSimpleIF> varList;
   private boolean wantStationsubset = false;
+  private CompositeStationIndex stationIndex; // may be null
 
   protected CompositeStationCollectionFlattened(String name, CalendarDateUnit timeUnit, String altUnits, List<String> stations, CalendarDateRange dateRange,
                                                 List<VariableSimpleIF> varList, TimedCollection stnCollections) throws IOException {
+    this(name, timeUnit, altUnits, stations, dateRange, varList, stnCollections, null);
+  }
+
+  protected CompositeStationCollectionFlattened(String name, CalendarDateUnit timeUnit, String altUnits, List<String> stations, CalendarDateRange dateRange,
+                                                List<VariableSimpleIF> varList, TimedCollection stnCollections,
+                                                CompositeStationIndex stationIndex) throws IOException {
     super(name, timeUnit, altUnits);
     this.stationsSubset = stations; // note these will be from the original collection, must transfer
     this.dateRange = dateRange;
     this.varList = varList;
     this.stnCollections = stnCollections;
+    this.stationIndex = stationIndex;
 
     wantStationsubset = (stations != null) && (stations.size() > 0);
   }
 
   protected CompositeStationCollectionFlattened(String name, CalendarDateUnit timeUnit, String altUnits, LatLonRect bbSubset, CalendarDateRange dateRange, TimedCollection stnCollections) throws IOException {
+    this(name, timeUnit, altUnits, bbSubset, dateRange, stnCollections, null);
+  }
+
+  protected CompositeStationCollectionFlattened(String name, CalendarDateUnit timeUnit, String altUnits, LatLonRect bbSubset, CalendarDateRange dateRange,
+                                                TimedCollection stnCollections, CompositeStationIndex stationIndex) throws IOException {
     super(name, timeUnit, altUnits);
     this.bbSubset = bbSubset;
     this.dateRange = dateRange;
     this.stnCollections = stnCollections;
+    this.stationIndex = stationIndex;
+  }
+
+  // skip the datasets that the index knows have none of the wanted observations
+  private boolean wantDataset(TimedCollection.Dataset td) {
+    if (stationIndex == null) return true;
+    return stationIndex.containsAny(td.getLocation(), wantStationsubset ? stationsSubset : null, dateRange);
   }
 
   @Override
@@ -106,8 +126,11 @@ public class CompositeStationCollectionFlattened extends PointCollectionImpl {
     }
 
     private PointFeatureIterator getNextIterator() throws IOException {
-      if (!iter.hasNext()) return null;
-      TimedCollection.Dataset td = iter.next();
+      TimedCollection.Dataset td;
+      do {
+        if (!iter.hasNext()) return null;
+        td = iter.next();
+      } while (!wantDataset(td));
       Formatter errlog = new Formatter();
 
       // open the next dataset
@@ -0,0 +1,369 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.ft.point.collection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import thredds.inventory.TimedCollection;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.DsgFeatureCollection;
+import ucar.nc2.ft.FeatureDatasetFactoryManager;
+import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.StationTimeSeriesFeature;
+import ucar.nc2.ft.StationTimeSeriesFeatureCollection;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.nc2.util.DiskCache2;
+
+/**
+ * Persistent index of which stations are in which files of a CompositeStationCollection.
+ * For each file, keeps its lastModified, and for each station in it, the number of observations and their time range.
+ * Only new or changed files are read when the index is updated, so it can be kept current as files arrive.
+ * Files not in the index, or changed since they were indexed, are assumed to contain every station.
+ */
+public class CompositeStationIndex {
+  static private org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CompositeStationIndex.class);
+
+  static public final String SUFFIX = ".stnx";
+  static private final int MAGIC = 0x53544e58; // "STNX"
+  static private final int VERSION = 1;
+
+  static private DiskCache2 diskCache;
+
+  static synchronized public void setDiskCache2(DiskCache2 dc) {
+    diskCache = dc;
+  }
+
+  static synchronized public DiskCache2 getDiskCache2() {
+    if (diskCache == null)
+      diskCache = DiskCache2.getDefault();
+    return diskCache;
+  }
+
+  /**
+   * Open the index for a collection, reading the index file if it exists.
+   * Call update() to bring it up to date with the collection.
+   *
+   * @param collection the collection of station files
+   * @return the index, possibly empty
+   */
+  static public CompositeStationIndex open(TimedCollection collection) {
+    File indexFile = null;
+    try {
+      indexFile = getDiskCache2().getFile(collection.getIndexFilename(SUFFIX));
+    } catch (IllegalStateException e) {
+      logger.warn("CompositeStationIndex: no place to write index for {}", collection.getIndexFilename(SUFFIX));
+    }
+
+    CompositeStationIndex index = new CompositeStationIndex(indexFile);
+    if (indexFile != null && indexFile.exists()) {
+      try {
+        index.read();
+      } catch (IOException e) {
+        logger.warn("CompositeStationIndex: failed to read {}, will rebuild ({})", indexFile, e.getMessage());
+        index.files = new HashMap<>();
+      }
+    }
+    return index;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////////
+
+  // observations of one station in one file
+  static class StationObs {
+    final int nobs;
+    final long start, end; // millis
+
+    StationObs(int nobs, long start, long end) {
+      this.nobs = nobs;
+      this.start = start;
+      this.end = end;
+    }
+
+    boolean intersects(CalendarDateRange range) {
+      return range == null || (nobs > 0 && start <= range.getEnd().getMillis() && end >= range.getStart().getMillis());
+    }
+  }
+
+  // the stations in one file
+  static class FileEntry {
+    final String location;
+    final long lastModified;
+    final Map<String, StationObs> stations;
+
+    FileEntry(String location, long lastModified, Map<String, StationObs> stations) {
+      this.location = location;
+      this.lastModified = lastModified;
+      this.stations = stations;
+    }
+  }
+
+  private final File indexFile;            // null = dont persist
+  private volatile Map<String, FileEntry> files = new HashMap<>(); // replaced, never modified, once published
+
+  CompositeStationIndex(File indexFile) {
+    this.indexFile = indexFile;
+  }
+
+  public File getIndexFile() {
+    return indexFile;
+  }
+
+  /**
+   * Bring the index up to date: read any new or changed files, drop ones no longer in the collection,
+   * and rewrite the index file if anything changed.
+   *
+   * @param datasets the current files in the collection
+   * @return number of files that were read
+   * @throws IOException on write error
+   */
+  public synchronized int update(List<TimedCollection.Dataset> datasets) throws IOException {
+    Map<String, FileEntry> current = files;
+    Map<String, FileEntry> result = new HashMap<>(2 * datasets.size());
+    int nread = 0;
+
+    for (TimedCollection.Dataset td : datasets) {
+      FileEntry entry = current.get(td.getLocation());
+      if (entry == null || entry.lastModified != td.getLastModified()) {
+        entry = scan(td);
+        nread++;
+      }
+      if (entry != null)
+        result.put(td.getLocation(), entry);
+    }
+
+    boolean changed = nread > 0 || result.size() != current.size();
+    files = result;
+    if (changed && indexFile != null)
+      write();
+    return nread;
+  }
+
+  // read all the observations in the file, once
+  private FileEntry scan(TimedCollection.Dataset td) {
+    Formatter errlog = new Formatter();
+    try (FeatureDatasetPoint fdp = (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(FeatureType.STATION, td.getLocation(), null, errlog)) {
+      if (fdp == null) {
+        logger.warn("CompositeStationIndex: cant open {} errlog = {}", td.getLocation(), errlog);
+        return null;
+      }
+
+      List<DsgFeatureCollection> fcList = fdp.getPointFeatureCollectionList();
+      StationTimeSeriesFeatureCollection stnCollection = (StationTimeSeriesFeatureCollection) fcList.get(0);
+      Map<String, StationObs> stations = new HashMap<>();
+      for (StationTimeSeriesFeature stnFeature : stnCollection) {
+        int nobs = 0;
+        long start = Long.MAX_VALUE, end = Long.MIN_VALUE;
+        for (PointFeature pf : stnFeature) {
+          long time = pf.getObservationTimeAsCalendarDate().getMillis();
+          start = Math.min(start, time);
+          end = Math.max(end, time);
+          nobs++;
+        }
+        stations.put(stnFeature.getName(), new StationObs(nobs, start, end));
+      }
+      return new FileEntry(td.getLocation(), td.getLastModified(), stations);
+
+    } catch (Throwable t) {
+      logger.warn("CompositeStationIndex: failed to index " + td.getLocation(), t);
+      return null;
+    }
+  }
+
+  /**
+   * Might the file have observations for the station in the date range?
+   *
+   * @param location file location
+   * @param station  station name
+   * @param range    date range, or null for all
+   * @return false only if the index knows there are none
+   */
+  public boolean contains(String location, String station, CalendarDateRange range) {
+    FileEntry entry = files.get(location);
+    if (!isCurrent(entry)) return true;
+    StationObs obs = entry.stations.get(station);
+    return obs != null && obs.intersects(range);
+  }
+
+  /**
+   * Might the file have observations for any of the stations in the date range?
+   *
+   * @param location file location
+   * @param stations station names, or null for all stations
+   * @param range    date range, or null for all
+   * @return false only if the index knows there are none
+   */
+  public boolean containsAny(String location, Collection<String> stations, CalendarDateRange range) {
+    FileEntry entry = files.get(location);
+    if (!isCurrent(entry)) return true;
+    if (stations == null) {
+      for (StationObs obs : entry.stations.values())
+        if (obs.intersects(range)) return true;
+      return false;
+    }
+    for (String station : stations) {
+      StationObs obs = entry.stations.get(station);
+      if (obs != null && obs.intersects(range)) return true;
+    }
+    return false;
+  }
+
+  // a file appended to since the last update() may have new stations or later observations
+  private boolean isCurrent(FileEntry entry) {
+    return entry != null && new File(entry.location).lastModified() == entry.lastModified;
+  }
+
+  /**
+   * Number of observations for the station over the whole collection.
+   * @param station  station name
+   * @return number of observations in the indexed files
+   */
+  public int getNumObs(String station) {
+    int total = 0;
+    for (FileEntry entry : files.values()) {
+      StationObs obs = entry.stations.get(station);
+      if (obs != null) total += obs.nobs;
+    }
+    return total;
+  }
+
+  public int getNumFiles() {
+    return files.size();
+  }
+
+  public void showInfo(Formatter f) {
+    Map<String, FileEntry> current = files;
+    f.format("CompositeStationIndex %s nfiles=%d%n", indexFile, current.size());
+    for (FileEntry entry : current.values())
+      f.format(" %s nstations=%d%n", entry.location, entry.stations.size());
+  }
+
+  /////////////////////////////////////////////////////////////////////////////////
+  // persistence
+
+  /*
+    int MAGIC, int VERSION
+    int nstations, stationName (UTF) * nstations       station names are stored once
+    int nfiles, {
+      location (UTF), long lastModified, int n, {
+        int stationIndex, int nobs, long start, long end
+      } * n
+    } * nfiles
+   */
+
+  private void write() throws IOException {
+    Map<String, FileEntry> current = files;
+    List<String> names = new ArrayList<>();
+    Map<String, Integer> nameIndex = new HashMap<>();
+    for (FileEntry entry : current.values()) {
+      for (String name : entry.stations.keySet()) {
+        if (!nameIndex.containsKey(name)) {
+          nameIndex.put(name, names.size());
+          names.add(name);
+        }
+      }
+    }
+
+    File tmpFile = new File(indexFile.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(names.size());
+      for (String name : names)
+        out.writeUTF(name);
+
+      out.writeInt(current.size());
+      for (FileEntry entry : current.values()) {
+        out.writeUTF(entry.location);
+        out.writeLong(entry.lastModified);
+        out.writeInt(entry.stations.size());
+        for (Map.Entry<String, StationObs> e : entry.stations.entrySet()) {
+          StationObs obs = e.getValue();
+          out.writeInt(nameIndex.get(e.getKey()));
+          out.writeInt(obs.nobs);
+          out.writeLong(obs.start);
+          out.writeLong(obs.end);
+        }
+      }
+    }
+
+    Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    if (CompositeDatasetFactory.debug)
+      System.out.printf("CompositeStationIndex wrote %s nfiles=%d%n", indexFile, current.size());
+  }
+
+  private void read() throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      if (in.readInt() != MAGIC)
+        throw new IOException("not a station index file");
+      int version = in.readInt();
+      if (version != VERSION)
+        throw new IOException("unknown station index version " + version);
+
+      int nnames = in.readInt();
+      String[] names = new String[nnames];
+      for (int i = 0; i < nnames; i++)
+        names[i] = in.readUTF();
+
+      int nfiles = in.readInt();
+      Map<String, FileEntry> result = new HashMap<>(2 * nfiles);
+      for (int i = 0; i < nfiles; i++) {
+        String location = in.readUTF();
+        long lastModified = in.readLong();
+        int n = in.readInt();
+        Map<String, StationObs> stations = new HashMap<>(2 * n);
+        for (int j = 0; j < n; j++) {
+          String name = names[in.readInt()];
+          stations.put(name, new StationObs(in.readInt(), in.readLong(), in.readLong()));
+        }
+        result.put(location, new FileEntry(location, lastModified, stations));
+      }
+      files = result;
+    }
+  }
+}
@@ -35,6 +35,8 @@ package ucar.nc2.ft2.coverage;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import ucar.ma2.InvalidRangeException;
 
@@ -51,6 +53,17 @@ public interface CoverageReader extends Closeable {
 
   GeoReferencedArray readData(Coverage coverage, SubsetParams subset, boolean canonicalOrder) throws IOException, InvalidRangeException;
 
-  // List<ArrayWithCoordinates> readData(List<Coverage> coverage, SubsetParams subset) throws IOException;
+  /**
+   * Read several coverages with the same subset.
+   * Readers that can share the work between the coverages (eg read each data file only once) should override this.
+   *
+   * @return one GeoReferencedArray for each coverage, in the same order
+   */
+  default List<GeoReferencedArray> readData(List<Coverage> coverages, SubsetParams subset, boolean canonicalOrder) throws IOException, InvalidRangeException {
+    List<GeoReferencedArray> result = new ArrayList<>(coverages.size());
+    for (Coverage coverage : coverages)
+      result.add(readData(coverage, subset, canonicalOrder));
+    return result;
+  }
 
 }
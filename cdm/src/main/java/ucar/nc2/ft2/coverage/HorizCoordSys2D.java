@@ -35,6 +35,7 @@ package ucar.nc2.ft2.coverage;
 
 import ucar.ma2.*;
 import ucar.nc2.util.Optional;
+import ucar.unidata.geoloc.GridCellIndex;
 import ucar.unidata.geoloc.LatLonPoint;
 import ucar.unidata.geoloc.LatLonPointImpl;
 import ucar.unidata.geoloc.LatLonRect;
@@ -163,13 +164,14 @@ public class HorizCoordSys2D extends HorizCoordSys {
     synchronized (this) {
       if (edges == null) edges = new Edges();
     }
-    return edges.computeBoundsExhaustive(llbb, horizStride);
+    return edges.computeBounds(llbb, horizStride);
   }
 
   // assume this class is instantiated when these edges are needed
   private class Edges {
     private ArrayDouble.D2 latEdge, lonEdge;
     private MAMath.MinMax latMinMax, lonMinMax;
+    private GridCellIndex index;
 
     Edges() {
       latEdge = (ArrayDouble.D2) lataxis2D.getCoordBoundsAsArray();
@@ -185,6 +187,7 @@ public class HorizCoordSys2D extends HorizCoordSys {
         double nonVal = lonEdge.getDouble(i);
         lonEdge.setDouble(i, LatLonPointImpl.lonNormalFrom(nonVal, lonMinMax.min));
       }
+      index = new GridCellIndex((double[]) latEdge.getStorage(), (double[]) lonEdge.getStorage(), nrows, ncols);
 
       if (debug)
         System.out.printf("Bounds (%d %d): lat= (%f,%f) lon = (%f,%f) %n", nrows, ncols, latMinMax.min, latMinMax.max, lonMinMax.min, lonMinMax.max);
@@ -200,44 +203,7 @@ public class HorizCoordSys2D extends HorizCoordSys {
      */
     public boolean findCoordElement(double wantLat, double wantLon, int[] rectIndex) {
       double wantLonNormal = LatLonPointImpl.lonNormalFrom(wantLon, lonMinMax.min);
-      return findCoordElementNoForce(wantLat, wantLonNormal, rectIndex);
-    }
-
-    private boolean findCoordElementNoForce(double wantLat, double wantLon, int[] rectIndex) {
-      if (wantLat < latMinMax.min) return false;
-      if (wantLat > latMinMax.max) return false;
-      if (wantLon < lonMinMax.min) return false;
-      if (wantLon > lonMinMax.max) return false;
-
-      double gradientLat = (latMinMax.max - latMinMax.min) / nrows;
-      double gradientLon = (lonMinMax.max - lonMinMax.min) / ncols;
-
-      double diffLat = wantLat - latMinMax.min;
-      double diffLon = wantLon - lonMinMax.min;
-
-      // initial guess
-      rectIndex[0] = (int) Math.round(diffLat / gradientLat);  // row
-      rectIndex[1] = (int) Math.round(diffLon / gradientLon);  // col
-
-      int count = 0;
-      while (true) {
-        count++;
-        if (debug) System.out.printf("%nIteration %d %n", count);
-        if (contains(wantLat, wantLon, rectIndex))
-          return true;
-
-        if (!jump2(wantLat, wantLon, rectIndex))
-          return false;
-
-        // bouncing around
-        if (count > 10) {
-          // last ditch attempt
-          return incr(wantLat, wantLon, rectIndex);
-          //if (!ok)
-          //  log.error("findCoordElement didnt converge lat,lon = "+wantLat+" "+ wantLon);
-          //return ok;
-        }
-      }
+      return index.findCell(wantLat, wantLonNormal, rectIndex);
     }
 
     /**
@@ -338,143 +304,8 @@ public class HorizCoordSys2D extends HorizCoordSys {
       return det > 0;
     }
 
-    private boolean jumpOld(double wantLat, double wantLon, int[] rectIndex) {
-      int row = Math.max(Math.min(rectIndex[0], nrows - 1), 0);
-      int col = Math.max(Math.min(rectIndex[1], ncols - 1), 0);
-      double gradientLat = latEdge.get(row + 1, col) - latEdge.get(row, col);
-      double gradientLon = lonEdge.get(row, col + 1) - lonEdge.get(row, col);
-
-      double diffLat = wantLat - latEdge.get(row, col);
-      double diffLon = wantLon - lonEdge.get(row, col);
-
-      int drow = (int) Math.round(diffLat / gradientLat);
-      int dcol = (int) Math.round(diffLon / gradientLon);
-
-      if (debug) System.out.printf("   jump from %d %d (grad=%f %f) (diff=%f %f) (delta=%d %d)",
-              row, col, gradientLat, gradientLon,
-              diffLat, diffLon, drow, dcol);
-
-      if ((drow == 0) && (dcol == 0)) {
-        if (debug) System.out.printf("%n   incr:");
-        return incr(wantLat, wantLon, rectIndex);
-      } else {
-        rectIndex[0] = Math.max(Math.min(row + drow, nrows - 1), 0);
-        rectIndex[1] = Math.max(Math.min(col + dcol, ncols - 1), 0);
-        if (debug) System.out.printf(" to (%d %d)%n", rectIndex[0], rectIndex[1]);
-        if ((row == rectIndex[0]) && (col == rectIndex[1])) return false; // nothing has changed
-      }
-
-      return true;
-    }
-
-    /**
-     * jump to a new row,col
-     *
-     * @param wantLat   want this lat
-     * @param wantLon   want this lon
-     * @param rectIndex starting row, col and replaced by new guess
-     * @return true if new guess, false if failure
-     */
-  /*
-    choose x, y such that (matrix multiply) :
-
-    (wantx) = (fxx fxy)  (x)
-    (wanty)   (fyx fyy)  (y)
-
-     where fxx = d(fx)/dx  ~= delta lon in lon direction
-     where fxy = d(fx)/dy  ~= delta lon in lat direction
-     where fyx = d(fy)/dx  ~= delta lat in lon direction
-     where fyy = d(fy)/dy  ~= delta lat in lat direction
-
-    2 linear equations in 2 unknowns, solve in usual way
-   */
-    private boolean jump2(double wantLat, double wantLon, int[] rectIndex) {
-      int row = Math.max(Math.min(rectIndex[0], nrows - 1), 0);
-      int col = Math.max(Math.min(rectIndex[1], ncols - 1), 0);
-      double lat = latEdge.get(row, col);
-      double lon = lonEdge.get(row, col);
-      double diffLat = wantLat - lat;
-      double diffLon = wantLon - lon;
-
-      double dlatdy = latEdge.get(row + 1, col) - lat;
-      double dlatdx = latEdge.get(row, col + 1) - lat;
-      double dlondx = lonEdge.get(row, col + 1) - lon;
-      double dlondy = lonEdge.get(row + 1, col) - lon;
-
-      // solve for dlon
-
-      double dx = (diffLon - dlondy * diffLat / dlatdy) / (dlondx - dlatdx * dlondy / dlatdy);
-      // double dy =  (diffLat - dlatdx * diffLon / dlondx) / (dlatdy - dlatdx * dlondy / dlondx);
-      double dy = (diffLat - dlatdx * dx) / dlatdy;
-
-      if (debug)
-        System.out.printf("   jump from %d %d (dlondx=%f dlondy=%f dlatdx=%f dlatdy=%f) (diffLat,Lon=%f %f) (deltalat,Lon=%f %f)",
-                row, col, dlondx, dlondy, dlatdx, dlatdy,
-                diffLat, diffLon, dy, dx);
-
-      int drow = (int) Math.round(dy);
-      int dcol = (int) Math.round(dx);
-
-      if ((drow == 0) && (dcol == 0)) {
-        if (debug) System.out.printf("%n   incr:");
-        return incr(wantLat, wantLon, rectIndex);
-      } else {
-        rectIndex[0] = Math.max(Math.min(row + drow, nrows - 1), 0);
-        rectIndex[1] = Math.max(Math.min(col + dcol, ncols - 1), 0);
-        if (debug) System.out.printf(" to (%d %d)%n", rectIndex[0], rectIndex[1]);
-        if ((row == rectIndex[0]) && (col == rectIndex[1])) return false; // nothing has changed
-      }
-
-      return true;
-    }
-
-    private boolean incr(double wantLat, double wantLon, int[] rectIndex) {
-      int row = rectIndex[0];
-      int col = rectIndex[1];
-      double diffLat = wantLat - latEdge.get(row, col);
-      double diffLon = wantLon - lonEdge.get(row, col);
-
-      if (Math.abs(diffLat) > Math.abs(diffLon)) { // try lat first
-        rectIndex[0] = row + ((diffLat > 0) ? 1 : -1);
-        if (contains(wantLat, wantLon, rectIndex)) return true;
-        rectIndex[1] = col + ((diffLon > 0) ? 1 : -1);
-        if (contains(wantLat, wantLon, rectIndex)) return true;
-      } else {
-        rectIndex[1] = col + ((diffLon > 0) ? 1 : -1);
-        if (contains(wantLat, wantLon, rectIndex)) return true;
-        rectIndex[0] = row + ((diffLat > 0) ? 1 : -1);
-        if (contains(wantLat, wantLon, rectIndex)) return true;
-      }
-
-      // back to original, do box search
-      rectIndex[0] = row;
-      rectIndex[1] = col;
-      return box9(wantLat, wantLon, rectIndex);
-    }
-
-    // we think its got to be in one of the 9 boxes around rectIndex
-    private boolean box9(double wantLat, double wantLon, int[] rectIndex) {
-      int row = rectIndex[0];
-      int minrow = Math.max(row - 1, 0);
-      int maxrow = Math.min(row + 1, nrows);
-
-      int col = rectIndex[1];
-      int mincol = Math.max(col - 1, 0);
-      int maxcol = Math.min(col + 1, ncols);
-
-      if (debug) System.out.printf("%n   box9:");
-      for (int i = minrow; i <= maxrow; i++)
-        for (int j = mincol; j <= maxcol; j++) {
-          rectIndex[0] = i;
-          rectIndex[1] = j;
-          if (contains(wantLat, wantLon, rectIndex)) return true;
-        }
-
-      return false;
-    }
-
     // return y, x ranges
-    Optional<List<RangeIterator>> computeBoundsExhaustive(LatLonRect rect, int horizStride) {
+    Optional<List<RangeIterator>> computeBounds(LatLonRect rect, int horizStride) {
       LatLonPointImpl llpt = rect.getLowerLeftPoint();
       LatLonPointImpl urpt = rect.getUpperRightPoint();
 
@@ -518,19 +349,13 @@ public class HorizCoordSys2D extends HorizCoordSys {
         maxRow = ny;
       }
 
-      // brute force, examine every point LOOK BAD
-      for (int row = 0; row <= ny; row++) {
-        for (int col = 0; col <= nx; col++) {
-          double lat = latEdge.get(row, col);
-          double lon = lonEdge.get(row, col);
-
-          if ((lat >= miny) && (lat <= maxy) && (lon >= minx) && (lon <= maxx)) {
-            if (col > maxCol) maxCol = col;
-            if (col < minCol) minCol = col;
-            if (row > maxRow) maxRow = row;
-            if (row < minRow) minRow = row;
-          }
-        }
+      // only look at the edge points in the index buckets that overlap the box
+      int[] bounds = new int[4];
+      if (index.findEdgeBounds(miny, maxy, minx, maxx, bounds)) {
+        minRow = Math.min(minRow, bounds[0]);
+        maxRow = Math.max(maxRow, bounds[1]);
+        minCol = Math.min(minCol, bounds[2]);
+        maxCol = Math.max(maxCol, bounds[3]);
       }
 
       try {
@@ -33,20 +33,28 @@
  */
 package ucar.nc2.ft2.coverage.writer;
 
+import ucar.ma2.Array;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
 import ucar.nc2.*;
 import ucar.nc2.constants.*;
 import ucar.nc2.ft2.coverage.*;
+import ucar.nc2.iosp.IospHelper;
+import ucar.nc2.iosp.netcdf3.N3iosp;
+import ucar.nc2.iosp.netcdf3.N3outputStreamWriter;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.util.Misc;
 import ucar.nc2.util.Optional;
 import ucar.unidata.geoloc.*;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Formatter;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -67,6 +75,19 @@ public class CFGridCoverageWriter2 {
   static private final String BOUNDS = "_bounds";
   static private final String BOUNDS_DIM = "bounds_dim"; // dimension of length 2, can be used by any bounds coordinate
 
+  private final CoverageCollection gdsOrg;           // the original, data is read from here
+  private final SubsetParams subsetParams;
+  private final CoverageCollection subsetDataset;    // the subsetted coordinates, metadata is taken from here
+  private final boolean addLatLon;
+  private final long total_size;
+  private boolean largeFile;
+  private boolean written;
+
+  // where the data for each Variable comes from, set by addMetadata()
+  private final Map<Variable, CoverageCoordAxis> axisVars = new IdentityHashMap<>();
+  private final Map<Variable, CoverageCoordAxis> boundsVars = new IdentityHashMap<>();
+  private final Map<Variable, Coverage> gridVars = new IdentityHashMap<>();
+
   /**
    * Write a netcdf/CF file from a CoverageDataset
 
@@ -86,34 +107,148 @@ public class CFGridCoverageWriter2 {
                                boolean testSizeOnly,
                                NetcdfFileWriter writer) throws IOException, InvalidRangeException {
 
-    CFGridCoverageWriter2 writer2 = new CFGridCoverageWriter2();
-    return writer2.writeFile(gdsOrg, gridNames, subset, addLatLon, testSizeOnly, writer);
+    Optional<CFGridCoverageWriter2> opt = makeSubset(gdsOrg, gridNames, subset, addLatLon);
+    if (!opt.isPresent())
+      return ucar.nc2.util.Optional.empty(opt.getErrorMessage());
+
+    CFGridCoverageWriter2 writer2 = opt.get();
+    if (!testSizeOnly)
+      writer2.write(writer);
+    return Optional.of(writer2.getSizeInBytes());
   }
 
-  private ucar.nc2.util.Optional<Long> writeFile(CoverageCollection gdsOrg, List<String> gridNames, SubsetParams subsetParams, boolean addLatLon, boolean testSizeOnly,
-                               NetcdfFileWriter writer) throws IOException, InvalidRangeException {
+  /**
+   * Subset the coordinates once, so that the size can be checked before writing, without doing the subset twice.
+   * The returned object can write the subset once, with either write method.
+   *
+   * @param gdsOrg       the CoverageDataset
+   * @param gridNames    the list of coverage names to be written, or null for all
+   * @param subset       defines the requested subset
+   * @param addLatLon    add 2D lat/lon coordinates if needed
+   * @return the writer for this subset, or empty with the error message
+   * @throws InvalidRangeException
+   */
+  public static ucar.nc2.util.Optional<CFGridCoverageWriter2> makeSubset(CoverageCollection gdsOrg, List<String> gridNames,
+                               SubsetParams subset, boolean addLatLon) throws InvalidRangeException {
 
     // we need global atts, subsetted axes, the transforms, and the coverages with attributes and referencing subsetted axes
-    Optional<CoverageCollection> opt = CoverageSubsetter2.makeCoverageDatasetSubset(gdsOrg, gridNames, subsetParams);
+    Optional<CoverageCollection> opt = CoverageSubsetter2.makeCoverageDatasetSubset(gdsOrg, gridNames, subset);
     if (!opt.isPresent())
       return ucar.nc2.util.Optional.empty(opt.getErrorMessage());
 
-    CoverageCollection subsetDataset = opt.get();
+    return Optional.of(new CFGridCoverageWriter2(gdsOrg, subset, opt.get(), addLatLon));
+  }
 
-    long total_size = 0;
+  private CFGridCoverageWriter2(CoverageCollection gdsOrg, SubsetParams subsetParams, CoverageCollection subsetDataset, boolean addLatLon) {
+    this.gdsOrg = gdsOrg;
+    this.subsetParams = subsetParams;
+    this.subsetDataset = subsetDataset;
+    this.addLatLon = addLatLon;
+    this.total_size = getSizeInBytes(subsetDataset);
+    this.largeFile = isLargeFile(total_size);
+  }
+
+  /**
+   * Use the netcdf-3 64-bit offset format. By default it is used only when the size needs it.
+   * @param largeFile use the 64-bit offset format
+   */
+  public void setLargeFile(boolean largeFile) {
+    this.largeFile = largeFile;
+  }
+
+  /**
+   * Estimated size of the data, not including the header. netcdf-4 files will usually be smaller, due to compression.
+   * @return size in bytes
+   */
+  public long getSizeInBytes() {
+    return total_size;
+  }
+
+  /**
+   * Write the subset to a file.
+   * @param writer this does the actual writing, must be in define mode; it is closed when done.
+   * @throws IOException
+   * @throws InvalidRangeException
+   */
+  public void write(NetcdfFileWriter writer) throws IOException, InvalidRangeException {
+    if (written)
+      throw new IllegalStateException("subset already written");
+    written = true;
+
+    writer.setLargeFile(largeFile);
+
+    addMetadata(subsetDataset, writer, addLatLon);
+
+    // finish define mode
+    writer.create();
+
+    // write the coordinate data
+    for (CoverageCoordAxis axis : subsetDataset.getCoordAxes()) {
+      Variable v = writer.findVariable(axis.getName());
+      if (v != null) {
+        if (show) System.out.printf("CFGridCoverageWriter2 write axis %s%n", v.getNameAndDimensions());
+        writer.write(v, axis.getCoordsAsArray());
+      } else {
+        logger.error("CFGridCoverageWriter2 No variable for %s%n", axis.getName());
+      }
+
+      if (axis.isInterval()) {
+        Variable vb = writer.findVariable(axis.getName() + BOUNDS);
+        writer.write(vb, axis.getCoordBoundsAsArray());
+      }
+    }
+
+    // write the grid data
     for (Coverage grid : subsetDataset.getCoverages()) {
-      total_size += grid.getSizeInBytes();
+      Variable v = writer.findVariable(grid.getName());
+      if (show) System.out.printf("CFGridCoverageWriter2 write grid %s%n", v.getNameAndDimensions());
+      writer.write(v, readGridData(gdsOrg, grid, subsetParams));
     }
 
-    if (testSizeOnly)
-      return Optional.of(total_size);
+    writer.close();
+  }
 
-    ////////////////////////////////////////////////////////////////////
+  /**
+   * Write the subset as a netcdf-3 file directly to a stream, without a temporary file.
+   * The header is computed from the subsetted coordinates, then each variable's data is written as it is read.
+   * @param out write to this stream; it is flushed but not closed
+   * @throws IOException
+   * @throws InvalidRangeException
+   */
+  public void write(OutputStream out) throws IOException, InvalidRangeException {
+    if (written)
+      throw new IllegalStateException("subset already written");
+    written = true;
+
+    // the writer is only used to define the file
+    NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, subsetDataset.getName(), null);
+    addMetadata(subsetDataset, writer, addLatLon);
+    NetcdfFile ncfile = writer.createForStreaming();
+
+    N3outputStreamWriter streamWriter = new N3outputStreamWriter(ncfile);
+    streamWriter.setLargeFile(largeFile);
+
+    DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(out, 64 * 1000));
+    streamWriter.writeHeader(stream, 0);
+
+    // must be written in the same order as the header
+    for (Variable v : ncfile.getVariables()) {
+      if (show) System.out.printf("CFGridCoverageWriter2 stream %s%n", v.getNameAndDimensions());
+      streamWriter.writeNonRecordData(v, stream, readVariableData(gdsOrg, subsetParams, v));
+    }
+    stream.flush();
+  }
 
-    // check size is ok
-    boolean isLargeFile = isLargeFile(total_size);
-    writer.setLargeFile(isLargeFile);
+  private static long getSizeInBytes(CoverageCollection subsetDataset) {
+    long total_size = 0;
+    for (Coverage grid : subsetDataset.getCoverages()) {
+      total_size += grid.getSizeInBytes();
+    }
+    return total_size;
+  }
 
+  // define dimensions, variables and attributes
+  private void addMetadata(CoverageCollection subsetDataset, NetcdfFileWriter writer, boolean addLatLon) {
     addGlobalAttributes(subsetDataset, writer);
 
     // each independent coordinate is a dimension
@@ -150,10 +285,12 @@ public class CFGridCoverageWriter2 {
       if (axis.isInterval()) {
         Variable vb = writer.addVariable(null, axis.getName()+BOUNDS, axis.getDataType(), dims+" "+BOUNDS_DIM);
         vb.addAttribute(new Attribute(CDM.UNITS, axis.getUnits()));
+        boundsVars.put(vb, axis);
         hasBounds = true;
       }
 
       Variable v = writer.addVariable(null, axis.getName(), axis.getDataType(), dims);
+      axisVars.put(v, axis);
       addVariableAttributes(v, axis.getAttributes());
       v.addAttribute(new Attribute(CDM.UNITS, axis.getUnits())); // override what was in att list
       if (hasBounds)
@@ -167,6 +304,7 @@ public class CFGridCoverageWriter2 {
     for (Coverage grid : subsetDataset.getCoverages()) {
       Variable v = writer.addVariable(null, grid.getName(), grid.getDataType(), grid.getIndependentAxisNamesOrdered());
       addVariableAttributes(v, grid.getAttributes());
+      gridVars.put(v, grid);
     }
 
     // coordTransforms
@@ -177,43 +315,36 @@ public class CFGridCoverageWriter2 {
     }
 
     addCFAnnotations(subsetDataset, writer, addLatLon);
+  }
 
-    // finish define mode
-    writer.create();
-
-    // write the coordinate data
-    for (CoverageCoordAxis axis : subsetDataset.getCoordAxes()) {
-      Variable v = writer.findVariable(axis.getName());
-      if (v != null) {
-        if (show) System.out.printf("CFGridCoverageWriter2 write axis %s%n", v.getNameAndDimensions());
-        writer.write(v, axis.getCoordsAsArray());
-      } else {
-        logger.error("CFGridCoverageWriter2 No variable for %s%n", axis.getName());
-      }
+  private Array readGridData(CoverageCollection gdsOrg, Coverage grid, SubsetParams subsetParams) throws IOException, InvalidRangeException {
+    // we need to call readData on the original
+    Coverage gridOrg = gdsOrg.findCoverage(grid.getName());
+    GeoReferencedArray array = gridOrg.readData(subsetParams);
 
-      if (axis.isInterval()) {
-        Variable vb = writer.findVariable(axis.getName() + BOUNDS);
-        writer.write(vb, axis.getCoordBoundsAsArray());
-      }
-    }
-
-    // write the grid data
-    for (Coverage grid : subsetDataset.getCoverages()) {
-      // we need to call readData on the original
-      Coverage gridOrg = gdsOrg.findCoverage(grid.getName());
-      GeoReferencedArray array = gridOrg.readData(subsetParams);
+    // test conform to whatever axis.getCoordsAsArray() returns
+    checkConformance(gridOrg, grid, array, gdsOrg.getName());
+    return array.getData();
+  }
 
-      // test conform to whatever axis.getCoordsAsArray() returns
-      checkConformance(gridOrg, grid, array, gdsOrg.getName());
+  // the data for any variable added by addMetadata()
+  private Array readVariableData(CoverageCollection gdsOrg, SubsetParams subsetParams, Variable v) throws IOException, InvalidRangeException {
+    Coverage grid = gridVars.get(v);
+    if (grid != null)
+      return readGridData(gdsOrg, grid, subsetParams);
 
-      Variable v = writer.findVariable(grid.getName());
-      if (show) System.out.printf("CFGridCoverageWriter2 write grid %s%n", v.getNameAndDimensions());
-      writer.write(v, array.getData());
-    }
+    CoverageCoordAxis axis = axisVars.get(v);
+    if (axis != null)
+      return axis.getCoordsAsArray();
 
-    writer.close();
+    axis = boundsVars.get(v);
+    if (axis != null)
+      return axis.getCoordBoundsAsArray();
 
-    return Optional.of(total_size);
+    // not written by writeFile() either (eg coordinate transform variables), so use the netcdf-3 fill value
+    DataType dtype = v.getDataType();
+    Object fill = IospHelper.makePrimitiveArray((int) v.getSize(), dtype, N3iosp.getFillValueDefault(dtype));
+    return Array.factory(dtype, v.getShape(), fill);
   }
 
   private boolean isLargeFile(long total_size) {
@@ -87,15 +87,11 @@ public class CoverageAsPoint {
     Coverage cov;
     GeoReferencedArray array;
 
-    public VarData(Coverage cov) throws IOException {
+    public VarData(Coverage cov, GeoReferencedArray array) {
       this.cov = cov;
-      try {
-        this.array = cov.readData(subset);
-        if (debug)
-          System.out.printf(" Coverage %s data shape = %s%n", cov.getName(), Misc.showInts(array.getData().getShape()));
-      } catch (InvalidRangeException e) {
-        e.printStackTrace();
-      }
+      this.array = array;
+      if (debug)
+        System.out.printf(" Coverage %s data shape = %s%n", cov.getName(), Misc.showInts(array.getData().getShape()));
     }
   }
 
@@ -107,11 +103,11 @@ public class CoverageAsPoint {
     if (latLonPoint == null)
       throw new IllegalArgumentException("No latlon point");
 
-    varData = new ArrayList<>(varNames.size());
+    List<Coverage> covs = new ArrayList<>(varNames.size());
     for (String varName : varNames) {
-      Coverage cov = gcd.findCoverage(varName); // LOOK we should read all at once if possible
+      Coverage cov = gcd.findCoverage(varName);
       if (cov != null) {
-        varData.add(new VarData(cov));
+        covs.add(cov);
 
         if (dateUnit == null) { // assume all have the same time unit, just use the first one
           CoverageCoordSys csys = cov.getCoordSys();
@@ -120,6 +116,24 @@ public class CoverageAsPoint {
         }
       }
     }
+
+    // read all at once, so the reader can get all the variables' data in one pass
+    varData = new ArrayList<>(covs.size());
+    try {
+      List<GeoReferencedArray> arrays = gcd.getReader().readData(covs, subset, false);
+      for (int i = 0; i < covs.size(); i++)
+        varData.add(new VarData(covs.get(i), arrays.get(i)));
+
+    } catch (InvalidRangeException e) {
+      // one at a time, leaving out the ones that fail
+      for (Coverage cov : covs) {
+        try {
+          varData.add(new VarData(cov, cov.readData(subset)));
+        } catch (InvalidRangeException e2) {
+          e2.printStackTrace();
+        }
+      }
+    }
   }
 
   public FeatureDatasetPoint asFeatureDatasetPoint() {
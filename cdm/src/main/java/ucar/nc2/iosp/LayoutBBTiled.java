@@ -104,14 +104,8 @@ public class LayoutBBTiled implements LayoutBB {
             return false;
           }
 
-          // get next dataChunk
-          try {
-            dataChunk = chunkIterator.next();
-          } catch (IOException e) {
-            e.printStackTrace();
-            next = null;
-            return false;
-          }
+          // get next dataChunk; a chunk that cant be read or decoded fails the read, rather than leaving fill values
+          dataChunk = chunkIterator.next();
 
           // make the dataSection for this chunk
           dataSection = new Section(dataChunk.getOffset(), chunkSize);
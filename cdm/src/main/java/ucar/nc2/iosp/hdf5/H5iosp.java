@@ -48,6 +48,7 @@ import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Formatter;
+import java.util.concurrent.ExecutorService;
 
 /**
  * HDF5 I/O
@@ -74,6 +75,25 @@ public class H5iosp extends AbstractIOServiceProvider {
 
   static private org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(H5iosp.class);
 
+  // optional parallel decompression of filtered chunks; off unless setChunkDecodeExecutor() is called
+  static ExecutorService chunkDecodeExecutor;
+  static int chunkDecodeMaxThreads = 1;    // max number of pool threads used by any one read
+  static int chunkDecodeMinChunks = 8;     // dont bother if fewer chunks than this
+
+  /**
+   * Allow the chunks of a filtered (eg deflated) variable to be decompressed in parallel, using a shared pool.
+   * The chunks are still read from the file in file order, on the calling thread.
+   *
+   * @param exec              shared pool, or null to decompress on the calling thread (default).
+   * @param maxThreadsPerRead maximum number of pool threads that a single read may use.
+   * @param minChunks         only decompress in parallel when a read uses at least this many chunks.
+   */
+  static public void setChunkDecodeExecutor(ExecutorService exec, int maxThreadsPerRead, int minChunks) {
+    chunkDecodeExecutor = exec;
+    chunkDecodeMaxThreads = Math.max(1, maxThreadsPerRead);
+    chunkDecodeMinChunks = Math.max(2, minChunks);
+  }
+
   static public void setDebugFlags(ucar.nc2.util.DebugFlags debugFlag) {
     debug = debugFlag.isSet("H5iosp/read");
     debugPos = debugFlag.isSet("H5iosp/filePos");
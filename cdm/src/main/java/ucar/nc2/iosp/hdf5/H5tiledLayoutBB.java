@@ -38,14 +38,17 @@ import ucar.ma2.Section;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
 import ucar.nc2.Variable;
-import ucar.nc2.util.IO;
 import ucar.unidata.io.RandomAccessFile;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * Iterator to read/write subsets of an array.
@@ -59,8 +62,7 @@ class H5tiledLayoutBB implements LayoutBB {
   private LayoutBBTiled delegate;
 
   private RandomAccessFile raf;
-  private H5header.Filter[] filters;
-  private ByteOrder byteOrder;
+  private FilterPipeline pipeline;
                                                                                                      
   private Section want;
   private int[] chunkSize; // from the StorageLayout message (exclude the elemSize)
@@ -88,8 +90,6 @@ class H5tiledLayoutBB implements LayoutBB {
     assert vinfo.btree != null;
 
     this.raf = raf;
-    this.filters = filters;
-    this.byteOrder = byteOrder;
 
     // we have to translate the want section into the same rank as the storageSize, in order to be able to call
     // Section.intersect(). It appears that storageSize (actually msl.chunkSize) may have an extra dimension, reletive
@@ -106,9 +106,18 @@ class H5tiledLayoutBB implements LayoutBB {
     System.arraycopy(vinfo.storageSize, 0, chunkSize, 0, nChunkDims);
     this.elemSize = vinfo.storageSize[vinfo.storageSize.length - 1]; // last one is always the elements size
 
+    long nbytes = elemSize;
+    for (int i = 0; i < nChunkDims; i++) nbytes *= chunkSize[i];
+    int chunkBytes = (int) Math.min(nbytes, Integer.MAX_VALUE - 8);
+    this.pipeline = new FilterPipeline(filters, byteOrder, chunkBytes);
+
     // create the data chunk iterator
     DataBTree.DataChunkIterator iter = vinfo.btree.getDataChunkIteratorFilter(this.want);
-    DataChunkIterator dcIter = new DataChunkIterator(iter);
+    LayoutBBTiled.DataChunkIterator dcIter;
+    if (H5iosp.chunkDecodeExecutor != null && H5iosp.chunkDecodeMaxThreads > 1)
+      dcIter = new ParallelDataChunkIterator(iter, filters, byteOrder, chunkBytes);
+    else
+      dcIter = new DataChunkIterator(iter);
     delegate = new LayoutBBTiled(dcIter, chunkSize, elemSize, this.want);
     
     if (debug) System.out.println(" H5tiledLayout: " + this);
@@ -167,123 +176,290 @@ class H5tiledLayoutBB implements LayoutBB {
     }
 
     public int[] getOffset() {
-      int[] offset = delegate.offset;
-      if (offset.length > nChunkDims) { // may have to eliminate last offset
-        offset = new int[nChunkDims];
-        System.arraycopy(delegate.offset, 0, offset, 0, nChunkDims);
-      }
-      return offset;
+      return truncate(delegate.offset);
     }
 
+    // the returned ByteBuffer is only valid until the next chunk is read
     public ByteBuffer getByteBuffer() throws IOException {
-      // read the data
-      byte[] data = new byte[delegate.size];
-      raf.seek(delegate.filePos);
-      raf.readFully(data);
-
-      // apply filters backwards
-      for (int i = filters.length - 1; i >= 0; i--) {
-        H5header.Filter f = filters[i];
-        if (isBitSet(delegate.filterMask, i)) {
-          if (debug) System.out.println("skip for chunk " + delegate);
-          continue;
+      if (debug) System.out.println(" read chunk " + delegate);
+      return pipeline.read(raf, delegate.filePos, delegate.size, delegate.filterMask);
+    }
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+  // parallel decompression
+
+  /*
+   * All the chunks that intersect want are found up front and sorted by file position. The compressed bytes are read
+   * on the calling thread in file order, and the filters are applied on the H5iosp.chunkDecodeExecutor pool,
+   * keeping at most 2 * chunkDecodeMaxThreads chunks in flight. Chunks are returned in file order; LayoutBBTiled
+   * places them by their offset, so the order doesnt matter.
+   * Each chunk in flight has its own FilterPipeline, which is recycled once the next chunk is asked for.
+   */
+  private class ParallelDataChunkIterator implements LayoutBBTiled.DataChunkIterator {
+    private final H5header.Filter[] filters;
+    private final ByteOrder byteOrder;
+    private final int chunkBytes;
+
+    private List<DataBTree.DataChunk> chunks = new ArrayList<>();
+    private int nextChunk;                 // next one to read
+    private final int maxPending;
+    private final Deque<Future<DecodedChunk>> pending = new ArrayDeque<>();
+    private final Deque<FilterPipeline> free = new ArrayDeque<>();
+    private DecodedChunk current;          // owned by the caller until the next call to next()
+
+    ParallelDataChunkIterator(DataBTree.DataChunkIterator iter, H5header.Filter[] filters, ByteOrder byteOrder, int chunkBytes) throws IOException {
+      this.filters = filters;
+      this.byteOrder = byteOrder;
+      this.chunkBytes = chunkBytes;
+
+      // btree is in offset order, so stop after the last wanted index of the outer dimension
+      int last = want.getRange(0).last();
+      while (iter.hasNext()) {
+        DataBTree.DataChunk dc = iter.next();
+        int[] offset = truncate(dc.offset);
+        if (offset[0] > last) break;
+        try {
+          if (new Section(offset, chunkSize).intersects(want))
+            chunks.add(dc);
+        } catch (InvalidRangeException e) {
+          throw new IllegalStateException(e);
         }
-        if (f.id == 1) {
-          data = inflate(data);
-        } else if (f.id == 2) {
-          data = shuffle(data, f.data[0]);
-        } else if (f.id == 3) {
-          data = checkfletcher32(data);
-        /* }  else if (f.id == 307) {
-          data = unbzip2(data); */
-        } else
-          throw new RuntimeException("Unknown filter type="+f.id);
       }
 
-      ByteBuffer result = ByteBuffer.wrap(data);
-      result.order(byteOrder);
-      return result;
+      Collections.sort(chunks, new Comparator<DataBTree.DataChunk>() {
+        public int compare(DataBTree.DataChunk o1, DataBTree.DataChunk o2) {
+          return Long.compare(o1.filePos, o2.filePos);
+        }
+      });
+
+      maxPending = (chunks.size() < H5iosp.chunkDecodeMinChunks) ? 0 : 2 * H5iosp.chunkDecodeMaxThreads;
+      if (debug) System.out.println(" ParallelDataChunkIterator nchunks= " + chunks.size() + " maxPending= " + maxPending);
     }
 
-    /**
-     * inflate data
-     *
-     * @param compressed compressed data
-     * @return uncompressed data
-     * @throws IOException on I/O error
-     */
-    private byte[] inflate(byte[] compressed) throws IOException {
-      // run it through the Inflator
-      ByteArrayInputStream in = new ByteArrayInputStream(compressed);
-      java.util.zip.InflaterInputStream inflater = new java.util.zip.InflaterInputStream(in);
-      ByteArrayOutputStream out = new ByteArrayOutputStream(8 * compressed.length);
-      IO.copy(inflater, out);
-
-      byte[] uncomp = out.toByteArray();
-      if (debug) System.out.println(" inflate bytes in= " + compressed.length + " bytes out= " + uncomp.length);
-      return uncomp;
+    public boolean hasNext() {
+      return !pending.isEmpty() || nextChunk < chunks.size();
     }
 
-    /* private byte[] unbzip2(byte[] compressed) throws IOException {
-      int max = 20 * compressed.length;
-      byte[] buffer = new byte[max];
-      ByteArrayOutputStream out = new ByteArrayOutputStream(20 * compressed.length);
-      ByteArrayInputStream in = new ByteArrayInputStream(compressed);
-      try (org.itadaki.bzip2.BZip2InputStream bzIn = new org.itadaki.bzip2.BZip2InputStream(in, false)) {
-        int bytesRead;
-        int totRead = 0;
-        while ((bytesRead = bzIn.read (buffer)) != -1) {
-          out.write (buffer, 0, bytesRead) ;             // LOOK unneeded copy
-          totRead += bytesRead;
+    public LayoutBBTiled.DataChunk next() throws IOException {
+      if (current != null) {
+        free.add(current.pipeline);  // caller is done with it
+        current = null;
+      }
+
+      if (maxPending == 0) { // too few chunks, decompress here
+        DataBTree.DataChunk dc = chunks.get(nextChunk++);
+        FilterPipeline p = getPipeline();
+        current = new DecodedChunk(truncate(dc.offset), p, p.read(raf, dc.filePos, dc.size, dc.filterMask));
+        return current;
+      }
+
+      fill();
+      Future<DecodedChunk> future = pending.poll();
+      try {
+        current = future.get();
+        fill();
+        return current;
+
+      } catch (InterruptedException e) {
+        cancel();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("H5tiledLayoutBB interrupted");
+
+      } catch (ExecutionException e) {
+        cancel();
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) throw (IOException) cause;
+        throw new IOException(cause);
+      }
+    }
+
+    // read the next chunks and hand them to the pool
+    private void fill() throws IOException {
+      while (pending.size() < maxPending && nextChunk < chunks.size()) {
+        final DataBTree.DataChunk dc = chunks.get(nextChunk++);
+        final FilterPipeline p = getPipeline();
+        p.readRaw(raf, dc.filePos, dc.size);
+
+        try {
+          pending.add(H5iosp.chunkDecodeExecutor.submit(new Callable<DecodedChunk>() {
+            public DecodedChunk call() throws IOException {
+              return new DecodedChunk(truncate(dc.offset), p, p.apply(dc.filterMask));
+            }
+          }));
+        } catch (RejectedExecutionException e) {
+          cancel();
+          throw new IOException("H5tiledLayoutBB decode pool rejected task", e);
         }
-        out.close();
-        //System.out.printf("unbzip2=%d%n", totRead);
-      } catch (Exception e) {
-        e.printStackTrace();
       }
+    }
 
-      return out.toByteArray();
-     } */
+    private FilterPipeline getPipeline() {
+      FilterPipeline p = free.poll();
+      return (p != null) ? p : new FilterPipeline(filters, byteOrder, chunkBytes);
+    }
 
-     // just strip off the 4-byte fletcher32 checksum at the end
-    private byte[] checkfletcher32(byte[] org) throws IOException {
-      byte[] result = new byte[org.length-4];
-      System.arraycopy(org, 0, result, 0, result.length);
-      if (debug) System.out.println(" checkfletcher32 bytes in= " + org.length + " bytes out= " + result.length);
-      return result;
+    private void cancel() {
+      for (Future<DecodedChunk> f : pending)
+        f.cancel(true);
+      pending.clear();
+      nextChunk = chunks.size();
     }
+  }
 
-    private byte[] shuffle(byte[] data, int n) throws IOException {
-      if (debug) System.out.println(" shuffle bytes in= " + data.length + " n= " + n);
+  private static class DecodedChunk implements LayoutBBTiled.DataChunk {
+    final int[] offset;
+    final FilterPipeline pipeline;
+    final ByteBuffer bb;
 
-      assert data.length % n == 0;
-      if (n <= 1) return data;
+    DecodedChunk(int[] offset, FilterPipeline pipeline, ByteBuffer bb) {
+      this.offset = offset;
+      this.pipeline = pipeline;
+      this.bb = bb;
+    }
 
-      int m = data.length / n;
-      int[] count = new int[n];
-      for (int k = 0; k < n; k++) count[k] = k * m;
+    public int[] getOffset() {
+      return offset;
+    }
 
-      byte[] result = new byte[data.length];
-      /* for (int i = 0; i < data.length; i += n) {
-        for (int k = 0; k < n; k++) {
-          result[count[k]++] = data[i + k];
-        }
-      } */
+    public ByteBuffer getByteBuffer() {
+      return bb;
+    }
+  }
 
-      for (int i = 0; i < m; i++) {
-        for (int j = 0; j < n; j++) {
-          result[i*n+j] = data[i + count[j]];
-        }
+  // may have to eliminate last offset
+  private int[] truncate(int[] offset) {
+    if (offset.length <= nChunkDims) return offset;
+    int[] result = new int[nChunkDims];
+    System.arraycopy(offset, 0, result, 0, nChunkDims);
+    return result;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Reads a chunk and applies the filters backwards.
+   * The byte arrays are reused for each chunk, and the Inflater is reused by each thread,
+   * so a ByteBuffer returned by read() is overwritten by the next call.
+   * Not thread-safe.
+   */
+  static class FilterPipeline {
+    static private final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+      protected Inflater initialValue() {
+        return new Inflater();
       }
+    };
+
+    private final int[] filterIds;
+    private final int[] shuffleSize;  // element size for the shuffle filter
+    private final ByteOrder byteOrder;
+    private final int chunkBytes;     // uncompressed size of a chunk
+
+    private byte[] data, spare;       // swapped as each filter is applied
+    private int length;               // number of valid bytes in data
+
+    FilterPipeline(H5header.Filter[] filters, ByteOrder byteOrder, int chunkBytes) {
+      this.filterIds = new int[filters.length];
+      this.shuffleSize = new int[filters.length];
+      for (int i = 0; i < filters.length; i++) {
+        filterIds[i] = filters[i].id;
+        shuffleSize[i] = (filters[i].id == 2 && filters[i].data.length > 0) ? filters[i].data[0] : 1;
+      }
+      this.byteOrder = byteOrder;
+      this.chunkBytes = chunkBytes;
+    }
 
+    FilterPipeline(int[] filterIds, int[] shuffleSize, ByteOrder byteOrder, int chunkBytes) {
+      this.filterIds = filterIds;
+      this.shuffleSize = shuffleSize;
+      this.byteOrder = byteOrder;
+      this.chunkBytes = chunkBytes;
+    }
+
+    ByteBuffer read(RandomAccessFile raf, long filePos, int size, int filterMask) throws IOException {
+      readRaw(raf, filePos, size);
+      return apply(filterMask);
+    }
+
+    // read the chunk as stored in the file
+    void readRaw(RandomAccessFile raf, long filePos, int size) throws IOException {
+      data = ensureSize(data, size);
+      raf.seek(filePos);
+      raf.readFully(data, 0, size);
+      length = size;
+    }
+
+    // apply the filters to the chunk from readRaw()
+    ByteBuffer apply(int filterMask) throws IOException {
+      for (int i = filterIds.length - 1; i >= 0; i--) {
+        if (isBitSet(filterMask, i)) continue;
+        int id = filterIds[i];
+        if (id == 1) {
+          inflate();
+        } else if (id == 2) {
+          unshuffle(shuffleSize[i]);
+        } else if (id == 3) {
+          length -= 4;  // just strip off the 4-byte fletcher32 checksum at the end
+        } else
+          throw new RuntimeException("Unknown filter type=" + id);
+      }
+
+      ByteBuffer result = ByteBuffer.wrap(data, 0, length);
+      result.order(byteOrder);
       return result;
     }
 
-    boolean isBitSet(int val, int bitno) {
-      return ((val >>> bitno) & 1) != 0;
+    // inflate data into spare, then swap
+    private void inflate() throws IOException {
+      Inflater inflater = inflaters.get();
+      inflater.reset();
+      inflater.setInput(data, 0, length);
+
+      byte[] out = ensureSize(spare, Math.max(chunkBytes, length));
+      int total = 0;
+      try {
+        while (!inflater.finished()) {
+          if (total == out.length)
+            out = Arrays.copyOf(out, Math.max(1024, 2 * out.length));   // chunkBytes was too small
+          int n = inflater.inflate(out, total, out.length - total);
+          total += n;
+          if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+            throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+      } catch (DataFormatException e) {
+        throw new IOException(e.getMessage(), e);
+      }
+
+      spare = data;
+      data = out;
+      length = total;
     }
 
-  }
+    // undo the byte shuffle into spare, then swap. trailing bytes that dont make a full element are left alone
+    private void unshuffle(int n) {
+      if (n <= 1) return;
+      byte[] out = ensureSize(spare, length);
+
+      int m = length / n;
+      for (int j = 0; j < n; j++) {
+        int start = j * m;
+        for (int i = 0; i < m; i++)
+          out[i * n + j] = data[start + i];
+      }
+      int done = m * n;
+      System.arraycopy(data, done, out, done, length - done);
+
+      spare = data;
+      data = out;
+    }
+
+    private byte[] ensureSize(byte[] b, int size) {
+      return (b == null || b.length < size) ? new byte[size] : b;
+    }
 
+    private boolean isBitSet(int val, int bitno) {
+      return ((val >>> bitno) & 1) != 0;
+    }
+  }
 
 }
\ No newline at end of file
@@ -643,6 +643,49 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
     return readData(layout, dataType, channel);
   }
 
+  static private final int MIN_DIRECT_TRANSFER = 8 * 1000; // smallest run of bytes worth a transferTo()
+
+  /**
+   * Will readToByteChannel() copy this section of the variable straight from the file to the channel?
+   * The file has big-endian values, which is what OPeNDAP and ncstream send, so a server can then skip reading
+   * into an Array and encoding it again.
+   * True for a non-record variable whose data is all in the file, when the section is made of contiguous runs
+   * of at least a few KB. Record variables are interleaved record by record, so are left to the usual path.
+   *
+   * @param v2      the variable, must belong to a file opened by N3iosp
+   * @param section the section wanted, with all ranges filled in
+   * @return true if the bytes can be copied directly
+   */
+  static public boolean isDirectTransfer(ucar.nc2.Variable v2, Section section) {
+    NetcdfFile ncfile = v2.getNetcdfFile();
+    if (ncfile == null || !(ncfile.getIosp() instanceof N3iosp) || v2.hasCachedData() || (v2 instanceof Structure))
+      return false;
+    if (!(v2.getSPobject() instanceof N3header.Vinfo) || v2.isUnlimited() || !v2.getDataType().isNumeric())
+      return false;
+    N3iosp iosp = (N3iosp) ncfile.getIosp();
+    N3header.Vinfo vinfo = (N3header.Vinfo) v2.getSPobject();
+    if (vinfo.isRecord || iosp.raf == null)
+      return false;
+
+    try {
+      if (vinfo.begin + v2.getSize() * v2.getElementSize() > iosp.raf.length())
+        return false; // not all written yet, needs fill values
+    } catch (IOException ioe) {
+      return false;
+    }
+
+    // length of the contiguous runs: innermost ranges with stride 1, up to and including the first partial one
+    int[] shape = v2.getShape();
+    long run = 1;
+    for (int i = section.getRank() - 1; i >= 0; i--) {
+      Range r = section.getRange(i);
+      if (r == null || r.stride() != 1) break;
+      run *= r.length();
+      if (r.length() != shape[i]) break;
+    }
+    return (run == section.computeSize()) || (run * v2.getElementSize() >= MIN_DIRECT_TRANSFER);
+  }
+
   private long readRecordData(ucar.nc2.Structure s, Section section, WritableByteChannel out) throws java.io.IOException, InvalidRangeException {
     long count = 0;
 
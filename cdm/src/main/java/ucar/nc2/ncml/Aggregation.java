@@ -60,6 +60,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Superclass for NcML Aggregation.
@@ -138,6 +139,25 @@ public abstract class Aggregation {
     executor = exec;
   }
 
+  // optional parallel reading of sections from the nested datasets; off unless setSectionReadExecutor() is called
+  static protected ExecutorService sectionReadExecutor;
+  static protected int sectionReadMaxThreads = 1;   // max number of pool threads used by any one read
+  static protected int sectionReadMinDatasets = 2;  // dont bother if fewer nested datasets than this
+
+  /**
+   * Allow a section of an outer dimension aggregation to be read from its nested datasets in parallel, using a shared pool.
+   * Each nested dataset is still opened through the file cache, and its data is copied into place in the result.
+   *
+   * @param exec              shared pool, or null to read all nested datasets on the calling thread (default).
+   * @param maxThreadsPerRead maximum number of pool threads that a single read may use.
+   * @param minDatasets       only read in parallel when the section spans at least this many nested datasets.
+   */
+  static public void setSectionReadExecutor(ExecutorService exec, int maxThreadsPerRead, int minDatasets) {
+    sectionReadExecutor = exec;
+    sectionReadMaxThreads = Math.max(1, maxThreadsPerRead);
+    sectionReadMinDatasets = Math.max(2, minDatasets);
+  }
+
   static public void setTypicalDatasetMode(String mode) {
     if (mode.equalsIgnoreCase("random"))
       typicalDatasetMode = TypicalDataset.RANDOM;
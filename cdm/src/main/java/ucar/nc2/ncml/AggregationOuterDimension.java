@@ -33,6 +33,7 @@
 package ucar.nc2.ncml;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.EnumSet;
@@ -40,12 +41,17 @@ import java.util.Formatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.StringTokenizer;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
+import com.google.common.base.Throwables;
 import thredds.inventory.MFile;
 import ucar.ma2.Array;
 import ucar.ma2.DataType;
@@ -294,14 +300,13 @@ public abstract class AggregationOuterDimension extends Aggregation implements P
 
     List<Range> ranges = section.getRanges();
     Range joinRange = section.getRange(0);
-    List<Range> nestedSection = new ArrayList<>(ranges); // get copy
     List<Range> innerSection = ranges.subList(1, ranges.size());
 
     if (debug) System.out.println("   agg wants range=" + mainv.getFullName() + "(" + joinRange + ")");
 
-    // LOOK: could multithread here
-    List<Dataset> nestedDatasets = getDatasets();
-    for (Dataset nested : nestedDatasets) {
+    // find the nested datasets that intersect the section, and what to read from each
+    List<SectionRead> reads = new ArrayList<>();
+    for (Dataset nested : getDatasets()) {
       DatasetOuterDimension dod = (DatasetOuterDimension) nested;
       Range nestedJoinRange = dod.getNestedJoinRange(joinRange);
       if (nestedJoinRange == null)
@@ -309,13 +314,21 @@ public abstract class AggregationOuterDimension extends Aggregation implements P
       //if (debug)
       //  System.out.println("   agg use " + nested.aggStart + ":" + nested.aggEnd + " range= " + nestedJoinRange + " file " + nested.getLocation());
 
-      Array varData;
       if ((type == Type.joinNew) || (type == Type.forecastModelRunCollection)) {
-        varData = dod.read(mainv, cancelTask, innerSection);
+        reads.add(new SectionRead(dod, innerSection));
       } else {
+        List<Range> nestedSection = new ArrayList<>(ranges); // get copy
         nestedSection.set(0, nestedJoinRange);
-        varData = dod.read(mainv, cancelTask, nestedSection);
+        reads.add(new SectionRead(dod, nestedSection));
       }
+    }
+
+    if (useParallelSectionRead(reads.size()))
+      readSectionParallel(mainv, reads, cancelTask);
+
+    for (SectionRead read : reads) {
+      Array varData = (read.data != null) ? read.data : read.dod.read(mainv, cancelTask, read.section);
+      read.data = null;
 
       if ((cancelTask != null) && cancelTask.isCancel())
         return null;
@@ -328,6 +341,72 @@ public abstract class AggregationOuterDimension extends Aggregation implements P
     return sectionData;
   }
 
+  // what to read from one nested dataset
+  private static class SectionRead {
+    final DatasetOuterDimension dod;
+    final List<Range> section;
+    Array data;  // set when read in parallel
+
+    SectionRead(DatasetOuterDimension dod, List<Range> section) {
+      this.dod = dod;
+      this.section = section;
+    }
+  }
+
+  private boolean useParallelSectionRead(int nreads) {
+    return sectionReadExecutor != null && sectionReadMaxThreads >= 2 && nreads >= sectionReadMinDatasets;
+  }
+
+  /*
+   * At most sectionReadMaxThreads tasks are submitted to the shared pool. Each task takes the next nested dataset off
+   * the queue, opens it through the file cache and reads its part of the section. The caller then copies the results
+   * into place in dataset order, exactly as the serial read does, so ragged fmrc datasets come out the same.
+   */
+  private void readSectionParallel(final Variable mainv, List<SectionRead> reads, final CancelTask cancelTask)
+          throws IOException, InvalidRangeException {
+    final Queue<SectionRead> queue = new ConcurrentLinkedQueue<>(reads);
+    int ntasks = Math.min(sectionReadMaxThreads, reads.size());
+
+    List<Future<Integer>> futures = new ArrayList<>(ntasks);
+    try {
+      for (int i = 0; i < ntasks; i++) {
+        futures.add(sectionReadExecutor.submit(new Callable<Integer>() {
+          public Integer call() throws IOException, InvalidRangeException {
+            int count = 0;
+            SectionRead read;
+            while ((read = queue.poll()) != null) {
+              if (Thread.currentThread().isInterrupted() || ((cancelTask != null) && cancelTask.isCancel())) break;
+              read.data = read.dod.read(mainv, cancelTask, read.section);
+              count++;
+            }
+            return count;
+          }
+        }));
+      }
+
+      for (Future<Integer> f : futures)
+        f.get();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("AggregationOuterDimension interrupted");
+
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.propagateIfInstanceOf(cause, IOException.class);
+      Throwables.propagateIfInstanceOf(cause, InvalidRangeException.class);
+      throw Throwables.propagate(cause);
+
+    } catch (RejectedExecutionException e) {
+      throw new IOException("AggregationOuterDimension section read pool rejected task", e);
+
+    } finally {
+      queue.clear();             // stop any tasks still running
+      for (Future<Integer> f : futures)
+        f.cancel(true);
+    }
+  }
+
   /**
    * Read an aggregation variable: A variable whose data spans multiple files.
    * This is an implementation of ProxyReader, so must fulfill that contract.
@@ -38,6 +38,7 @@ import ucar.nc2.constants.CDM;
 
 import java.io.*;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
 
 /**
  * Write a NetcdfFile to an OutputStream using ncstream protocol
@@ -144,6 +145,29 @@ public class NcStreamWriter {
     return size;
   }
 
+  /**
+   * Send the data as a version 1 data message, with the bytes copied straight from the file.
+   * Only for a section where N3iosp.isDirectTransfer() is true: the bytes are big-endian, as readers of
+   * version 1 messages expect, and are sent uncompressed.
+   */
+  public long sendDataDirect(Variable v, Section section, OutputStream out) throws IOException, InvalidRangeException {
+    if (show) System.out.printf(" %s section=%s direct%n", v.getFullName(), section);
+
+    long len = section.computeSize() * v.getElementSize();
+    long size = 0;
+    size += writeBytes(out, NcStream.MAGIC_DATA); // magic
+    NcStreamProto.Data dataProto = NcStream.encodeDataProto(v, section, NcStreamProto.Compress.NONE, ByteOrder.BIG_ENDIAN, 0);
+    byte[] datab = dataProto.toByteArray();
+    size += NcStream.writeVInt(out, datab.length); // dataProto len
+    size += writeBytes(out, datab); // dataProto
+    size += NcStream.writeVInt(out, (int) len); // data len
+
+    long count = v.readToByteChannel(section, Channels.newChannel(out));
+    if (count != len)
+      throw new IOException("Direct transfer of " + v.getFullName() + " sent " + count + " bytes, expected " + len);
+    return size + count;
+  }
+
   // LOOK compression not used
   public long sendData2(Variable v, Section section, OutputStream out, NcStreamCompression compress) throws IOException, InvalidRangeException {
     if (show) System.out.printf(" %s section=%s%n", v.getFullName(), section);
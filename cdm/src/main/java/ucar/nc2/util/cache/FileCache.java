@@ -134,10 +134,9 @@ public class FileCache implements FileCacheIF {
 
   // debugging and stats
   protected final AtomicInteger cleanups = new AtomicInteger();  // how many cleanups
-  protected final AtomicInteger hits = new AtomicInteger();
-  protected final AtomicInteger miss = new AtomicInteger();
   protected ConcurrentHashMap<Object, Tracker> track;
   protected boolean trackAll = false;
+  protected final FileCacheMetrics metrics;
 
   /**
    * Constructor.
@@ -180,6 +179,7 @@ public class FileCache implements FileCacheIF {
 
     cache = new ConcurrentHashMap<>(2 * softLimit, 0.75f, 8);
     files = new ConcurrentHashMap<>(4 * softLimit, 0.75f, 8);
+    metrics = new FileCacheMetrics(name, files::size, this::countLocked);
     boolean wantsCleanup = period > 0;
 
     if (wantsCleanup) {
@@ -265,15 +265,17 @@ public class FileCache implements FileCacheIF {
 
     FileCacheable ncfile = acquireCacheOnly(hashKey);
     if (ncfile != null) {
-      hits.incrementAndGet();
+      metrics.hit();
       if (t != null) t.hit++;
       return ncfile;
     }
-    miss.incrementAndGet();
+    metrics.miss();
     if (t != null) t.miss++;
 
     // open the file
+    long start = System.nanoTime();
     ncfile = factory.open(location, buffer_size, cancelTask, spiObject);
+    metrics.opened(ncfile, System.nanoTime() - start);
     if (cacheLog.isDebugEnabled())
       cacheLog.debug("FileCache " + name + " acquire " + hashKey + " " + ncfile.getLocation());
     if (debugPrint) System.out.println("  FileCache " + name + " acquire " + hashKey + " " + ncfile.getLocation());
@@ -603,7 +605,7 @@ public class FileCache implements FileCacheIF {
    * @param format add to this
    */
   public void showStats(Formatter format) {
-    format.format("  hits= %d miss= %d nfiles= %d elems= %d%n", hits.get(), miss.get(), files.size(), cache.values().size());
+    format.format("  hits= %d miss= %d nfiles= %d elems= %d%n", metrics.getHits(), metrics.getMisses(), files.size(), cache.values().size());
   }
 
   public void showTracking(Formatter format) {
@@ -628,6 +630,11 @@ public class FileCache implements FileCacheIF {
     format.format("  total=%7d : %6d %6d hit ratio=%f%n", countAll, countHits, countMiss, r);
   }
 
+  @Override
+  public FileCacheMetrics getMetrics() {
+    return metrics;
+  }
+
   @Override
   public void resetTracking() {
     track = new ConcurrentHashMap<>(5000);
@@ -724,6 +731,8 @@ public class FileCache implements FileCacheIF {
         }
       }
 
+      metrics.evicted(deleteList.size());
+
       // now actually close the files
       long start = System.currentTimeMillis();
       for (CacheElement.CacheFile file : deleteList) {
@@ -74,9 +74,8 @@ public class FileCacheARC implements FileCacheIF {
                                                                                 // this is needed for release
 
   // debugging and global stats
-  protected final AtomicInteger hits = new AtomicInteger();
-  protected final AtomicInteger miss = new AtomicInteger();
   protected ConcurrentHashMap<Object, Tracker> track;
+  protected final FileCacheMetrics metrics;
 
   /**
    * Constructor.
@@ -97,6 +96,7 @@ public class FileCacheARC implements FileCacheIF {
     shadowCache = new ConcurrentSkipListMap<>(new CacheElementComparator());
     cache = new ConcurrentHashMap<>(2 * softLimit, 0.75f, 8);
     files = new ConcurrentHashMap<>(4 * softLimit, 0.75f, 8);
+    metrics = new FileCacheMetrics(name, () -> cacheSize.get(), this::countLocked);
 
     if (trackAll)
       track = new ConcurrentHashMap<>(5000);
@@ -168,15 +168,17 @@ public class FileCacheARC implements FileCacheIF {
 
     FileCacheable ncfile = acquireCacheOnly(hashKey);
     if (ncfile != null) {
-      hits.incrementAndGet();
+      metrics.hit();
       if (t != null) t.hit++;
       return ncfile;
     }
-    miss.incrementAndGet();
+    metrics.miss();
     if (t != null) t.miss++;
 
     // open the file
+    long start = System.nanoTime();
     ncfile = factory.open(location, buffer_size, cancelTask, spiObject);
+    metrics.opened(ncfile, System.nanoTime() - start);
     if (cacheLog.isDebugEnabled())
       cacheLog.debug("FileCacheARC " + name + " acquire " + hashKey + " " + ncfile.getLocation());
     if (debugPrint) System.out.println("  FileCacheARC " + name + " acquire " + hashKey + " " + ncfile.getLocation());
@@ -311,6 +313,7 @@ public class FileCacheARC implements FileCacheIF {
     while (count > done) {
       CacheElement elem = shadowCache.lastKey();
       done += elem.list.size();
+      metrics.evicted(elem.list.size());
       expireFromCache(elem);
     }
   }
@@ -621,7 +624,19 @@ public class FileCacheARC implements FileCacheIF {
    * @param format add to this
    */
   public void showStats(Formatter format) {
-    format.format("  hits= %d miss= %d nfiles= %d elems= %d shadow=%d%n", hits.get(), miss.get(), files.size(), cache.values().size(), shadowCache.size());
+    format.format("  hits= %d miss= %d nfiles= %d elems= %d shadow=%d%n", metrics.getHits(), metrics.getMisses(), files.size(), cache.values().size(), shadowCache.size());
+  }
+
+  private int countLocked() {
+    int count = 0;
+    for (CacheElement.CacheFile file : files.values())
+      if (file.isLocked.get()) count++;
+    return count;
+  }
+
+  @Override
+  public FileCacheMetrics getMetrics() {
+    return metrics;
   }
 
   ///////////////////////////////////////////////////////////////
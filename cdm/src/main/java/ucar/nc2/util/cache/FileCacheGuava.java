@@ -37,6 +37,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
 import ucar.nc2.dataset.DatasetUrl;
 import ucar.nc2.util.CancelTask;
 
@@ -44,6 +45,7 @@ import java.io.IOException;
 import java.util.Formatter;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Memory cache using guava cache
@@ -55,13 +57,17 @@ public class FileCacheGuava implements FileCacheIF {
 
   private final String name;
   private LoadingCache<String, FileCacheable> cache;
+  private final FileCacheMetrics metrics;
 
   public FileCacheGuava(String name, int maxSize) {
     this.name = name;
+    this.metrics = new FileCacheMetrics(name, () -> (cache == null) ? 0 : (int) cache.size(), null); // files are not locked
     this.cache = CacheBuilder.newBuilder()
            .maximumSize(maxSize)
                    .recordStats()
-           // .removalListener(MY_LISTENER)
+           .removalListener((RemovalListener<String, FileCacheable>) notification -> {
+             if (notification.wasEvicted()) metrics.evicted(1);
+           })
            .build(
                    new CacheLoader<String, FileCacheable>() {
                      public FileCacheable load(String key) throws IOException {
@@ -94,7 +100,17 @@ public class FileCacheGuava implements FileCacheIF {
 
     try {
       // If the key wasn't in the "easy to compute" group, we need to use the factory.
-      return cache.get((String)hashKey, () -> factory.open(durl, buffer_size, cancelTask, spiObject));
+      final AtomicBoolean opened = new AtomicBoolean();
+      FileCacheable ncfile = cache.get((String)hashKey, () -> {
+        opened.set(true);
+        long start = System.nanoTime();
+        FileCacheable result = factory.open(durl, buffer_size, cancelTask, spiObject);
+        metrics.opened(result, System.nanoTime() - start);
+        return result;
+      });
+      if (opened.get()) metrics.miss();
+      else metrics.hit();
+      return ncfile;
     } catch (ExecutionException e) {
       throw new RuntimeException(e.getCause());
     }
@@ -133,12 +149,16 @@ public class FileCacheGuava implements FileCacheIF {
 
   @Override
   public void showStats(Formatter f) {
-    CacheStats stats = cache.stats();
-    f.format("%s", stats);
+    metrics.show(f);
   }
 
   @Override
   public List<String> showCache() {
     return null;
   }
+
+  @Override
+  public FileCacheMetrics getMetrics() {
+    return metrics;
+  }
 }
@@ -63,4 +63,7 @@ public interface FileCacheIF {
   void showCache(Formatter format);
   void showStats(Formatter format);
   List<String> showCache();
+
+  // counters for tuning
+  FileCacheMetrics getMetrics();
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.util.cache;
+
+import net.jcip.annotations.ThreadSafe;
+import ucar.nc2.NetcdfFile;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters kept by a FileCacheIF, to help tune its limits:
+ * hits and misses, evictions, the number of files currently in the cache and in use,
+ * and a histogram of the time it takes to open a file, for each file type (usually the IOSP).
+ *
+ * @see FileCacheIF#getMetrics()
+ */
+@ThreadSafe
+public class FileCacheMetrics {
+  /** Open times are counted in buckets: less than 1, 2, 4, ... 16384 msecs, and the last bucket for anything longer. */
+  public static final int NBUCKETS = 16;
+
+  private final String name;
+  private final IntSupplier filesInCache, filesInUse; // read from the cache when asked, null if not known
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final ConcurrentHashMap<String, OpenTimes> openTimes = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param name         name of the cache
+   * @param filesInCache number of open files currently in the cache, or null if not known
+   * @param filesInUse   number of files currently locked by an application, or null if not known
+   */
+  public FileCacheMetrics(String name, IntSupplier filesInCache, IntSupplier filesInUse) {
+    this.name = name;
+    this.filesInCache = filesInCache;
+    this.filesInUse = filesInUse;
+  }
+
+  public void hit() {
+    hits.increment();
+  }
+
+  public void miss() {
+    misses.increment();
+  }
+
+  public void evicted(int nfiles) {
+    evictions.add(nfiles);
+  }
+
+  /**
+   * Record the time it took to open a file.
+   *
+   * @param ncfile the opened file, used to find the file type
+   * @param nanos  time it took, from System.nanoTime()
+   */
+  public void opened(FileCacheable ncfile, long nanos) {
+    openTimes.computeIfAbsent(getFileType(ncfile), OpenTimes::new).add(nanos);
+  }
+
+  private String getFileType(FileCacheable ncfile) {
+    if (ncfile instanceof NetcdfFile)
+      return ((NetcdfFile) ncfile).getFileTypeId();
+    return (ncfile == null) ? "null" : ncfile.getClass().getSimpleName();
+  }
+
+  /** Reset the counters. */
+  public void reset() {
+    hits.reset();
+    misses.reset();
+    evictions.reset();
+    openTimes.clear();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /** @return hits / (hits + misses), or 0 if no requests */
+  public double getHitRate() {
+    long hit = hits.sum();
+    long total = hit + misses.sum();
+    return (total == 0) ? 0.0 : ((double) hit) / total;
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /** @return number of open files in the cache, or -1 if not known */
+  public int getFilesInCache() {
+    return (filesInCache == null) ? -1 : filesInCache.getAsInt();
+  }
+
+  /** @return number of files in the cache currently being used, or -1 if not known */
+  public int getFilesInUse() {
+    return (filesInUse == null) ? -1 : filesInUse.getAsInt();
+  }
+
+  /** @return open times by file type, sorted by file type */
+  public List<OpenTimes> getOpenTimes() {
+    List<OpenTimes> result = new ArrayList<>(openTimes.values());
+    Collections.sort(result, (o1, o2) -> o1.fileType.compareTo(o2.fileType));
+    return result;
+  }
+
+  public void show(Formatter f) {
+    f.format("%s: hits= %d misses= %d hitRate= %.3f evictions= %d inCache= %d inUse= %d%n", name, getHits(), getMisses(),
+            getHitRate(), getEvictions(), getFilesInCache(), getFilesInUse());
+    for (OpenTimes times : getOpenTimes())
+      f.format("  open %-20s count= %d mean= %.3f max= %.3f msecs%n", times.fileType, times.getCount(), times.getMeanMsecs(), times.getMaxMsecs());
+  }
+
+  /**
+   * Write the metrics as a JSON object.
+   *
+   * @param f     write to this
+   * @param indent prefix for each line
+   */
+  public void toJson(Formatter f, String indent) {
+    f.format("%s{%n", indent);
+    f.format("%s  \"name\": \"%s\",%n", indent, jsonEscape(name.trim()));
+    f.format("%s  \"hits\": %d,%n", indent, getHits());
+    f.format("%s  \"misses\": %d,%n", indent, getMisses());
+    f.format(Locale.ROOT, "%s  \"hitRate\": %.4f,%n", indent, getHitRate());
+    f.format("%s  \"evictions\": %d,%n", indent, getEvictions());
+    f.format("%s  \"filesInCache\": %d,%n", indent, getFilesInCache());
+    f.format("%s  \"filesInUse\": %d,%n", indent, getFilesInUse());
+    f.format("%s  \"openTimes\": [", indent);
+    List<OpenTimes> all = getOpenTimes();
+    for (int i = 0; i < all.size(); i++) {
+      OpenTimes times = all.get(i);
+      f.format("%s%n%s    {\"fileType\": \"%s\", \"count\": %d, ", (i > 0) ? "," : "", indent, jsonEscape(times.fileType), times.getCount());
+      f.format(Locale.ROOT, "\"meanMsecs\": %.3f, \"maxMsecs\": %.3f, \"histogram\": %s}",
+              times.getMeanMsecs(), times.getMaxMsecs(), Arrays.toString(times.getHistogram()));
+    }
+    f.format("%s]%n", all.isEmpty() ? "" : "\n" + indent + "  ");
+    f.format("%s}", indent);
+  }
+
+  static String jsonEscape(String s) {
+    if (s == null) return "";
+    StringBuilder sb = new StringBuilder(s.length());
+    for (char c : s.toCharArray()) {
+      if (c == '"' || c == '\\') sb.append('\\').append(c);
+      else if (c < ' ') sb.append(String.format("\\u%04x", (int) c));
+      else sb.append(c);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The time it takes to open files of one type.
+   */
+  public static class OpenTimes {
+    private final String fileType;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LongAdder[] buckets = new LongAdder[NBUCKETS];
+
+    OpenTimes(String fileType) {
+      this.fileType = fileType;
+      for (int i = 0; i < NBUCKETS; i++)
+        buckets[i] = new LongAdder();
+    }
+
+    void add(long nanos) {
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulateAndGet(nanos, Math::max);
+
+      long msecs = nanos / 1000 / 1000;
+      int bucket = (msecs == 0) ? 0 : 64 - Long.numberOfLeadingZeros(msecs); // msecs < 2^bucket
+      buckets[Math.min(bucket, NBUCKETS - 1)].increment();
+    }
+
+    public String getFileType() {
+      return fileType;
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    public double getMeanMsecs() {
+      long n = count.sum();
+      return (n == 0) ? 0.0 : totalNanos.sum() / 1.0e6 / n;
+    }
+
+    public double getMaxMsecs() {
+      return maxNanos.get() / 1.0e6;
+    }
+
+    /** @return count for each bucket, see NBUCKETS */
+    public long[] getHistogram() {
+      long[] result = new long[NBUCKETS];
+      for (int i = 0; i < NBUCKETS; i++)
+        result[i] = buckets[i].sum();
+      return result;
+    }
+  }
+}
@@ -0,0 +1,578 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.util.cache;
+
+import net.jcip.annotations.ThreadSafe;
+import ucar.nc2.dataset.DatasetUrl;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateFormatter;
+import ucar.nc2.util.CancelTask;
+import ucar.nc2.util.Misc;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A FileCache with the same contract as FileCache, but with less contention between threads.
+ * <ol>
+ * <li>There are no synchronized blocks. Files with the same hashKey are kept in a lock-free deque, a file is locked with a
+ *     compare-and-set, and elements are added to and removed from the cache map with ConcurrentHashMap.compute(),
+ *     which only locks one bin of the map.
+ * <li>Cleanup is always done in a background thread. An acquire that goes over softLimit schedules a cleanup in 100 msecs,
+ *     one that goes over hardLimit schedules it immediately. So hardLimit is not strictly enforced.
+ * <li>Cleanup only closes files that it has locked, so it never waits for, or blocks, an acquire.
+ * </ol>
+ * Call shutdown() when exiting the program, in order to shut down the cleanup thread.
+ */
+@ThreadSafe
+public class FileCacheStriped implements FileCacheIF {
+  static protected final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FileCacheStriped.class);
+  static protected final org.slf4j.Logger cacheLog = org.slf4j.LoggerFactory.getLogger("cacheLogger");
+
+  // shared by all FileCacheStriped; one thread, so cleanups never run concurrently
+  static private ScheduledExecutorService exec;
+
+  /**
+   * You must call shutdown() to shut down the background thread in order to get a clean process shutdown.
+   */
+  public static synchronized void shutdown() {
+    if (exec != null)
+      exec.shutdownNow();
+    exec = null;
+  }
+
+  private static synchronized ScheduledExecutorService getExecutor() {
+    if (exec == null) {
+      exec = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "FileCacheStriped");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    return exec;
+  }
+
+  private static synchronized void schedule(Runnable task, long delay) {
+    getExecutor().schedule(task, delay, TimeUnit.MILLISECONDS);
+  }
+
+  private static synchronized void scheduleAtFixedRate(Runnable task, long delay, long period) {
+    getExecutor().scheduleAtFixedRate(task, delay, period, TimeUnit.MILLISECONDS);
+  }
+
+  /////////////////////////////////////////////////////////////////////////////////////////
+
+  protected final String name;
+  protected final int softLimit, minElements, hardLimit;
+  protected final long period; // msecs
+
+  private final AtomicBoolean disabled = new AtomicBoolean(false);  // cache is disabled
+  private final AtomicBoolean hasScheduled = new AtomicBoolean(false); // a cleanup is scheduled
+
+  private final ConcurrentHashMap<Object, CacheElement> cache;     // unique files (by key, often = filename)
+  private final ConcurrentHashMap<FileCacheable, CacheFile> files; // all files in the cache
+
+  // debugging and stats
+  private final LongAdder cleanups = new LongAdder();
+  private final FileCacheMetrics metrics;
+  private volatile ConcurrentHashMap<Object, Tracker> track;
+
+  /**
+   * Constructor.
+   *
+   * @param name                of file cache
+   * @param minElementsInMemory keep this number in the cache
+   * @param softLimit           schedule a cleanup if it goes over this number.
+   * @param hardLimit           if > 0, schedule an immediate cleanup if it goes over this number.
+   * @param period              if > 0, do periodic cleanups every this number of seconds.
+   */
+  public FileCacheStriped(String name, int minElementsInMemory, int softLimit, int hardLimit, int period) {
+    this.name = name;
+    this.minElements = minElementsInMemory;
+    this.softLimit = softLimit;
+    this.hardLimit = hardLimit;
+    this.period = (long) 1000 * period;
+
+    int concurrency = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+    cache = new ConcurrentHashMap<>(2 * softLimit, 0.75f, concurrency);
+    files = new ConcurrentHashMap<>(4 * softLimit, 0.75f, concurrency);
+    metrics = new FileCacheMetrics(name, files::size, this::countLocked);
+
+    if (period > 0) {
+      scheduleAtFixedRate(new CleanupTask(false), this.period, this.period);
+      if (cacheLog.isDebugEnabled())
+        cacheLog.debug("FileCacheStriped " + name + " cleanup every " + period + " secs");
+    }
+  }
+
+  /**
+   * Disable the cache, and force release all files.
+   * You must still call shutdown() before exiting the application.
+   */
+  @Override
+  public void disable() {
+    this.disabled.set(true);
+    clearCache(true);
+  }
+
+  /**
+   * Enable the cache, with the current set of parameters.
+   */
+  @Override
+  public void enable() {
+    this.disabled.set(false);
+  }
+
+  @Override
+  public FileCacheable acquire(FileFactory factory, DatasetUrl durl) throws IOException {
+    return acquire(factory, durl.trueurl, durl, -1, null, null);
+  }
+
+  /**
+   * Acquire a FileCacheable from the cache, and lock it so no one else can use it.
+   * If not already in cache, open it with the FileFactory, and put in cache.
+   * App should call FileCacheable.close when done, and the file is then released instead of closed.
+   *
+   * @param factory     use this factory to open the file if not in the cache; may not be null
+   * @param hashKey     unique key for this file. If null, the location will be used
+   * @param location    file location, may also used as the cache name, will be passed to the NetcdfFileFactory
+   * @param buffer_size RandomAccessFile buffer size, if <= 0, use default size
+   * @param cancelTask  user can cancel, ok to be null.
+   * @param spiObject   passed to the factory if object needs to be recreated
+   * @return FileCacheable corresponding to location.
+   * @throws IOException on error
+   */
+  @Override
+  public FileCacheable acquire(FileFactory factory, Object hashKey, DatasetUrl location,
+                               int buffer_size, CancelTask cancelTask, Object spiObject) throws IOException {
+
+    if (null == hashKey) hashKey = location.trueurl;
+    if (null == hashKey) throw new IllegalArgumentException();
+
+    Tracker t = null;
+    ConcurrentHashMap<Object, Tracker> track = this.track;
+    if (track != null)
+      t = track.computeIfAbsent(hashKey, Tracker::new);
+
+    FileCacheable ncfile = acquireCacheOnly(hashKey);
+    if (ncfile != null) {
+      metrics.hit();
+      if (t != null) t.hit.increment();
+      return ncfile;
+    }
+    metrics.miss();
+    if (t != null) t.miss.increment();
+
+    // open the file
+    long start = System.nanoTime();
+    ncfile = factory.open(location, buffer_size, cancelTask, spiObject);
+    metrics.opened(ncfile, System.nanoTime() - start);
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("FileCacheStriped " + name + " acquire " + hashKey + " " + ncfile.getLocation());
+
+    // user may have canceled
+    if ((cancelTask != null) && (cancelTask.isCancel())) {
+      if (ncfile != null) ncfile.close();
+      return null;
+    }
+
+    if (disabled.get()) return ncfile;
+
+    // add to the cache, locked. compute() is atomic with respect to removing an empty element
+    final CacheFile file = new CacheFile(hashKey, ncfile);
+    files.put(ncfile, file);
+    cache.compute(hashKey, (key, elem) -> {
+      if (elem == null) elem = new CacheElement(key);
+      elem.list.add(file);
+      return elem;
+    });
+    ncfile.setFileCache(this);
+
+    // do we need a cleanup ?
+    int count = files.size();
+    if ((hardLimit > 0) && (count > hardLimit)) {
+      if (hasScheduled.compareAndSet(false, true))
+        schedule(new CleanupTask(true), 0);
+
+    } else if ((softLimit > 0) && (count > softLimit)) {
+      if (hasScheduled.compareAndSet(false, true))
+        schedule(new CleanupTask(true), 100);
+    }
+
+    return ncfile;
+  }
+
+  // Try to find an unlocked file in the cache, return null if not found.
+  private FileCacheable acquireCacheOnly(Object hashKey) {
+    if (disabled.get()) return null;
+
+    CacheElement elem = cache.get(hashKey);
+    if (elem == null) return null;  // not found in cache
+
+    for (CacheFile want : elem.list) {
+      if (!want.isLocked.compareAndSet(false, true))
+        continue;
+      FileCacheable ncfile = want.ncfile;
+      if (ncfile == null) // being removed by another thread
+        continue;
+
+      // check if modified, remove if so
+      if (ncfile.getLastModified() != want.lastModified) {
+        if (cacheLog.isDebugEnabled())
+          cacheLog.debug("FileCacheStriped " + name + ": acquire from cache " + hashKey + " " + ncfile.getLocation() + " was changed; discard");
+        remove(want);
+        return null;
+      }
+
+      try {
+        ncfile.reacquire(); // rehydrate
+      } catch (IOException ioe) {
+        if (cacheLog.isDebugEnabled())
+          cacheLog.debug("FileCacheStriped " + name + " acquire from cache " + hashKey + " " + ncfile.getLocation() + " failed: " + ioe.getMessage());
+        remove(want);
+        return null;
+      }
+      return ncfile;
+    }
+
+    return null; // no unlocked file in cache
+  }
+
+  /**
+   * Remove all instances of object from the cache, and close them, even if locked.
+   *
+   * @param hashKey the object
+   */
+  @Override
+  public void eject(Object hashKey) {
+    if (disabled.get()) return;
+
+    CacheElement elem = cache.remove(hashKey);
+    if (elem == null) return;
+
+    for (CacheFile want : elem.list)
+      close(want);
+    elem.list.clear();
+  }
+
+  /**
+   * Release the file. This unlocks it, updates its lastAccessed date.
+   * Normally applications need not call this, just close the file as usual.
+   *
+   * @param ncfile release this file.
+   * @return true if file was in cache, false if it was not
+   */
+  @Override
+  public boolean release(FileCacheable ncfile) throws IOException {
+    if (ncfile == null) return false;
+
+    if (disabled.get()) {
+      ncfile.setFileCache(null); // prevent infinite loops
+      ncfile.close();
+      return false;
+    }
+
+    CacheFile file = files.get(ncfile);
+    if (file == null) return false;
+
+    if (!file.isLocked.get())
+      cacheLog.warn("FileCacheStriped " + name + " release " + ncfile.getLocation() + " not locked; hash= " + ncfile.hashCode());
+    file.lastAccessed = System.currentTimeMillis();
+    file.countAccessed.increment();
+    ncfile.release(); // before unlocking, so that another thread cant reacquire it first
+    file.isLocked.set(false);
+
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("FileCacheStriped " + name + " release " + ncfile.getLocation() + "; hash= " + ncfile.hashCode());
+    return true;
+  }
+
+  /**
+   * Remove all cache entries.
+   *
+   * @param force if true, remove them even if they are currently locked.
+   */
+  @Override
+  public void clearCache(boolean force) {
+    List<CacheFile> deleteList = new ArrayList<>(files.size());
+    for (CacheFile file : files.values()) {
+      if (file.isLocked.compareAndSet(false, true) || force)
+        deleteList.add(file);
+    }
+
+    for (CacheFile file : deleteList) {
+      if (force && file.isLocked.get())
+        cacheLog.warn("FileCacheStriped " + name + " force close locked file= " + file);
+      remove(file);
+    }
+
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("*FileCacheStriped " + name + " clearCache force= " + force + " deleted= " + deleteList.size() + " left=" + files.size());
+  }
+
+  // remove from the cache and close; caller must have locked the file
+  private void remove(CacheFile file) {
+    cache.computeIfPresent(file.hashKey, (key, elem) -> {
+      elem.list.remove(file);
+      return elem.list.isEmpty() ? null : elem;
+    });
+    close(file);
+  }
+
+  private void close(CacheFile file) {
+    FileCacheable ncfile = file.ncfile;
+    if (ncfile == null) return;
+    files.remove(ncfile);
+    file.ncfile = null; // help the gc
+    try {
+      ncfile.setFileCache(null); // unhook the caching
+      ncfile.close();
+    } catch (IOException e) {
+      log.error("FileCacheStriped " + name + " close failed on " + ncfile.getLocation(), e);
+    }
+  }
+
+  /**
+   * Cleanup the cache, bringing it down to minimum number.
+   * Will close the LRU (least recently used) ones first. Will not close locked files.
+   * Normally this is done in a background thread, you dont need to call.
+   */
+  void cleanup(int maxElements) {
+    int size = files.size();
+    if (size <= minElements) return;
+
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("FileCacheStriped {} cleanup started at {} for maxElements={}", name, CalendarDate.present(), maxElements);
+    cleanups.increment();
+
+    // snapshot of unlocked files, oldest first
+    List<CacheFile> allFiles = oldestFirst(files.values(), true);
+
+    int need2delete = size - minElements;
+    int minDelete = size - maxElements;
+    int count = 0;
+    long start = System.currentTimeMillis();
+    for (CacheFile file : allFiles) {
+      if (count >= need2delete) break;
+      if (file.isLocked.compareAndSet(false, true)) { // skip it if someone acquired it since the snapshot
+        remove(file);
+        count++;
+      }
+    }
+
+    metrics.evicted(count);
+
+    if (count < minDelete)
+      cacheLog.warn("FileCacheStriped " + name + " cleanup couldnt remove enough to keep under the maximum= " + maxElements + " due to locked files; currently at = " + (size - count));
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug(" FileCacheStriped {} cleanup had={} removed={} took={} msecs", name, size, count, System.currentTimeMillis() - start);
+  }
+
+  // sort on a copy of lastAccessed: release() keeps changing it, and a key that changes during the sort
+  // can make it throw "Comparison method violates its general contract"
+  private static List<CacheFile> oldestFirst(Collection<CacheFile> cacheFiles, boolean unlockedOnly) {
+    List<Accessed> snapshot = new ArrayList<>(cacheFiles.size() + 10);
+    for (CacheFile file : cacheFiles) {
+      if (!unlockedOnly || !file.isLocked.get()) snapshot.add(new Accessed(file));
+    }
+    Collections.sort(snapshot);
+
+    List<CacheFile> result = new ArrayList<>(snapshot.size());
+    for (Accessed a : snapshot)
+      result.add(a.file);
+    return result;
+  }
+
+  private int countLocked() {
+    int count = 0;
+    for (CacheFile file : files.values())
+      if (file.isLocked.get()) count++;
+    return count;
+  }
+
+  ///////////////////////////////////////////////////////////////////////
+  // debugging
+
+  @Override
+  public void showCache(Formatter format) {
+    List<CacheFile> allFiles = oldestFirst(files.values(), false); // sort so oldest are on top
+
+    format.format("%nFileCacheStriped %s (min=%d softLimit=%d hardLimit=%d scour=%d secs):%n", name, minElements, softLimit, hardLimit, period / 1000);
+    format.format(" isLocked  accesses lastAccess                   location %n");
+    for (CacheFile file : allFiles) {
+      FileCacheable ncfile = file.ncfile;
+      String loc = ncfile != null ? ncfile.getLocation() : "null";
+      format.format("%8s %9d %s == %s %n", file.isLocked, file.countAccessed.sum(), CalendarDateFormatter.toDateTimeStringISO(file.lastAccessed), loc);
+    }
+    showStats(format);
+  }
+
+  @Override
+  public List<String> showCache() {
+    List<CacheFile> allFiles = oldestFirst(files.values(), false); // sort so oldest are on top
+
+    List<String> result = new ArrayList<>(allFiles.size());
+    for (CacheFile file : allFiles)
+      result.add(file.toString());
+    return result;
+  }
+
+  @Override
+  public void showStats(Formatter format) {
+    format.format("  hits= %d miss= %d nfiles= %d elems= %d locked= %d cleanups= %d%n", metrics.getHits(), metrics.getMisses(), files.size(), cache.size(),
+            countLocked(), cleanups.sum());
+  }
+
+  @Override
+  public FileCacheMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  public void showTracking(Formatter format) {
+    ConcurrentHashMap<Object, Tracker> track = this.track;
+    if (track == null) return;
+    List<Tracker> all = new ArrayList<>(track.values());
+    Collections.sort(all);
+    int seq = 0;
+    long countAll = 0, countHits = 0, countMiss = 0;
+    format.format("%nTracking All files in cache %s%n", name);
+    format.format("    #    accum       hit    miss  file%n");
+    for (Tracker t : all) {
+      seq++;
+      long hit = t.hit.sum(), miss = t.miss.sum();
+      countAll += hit + miss;
+      countHits += hit;
+      countMiss += miss;
+      format.format("%6d  %7d : %6d %6d %s%n", seq, countAll, hit, miss, t.key);
+    }
+    float r = (countAll == 0) ? 0 : ((float) countHits) / countAll;
+    format.format("  total=%7d : %6d %6d hit ratio=%f%n", countAll, countHits, countMiss, r);
+  }
+
+  @Override
+  public void resetTracking() {
+    track = new ConcurrentHashMap<>(5000);
+  }
+
+  private static class Tracker implements Comparable<Tracker> {
+    final Object key;
+    final LongAdder hit = new LongAdder(), miss = new LongAdder();
+
+    private Tracker(Object key) {
+      this.key = key;
+    }
+
+    @Override
+    public int compareTo(Tracker o) {
+      return Misc.compare(hit.sum() + miss.sum(), o.hit.sum() + o.miss.sum());
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////
+
+  // all the open files with the same hashKey
+  private static class CacheElement {
+    final Queue<CacheFile> list = new ConcurrentLinkedQueue<>(); // may have multiple copies of the same file opened
+    final Object hashKey;
+
+    CacheElement(Object hashKey) {
+      this.hashKey = hashKey;
+    }
+
+    public String toString() {
+      return hashKey + " count=" + list.size();
+    }
+  }
+
+  private static class CacheFile {
+    final Object hashKey;
+    volatile FileCacheable ncfile; // nulled out when removed
+    final AtomicBoolean isLocked = new AtomicBoolean(true);
+    final LongAdder countAccessed = new LongAdder();
+    final long lastModified;
+    volatile long lastAccessed;
+
+    CacheFile(Object hashKey, FileCacheable ncfile) {
+      this.hashKey = hashKey;
+      this.ncfile = ncfile;
+      this.lastModified = ncfile.getLastModified();
+      this.lastAccessed = System.currentTimeMillis();
+    }
+
+    public String toString() {
+      FileCacheable ncfile = this.ncfile;
+      String name = ncfile == null ? "ncfile is null" : ncfile.getLocation();
+      return isLocked + " " + countAccessed.sum() + " " + CalendarDateFormatter.toDateTimeStringISO(lastAccessed) + "   " + name;
+    }
+  }
+
+  // a CacheFile and its lastAccessed at one moment
+  private static class Accessed implements Comparable<Accessed> {
+    final CacheFile file;
+    final long lastAccessed;
+
+    Accessed(CacheFile file) {
+      this.file = file;
+      this.lastAccessed = file.lastAccessed;
+    }
+
+    public int compareTo(Accessed o) {
+      return Long.compare(lastAccessed, o.lastAccessed);
+    }
+  }
+
+  private class CleanupTask implements Runnable {
+    private final boolean scheduled; // triggered by acquire, not periodic
+
+    CleanupTask(boolean scheduled) {
+      this.scheduled = scheduled;
+    }
+
+    public void run() {
+      try {
+        if (!disabled.get())
+          cleanup(softLimit);
+      } catch (Throwable t) {
+        log.error("FileCacheStriped " + name + " cleanup failed", t); // dont kill the periodic task
+      } finally {
+        if (scheduled)
+          hasScheduled.set(false); // allow scheduling again
+      }
+    }
+  }
+
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.unidata.geoloc;
+
+/**
+ * Spatial index over the cells of a curvilinear 2D lat/lon grid.
+ * The cell corners are given as (nrows+1, ncols+1) arrays of lat and lon edges, eg from CoordinateAxis2D.getEdges().
+ * <p>
+ * Cells and edge points are binned into a regular lat/lon bucket grid, so finding the cell that contains a point,
+ * or the index range of the edge points inside a lat/lon box, only examines the buckets it touches,
+ * instead of walking or scanning the whole grid.
+ * <p>
+ * Longitudes are used as given: the caller must normalize the edges and the query points to the same range.
+ * Cells with a missing (NaN) corner, or spanning more than 180 degrees of longitude (ie wrapped around the seam),
+ * are not indexed. Immutable once built, so it may be shared between threads.
+ */
+public class GridCellIndex {
+  private final int nrows, ncols;           // number of cells
+  private final double[] latEdge, lonEdge;  // (nrows+1) * (ncols+1), row major
+  private final double latMin, latMax, lonMin, lonMax;
+
+  // bucket grid
+  private final int nbrows, nbcols;
+  private final double latScale, lonScale;  // buckets per degree
+
+  // bucket b holds cells[cellStart[b] .. cellStart[b+1]) and points[pointStart[b] .. pointStart[b+1]), in row major order
+  private final int[] cellStart, cells;
+  private final int[] pointStart, points;
+
+  /**
+   * Build the index.
+   *
+   * @param latEdge lat of the cell corners, (nrows+1) * (ncols+1) in row major order
+   * @param lonEdge lon of the cell corners, same shape
+   * @param nrows   number of rows of cells
+   * @param ncols   number of columns of cells
+   */
+  public GridCellIndex(double[] latEdge, double[] lonEdge, int nrows, int ncols) {
+    int npts = (nrows + 1) * (ncols + 1);
+    if (nrows < 1 || ncols < 1 || latEdge.length != npts || lonEdge.length != npts)
+      throw new IllegalArgumentException("edge arrays must have length (nrows+1)*(ncols+1) = " + npts);
+
+    this.nrows = nrows;
+    this.ncols = ncols;
+    this.latEdge = latEdge;
+    this.lonEdge = lonEdge;
+
+    double latmin = Double.MAX_VALUE, latmax = -Double.MAX_VALUE;
+    double lonmin = Double.MAX_VALUE, lonmax = -Double.MAX_VALUE;
+    for (int i = 0; i < npts; i++) {
+      double lat = latEdge[i];
+      double lon = lonEdge[i];
+      if (Double.isNaN(lat) || Double.isNaN(lon)) continue;
+      if (lat < latmin) latmin = lat;
+      if (lat > latmax) latmax = lat;
+      if (lon < lonmin) lonmin = lon;
+      if (lon > lonmax) lonmax = lon;
+    }
+    this.latMin = latmin;
+    this.latMax = latmax;
+    this.lonMin = lonmin;
+    this.lonMax = lonmax;
+
+    // about 4 cells per bucket
+    nbrows = Math.max(1, nrows / 2);
+    nbcols = Math.max(1, ncols / 2);
+    latScale = (latmax > latmin) ? nbrows / (latmax - latmin) : 0.0;
+    lonScale = (lonmax > lonmin) ? nbcols / (lonmax - lonmin) : 0.0;
+    int nbuckets = nbrows * nbcols;
+
+    // edge points: each one goes into exactly one bucket
+    pointStart = new int[nbuckets + 1];
+    int[] pointBucket = new int[npts];
+    for (int i = 0; i < npts; i++) {
+      double lat = latEdge[i];
+      double lon = lonEdge[i];
+      if (Double.isNaN(lat) || Double.isNaN(lon)) {
+        pointBucket[i] = -1;
+        continue;
+      }
+      int b = bucketRow(lat) * nbcols + bucketCol(lon);
+      pointBucket[i] = b;
+      pointStart[b + 1]++;
+    }
+    for (int b = 0; b < nbuckets; b++)
+      pointStart[b + 1] += pointStart[b];
+    points = new int[pointStart[nbuckets]];
+    int[] fill = new int[nbuckets];
+    System.arraycopy(pointStart, 0, fill, 0, nbuckets);
+    for (int i = 0; i < npts; i++) {
+      if (pointBucket[i] >= 0)
+        points[fill[pointBucket[i]]++] = i;
+    }
+
+    // cells: each one goes into every bucket its bounding box overlaps. first count, then fill
+    cellStart = new int[nbuckets + 1];
+    int[] bb = new int[4];
+    for (int row = 0; row < nrows; row++) {
+      for (int col = 0; col < ncols; col++) {
+        if (!cellBuckets(row, col, bb)) continue;
+        for (int br = bb[0]; br <= bb[1]; br++)
+          for (int bc = bb[2]; bc <= bb[3]; bc++)
+            cellStart[br * nbcols + bc + 1]++;
+      }
+    }
+    for (int b = 0; b < nbuckets; b++)
+      cellStart[b + 1] += cellStart[b];
+    cells = new int[cellStart[nbuckets]];
+    System.arraycopy(cellStart, 0, fill, 0, nbuckets);
+    for (int row = 0; row < nrows; row++) {
+      for (int col = 0; col < ncols; col++) {
+        if (!cellBuckets(row, col, bb)) continue;
+        for (int br = bb[0]; br <= bb[1]; br++)
+          for (int bc = bb[2]; bc <= bb[3]; bc++)
+            cells[fill[br * nbcols + bc]++] = row * ncols + col;
+      }
+    }
+  }
+
+  public double getLatMin() {
+    return latMin;
+  }
+
+  public double getLatMax() {
+    return latMax;
+  }
+
+  public double getLonMin() {
+    return lonMin;
+  }
+
+  public double getLonMax() {
+    return lonMax;
+  }
+
+  /**
+   * Find the cell containing the given point.
+   * When the point lies in more than one cell (on a shared edge, or in overlapping cells), the first one in row major
+   * order is returned, same as a brute force scan over all cells.
+   *
+   * @param wantLat   lat of point
+   * @param wantLon   lon of point, normalized the same way as the edges
+   * @param rectIndex return (row,col) index here, unchanged if not found. may not be null
+   * @return false if not in the grid.
+   */
+  public boolean findCell(double wantLat, double wantLon, int[] rectIndex) {
+    if (!(wantLat >= latMin && wantLat <= latMax && wantLon >= lonMin && wantLon <= lonMax))
+      return false; // also rejects NaN
+
+    int b = bucketRow(wantLat) * nbcols + bucketCol(wantLon);
+    for (int i = cellStart[b]; i < cellStart[b + 1]; i++) {
+      int row = cells[i] / ncols;
+      int col = cells[i] % ncols;
+      if (contains(wantLat, wantLon, row, col)) {
+        rectIndex[0] = row;
+        rectIndex[1] = col;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Find the index range of the edge points that lie inside the given lat/lon box, boundaries included.
+   *
+   * @param minLat lower lat of box
+   * @param maxLat upper lat of box
+   * @param minLon lower lon of box, normalized the same way as the edges
+   * @param maxLon upper lon of box, normalized the same way as the edges
+   * @param result return minRow, maxRow, minCol, maxCol here, indices into the (nrows+1, ncols+1) edges. may not be null
+   * @return false if no edge point is inside the box, and result is unchanged
+   */
+  public boolean findEdgeBounds(double minLat, double maxLat, double minLon, double maxLon, int[] result) {
+    double lat0 = Math.max(minLat, latMin);
+    double lat1 = Math.min(maxLat, latMax);
+    double lon0 = Math.max(minLon, lonMin);
+    double lon1 = Math.min(maxLon, lonMax);
+    if (!(lat0 <= lat1 && lon0 <= lon1))
+      return false;
+
+    int minRow = Integer.MAX_VALUE, maxRow = -1;
+    int minCol = Integer.MAX_VALUE, maxCol = -1;
+    int br1 = bucketRow(lat1);
+    int bc0 = bucketCol(lon0);
+    int bc1 = bucketCol(lon1);
+    for (int br = bucketRow(lat0); br <= br1; br++) {
+      for (int bc = bc0; bc <= bc1; bc++) {
+        int b = br * nbcols + bc;
+        for (int i = pointStart[b]; i < pointStart[b + 1]; i++) {
+          int pt = points[i];
+          double lat = latEdge[pt];
+          double lon = lonEdge[pt];
+          if ((lat >= minLat) && (lat <= maxLat) && (lon >= minLon) && (lon <= maxLon)) {
+            int row = pt / (ncols + 1);
+            int col = pt % (ncols + 1);
+            if (row < minRow) minRow = row;
+            if (row > maxRow) maxRow = row;
+            if (col < minCol) minCol = col;
+            if (col > maxCol) maxCol = col;
+          }
+        }
+      }
+    }
+    if (maxRow < 0)
+      return false;
+
+    result[0] = minRow;
+    result[1] = maxRow;
+    result[2] = minCol;
+    result[3] = maxCol;
+    return true;
+  }
+
+  /**
+   * Is the point (lat,lon) contained in the (row, col) cell ?
+   * The cell is taken as the quadrilateral through its 4 corners; the point is inside if the triangles it makes with
+   * each side, going around the cell, all have the same orientation. This works for any convex cell.
+   *
+   * @param wantLat lat of point
+   * @param wantLon lon of point
+   * @param row     cell row, in [0, nrows)
+   * @param col     cell column, in [0, ncols)
+   * @return true if contained
+   */
+  public boolean contains(double wantLat, double wantLon, int row, int col) {
+    int i1 = row * (ncols + 1) + col;
+    int i2 = i1 + 1;
+    int i4 = i1 + ncols + 1;
+    int i3 = i4 + 1;
+
+    double x1 = lonEdge[i1], y1 = latEdge[i1];
+    double x2 = lonEdge[i2], y2 = latEdge[i2];
+    double x3 = lonEdge[i3], y3 = latEdge[i3];
+    double x4 = lonEdge[i4], y4 = latEdge[i4];
+
+    // must all have same determinate sign
+    boolean sign = detIsPositive(x1, y1, x2, y2, wantLon, wantLat);
+    if (sign != detIsPositive(x2, y2, x3, y3, wantLon, wantLat)) return false;
+    if (sign != detIsPositive(x3, y3, x4, y4, wantLon, wantLat)) return false;
+    if (sign != detIsPositive(x4, y4, x1, y1, wantLon, wantLat)) return false;
+    return true;
+  }
+
+  private static boolean detIsPositive(double x0, double y0, double x1, double y1, double x2, double y2) {
+    double det = (x1 * y2 - y1 * x2 - x0 * y2 + y0 * x2 + x0 * y1 - y0 * x1);
+    return det > 0;
+  }
+
+  // compute the bucket range (minRow, maxRow, minCol, maxCol) of the cell's bounding box; false if not indexed
+  private boolean cellBuckets(int row, int col, int[] bb) {
+    int i1 = row * (ncols + 1) + col;
+    int i4 = i1 + ncols + 1;
+    double lat0 = Math.min(Math.min(latEdge[i1], latEdge[i1 + 1]), Math.min(latEdge[i4], latEdge[i4 + 1]));
+    double lat1 = Math.max(Math.max(latEdge[i1], latEdge[i1 + 1]), Math.max(latEdge[i4], latEdge[i4 + 1]));
+    double lon0 = Math.min(Math.min(lonEdge[i1], lonEdge[i1 + 1]), Math.min(lonEdge[i4], lonEdge[i4 + 1]));
+    double lon1 = Math.max(Math.max(lonEdge[i1], lonEdge[i1 + 1]), Math.max(lonEdge[i4], lonEdge[i4 + 1]));
+    if (Double.isNaN(lat0) || Double.isNaN(lat1) || Double.isNaN(lon0) || Double.isNaN(lon1)) return false;
+    if (lon1 - lon0 > 180.0) return false;
+
+    bb[0] = bucketRow(lat0);
+    bb[1] = bucketRow(lat1);
+    bb[2] = bucketCol(lon0);
+    bb[3] = bucketCol(lon1);
+    return true;
+  }
+
+  private int bucketRow(double lat) {
+    int br = (int) ((lat - latMin) * latScale);
+    return Math.max(0, Math.min(br, nbrows - 1));
+  }
+
+  private int bucketCol(double lon) {
+    int bc = (int) ((lon - lonMin) * lonScale);
+    return Math.max(0, Math.min(bc, nbcols - 1));
+  }
+
+}
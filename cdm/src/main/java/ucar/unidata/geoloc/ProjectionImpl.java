@@ -35,7 +35,15 @@ package ucar.unidata.geoloc;
 import ucar.unidata.geoloc.projection.LatLonProjection;
 import ucar.unidata.util.*;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
+
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Superclass for our implementations of geoloc.Projection.
@@ -422,10 +430,14 @@ public abstract class ProjectionImpl implements Projection, java.io.Serializable
               + "from array not same length as to array");
     }
 
+    ProjectionPointImpl ppi = new ProjectionPointImpl();
+    LatLonPointImpl llpi = new LatLonPointImpl();
+
     for (int i = 0; i < from[0].length; i++) {
-      LatLonPoint endL = projToLatLon(from[0][i], from[1][i]);
-      to[0][i] = endL.getLatitude();
-      to[1][i] = endL.getLongitude();
+      ppi.setLocation(from[0][i], from[1][i]);
+      projToLatLon(ppi, llpi);
+      to[0][i] = llpi.getLatitude();
+      to[1][i] = llpi.getLongitude();
     }
 
     return to;
@@ -661,6 +673,173 @@ public abstract class ProjectionImpl implements Projection, java.io.Serializable
     return to;
   }
 
+  ///////////////////////////////////////////////////////////////////////
+  // optional parallel bulk conversion; off unless setBulkExecutor() is called
+
+  static private ExecutorService bulkExecutor;
+  static private int bulkMaxThreads = 1;            // max number of threads, including the caller, used by any one call
+  static private int bulkMinPoints = 100 * 1000;    // dont bother splitting fewer points than this
+
+  /**
+   * Allow the projToLatLonParallel() and latLonToProjParallel() methods to split their points across a shared pool.
+   * The calling thread converts pieces too, so a busy pool only slows a conversion down to the serial speed.
+   *
+   * @param exec              shared pool, or null to always convert on the calling thread (default).
+   * @param maxThreadsPerCall maximum number of threads, including the calling thread, that one conversion may use.
+   * @param minPoints         only split conversions of at least this many points.
+   */
+  static public void setBulkExecutor(ExecutorService exec, int maxThreadsPerCall, int minPoints) {
+    bulkExecutor = exec;
+    bulkMaxThreads = Math.max(1, maxThreadsPerCall);
+    bulkMinPoints = Math.max(1, minPoints);
+  }
+
+  private static boolean useBulkExecutor(Object[] from, Object[] to) {
+    if ((from == null) || (from.length != 2) || (to == null) || (to.length != 2))
+      return false; // let the serial method complain
+    int n = java.lang.reflect.Array.getLength(from[0]);
+    return (bulkExecutor != null) && (bulkMaxThreads >= 2) && (n >= bulkMinPoints) &&
+            (n == java.lang.reflect.Array.getLength(to[0]));
+  }
+
+  /**
+   * Same as projToLatLon(from, to), but large arrays may be split across the shared pool set by setBulkExecutor().
+   * The projection must not be modified while this runs.
+   *
+   * @param from array of projection coordinates: from[2][n]
+   * @param to   resulting array of lat/lon coordinates: to[2][n]
+   * @return the "to" array
+   */
+  public double[][] projToLatLonParallel(final double[][] from, final double[][] to) {
+    if (!useBulkExecutor(from, to))
+      return projToLatLon(from, to);
+
+    convertParallel(from[0].length, (start, len) -> {
+      double[][] result = projToLatLon(slice(from, start, len), new double[2][len]);
+      unslice(result, to, start, len);
+    });
+    return to;
+  }
+
+  /**
+   * Same as projToLatLon(from, to), but large arrays may be split across the shared pool set by setBulkExecutor().
+   * The projection must not be modified while this runs.
+   *
+   * @param from array of projection coordinates: from[2][n]
+   * @param to   resulting array of lat/lon coordinates: to[2][n]
+   * @return the "to" array
+   */
+  public float[][] projToLatLonParallel(final float[][] from, final float[][] to) {
+    if (!useBulkExecutor(from, to))
+      return projToLatLon(from, to);
+
+    convertParallel(from[0].length, (start, len) -> {
+      float[][] result = projToLatLon(slice(from, start, len), new float[2][len]);
+      unslice(result, to, start, len);
+    });
+    return to;
+  }
+
+  /**
+   * Same as latLonToProj(from, to, latIndex, lonIndex), but large arrays may be split across the shared pool set by
+   * setBulkExecutor(). The projection must not be modified while this runs.
+   *
+   * @param from     array of lat/lon coordinates: from[2][n]
+   * @param to       resulting array of projection coordinates: to[2][n]
+   * @param latIndex index of lat coordinate; must be 0 or 1
+   * @param lonIndex index of lon coordinate; must be 0 or 1
+   * @return the "to" array
+   */
+  public double[][] latLonToProjParallel(final double[][] from, final double[][] to, final int latIndex, final int lonIndex) {
+    if (!useBulkExecutor(from, to))
+      return latLonToProj(from, to, latIndex, lonIndex);
+
+    convertParallel(from[0].length, (start, len) -> {
+      double[][] result = latLonToProj(slice(from, start, len), new double[2][len], latIndex, lonIndex);
+      unslice(result, to, start, len);
+    });
+    return to;
+  }
+
+  /**
+   * Same as latLonToProj(from, to, latIndex, lonIndex), but large arrays may be split across the shared pool set by
+   * setBulkExecutor(). The projection must not be modified while this runs.
+   *
+   * @param from     array of lat/lon coordinates: from[2][n]
+   * @param to       resulting array of projection coordinates: to[2][n]
+   * @param latIndex index of lat coordinate; must be 0 or 1
+   * @param lonIndex index of lon coordinate; must be 0 or 1
+   * @return the "to" array
+   */
+  public float[][] latLonToProjParallel(final float[][] from, final float[][] to, final int latIndex, final int lonIndex) {
+    if (!useBulkExecutor(from, to))
+      return latLonToProj(from, to, latIndex, lonIndex);
+
+    convertParallel(from[0].length, (start, len) -> {
+      float[][] result = latLonToProj(slice(from, start, len), new float[2][len], latIndex, lonIndex);
+      unslice(result, to, start, len);
+    });
+    return to;
+  }
+
+  private interface BulkPiece {
+    void convert(int start, int len);
+  }
+
+  /*
+   * Split n points into pieces, a few per thread so uneven pieces even out. At most bulkMaxThreads-1 tasks are
+   * submitted to the shared pool; they and the calling thread take the next piece until there are none left.
+   * The pieces are converted by the serial bulk methods, which dont keep any state in the projection.
+   */
+  private static void convertParallel(final int n, final BulkPiece piece) {
+    final int pieceSize = Math.max(1024, (n + 4 * bulkMaxThreads - 1) / (4 * bulkMaxThreads));
+    final AtomicInteger next = new AtomicInteger();
+    Runnable worker = () -> {
+      int start;
+      while ((start = next.getAndAdd(pieceSize)) < n)
+        piece.convert(start, Math.min(pieceSize, n - start));
+    };
+
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      try {
+        for (int i = 0; i < bulkMaxThreads - 1; i++)
+          futures.add(bulkExecutor.submit(worker));
+      } catch (RejectedExecutionException e) {
+        // the calling thread does the rest
+      }
+      worker.run();
+
+      for (Future<?> f : futures)
+        Uninterruptibles.getUninterruptibly(f);
+
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+
+    } finally {
+      next.set(n);   // stop any tasks still running
+    }
+  }
+
+  private static double[][] slice(double[][] from, int start, int len) {
+    double[][] result = new double[2][len];
+    System.arraycopy(from[0], start, result[0], 0, len);
+    System.arraycopy(from[1], start, result[1], 0, len);
+    return result;
+  }
+
+  private static float[][] slice(float[][] from, int start, int len) {
+    float[][] result = new float[2][len];
+    System.arraycopy(from[0], start, result[0], 0, len);
+    System.arraycopy(from[1], start, result[1], 0, len);
+    return result;
+  }
+
+  private static void unslice(Object[] piece, Object[] to, int start, int len) {
+    System.arraycopy(piece[0], 0, to[0], start, len);
+    System.arraycopy(piece[1], 0, to[1], start, len);
+  }
+
   // bounding box utilities
 
   /**
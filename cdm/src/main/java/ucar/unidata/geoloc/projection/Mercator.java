@@ -352,5 +352,87 @@ public class Mercator extends ProjectionImpl {
     return result;
   }
 
+  // bulk versions of the above, without a point object per call
+
+  @Override
+  public float[][] latLonToProj(float[][] from, float[][] to, int latIndex, int lonIndex) {
+    int cnt = from[0].length;
+    float[] fromLatA = from[latIndex];
+    float[] fromLonA = from[lonIndex];
+    float[] resultXA = to[INDEX_X];
+    float[] resultYA = to[INDEX_Y];
+
+    for (int i = 0; i < cnt; i++) {
+      double fromLat = LatLonPointImpl.latNormal(fromLatA[i]);
+      double fromLon = LatLonPointImpl.lonNormal(fromLonA[i]);
+      if ((Math.abs(90.0 - Math.abs(fromLat))) < TOLERANCE) {
+        resultXA[i] = Float.POSITIVE_INFINITY;
+        resultYA[i] = Float.POSITIVE_INFINITY;
+      } else {
+        resultXA[i] = (float) (A * Math.toRadians(LatLonPointImpl.range180(fromLon - this.lon0)) + falseEasting);
+        resultYA[i] = (float) (A * SpecialMathFunction.atanh(Math.sin(Math.toRadians(fromLat))) + falseNorthing);
+      }
+    }
+    return to;
+  }
+
+  @Override
+  public float[][] projToLatLon(float[][] from, float[][] to) {
+    int cnt = from[0].length;
+    float[] fromXA = from[INDEX_X];
+    float[] fromYA = from[INDEX_Y];
+    float[] toLatA = to[INDEX_LAT];
+    float[] toLonA = to[INDEX_LON];
+
+    for (int i = 0; i < cnt; i++) {
+      double fromX = fromXA[i] - falseEasting;
+      double fromY = fromYA[i] - falseNorthing;
+      double e = Math.exp(-fromY / A);
+      toLatA[i] = (float) LatLonPointImpl.latNormal(Math.toDegrees(Math.PI / 2 - 2 * Math.atan(e)));
+      toLonA[i] = (float) LatLonPointImpl.lonNormal(Math.toDegrees(fromX / A) + lon0);
+    }
+    return to;
+  }
+
+  @Override
+  public double[][] latLonToProj(double[][] from, double[][] to, int latIndex, int lonIndex) {
+    int cnt = from[0].length;
+    double[] fromLatA = from[latIndex];
+    double[] fromLonA = from[lonIndex];
+    double[] resultXA = to[INDEX_X];
+    double[] resultYA = to[INDEX_Y];
+
+    for (int i = 0; i < cnt; i++) {
+      double fromLat = LatLonPointImpl.latNormal(fromLatA[i]);
+      double fromLon = LatLonPointImpl.lonNormal(fromLonA[i]);
+      if ((Math.abs(90.0 - Math.abs(fromLat))) < TOLERANCE) {
+        resultXA[i] = Double.POSITIVE_INFINITY;
+        resultYA[i] = Double.POSITIVE_INFINITY;
+      } else {
+        resultXA[i] = A * Math.toRadians(LatLonPointImpl.range180(fromLon - this.lon0)) + falseEasting;
+        resultYA[i] = A * SpecialMathFunction.atanh(Math.sin(Math.toRadians(fromLat))) + falseNorthing;
+      }
+    }
+    return to;
+  }
+
+  @Override
+  public double[][] projToLatLon(double[][] from, double[][] to) {
+    int cnt = from[0].length;
+    double[] fromXA = from[INDEX_X];
+    double[] fromYA = from[INDEX_Y];
+    double[] toLatA = to[INDEX_LAT];
+    double[] toLonA = to[INDEX_LON];
+
+    for (int i = 0; i < cnt; i++) {
+      double fromX = fromXA[i] - falseEasting;
+      double fromY = fromYA[i] - falseNorthing;
+      double e = Math.exp(-fromY / A);
+      toLatA[i] = LatLonPointImpl.latNormal(Math.toDegrees(Math.PI / 2 - 2 * Math.atan(e)));
+      toLonA[i] = LatLonPointImpl.lonNormal(Math.toDegrees(fromX / A) + lon0);
+    }
+    return to;
+  }
+
 }
 
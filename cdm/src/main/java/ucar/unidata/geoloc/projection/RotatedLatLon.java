@@ -210,8 +210,84 @@ public class RotatedLatLon extends ProjectionImpl {
     return destPoint;
   }
 
-  // Tor's transform algorithm renamed to rotate for clarity
+  // bulk versions, one result array per call instead of points
+
+  @Override
+  public float[][] latLonToProj(float[][] from, float[][] to, int latIndex, int lonIndex) {
+    int cnt = from[0].length;
+    float[] fromLatA = from[latIndex];
+    float[] fromLonA = from[lonIndex];
+    float[] resultXA = to[INDEX_X];
+    float[] resultYA = to[INDEX_Y];
+    double[] rlonlat = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      rotate(LatLonPointImpl.lonNormal(fromLonA[i]), LatLonPointImpl.latNormal(fromLatA[i]), lonpole, polerotate, sinDlat, rlonlat);
+      resultXA[i] = (float) rlonlat[0];
+      resultYA[i] = (float) rlonlat[1];
+    }
+    return to;
+  }
+
+  @Override
+  public float[][] projToLatLon(float[][] from, float[][] to) {
+    int cnt = from[0].length;
+    float[] fromXA = from[INDEX_X];
+    float[] fromYA = from[INDEX_Y];
+    float[] toLatA = to[INDEX_LAT];
+    float[] toLonA = to[INDEX_LON];
+    double[] rlonlat = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      rotate(fromXA[i], fromYA[i], -polerotate, -lonpole, -sinDlat, rlonlat);
+      toLatA[i] = (float) LatLonPointImpl.latNormal(rlonlat[1]);
+      toLonA[i] = (float) LatLonPointImpl.lonNormal(rlonlat[0]);
+    }
+    return to;
+  }
+
+  @Override
+  public double[][] latLonToProj(double[][] from, double[][] to, int latIndex, int lonIndex) {
+    int cnt = from[0].length;
+    double[] fromLatA = from[latIndex];
+    double[] fromLonA = from[lonIndex];
+    double[] resultXA = to[INDEX_X];
+    double[] resultYA = to[INDEX_Y];
+    double[] rlonlat = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      rotate(LatLonPointImpl.lonNormal(fromLonA[i]), LatLonPointImpl.latNormal(fromLatA[i]), lonpole, polerotate, sinDlat, rlonlat);
+      resultXA[i] = rlonlat[0];
+      resultYA[i] = rlonlat[1];
+    }
+    return to;
+  }
+
+  @Override
+  public double[][] projToLatLon(double[][] from, double[][] to) {
+    int cnt = from[0].length;
+    double[] fromXA = from[INDEX_X];
+    double[] fromYA = from[INDEX_Y];
+    double[] toLatA = to[INDEX_LAT];
+    double[] toLonA = to[INDEX_LON];
+    double[] rlonlat = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      rotate(fromXA[i], fromYA[i], -polerotate, -lonpole, -sinDlat, rlonlat);
+      toLatA[i] = LatLonPointImpl.latNormal(rlonlat[1]);
+      toLonA[i] = LatLonPointImpl.lonNormal(rlonlat[0]);
+    }
+    return to;
+  }
+
   private double[] rotate(double[] lonlat, double rot1, double rot2, double s) {
+    double[] result = new double[2];
+    rotate(lonlat[0], lonlat[1], rot1, rot2, s, result);
+    return result;
+  }
+
+  // Tor's transform algorithm renamed to rotate for clarity
+  private void rotate(double lon, double lat, double rot1, double rot2, double s, double[] result) {
 
     /* original code
       double e = DEG2RAD * (lonlat[0] - rot1); //east
@@ -230,8 +306,8 @@ public class RotatedLatLon extends ProjectionImpl {
       return new double[]{rlon, rlat};
      */
 
-    double e = Math.toRadians(lonlat[0] - rot1); //east
-    double n = Math.toRadians(lonlat[1]); //north
+    double e = Math.toRadians(lon - rot1); //east
+    double n = Math.toRadians(lat); //north
     double cn = Math.cos(n);
     double x = cn * Math.cos(e);
     double y = cn * Math.sin(e);
@@ -243,7 +319,8 @@ public class RotatedLatLon extends ProjectionImpl {
     double n2 = Math.atan2(z2, R);
     double rlon = Math.toDegrees(e2) - rot2;
     double rlat =  Math.toDegrees(n2);
-    return new double[]{rlon, rlat};
+    result[0] = rlon;
+    result[1] = rlat;
 
   }
 
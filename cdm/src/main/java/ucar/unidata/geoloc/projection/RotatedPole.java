@@ -155,30 +155,10 @@ public class RotatedPole extends ProjectionImpl {
    * rotated latitude (Y).
    */
   public ProjectionPoint latLonToProj(LatLonPoint latlon, ProjectionPointImpl destPoint) {
-    double lat = latlon.getLatitude();
-    double lon = latlon.getLongitude();
-
-    //	Lon-lat pair to xyz coordinates on sphere with radius 1
-    double[] p0 = new double[]
-            {Math.cos(lat * RAD_PER_DEG) * Math.cos(lon * RAD_PER_DEG),
-                    Math.cos(lat * RAD_PER_DEG) * Math.sin(lon * RAD_PER_DEG),
-                    Math.sin(lat * RAD_PER_DEG)};
-
-    //	Rotate around Z-axis
-    double[] p1 = new double[]
-            {rotZ[0][0] * p0[0] + rotZ[0][1] * p0[1] + rotZ[0][2] * p0[2],
-                    rotZ[1][0] * p0[0] + rotZ[1][1] * p0[1] + rotZ[1][2] * p0[2],
-                    rotZ[2][0] * p0[0] + rotZ[2][1] * p0[1] + rotZ[2][2] * p0[2]};
-
-    //	Rotate around Y-axis
-    double[] p2 = new double[]
-            {rotY[0][0] * p1[0] + rotY[0][1] * p1[1] + rotY[0][2] * p1[2],
-                    rotY[1][0] * p1[0] + rotY[1][1] * p1[1] + rotY[1][2] * p1[2],
-                    rotY[2][0] * p1[0] + rotY[2][1] * p1[1] + rotY[2][2] * p1[2]};
-
-    final double lonR = LatLonPointImpl.range180( Math.atan2(p2[1], p2[0]) * DEG_PER_RAD);
-    //final double lonR = Math.atan2(p2[1], p2[0]) * DEG_PER_RAD;
-    final double latR = Math.asin(p2[2]) * DEG_PER_RAD;
+    double[] lonlatR = new double[2];
+    rotate(latlon.getLatitude(), latlon.getLongitude(), lonlatR);
+    final double lonR = lonlatR[0];
+    final double latR = lonlatR[1];
 
     if (destPoint == null)
       destPoint =  new ProjectionPointImpl(lonR, latR);
@@ -196,40 +176,137 @@ public class RotatedPole extends ProjectionImpl {
    * longitude-latitude pair.
    */
   public LatLonPoint projToLatLon(ProjectionPoint ppt, LatLonPointImpl destPoint) {
+    double[] lonlat = new double[2];
+    unrotate(ppt.getX(), ppt.getY(), lonlat);
+    final double lon = lonlat[0];
+    final double lat = lonlat[1];
+
+    if (destPoint == null)
+      destPoint = new LatLonPointImpl(lat, lon);
+    else
+      destPoint.set(lat, lon);
+
+    if (show)
+       System.out.println("Proj= " + ppt+" latlon= " + destPoint);
+
+    return destPoint;
+  }
+
+  // real lat, lon to rotated lon, lat in result[0], result[1]
+  private void rotate(double lat, double lon, double[] result) {
+    //	Lon-lat pair to xyz coordinates on sphere with radius 1
+    double p0x = Math.cos(lat * RAD_PER_DEG) * Math.cos(lon * RAD_PER_DEG);
+    double p0y = Math.cos(lat * RAD_PER_DEG) * Math.sin(lon * RAD_PER_DEG);
+    double p0z = Math.sin(lat * RAD_PER_DEG);
+
+    //	Rotate around Z-axis
+    double p1x = rotZ[0][0] * p0x + rotZ[0][1] * p0y + rotZ[0][2] * p0z;
+    double p1y = rotZ[1][0] * p0x + rotZ[1][1] * p0y + rotZ[1][2] * p0z;
+    double p1z = rotZ[2][0] * p0x + rotZ[2][1] * p0y + rotZ[2][2] * p0z;
+
+    //	Rotate around Y-axis
+    double p2x = rotY[0][0] * p1x + rotY[0][1] * p1y + rotY[0][2] * p1z;
+    double p2y = rotY[1][0] * p1x + rotY[1][1] * p1y + rotY[1][2] * p1z;
+    double p2z = rotY[2][0] * p1x + rotY[2][1] * p1y + rotY[2][2] * p1z;
+
+    result[0] = LatLonPointImpl.range180( Math.atan2(p2y, p2x) * DEG_PER_RAD);
+    //result[0] = Math.atan2(p2y, p2x) * DEG_PER_RAD;
+    result[1] = Math.asin(p2z) * DEG_PER_RAD;
+  }
+
+  // rotated lon (x), lat (y) to real lon, lat in result[0], result[1]
+  private void unrotate(double x, double y, double[] result) {
     //	"x" and "y" input for rotated pole coords are actually a lon-lat pair
-    final double lonR = LatLonPointImpl.range180( ppt.getX()); // LOOK guessing
-    final double latR = ppt.getY();
+    final double lonR = LatLonPointImpl.range180(x); // LOOK guessing
+    final double latR = y;
 
     //	Lon-lat pair to xyz coordinates on sphere with radius 1
-    double[] p0 = new double[]
-            {Math.cos(latR * RAD_PER_DEG) * Math.cos(lonR * RAD_PER_DEG),
-                    Math.cos(latR * RAD_PER_DEG) * Math.sin(lonR * RAD_PER_DEG),
-                    Math.sin(latR * RAD_PER_DEG)};
+    double p0x = Math.cos(latR * RAD_PER_DEG) * Math.cos(lonR * RAD_PER_DEG);
+    double p0y = Math.cos(latR * RAD_PER_DEG) * Math.sin(lonR * RAD_PER_DEG);
+    double p0z = Math.sin(latR * RAD_PER_DEG);
 
     //	Inverse rotate around Y-axis (using transpose of Y matrix)
-    double[] p1 = new double[]
-            {rotY[0][0] * p0[0] + rotY[1][0] * p0[1] + rotY[2][0] * p0[2],
-                    rotY[0][1] * p0[0] + rotY[1][1] * p0[1] + rotY[2][1] * p0[2],
-                    rotY[0][2] * p0[0] + rotY[1][2] * p0[1] + rotY[2][2] * p0[2]};
+    double p1x = rotY[0][0] * p0x + rotY[1][0] * p0y + rotY[2][0] * p0z;
+    double p1y = rotY[0][1] * p0x + rotY[1][1] * p0y + rotY[2][1] * p0z;
+    double p1z = rotY[0][2] * p0x + rotY[1][2] * p0y + rotY[2][2] * p0z;
 
     //	Inverse rotate around Z-axis (using transpose of Z matrix)
-    double[] p2 = new double[]
-            {rotZ[0][0] * p1[0] + rotZ[1][0] * p1[1] + rotZ[2][0] * p1[2],
-                    rotZ[0][1] * p1[0] + rotZ[1][1] * p1[1] + rotZ[2][1] * p1[2],
-                    rotZ[0][2] * p1[0] + rotZ[1][2] * p1[1] + rotZ[2][2] * p1[2]};
+    double p2x = rotZ[0][0] * p1x + rotZ[1][0] * p1y + rotZ[2][0] * p1z;
+    double p2y = rotZ[0][1] * p1x + rotZ[1][1] * p1y + rotZ[2][1] * p1z;
+    double p2z = rotZ[0][2] * p1x + rotZ[1][2] * p1y + rotZ[2][2] * p1z;
 
-    final double lon = Math.atan2(p2[1], p2[0]) * DEG_PER_RAD;
-    final double lat = Math.asin(p2[2]) * DEG_PER_RAD;
+    result[0] = Math.atan2(p2y, p2x) * DEG_PER_RAD;
+    result[1] = Math.asin(p2z) * DEG_PER_RAD;
+  }
 
-    if (destPoint == null)
-      destPoint = new LatLonPointImpl(lat, lon);
-    else
-      destPoint.set(lat, lon);
+  // bulk versions, one result array per call instead of points
 
-    if (show)
-       System.out.println("Proj= " + ppt+" latlon= " + destPoint);
+  @Override
+  public float[][] latLonToProj(float[][] from, float[][] to, int latIndex, int lonIndex) {
+    int cnt = from[0].length;
+    float[] fromLatA = from[latIndex];
+    float[] fromLonA = from[lonIndex];
+    float[] resultXA = to[INDEX_X];
+    float[] resultYA = to[INDEX_Y];
+    double[] lonlatR = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      rotate(LatLonPointImpl.latNormal(fromLatA[i]), LatLonPointImpl.lonNormal(fromLonA[i]), lonlatR);
+      resultXA[i] = (float) lonlatR[0];
+      resultYA[i] = (float) lonlatR[1];
+    }
+    return to;
+  }
 
-    return destPoint;
+  @Override
+  public float[][] projToLatLon(float[][] from, float[][] to) {
+    int cnt = from[0].length;
+    float[] fromXA = from[INDEX_X];
+    float[] fromYA = from[INDEX_Y];
+    float[] toLatA = to[INDEX_LAT];
+    float[] toLonA = to[INDEX_LON];
+    double[] lonlat = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      unrotate(fromXA[i], fromYA[i], lonlat);
+      toLatA[i] = (float) LatLonPointImpl.latNormal(lonlat[1]);
+      toLonA[i] = (float) LatLonPointImpl.lonNormal(lonlat[0]);
+    }
+    return to;
+  }
+
+  @Override
+  public double[][] latLonToProj(double[][] from, double[][] to, int latIndex, int lonIndex) {
+    int cnt = from[0].length;
+    double[] fromLatA = from[latIndex];
+    double[] fromLonA = from[lonIndex];
+    double[] resultXA = to[INDEX_X];
+    double[] resultYA = to[INDEX_Y];
+    double[] lonlatR = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      rotate(LatLonPointImpl.latNormal(fromLatA[i]), LatLonPointImpl.lonNormal(fromLonA[i]), lonlatR);
+      resultXA[i] = lonlatR[0];
+      resultYA[i] = lonlatR[1];
+    }
+    return to;
+  }
+
+  @Override
+  public double[][] projToLatLon(double[][] from, double[][] to) {
+    int cnt = from[0].length;
+    double[] fromXA = from[INDEX_X];
+    double[] fromYA = from[INDEX_Y];
+    double[] toLatA = to[INDEX_LAT];
+    double[] toLonA = to[INDEX_LON];
+    double[] lonlat = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      unrotate(fromXA[i], fromYA[i], lonlat);
+      toLatA[i] = LatLonPointImpl.latNormal(lonlat[1]);
+      toLonA[i] = LatLonPointImpl.lonNormal(lonlat[0]);
+    }
+    return to;
   }
 
   public boolean crossSeam(ProjectionPoint pt1, ProjectionPoint pt2) {
@@ -177,6 +177,15 @@ public class GEOSTransform {
    * @return (lamda, theta) units: radian. This is the (x,y) or (East-West, North_South) view angle.
    */
   public double[] earthToSat(double geographic_lon, double geographic_lat) {
+    double[] result = new double[2];
+    earthToSat(geographic_lon, geographic_lat, result);
+    return result;
+  }
+
+  /**
+   * Same as earthToSat(geographic_lon, geographic_lat), putting (lamda, theta) into result[0], result[1].
+   */
+  public void earthToSat(double geographic_lon, double geographic_lat, double[] result) {
 
     geographic_lat = geographic_lat * DEG_TO_RAD;
     geographic_lon = geographic_lon * DEG_TO_RAD;
@@ -190,7 +199,9 @@ public class GEOSTransform {
     double r_3 = r_earth * Math.sin(geocentric_lat);
 
     if (r_1 > h) { // often two geoid intersect points, use the closer one.
-      return new double[]{Double.NaN, Double.NaN};
+      result[0] = Double.NaN;
+      result[1] = Double.NaN;
+      return;
     }
 
     double lamda_sat = Double.NaN;
@@ -204,7 +215,8 @@ public class GEOSTransform {
       theta_sat = Math.atan(r_3 / r_1);
     }
 
-    return new double[]{lamda_sat, theta_sat};
+    result[0] = lamda_sat;
+    result[1] = theta_sat;
   }
 
   /**
@@ -216,18 +228,30 @@ public class GEOSTransform {
    * @return (Longitude, Latitude), units degrees
    */
   public double[] satToEarth(double x, double y) {
+    double[] result = new double[2];
+    satToEarth(x, y, result);
+    return result;
+  }
+
+  /**
+   * Same as satToEarth(x, y), putting (Longitude, Latitude) into result[0], result[1].
+   */
+  public void satToEarth(double x, double y, double[] result) {
 
-    if (scan_geom.equals(GOES)) { // convert from GOES to GEOS for transfrom below
-      double[] lambda_theta_geos = GOES_to_GEOS(x, y);
-      x = lambda_theta_geos[0];
-      y = lambda_theta_geos[1];
+    if (scan_geom.equals(GOES)) { // convert from GOES to GEOS for transfrom below, same as GOES_to_GEOS()
+      double theta_geos = Math.asin(Math.sin(y) * Math.cos(x));
+      double lamda_geos = Math.atan(Math.tan(x) / Math.cos(y));
+      x = lamda_geos;
+      y = theta_geos;
     }
 
     double c1 = (h * Math.cos(x) * Math.cos(y)) * (h * Math.cos(x) * Math.cos(y));
     double c2 = (Math.cos(y) * Math.cos(y) + fp * Math.sin(y) * Math.sin(y)) * d;
 
     if (c1 < c2) {
-      return new double[]{Double.NaN, Double.NaN};
+      result[0] = Double.NaN;
+      result[1] = Double.NaN;
+      return;
     }
 
     double s_d = Math.sqrt(c1 - c2);
@@ -250,7 +274,8 @@ public class GEOSTransform {
     if (lonDegrees < -180.0) lonDegrees += 360.0;
     if (lonDegrees > 180.0) lonDegrees -= 360.0;
 
-    return new double[]{lonDegrees, latDegrees};
+    result[0] = lonDegrees;
+    result[1] = latDegrees;
   }
 
   /**
@@ -181,6 +181,76 @@ public class Geostationary extends ProjectionImpl {
     return destPoint;
   }
 
+  // bulk versions, one result array per call instead of points
+
+  @Override
+  public float[][] latLonToProj(float[][] from, float[][] to, int latIndex, int lonIndex) {
+    int cnt = from[0].length;
+    float[] fromLatA = from[latIndex];
+    float[] fromLonA = from[lonIndex];
+    float[] resultXA = to[INDEX_X];
+    float[] resultYA = to[INDEX_Y];
+    double[] satCoords = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      navigation.earthToSat(LatLonPointImpl.lonNormal(fromLonA[i]), LatLonPointImpl.latNormal(fromLatA[i]), satCoords);
+      resultXA[i] = (float) satCoords[0];
+      resultYA[i] = (float) satCoords[1];
+    }
+    return to;
+  }
+
+  @Override
+  public float[][] projToLatLon(float[][] from, float[][] to) {
+    int cnt = from[0].length;
+    float[] fromXA = from[INDEX_X];
+    float[] fromYA = from[INDEX_Y];
+    float[] toLatA = to[INDEX_LAT];
+    float[] toLonA = to[INDEX_LON];
+    double[] lonlat = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      navigation.satToEarth(fromXA[i], fromYA[i], lonlat);
+      toLatA[i] = (float) LatLonPointImpl.latNormal(lonlat[1]);
+      toLonA[i] = (float) LatLonPointImpl.lonNormal(lonlat[0]);
+    }
+    return to;
+  }
+
+  @Override
+  public double[][] latLonToProj(double[][] from, double[][] to, int latIndex, int lonIndex) {
+    int cnt = from[0].length;
+    double[] fromLatA = from[latIndex];
+    double[] fromLonA = from[lonIndex];
+    double[] resultXA = to[INDEX_X];
+    double[] resultYA = to[INDEX_Y];
+    double[] satCoords = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      navigation.earthToSat(LatLonPointImpl.lonNormal(fromLonA[i]), LatLonPointImpl.latNormal(fromLatA[i]), satCoords);
+      resultXA[i] = satCoords[0];
+      resultYA[i] = satCoords[1];
+    }
+    return to;
+  }
+
+  @Override
+  public double[][] projToLatLon(double[][] from, double[][] to) {
+    int cnt = from[0].length;
+    double[] fromXA = from[INDEX_X];
+    double[] fromYA = from[INDEX_Y];
+    double[] toLatA = to[INDEX_LAT];
+    double[] toLonA = to[INDEX_LON];
+    double[] lonlat = new double[2];
+
+    for (int i = 0; i < cnt; i++) {
+      navigation.satToEarth(fromXA[i], fromYA[i], lonlat);
+      toLatA[i] = LatLonPointImpl.latNormal(lonlat[1]);
+      toLonA[i] = LatLonPointImpl.lonNormal(lonlat[0]);
+    }
+    return to;
+  }
+
   @Override
   public boolean crossSeam(ProjectionPoint pt1, ProjectionPoint pt2) {
     // either point is infinite
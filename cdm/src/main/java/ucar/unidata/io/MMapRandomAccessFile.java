@@ -32,94 +32,322 @@
  */
 package ucar.unidata.io;
 
-import java.io.*;
-import java.nio.channels.FileChannel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
 
 /**
- * Use NIO MappedByteBuffer to implement a RandomAccessFile.
- * Limited to 2G size. Not currently used - NOT UP TO DATE DO NOT USE
+ * Read-only RandomAccessFile that reads from memory mapped segments of the file, instead of through the read buffer.
+ * Files of any size are mapped as a series of segments, and the mapping of a file is shared by all
+ * MMapRandomAccessFile objects open on it, eg the multiple copies of a file held by the FileCache.
+ * <p>
+ * Which files use it is controlled by setPolicy(), or by the system properties
+ * "ucar.unidata.io.mmap.locations" and "ucar.unidata.io.mmap.iosps" (comma separated lists).
+ *
  * @author john
  */
 public class MMapRandomAccessFile extends RandomAccessFile {
+  static int segmentShift = 30; // 1 Gbyte segments; change only for testing
+
+  ///////////////////////////////////////////////////////////////////////
+  // which files get mapped
+
+  static private volatile List<String> locationPrefixes = Collections.emptyList();
+  static private volatile Set<String> iospNames = Collections.emptySet();
+
+  static {
+    setPolicy(split(System.getProperty("ucar.unidata.io.mmap.locations")), split(System.getProperty("ucar.unidata.io.mmap.iosps")));
+  }
+
+  /**
+   * @param list comma separated list, may be null
+   * @return the list as a List, empty if null
+   */
+  static public List<String> split(String list) {
+    return (list == null) ? Collections.<String>emptyList() : Arrays.asList(list.split(","));
+  }
+
+  /**
+   * Choose which files are memory mapped. Only local files opened read-only are mapped.
+   *
+   * @param locations map files whose location starts with one of these, eg the directory of a dataset root; may be null
+   * @param iosps     map files opened by one of these IOSPs, eg "N3iosp" or "ucar.nc2.iosp.hdf5.H5iosp"; may be null
+   */
+  static public void setPolicy(Collection<String> locations, Collection<String> iosps) {
+    List<String> prefixes = new ArrayList<>();
+    if (locations != null) {
+      for (String loc : locations)
+        if (loc.trim().length() > 0) prefixes.add(canonicalize(loc.trim()));
+    }
+    Set<String> names = new HashSet<>();
+    if (iosps != null) {
+      for (String name : iosps)
+        if (name.trim().length() > 0) names.add(name.trim());
+    }
+    locationPrefixes = Collections.unmodifiableList(prefixes);
+    iospNames = Collections.unmodifiableSet(names);
+  }
+
+  /**
+   * @param location file location
+   * @return true if this file should be memory mapped
+   */
+  static public boolean useFor(String location) {
+    if (locationPrefixes.isEmpty()) return false;
+    String loc = canonicalize(location);
+    for (String prefix : locationPrefixes) {
+      if (loc.startsWith(prefix)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * @param iospClass class of the IOSP that will read the file
+   * @return true if files read by this IOSP, or by a superclass of it (eg N3raf is an N3iosp), should be memory mapped
+   */
+  static public boolean useForIosp(Class iospClass) {
+    if (iospNames.isEmpty()) return false;
+    for (Class c = iospClass; c != null; c = c.getSuperclass()) {
+      if (iospNames.contains(c.getName()) || iospNames.contains(c.getSimpleName())) return true;
+    }
+    return false;
+  }
+
+  static private String canonicalize(String location) {
+    return location.replace('\\', '/');
+  }
+
+  ///////////////////////////////////////////////////////////////////////
+  // shared mappings, one for each file
+
+  static private final Map<String, Mapping> mappings = new HashMap<>();
+
+  static private class Mapping {
+    final String path;
+    final long length, lastModified;
+    final int shift;
+    final MappedByteBuffer[] segments;
+    int refCount;
+
+    Mapping(String path, long length, long lastModified, FileChannel channel) throws IOException {
+      this.path = path;
+      this.length = length;
+      this.lastModified = lastModified;
+      this.shift = segmentShift;
+      long segSize = 1L << shift;
+      int nsegs = (int) ((length + segSize - 1) >>> shift);
+      this.segments = new MappedByteBuffer[nsegs];
+      for (int i = 0; i < nsegs; i++) {
+        long start = i * segSize;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segSize, length - start));
+      }
+    }
+  }
+
+  // reuse the mapping if the file hasnt changed, otherwise make a new one
+  static private Mapping acquireMapping(File file, FileChannel channel) throws IOException {
+    String path = file.getCanonicalPath();
+    long length = channel.size();
+    long lastModified = file.lastModified();
 
-  private MappedByteBuffer source;
+    synchronized (mappings) {
+      Mapping m = mappings.get(path);
+      if (m == null || m.length != length || m.lastModified != lastModified || m.shift != segmentShift) {
+        m = new Mapping(path, length, lastModified, channel);
+        mappings.put(path, m); // an older mapping is dropped when its last user closes
+      }
+      m.refCount++;
+      return m;
+    }
+  }
+
+  static private void releaseMapping(Mapping m) {
+    synchronized (mappings) {
+      m.refCount--;
+      if (m.refCount <= 0 && mappings.get(m.path) == m)
+        mappings.remove(m.path);
+    }
+  }
+
+  /**
+   * @return number of files currently mapped
+   */
+  static public int getMappedFileCount() {
+    synchronized (mappings) {
+      return mappings.size();
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////
+
+  private Mapping mapping;
+  private ByteBuffer[] segments; // our own views of the shared segments, so position is not shared
+  private final long dataLength;
+  private final long segmentMask;
 
   /**
-    * Constructor for in-memory "files"
-    * @param location used as a name
-    * @param mode the open mode
-    * @throws java.io.IOException on error
-    */
+   * Open a file and map it into memory.
+   *
+   * @param location location of the file
+   * @param mode     must be "r"
+   * @throws java.io.IOException on error
+   */
   public MMapRandomAccessFile(String location, String mode) throws IOException {
-    super(location, mode, 1);
-    FileChannel channel = file.getChannel();
-    source = channel.map( readonly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, (long) 0, channel.size());
-    //channel.close();
+    super(location, checkReadOnly(location, mode), defaultBufferSize);
 
-    bufferStart = 0;
-	  dataSize = (int) channel.size();
-	  dataEnd = channel.size();
-    filePosition = 0;
-    buffer = null;
-    endOfFile = false;
+    try {
+      mapping = acquireMapping(new File(location), file.getChannel());
+    } catch (IOException ioe) {
+      file.close();
+      throw ioe;
+    }
+    dataLength = mapping.length;
+    segmentMask = (1L << mapping.shift) - 1;
+    segments = new ByteBuffer[mapping.segments.length];
+    for (int i = 0; i < segments.length; i++)
+      segments[i] = mapping.segments[i].duplicate();
   }
 
+  static private String checkReadOnly(String location, String mode) {
+    if (!mode.equals("r"))
+      throw new IllegalArgumentException("MMapRandomAccessFile is read only: " + location);
+    return mode;
+  }
 
-  public void flush() throws IOException {
-    if (bufferModified) {
-      source.force();
-      bufferModified = false;
+  @Override
+  public synchronized void close() throws IOException {
+    super.close();
+    if (file == null && mapping != null) { // really closed, not just released to the cache
+      releaseMapping(mapping);
+      mapping = null;
+      segments = null;
     }
   }
 
-  public long length( ) {
-    return dataEnd;
+  @Override
+  public long length() {
+    return dataLength;
   }
 
-  public void seek( long pos ) {
-    filePosition = pos;
-    if( filePosition < dataEnd )
-      source.position((int) filePosition);
-    else
-      endOfFile = true;
+  @Override
+  public boolean isAtEndOfFile() {
+    return filePosition >= dataLength;
   }
 
-   public void unread( ) {
-     seek( filePosition-1);
-   }
+  // read() and readBytes() dont use the read buffer, so just set the position
+  @Override
+  public void seek(long pos) throws IOException {
+    if (pos < 0)
+      throw new java.io.IOException("Negative seek offset");
+    filePosition = pos;
+  }
 
+  @Override
   public int read() throws IOException {
-    // If the file position is within the data, return the byte...
-    if( filePosition < dataEnd ) {
-      filePosition++;
-      return source.get() & 0xff;
+    if (filePosition >= dataLength) return -1;
+    ByteBuffer seg = segments[(int) (filePosition >>> mapping.shift)];
+    int b = seg.get((int) (filePosition & segmentMask)) & 0xff;
+    filePosition++;
+    return b;
+  }
+
+  @Override
+  protected int readBytes(byte b[], int off, int len) throws IOException {
+    if (len == 0) return 0;
+    int n = read_(filePosition, b, off, len);
+    if (n > 0) filePosition += n;
+    return n;
+  }
 
-    } else {
-       return -1;
+  // copy directly from the mapped segments; used by readBytes, and by the read buffer for searchForward
+  @Override
+  protected int read_(long pos, byte[] b, int offset, int len) throws IOException {
+    if (pos >= dataLength) return -1;
+    int total = 0;
+    while (len > 0 && pos < dataLength) {
+      ByteBuffer seg = segments[(int) (pos >>> mapping.shift)];
+      int segPos = (int) (pos & segmentMask);
+      int n = Math.min(len, seg.limit() - segPos);
+      seg.position(segPos);
+      seg.get(b, offset, n);
+      total += n;
+      pos += n;
+      offset += n;
+      len -= n;
     }
+    return total;
+  }
+
+  /*
+   * Position our view of the segment at the file pointer and advance the file pointer, if the next nbytes are all
+   * in one segment. Otherwise return null, and the caller reads a byte at a time.
+   */
+  private ByteBuffer view(long nbytes) {
+    if (filePosition + nbytes > dataLength) return null;
+    ByteBuffer seg = segments[(int) (filePosition >>> mapping.shift)];
+    int segPos = (int) (filePosition & segmentMask);
+    if (segPos + nbytes > seg.limit()) return null;
+    seg.position(segPos);
+    seg.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    filePosition += nbytes;
+    return seg;
+  }
+
+  // bulk conversion straight from the mapped file, instead of assembling each value from bytes
+
+  @Override
+  public void readShort(short[] pa, int start, int n) throws IOException {
+    ByteBuffer bb = view(2L * n);
+    if (bb == null) super.readShort(pa, start, n);
+    else bb.asShortBuffer().get(pa, start, n);
   }
 
-   protected int readBytes( byte dst[], int offset, int length ) throws IOException {
-     if( endOfFile ) return -1;
+  @Override
+  public void readInt(int[] pa, int start, int n) throws IOException {
+    ByteBuffer bb = view(4L * n);
+    if (bb == null) super.readInt(pa, start, n);
+    else bb.asIntBuffer().get(pa, start, n);
+  }
+
+  @Override
+  public void readLong(long[] pa, int start, int n) throws IOException {
+    ByteBuffer bb = view(8L * n);
+    if (bb == null) super.readLong(pa, start, n);
+    else bb.asLongBuffer().get(pa, start, n);
+  }
+
+  @Override
+  public void readFloat(float[] pa, int start, int n) throws IOException {
+    ByteBuffer bb = view(4L * n);
+    if (bb == null) super.readFloat(pa, start, n);
+    else bb.asFloatBuffer().get(pa, start, n);
+  }
+
+  @Override
+  public void readDouble(double[] pa, int start, int n) throws IOException {
+    ByteBuffer bb = view(8L * n);
+    if (bb == null) super.readDouble(pa, start, n);
+    else bb.asDoubleBuffer().get(pa, start, n);
+  }
 
-     length = (int) Math.min( length, dataEnd - filePosition);
-     if (length > 0) {
-       source.get(dst, offset, length);
-       filePosition += length;
-     }
-     return length;
-   }
+  @Override
+  public boolean searchForward(KMPMatch match, int maxBytes) throws IOException {
+    readBuffer(filePosition); // the search works on the read buffer
+    return super.searchForward(match, maxBytes);
+  }
 
-  public void write( int b ) throws IOException {
-     source.put( (byte)b);
-     filePosition++;
-     bufferModified = true;
+  @Override
+  public void write(int b) throws IOException {
+    throw new IOException("MMapRandomAccessFile is read only: " + location);
   }
 
-  public void writeBytes( byte dst[], int offset, int length ) throws IOException {
-    source.put(dst, offset, length);
-    filePosition += length;
+  @Override
+  public void writeBytes(byte b[], int off, int len) throws IOException {
+    throw new IOException("MMapRandomAccessFile is read only: " + location);
   }
 
-}
\ No newline at end of file
+}
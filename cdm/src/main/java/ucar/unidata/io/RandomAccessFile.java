@@ -85,6 +85,37 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
 
   static protected final int defaultBufferSize = 8092;  // The default buffer size, in bytes.
 
+  ///////////////////////////////////////////////////////////////////////
+  // read-ahead and how reads are done
+
+  static private volatile int maxBufferSize = 128 * 1024;
+  static private volatile boolean positionalRead = false;
+
+  /**
+   * When a read-only file is read sequentially, its buffer is doubled on each refill, up to this size.
+   * It goes back to the original size as soon as the reads are not sequential, and when the file is released to the cache.
+   *
+   * @param size maximum buffer size in bytes; if not bigger than the buffer size the file was opened with, the buffer never grows.
+   */
+  static public void setMaxBufferSize(int size) {
+    maxBufferSize = size;
+  }
+
+  static public int getMaxBufferSize() {
+    return maxBufferSize;
+  }
+
+  /**
+   * Read from disk with positional reads on the FileChannel, instead of seek() and read() on the
+   * java.io.RandomAccessFile. This avoids one system call per read, and does not use the shared file pointer.
+   * Note that if a thread is interrupted while reading, the channel is closed; the file is then reopened.
+   *
+   * @param b use positional reads; default false
+   */
+  static public void setPositionalRead(boolean b) {
+    positionalRead = b;
+  }
+
   ///////////////////////////////////////////////////////////////////////
   // debug leaks - keep track of open files
   static protected boolean debugLeaks = false;
@@ -191,7 +222,8 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
   static private final ucar.nc2.util.cache.FileFactory factory = new FileFactory() {
     public FileCacheable open(DatasetUrl durl, int buffer_size, CancelTask cancelTask, Object iospMessage) throws IOException {
       String location = StringUtil2.replace(durl.trueurl, "\\", "/"); // canonicalize the name
-      RandomAccessFile result = new RandomAccessFile(location, "r", buffer_size);
+      RandomAccessFile result = MMapRandomAccessFile.useFor(location) ? new MMapRandomAccessFile(location, "r") :
+              new RandomAccessFile(location, "r", buffer_size);
       result.cacheState = 1;  // in use
       return result;
     }
@@ -215,14 +247,14 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
 
   static public RandomAccessFile acquire(String location) throws IOException {
     if (cache == null)
-      return new RandomAccessFile(location, "r");
+      return MMapRandomAccessFile.useFor(location) ? new MMapRandomAccessFile(location, "r") : new RandomAccessFile(location, "r");
     else
       return (RandomAccessFile) cache.acquire(factory, new DatasetUrl(null, location));
   }
 
   static public RandomAccessFile acquire(String location, int buffer_size) throws IOException {
     if (cache == null)
-      return new RandomAccessFile(location, "r", buffer_size);
+      return MMapRandomAccessFile.useFor(location) ? new MMapRandomAccessFile(location, "r") : new RandomAccessFile(location, "r", buffer_size);
     else
       return (RandomAccessFile) cache.acquire(factory, location, new DatasetUrl(null, location), buffer_size, null, null);
   }
@@ -249,6 +281,16 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
   protected java.io.RandomAccessFile file;
   protected java.nio.channels.FileChannel fileChannel;
 
+  // access pattern, for read-ahead
+  private boolean adaptive;        // may grow the buffer; only read-only local files
+  private int initialBufferSize;   // the size the file was opened with
+  private int readSize;            // how much to read into the buffer, <= buffer.length
+  private int sequentialRefills;   // number of buffer refills in a row that continued the previous read
+  private long lastReadEnd = -1;   // file position after the last read from disk
+
+  // per-file counters
+  private long nreads, nbytes, nseeks;
+
   /**
    * The offset in bytes from the file start, of the next read or
    * write operation.
@@ -364,6 +406,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     }
 
     this.readonly = mode.equals("r");
+    this.adaptive = readonly;
     init(bufferSize);
 
     if (debugLeaks) {
@@ -395,6 +438,9 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     filePosition = 0;
     buffer = new byte[bufferSize];
     endOfFile = false;
+    initialBufferSize = bufferSize;
+    readSize = bufferSize;
+    sequentialRefills = 0;
   }
 
   /**
@@ -461,6 +507,29 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
   @Override
   public void release() {  // one to one with java.io.RandomAccessFile
     cacheState = 2;
+    if (adaptive && buffer.length > initialBufferSize && !bufferModified)
+      shrinkBuffer(); // dont keep a big buffer while sitting in the cache
+  }
+
+  /*
+   * Go back to a buffer of the original size, keeping the file position and as much of the buffered data
+   * after it as fits, so the file reads the same after it is reacquired.
+   */
+  private void shrinkBuffer() {
+    byte[] smaller = new byte[initialBufferSize];
+    int keep = 0;
+    if ((filePosition >= bufferStart) && (filePosition < dataEnd)) {
+      keep = (int) Math.min(dataEnd - filePosition, initialBufferSize);
+      System.arraycopy(buffer, (int) (filePosition - bufferStart), smaller, 0, keep);
+    }
+    if (filePosition + keep < dataEnd)
+      endOfFile = false; // dropped data, so not at the end
+    buffer = smaller;
+    bufferStart = filePosition;
+    dataSize = keep;
+    dataEnd = bufferStart + keep;
+    readSize = initialBufferSize;
+    sequentialRefills = 0;
   }
 
   @Override
@@ -515,10 +584,13 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
       flush();
     }
 
+    if (adaptive)
+      adaptReadSize(pos);
+
     bufferStart = pos;
     filePosition = pos;
 
-    dataSize = read_(pos, buffer, 0, buffer.length);
+    dataSize = readRaw(pos, buffer, 0, adaptive ? readSize : buffer.length);
 
     if (dataSize <= 0) {
       dataSize = 0;
@@ -531,6 +603,64 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     dataEnd = bufferStart + dataSize;
   }
 
+  /*
+   * Grow the buffer while the file is read sequentially, go back to the original size on random access.
+   * A refill counts as sequential if it starts a little before the end of the last read (searchForward() keeps
+   * the tail of the old buffer), or skips forward less than a buffer's worth (eg the records of a netcdf-3 record variable).
+   */
+  private void adaptReadSize(long pos) {
+    if (lastReadEnd >= 0 && pos >= lastReadEnd - 256 && pos <= lastReadEnd + readSize) {
+      sequentialRefills++;
+      if (sequentialRefills >= 2 && readSize < maxBufferSize) {
+        readSize = Math.min(2 * readSize, maxBufferSize);
+        if (readSize > buffer.length)
+          buffer = new byte[readSize];
+      }
+    } else {
+      sequentialRefills = 0;
+      readSize = Math.min(initialBufferSize, buffer.length);
+    }
+  }
+
+  // all reads from disk go through here, so they can be counted
+  private int readRaw(long pos, byte[] b, int offset, int len) throws IOException {
+    if (pos != lastReadEnd) nseeks++;
+    int n = read_(pos, b, offset, len);
+    nreads++;
+    if (n > 0) {
+      nbytes += n;
+      lastReadEnd = pos + n;
+    }
+    return n;
+  }
+
+  /**
+   * @return number of reads from disk since the file was opened, or the counters were reset.
+   */
+  public long getReadCount() {
+    return nreads;
+  }
+
+  /**
+   * @return number of bytes read from disk since the file was opened, or the counters were reset.
+   */
+  public long getBytesRead() {
+    return nbytes;
+  }
+
+  /**
+   * @return number of reads from disk that did not continue where the previous one ended.
+   */
+  public long getSeekCount() {
+    return nseeks;
+  }
+
+  public void resetCounters() {
+    nreads = 0;
+    nbytes = 0;
+    nseeks = 0;
+  }
+
   /**
    * Returns the current position in the file, where the next read or
    * write will occur.
@@ -691,8 +821,8 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
 
       // If the amount remaining is more than a buffer's length, read it
       // directly from the file.
-      if (extraCopy > buffer.length) {
-        extraCopy = read_(filePosition, b, off + copyLength, len - copyLength);
+      if (extraCopy > (adaptive ? readSize : buffer.length)) {
+        extraCopy = readRaw(filePosition, b, off + copyLength, len - copyLength);
 
         // ...or read a new buffer full, and copy as much as possible...
       } else {
@@ -758,8 +888,13 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @throws IOException on io error
    */
   protected int read_(long pos, byte[] b, int offset, int len) throws IOException {
-    file.seek(pos);
-    int n = file.read(b, offset, len);
+    int n;
+    if (positionalRead) {
+      n = readChannel(pos, b, offset, len);
+    } else {
+      file.seek(pos);
+      n = file.read(b, offset, len);
+    }
     if (debugAccess) {
       if (showRead)
         System.out.println(" **read_ " + location + " = " + len + " bytes at " + pos + "; block = " + (pos / buffer.length));
@@ -774,6 +909,27 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     return n;
   }
 
+  // positional read, does not use or change the file pointer
+  private int readChannel(long pos, byte[] b, int offset, int len) throws IOException {
+    if (fileChannel == null)
+      fileChannel = file.getChannel();
+
+    java.nio.ByteBuffer bb = java.nio.ByteBuffer.wrap(b, offset, len);
+    try {
+      while (bb.hasRemaining()) {
+        int n = fileChannel.read(bb, pos + bb.position() - offset);
+        if (n < 0) break;
+      }
+    } catch (java.nio.channels.ClosedByInterruptException e) {
+      // the interrupt closed the file, reopen it so that this object can still be used
+      file = new java.io.RandomAccessFile(location, readonly ? "r" : "rw");
+      fileChannel = null;
+      throw new InterruptedIOException("RandomAccessFile read interrupted " + location);
+    }
+    int count = bb.position() - offset;
+    return (count == 0 && len > 0) ? -1 : count;
+  }
+
   /**
    * Read up to <code>len</code> bytes into an array, at a specified
    * offset. This will block until at least one byte has been read.
@@ -1131,7 +1287,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n     read this many elements
    * @throws IOException on read error
    */
-  public final void readShort(short[] pa, int start, int n) throws IOException {
+  public void readShort(short[] pa, int start, int n) throws IOException {
     for (int i = 0; i < n; i++) {
       pa[start + i] = readShort();
     }
@@ -1259,7 +1415,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    */
   public final int readIntUnbuffered(long pos) throws IOException {
     byte[] bb = new byte[4];
-    read_(pos, bb, 0, 4);
+    readRaw(pos, bb, 0, 4);
     int ch1 = bb[0] & 0xff;
     int ch2 = bb[1] & 0xff;
     int ch3 = bb[2] & 0xff;
@@ -1284,7 +1440,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n     read this many elements
    * @throws IOException on read error
    */
-  public final void readInt(int[] pa, int start, int n) throws IOException {
+  public void readInt(int[] pa, int start, int n) throws IOException {
     for (int i = 0; i < n; i++) {
       pa[start + i] = readInt();
     }
@@ -1350,7 +1506,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n     read this many elements
    * @throws IOException on read error
    */
-  public final void readLong(long[] pa, int start, int n) throws IOException {
+  public void readLong(long[] pa, int start, int n) throws IOException {
     for (int i = 0; i < n; i++) {
       pa[start + i] = readLong();
     }
@@ -1387,7 +1543,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n     read this many elements
    * @throws IOException on read error
    */
-  public final void readFloat(float[] pa, int start, int n) throws IOException {
+  public void readFloat(float[] pa, int start, int n) throws IOException {
     for (int i = 0; i < n; i++) {
       pa[start + i] = Float.intBitsToFloat(readInt());
     }
@@ -1424,7 +1580,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n     read this many elements
    * @throws IOException on read error
    */
-  public final void readDouble(double[] pa, int start, int n) throws IOException {
+  public void readDouble(double[] pa, int start, int n) throws IOException {
     for (int i = 0; i < n; i++) {
       pa[start + i] = Double.longBitsToDouble(readLong());
     }
@@ -1890,7 +2046,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     while (needToScan > matchLen) {
       readBuffer(dataEnd - matchLen); // force new buffer
 
-      scanBytes = (int) Math.min(buffer.length, needToScan);
+      scanBytes = (int) Math.min(dataSize, needToScan);
       pos = match.indexOf(buffer, 0, scanBytes);
       if (pos > 0) {
         seek(bufferStart + pos);
@@ -0,0 +1,157 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.ma2;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compare IndexCopy with copying through IndexIterators, for sections, slices and other views.
+ */
+public class TestIndexCopy {
+  private static final DataType[] types = {DataType.BOOLEAN, DataType.BYTE, DataType.CHAR, DataType.SHORT, DataType.INT,
+          DataType.LONG, DataType.FLOAT, DataType.DOUBLE};
+
+  @Test
+  public void testViews() throws InvalidRangeException {
+    for (DataType dt : types) {
+      Array a = makeArray(dt, new int[]{7, 11, 19});
+      Assert.assertTrue(compare(a));
+      Assert.assertTrue(compare(a.section(new int[]{2, 3, 0}, new int[]{4, 5, 19})));
+      Assert.assertTrue(compare(a.section(new int[]{1, 0, 4}, new int[]{3, 11, 9})));
+      Assert.assertTrue(compare(a.sectionNoReduce(new int[]{0, 5, 0}, new int[]{7, 1, 19}, null)));
+      Assert.assertTrue(compare(a.sectionNoReduce(new int[]{0, 1, 2}, new int[]{4, 5, 10}, new int[]{2, 2, 1})));
+      Assert.assertTrue(compare(a.slice(1, 4)));
+      Assert.assertTrue(compare(a.slice(0, 6).slice(0, 10)));
+      Assert.assertTrue(compare(a.section(new int[]{3, 4, 5}, new int[]{1, 1, 1})));
+      Assert.assertTrue(compare(a.section(new int[]{3, 4, 5}, new int[]{1, 1, 3})));
+      Assert.assertTrue(compare(a.flip(0)));  // whole rows are still contiguous
+
+      // innermost dimension not contiguous: IndexIterator is used
+      Assert.assertFalse(compare(a.flip(2)));
+      Assert.assertFalse(compare(a.transpose(1, 2)));
+      Assert.assertFalse(compare(a.sectionNoReduce(new int[]{0, 0, 0}, new int[]{7, 11, 10}, new int[]{1, 1, 2})));
+      Assert.assertFalse(compare(a.section(new int[]{0, 0, 0}, new int[]{7, 11, 3})));  // short runs
+      Assert.assertFalse(compare(Array.factoryConstant(dt, new int[]{3, 4}, a.getStorage())));
+    }
+  }
+
+  @Test
+  public void testCopyIntoSection() throws InvalidRangeException {
+    for (DataType dt : types) {
+      Array a = makeArray(dt, new int[]{4, 1, 9});
+      Array big = Array.factory(dt, new int[]{10, 12});
+      Array section = big.section(new int[]{3, 2}, new int[]{4, 9});
+      Assert.assertTrue(IndexCopy.copy(section, a));
+      Assert.assertTrue(dt.toString(), MAMath.equals(a.reduce(), section));
+      Object zero = Array.factory(dt, new int[]{1}).getObject(0);
+      Assert.assertEquals(zero, big.getObject(3 * 12 + 1));
+      Assert.assertEquals(zero, big.getObject(3 * 12 + 11));
+    }
+  }
+
+  @Test
+  public void testNotConformable() {
+    Array a = makeArray(DataType.INT, new int[]{4, 6});
+    Assert.assertFalse(IndexCopy.copy(Array.factory(DataType.INT, new int[]{6, 4}), a));
+    Assert.assertFalse(IndexCopy.copy(Array.factory(DataType.FLOAT, new int[]{4, 6}), a));
+  }
+
+  @Test
+  public void testArrayCopy() throws InvalidRangeException {
+    Array a = makeArray(DataType.FLOAT, new int[]{20, 30, 40});
+    Array section = a.section(new int[]{5, 5, 5}, new int[]{10, 10, 10});
+    Array copy = section.copy();
+    Assert.assertTrue(copy.getIndex().isFastIterator());
+    Assert.assertTrue(MAMath.equals(section, copy));
+
+    float[] java = (float[]) section.get1DJavaArray(DataType.FLOAT);
+    IndexIterator iter = section.getIndexIterator();
+    for (float val : java)
+      Assert.assertEquals(iter.getFloatNext(), val, 0.0);
+  }
+
+  // copy a view with IndexCopy and with IndexIterators, and check they agree. return what IndexCopy returned
+  private boolean compare(Array view) {
+    DataType dt = view.getDataType();
+    Array expected = Array.factory(dt, view.getShape());
+    MAMath.copy(dt, view.getIndexIterator(), expected.getIndexIterator());
+
+    Array result = Array.factory(dt, view.getShape());
+    boolean copied = IndexCopy.copy(result, view);
+    if (copied) {
+      IndexIterator iterE = expected.getIndexIterator();
+      IndexIterator iterR = result.getIndexIterator();
+      while (iterE.hasNext())
+        Assert.assertEquals(dt.toString(), iterE.getObjectNext(), iterR.getObjectNext());
+    }
+    return copied;
+  }
+
+  private static Array makeArray(DataType dt, int[] shape) {
+    Array a = Array.factory(dt, shape);
+    IndexIterator iter = a.getIndexIterator();
+    int count = 0;
+    while (iter.hasNext()) {
+      if (dt == DataType.BOOLEAN)
+        iter.setBooleanNext(count % 3 == 0);
+      else if (dt == DataType.CHAR)
+        iter.setCharNext((char) ('a' + count % 26));
+      else
+        iter.setIntNext(count);
+      count++;
+    }
+    return a;
+  }
+
+  // timing of copying a section, with and without IndexCopy
+  public static void main(String[] args) throws InvalidRangeException {
+    Array a = makeArray(DataType.FLOAT, new int[]{50, 400, 400});
+    for (int innerLen : new int[]{400, 100, 10, 8}) {
+      Array section = a.section(new int[]{0, 0, 0}, new int[]{50, 400, innerLen});
+      Array result = Array.factory(DataType.FLOAT, section.getShape());
+      for (int rep = 0; rep < 5; rep++) {
+        long start = System.nanoTime();
+        IndexCopy.copy(result, section);
+        long took = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        MAMath.copy(DataType.FLOAT, section.getIndexIterator(), result.getIndexIterator());
+        long tookIter = System.nanoTime() - start;
+
+        System.out.printf("section inner length %3d, %8d elems: IndexCopy %5d us, iterator %6d us%n",
+                innerLen, section.getSize(), took / 1000, tookIter / 1000);
+      }
+    }
+  }
+}
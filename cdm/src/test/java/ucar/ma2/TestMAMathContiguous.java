@@ -0,0 +1,170 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.ma2;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Random;
+
+/**
+ * Compare the MAMath fast paths for canonical order arrays with the IndexIterator paths.
+ * Flipping a dimension twice gives the same values in the same order, but not in canonical order over the storage,
+ * so it always uses the IndexIterator.
+ */
+public class TestMAMathContiguous {
+  private static final DataType[] types = {DataType.BYTE, DataType.SHORT, DataType.INT, DataType.LONG, DataType.FLOAT, DataType.DOUBLE};
+  private static final double missing = 17.0;
+
+  @Test
+  public void testReductions() {
+    for (DataType dt : types) {
+      for (boolean unsigned : new boolean[]{false, true}) {
+        if (unsigned && !dt.isIntegral()) continue;
+        Array a = makeArray(dt, unsigned, 10007);
+        Array view = a.flip(0).flip(0);
+        String what = dt + (unsigned ? " unsigned" : "");
+
+        Assert.assertEquals(what, MAMath.sumDouble(view), MAMath.sumDouble(a), 0.0);
+        Assert.assertEquals(what, MAMath.sumDoubleSkipMissingData(view, missing), MAMath.sumDoubleSkipMissingData(a, missing), 0.0);
+        Assert.assertEquals(what, MAMath.getMinimum(view), MAMath.getMinimum(a), 0.0);
+        Assert.assertEquals(what, MAMath.getMaximum(view), MAMath.getMaximum(a), 0.0);
+        Assert.assertEquals(what, MAMath.getMinimumSkipMissingData(view, missing), MAMath.getMinimumSkipMissingData(a, missing), 0.0);
+        Assert.assertEquals(what, MAMath.getMaximumSkipMissingData(view, missing), MAMath.getMaximumSkipMissingData(a, missing), 0.0);
+        compare(what, MAMath.getMinMax(view), MAMath.getMinMax(a));
+        compare(what, MAMath.getMinMaxSkipMissingData(view, missing), MAMath.getMinMaxSkipMissingData(a, missing));
+
+        IsMissingEvaluator eval = new IsMissingEvaluator() {
+          public boolean hasMissing() { return true; }
+          public boolean isMissing(double val) { return Double.isNaN(val) || val < 0; }
+        };
+        compare(what, MAMath.getMinMaxSkipMissingData(view, eval), MAMath.getMinMaxSkipMissingData(a, eval));
+      }
+    }
+  }
+
+  @Test
+  public void testCopy() throws InvalidRangeException {
+    for (DataType dt : types) {
+      Array a = makeArray(dt, false, 1000);
+      Array result = Array.factory(dt, a.getShape());
+      MAMath.copy(result, a);
+      Assert.assertTrue(dt.toString(), MAMath.equals(a, result));
+
+      // different types, non canonical source and result still go through the iterators
+      Array doubles = Array.factory(DataType.DOUBLE, a.getShape());
+      MAMath.copyDouble(doubles, a);
+      Assert.assertEquals(dt.toString(), MAMath.sumDouble(a), MAMath.sumDouble(doubles), 0.0);
+
+      Array section = a.section(new int[]{100}, new int[]{50});
+      Array sectionCopy = Array.factory(dt, section.getShape());
+      MAMath.copy(sectionCopy, section);
+      Assert.assertTrue(dt.toString(), MAMath.equals(section, sectionCopy));
+
+      Array big = Array.factory(dt, new int[]{2000});
+      Array bigSection = big.section(new int[]{500}, new int[]{1000});
+      MAMath.copy(bigSection, a);
+      Assert.assertTrue(dt.toString(), MAMath.equals(a, bigSection));
+      Assert.assertEquals(0.0, big.getDouble(499), 0.0);
+      Assert.assertEquals(0.0, big.getDouble(1500), 0.0);
+    }
+  }
+
+  // constant arrays are fast iterators over one element of storage, so must not use the storage directly
+  @Test
+  public void testConstant() {
+    for (DataType dt : types) {
+      Array one = Array.factory(dt, new int[]{1});
+      one.setDouble(0, 3.0);
+      Array a = Array.factoryConstant(dt, new int[]{3, 4}, one.getStorage());
+      String what = dt.toString();
+
+      Assert.assertEquals(what, 36.0, MAMath.sumDouble(a), 0.0);
+      Assert.assertEquals(what, 36.0, MAMath.sumDoubleSkipMissingData(a, missing), 0.0);
+      Assert.assertEquals(what, 3.0, MAMath.getMinimum(a), 0.0);
+      Assert.assertEquals(what, 3.0, MAMath.getMaximum(a), 0.0);
+      compare(what, new MAMath.MinMax(3.0, 3.0), MAMath.getMinMax(a));
+      compare(what, new MAMath.MinMax(3.0, 3.0), MAMath.getMinMaxSkipMissingData(a, missing));
+
+      Array result = Array.factory(dt, a.getShape());
+      MAMath.copy(result, a);
+      Assert.assertEquals(what, 36.0, MAMath.sumDouble(result), 0.0);
+    }
+  }
+
+  private void compare(String what, MAMath.MinMax expected, MAMath.MinMax result) {
+    Assert.assertEquals(what, expected.min, result.min, 0.0);
+    Assert.assertEquals(what, expected.max, result.max, 0.0);
+  }
+
+  private static Array makeArray(DataType dt, boolean unsigned, int n) {
+    Random r = new Random(n);
+    Array a = Array.factory(dt.withSign(unsigned), new int[]{n});
+    IndexIterator iter = a.getIndexIterator();
+    while (iter.hasNext()) {
+      if (r.nextInt(20) == 0)
+        iter.setDoubleNext(missing);
+      else if (!dt.isIntegral() && r.nextInt(20) == 0)
+        iter.setDoubleNext(Double.NaN);
+      else
+        iter.setLongNext(r.nextLong());
+    }
+    return a;
+  }
+
+  // timing of the fast paths for each data type
+  public static void main(String[] args) {
+    int n = 4 * 1000 * 1000;
+    for (int rep = 0; rep < 5; rep++) {
+      for (DataType dt : types) {
+        Array a = makeArray(dt, false, n);
+        Array view = a.flip(0).flip(0);
+        Array result = Array.factory(dt, a.getShape());
+
+        long start = System.nanoTime();
+        MAMath.getMinMax(a);
+        MAMath.sumDouble(a);
+        MAMath.copy(result, a);
+        long took = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        MAMath.getMinMax(view);
+        MAMath.sumDouble(view);
+        MAMath.copy(result, view);
+        long tookView = System.nanoTime() - start;
+
+        System.out.printf("%-6s minmax+sum+copy %d elems: contiguous %4d ms, iterator %4d ms%n",
+                dt, n, took / 1000 / 1000, tookView / 1000 / 1000);
+      }
+    }
+  }
+}
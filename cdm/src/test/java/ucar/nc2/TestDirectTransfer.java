@@ -0,0 +1,116 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.*;
+import ucar.nc2.iosp.netcdf3.N3iosp;
+import ucar.nc2.stream.NcStreamReader;
+import ucar.nc2.stream.NcStreamWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Test sending netCDF-3 variables straight from the file: N3iosp.isDirectTransfer() and NcStreamWriter.sendDataDirect().
+ */
+public class TestDirectTransfer {
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testDirectTransfer() throws IOException, InvalidRangeException {
+    String filename = tempFolder.newFile("direct.nc").getAbsolutePath();
+    try (NetcdfFileWriter writer = NetcdfFileWriter.createNew(filename, false)) {
+      writer.addDimension(null, "time", 20);
+      writer.addDimension(null, "y", 50);
+      writer.addDimension(null, "x", 60);
+      writer.addUnlimitedDimension("rec");
+      writer.addVariable("temp", DataType.FLOAT, "time y x");
+      writer.addVariable("count", DataType.INT, "time y x");
+      writer.addVariable("height", DataType.DOUBLE, "y x");
+      writer.addVariable("flag", DataType.SHORT, "y x");
+      writer.addVariable("obs", DataType.FLOAT, "rec x");
+      writer.create();
+
+      writer.write(writer.findVariable("temp"), Array.makeArray(DataType.FLOAT, 20 * 50 * 60, 0, 0.5).reshape(new int[]{20, 50, 60}));
+      writer.write(writer.findVariable("count"), Array.makeArray(DataType.INT, 20 * 50 * 60, -1000, 1).reshape(new int[]{20, 50, 60}));
+      writer.write(writer.findVariable("height"), Array.makeArray(DataType.DOUBLE, 50 * 60, 1.0e9, 0.25).reshape(new int[]{50, 60}));
+      writer.write(writer.findVariable("flag"), Array.makeArray(DataType.SHORT, 50 * 60, 0, 1).reshape(new int[]{50, 60}));
+      writer.write(writer.findVariable("obs"), Array.makeArray(DataType.FLOAT, 3 * 60, 0, 1).reshape(new int[]{3, 60}));
+    }
+
+    try (NetcdfFile ncfile = NetcdfFile.open(filename)) {
+      Variable temp = ncfile.findVariable("temp");
+      Variable count = ncfile.findVariable("count");
+      Variable height = ncfile.findVariable("height");
+      Variable flag = ncfile.findVariable("flag");
+      Variable obs = ncfile.findVariable("obs");
+
+      Assert.assertTrue(N3iosp.isDirectTransfer(temp, temp.getShapeAsSection()));
+      Assert.assertTrue(N3iosp.isDirectTransfer(temp, new Section("2:10,0:49,0:59")));
+      Assert.assertTrue(N3iosp.isDirectTransfer(temp, new Section("0:19:2,0:49,0:59")));
+      Assert.assertTrue(N3iosp.isDirectTransfer(temp, new Section("3,4,5")));
+      Assert.assertFalse(N3iosp.isDirectTransfer(temp, new Section("0:19,0:49,10:20"))); // short runs
+      Assert.assertFalse(N3iosp.isDirectTransfer(temp, new Section("0:19,0:49,0:59:2")));
+      Assert.assertFalse(N3iosp.isDirectTransfer(obs, obs.getShapeAsSection())); // record variable
+
+      compare(ncfile, temp, new Section("2:10,0:49,0:59"));
+      compare(ncfile, temp, new Section("0:19:3,0:49,0:59"));
+      compare(ncfile, count, new Section("5:19,10:49,0:59"));
+      compare(ncfile, height, height.getShapeAsSection());
+      compare(ncfile, flag, flag.getShapeAsSection());
+    }
+  }
+
+  // send with sendDataDirect, read back with NcStreamReader, compare with reading the variable
+  private void compare(NetcdfFile ncfile, Variable v, Section section) throws IOException, InvalidRangeException {
+    Assert.assertTrue(v.getFullName() + section, N3iosp.isDirectTransfer(v, section));
+    NcStreamWriter writer = new NcStreamWriter(ncfile, "test");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    long size = writer.sendDataDirect(v, section, out);
+    Assert.assertTrue(size > section.computeSize() * v.getElementSize()); // NcStream.writeVInt() counts one byte
+
+    NcStreamReader reader = new NcStreamReader();
+    NcStreamReader.DataResult result = reader.readData(new ByteArrayInputStream(out.toByteArray()), ncfile, "test");
+    Assert.assertEquals(v.getFullNameEscaped(), result.varNameFullEsc);
+    Array expected = v.read(section);
+    Assert.assertArrayEquals(expected.getShape(), result.data.getShape());
+    Assert.assertEquals(expected.getDataType(), result.data.getDataType());
+    Assert.assertTrue(v.getFullName() + section, MAMath.equals(expected, result.data));
+  }
+}
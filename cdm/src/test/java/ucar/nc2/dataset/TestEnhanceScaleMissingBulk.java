@@ -0,0 +1,192 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.dataset;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.ma2.*;
+import ucar.nc2.Attribute;
+import ucar.nc2.constants.CDM;
+
+import java.util.Random;
+
+/**
+ * Compare the bulk array conversions in EnhanceScaleMissingImpl with the element by element conversions.
+ */
+public class TestEnhanceScaleMissingBulk {
+
+  @After
+  public void reset() {
+    NetcdfDataset.setUnpackToFloat(false);
+  }
+
+  @Test
+  public void testByte() {
+    for (boolean unsigned : new boolean[]{false, true}) {
+      EnhanceScaleMissingImpl esm = make(DataType.BYTE, unsigned, 0.5, 10.0);
+      Array data = randomData(DataType.BYTE, 1000);
+      compare(esm, data);
+    }
+  }
+
+  @Test
+  public void testShort() {
+    for (boolean unsigned : new boolean[]{false, true}) {
+      EnhanceScaleMissingImpl esm = make(DataType.SHORT, unsigned, 0.01, -100.0);
+      compare(esm, randomData(DataType.SHORT, 100));     // direct
+      compare(esm, randomData(DataType.SHORT, 70000));   // lookup table
+    }
+  }
+
+  @Test
+  public void testInt() {
+    for (boolean unsigned : new boolean[]{false, true}) {
+      EnhanceScaleMissingImpl esm = make(DataType.INT, unsigned, 0.001, 0.0);
+      compare(esm, randomData(DataType.INT, 1000));
+    }
+  }
+
+  // the _Unsigned attribute decides, not the data type of the array
+  @Test
+  public void testUnsignedArray() {
+    EnhanceScaleMissingImpl esm = make(DataType.BYTE, false, 0.5, 10.0);
+    Array data = randomData(DataType.BYTE, 1000);
+    compare(esm, Array.factory(DataType.UBYTE, data.getShape(), data.getStorage()));
+
+    esm = make(DataType.SHORT, false, 0.01, -100.0);
+    data = randomData(DataType.SHORT, 70000);
+    compare(esm, Array.factory(DataType.USHORT, data.getShape(), data.getStorage()));
+  }
+
+  @Test
+  public void testFloatScale() {
+    EnhanceScaleMissingImpl esm = make(DataType.SHORT, false, 0.25f, 1.0f);
+    Assert.assertEquals(DataType.FLOAT, esm.getConvertedDataType());
+    compare(esm, randomData(DataType.SHORT, 70000));
+  }
+
+  @Test
+  public void testSection() throws InvalidRangeException {
+    EnhanceScaleMissingImpl esm = make(DataType.SHORT, false, 0.01, -100.0);
+    Array data = randomData(DataType.SHORT, 20000).reshape(new int[]{200, 100});
+    compare(esm, data.section(new int[]{10, 5}, new int[]{150, 90}));
+    compare(esm, data.transpose(0, 1));
+  }
+
+  @Test
+  public void testUnpackToFloat() {
+    NetcdfDataset.setUnpackToFloat(true);
+    EnhanceScaleMissingImpl esm = make(DataType.SHORT, false, 0.01, -100.0);
+    Assert.assertEquals(DataType.FLOAT, esm.getConvertedDataType());
+    compare(esm, randomData(DataType.SHORT, 70000));
+
+    // int data is still unpacked to double
+    esm = make(DataType.INT, false, 0.01, -100.0);
+    Assert.assertEquals(DataType.DOUBLE, esm.getConvertedDataType());
+  }
+
+  @Test
+  public void testConvertMissing() {
+    for (DataType dt : new DataType[]{DataType.FLOAT, DataType.DOUBLE}) {
+      EnhanceScaleMissingImpl esm = make(dt, false, null, null);
+      Array data = randomData(dt, 1000);
+      Array expected = data.copy();
+      IndexIterator iter = expected.getIndexIterator();
+      while (iter.hasNext()) {
+        double val = iter.getDoubleNext();
+        if (esm.isMissing(val)) iter.setDoubleCurrent(Double.NaN);
+      }
+
+      Array result = esm.convertScaleOffsetMissing(data);
+      Assert.assertSame(data, result);
+      ucar.unidata.test.util.CompareNetcdf.compareData(result, expected);
+    }
+  }
+
+  private EnhanceScaleMissingImpl make(DataType dt, boolean unsigned, Number scale, Number offset) {
+    NetcdfDataset ds = new NetcdfDataset();
+    VariableDS v = new VariableDS(ds, null, null, "v", dt, "", null, null);
+    if (unsigned) v.addAttribute(new Attribute(CDM.UNSIGNED, "true"));
+    if (scale != null) v.addAttribute(new Attribute(CDM.SCALE_FACTOR, scale));
+    if (offset != null) v.addAttribute(new Attribute(CDM.ADD_OFFSET, offset));
+    v.addAttribute(new Attribute(CDM.FILL_VALUE, dt.isIntegral() ? (Number) 7 : (Number) 7.0));
+    v.addAttribute(new Attribute(CDM.MISSING_VALUE, scale == null ? 11.0 : sameType(scale, 11.0)));  // packed units
+    v.addAttribute(new Attribute("valid_min", scale == null ? -100.0 : sameType(scale, -100.0 * scale.doubleValue())));
+    return new EnhanceScaleMissingImpl(v, true, true, true, true);
+  }
+
+  // so that missing data attributes dont widen the converted type
+  private Number sameType(Number scale, double val) {
+    return (scale instanceof Float) ? (Number) (float) val : (Number) val;
+  }
+
+  private Array randomData(DataType dt, int n) {
+    Random r = new Random(n);
+    Array data = Array.factory(dt, new int[]{n});
+    IndexIterator iter = data.getIndexIterator();
+    while (iter.hasNext()) {
+      int val = (dt == DataType.INT) ? r.nextInt() : (dt == DataType.BYTE) ? r.nextInt(256) - 128 : r.nextInt(65536) - 32768;
+      if (r.nextInt(10) == 0) val = 7;  // fill
+      else if (r.nextInt(10) == 0) val = 11; // missing
+      iter.setIntNext(val);
+    }
+    return data;
+  }
+
+  // the element by element conversion is the reference
+  private void compare(EnhanceScaleMissingImpl esm, Array data) {
+    Array result = esm.convertScaleOffsetMissing(data);
+    Assert.assertEquals(esm.getConvertedDataType(), result.getDataType());
+    Assert.assertArrayEquals(data.getShape(), result.getShape());
+
+    boolean isFloat = esm.getConvertedDataType() == DataType.FLOAT;
+    IndexIterator iterIn = data.getIndexIterator();
+    IndexIterator iterOut = result.getIndexIterator();
+    int count = 0, nmissing = 0;
+    while (iterIn.hasNext()) {
+      double expected;
+      if (data.getElementType() == byte.class)
+        expected = esm.convertScaleOffsetMissing(iterIn.getByteNext());
+      else if (data.getElementType() == short.class)
+        expected = esm.convertScaleOffsetMissing(iterIn.getShortNext());
+      else
+        expected = esm.convertScaleOffsetMissing(iterIn.getIntNext());
+      if (isFloat) expected = (float) expected;
+      if (Double.isNaN(expected)) nmissing++;
+      Assert.assertEquals("element " + count, expected, iterOut.getDoubleNext(), 0.0);
+      count++;
+    }
+    Assert.assertTrue(nmissing > 0);
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.ft.point;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.LatLonRect;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compare the StationHelper grid against checking every station.
+ */
+public class TestStationHelper {
+
+  @Test
+  public void testBoundingBox() throws IOException {
+    Random r = new Random(17);
+    StationHelper helper = makeStations(r, 5000);
+
+    check(helper, new LatLonRect(new LatLonPointImpl(30, -110), 20, 40));
+    check(helper, new LatLonRect(new LatLonPointImpl(-10, 170), 30, 25));    // crosses the dateline
+    check(helper, new LatLonRect(new LatLonPointImpl(-10, -175), 30, -20));  // crosses the dateline going west
+    check(helper, new LatLonRect(new LatLonPointImpl(-90, -180), 180, 360)); // everything
+    check(helper, new LatLonRect(new LatLonPointImpl(-20, 100), 10, 360));   // all longitudes
+    check(helper, new LatLonRect(new LatLonPointImpl(45, 45), 0, 0));       // a point
+    for (int i = 0; i < 200; i++) {
+      LatLonPointImpl corner = new LatLonPointImpl(r.nextDouble() * 180 - 90, r.nextDouble() * 360 - 180);
+      check(helper, new LatLonRect(corner, r.nextDouble() * 60 - 30, r.nextDouble() * 200 - 100));
+    }
+  }
+
+  @Test
+  public void testNearest() throws IOException {
+    Random r = new Random(23);
+    StationHelper helper = makeStations(r, 3000);
+
+    checkNearest(helper, new LatLonPointImpl(40, -105), 1);
+    checkNearest(helper, new LatLonPointImpl(0, 179.9), 5);   // nearest across the dateline
+    checkNearest(helper, new LatLonPointImpl(89.5, 20), 10);  // near the pole
+    for (int i = 0; i < 200; i++) {
+      checkNearest(helper, new LatLonPointImpl(r.nextDouble() * 180 - 90, r.nextDouble() * 360 - 180), 1 + r.nextInt(20));
+    }
+    Assert.assertEquals(3000, helper.getNearestStationFeatures(new LatLonPointImpl(0, 0), 5000).size());
+  }
+
+  // 360 / cell is not an integer for 1000 stations, so the cells must still wrap evenly at the dateline
+  @Test
+  public void testNearestAcrossDateline() throws IOException {
+    Random r = new Random(31);
+    StationHelper helper = new StationHelper();
+    for (int i = 0; i < 998; i++)
+      helper.addStation(new StationFeatureImpl("far" + i, null, null, 60 + r.nextDouble() * 20, r.nextDouble() * 360 - 180, 0, 0, null));
+    helper.addStation(new StationFeatureImpl("west", null, null, 0, 173, 0, 0, null));  // 8 degrees away
+    helper.addStation(new StationFeatureImpl("east", null, null, 0, -168, 0, 0, null)); // 11 degrees away
+
+    LatLonPointImpl pt = new LatLonPointImpl(0, -179);
+    Assert.assertEquals("west", helper.getNearestStationFeature(pt).getName());
+    checkNearest(helper, pt, 1);
+    checkNearest(helper, pt, 2);
+    for (int i = 0; i < 100; i++)
+      checkNearest(helper, new LatLonPointImpl(r.nextDouble() * 40 - 20, r.nextDouble() * 360 - 180), 1 + r.nextInt(3));
+  }
+
+  @Test
+  public void testSmall() throws IOException {
+    StationHelper helper = makeStations(new Random(5), 10); // not gridded
+    check(helper, new LatLonRect(new LatLonPointImpl(-60, 0), 120, 270));
+    checkNearest(helper, new LatLonPointImpl(10, 10), 3);
+    Assert.assertNull(new StationHelper().getNearestStationFeature(new LatLonPointImpl(10, 10)));
+  }
+
+  // clustered like real networks, plus a few with longitudes in 0..360
+  private StationHelper makeStations(Random r, int n) {
+    StationHelper helper = new StationHelper();
+    for (int i = 0; i < n; i++) {
+      double lat, lon;
+      if (i % 3 == 0) {
+        lat = 35 + r.nextGaussian() * 5;
+        lon = -100 + r.nextGaussian() * 10;
+      } else if (i % 50 == 1) {
+        lat = r.nextDouble() * 180 - 90;
+        lon = 180 + r.nextDouble() * 180;
+      } else {
+        lat = r.nextDouble() * 180 - 90;
+        lon = r.nextDouble() * 360 - 180;
+      }
+      lat = Math.max(-90, Math.min(90, lat));
+      helper.addStation(new StationFeatureImpl("stn" + i, null, null, lat, lon, 0, 0, null));
+    }
+    return helper;
+  }
+
+  private void check(StationHelper helper, LatLonRect box) throws IOException {
+    List<StationFeature> expected = new ArrayList<>();
+    for (StationFeature s : helper.getStationFeatures()) {
+      if (box.contains(s.getLatitude(), s.getLongitude()))
+        expected.add(s);
+    }
+    Assert.assertEquals(box.toString2(), expected, helper.getStationFeatures(box));
+    Assert.assertEquals(box.toString2(), expected.size(), helper.getStations(box).size());
+  }
+
+  private void checkNearest(StationHelper helper, LatLonPointImpl pt, int n) {
+    final double cos = Math.cos(Math.toRadians(pt.getLatitude()));
+    List<StationFeature> all = new ArrayList<>(helper.getStationFeatures());
+    final List<Double> dist = new ArrayList<>();
+    for (StationFeature s : all) {
+      double lon1 = LatLonPointImpl.lonNormal(s.getLongitude(), pt.getLongitude());
+      double dy = Math.toRadians(pt.getLatitude() - s.getLatitude());
+      double dx = cos * Math.toRadians(pt.getLongitude() - lon1);
+      dist.add(dy * dy + dx * dx);
+    }
+    List<Integer> idx = new ArrayList<>();
+    for (int i = 0; i < all.size(); i++) idx.add(i);
+    Collections.sort(idx, (a, b) -> Double.compare(dist.get(a), dist.get(b)));  // stable, so ties in station order
+
+    List<StationFeature> nearest = helper.getNearestStationFeatures(pt, n);
+    Assert.assertEquals(n, nearest.size());
+    for (int i = 0; i < n; i++)
+      Assert.assertSame(pt + " " + i, all.get(idx.get(i)), nearest.get(i));
+  }
+}
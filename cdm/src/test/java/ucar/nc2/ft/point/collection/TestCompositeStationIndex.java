@@ -0,0 +1,198 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.ft.point.collection;
+
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.inventory.MFileCollectionManager;
+import thredds.inventory.TimedCollection;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.PointFeatureCollection;
+import ucar.nc2.ft.StationTimeSeriesFeature;
+import ucar.nc2.ft.StationTimeSeriesFeatureCollection;
+import ucar.nc2.ft.point.StationFeature;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CompositeStationIndex on a collection of daily station files, where not every station is in every file.
+ */
+public class TestCompositeStationIndex {
+  @ClassRule
+  public static TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testIndex() throws IOException {
+    File dir = tempFolder.newFolder("stations");
+    writeStationFile(dir, "20150101", "a", "b");
+    writeStationFile(dir, "20150102", "a", "b", "c");
+    writeStationFile(dir, "20150103", "b", "c");
+
+    Formatter errlog = new Formatter();
+    MFileCollectionManager dcm = MFileCollectionManager.open("stnTest", dir.getPath() + "/stn_#yyyyMMdd#\\.ncml$", null, errlog);
+    try (FeatureDatasetPoint fd = (FeatureDatasetPoint) CompositeDatasetFactory.factory("stnTest", FeatureType.STATION, dcm, errlog)) {
+      CompositeStationCollection sfc = (CompositeStationCollection) fd.getPointFeatureCollectionList().get(0);
+
+      // observations are grouped by station, from only the files that have it
+      Map<String, Integer> counts = countByStation(sfc, "a", "b", "c");
+      Assert.assertEquals(8, (int) counts.get("a"));
+      Assert.assertEquals(12, (int) counts.get("b"));
+      Assert.assertEquals(8, (int) counts.get("c"));
+      Assert.assertEquals(8, count(sfc.flatten(Arrays.asList("c"), null, null)));
+
+      CompositeStationIndex index = sfc.getStationIndex();
+      Assert.assertTrue(index.getIndexFile().exists());
+      Assert.assertEquals(3, index.getNumFiles());
+      Assert.assertEquals(12, index.getNumObs("b"));
+      String day1 = new File(dir, "stn_20150101.ncml").getPath();
+      String day3 = new File(dir, "stn_20150103.ncml").getPath();
+      Assert.assertFalse(index.contains(day1, "c", null));
+      Assert.assertTrue(index.contains(day3, "c", null));
+      CalendarDateRange day3Range = CalendarDateRange.of(CalendarDate.parseISOformat(null, "2015-01-03T00:00:00Z"),
+              CalendarDate.parseISOformat(null, "2015-01-03T23:00:00Z"));
+      Assert.assertFalse(index.contains(day1, "a", day3Range));
+      Assert.assertFalse(index.containsAny(day3, Arrays.asList("a"), null));
+
+      // a new file only reads that file
+      writeStationFile(dir, "20150104", "a");
+      sfc.update();
+      Assert.assertEquals(4, index.getNumFiles());
+      Assert.assertEquals(0, index.update(new TimedCollection(dcm, errlog).getDatasets()));
+      Assert.assertEquals(12, (int) countByStation(sfc, "a").get("a"));
+
+      // reopen from the index file
+      CompositeStationIndex reread = CompositeStationIndex.open(new TimedCollection(dcm, errlog));
+      Assert.assertEquals(4, reread.getNumFiles());
+      Assert.assertEquals(12, reread.getNumObs("a"));
+      Assert.assertFalse(reread.contains(day3, "a", null));
+
+      // a file changed since the last update is not trusted
+      File day1File = new File(day1);
+      long lastModified = day1File.lastModified();
+      writeStationFileWithHours(dir, "20150101", "0 6 12 23", "a", "b", "c");
+      Assert.assertTrue(day1File.setLastModified(lastModified + 10 * 1000));
+      Assert.assertTrue(index.contains(day1, "c", null));
+      Assert.assertTrue(index.containsAny(day1, Arrays.asList("c"), day3Range));
+      Assert.assertEquals(12, (int) countByStation(sfc, "c").get("c"));
+      Assert.assertEquals(12, count(sfc.flatten(Arrays.asList("c"), null, null)));
+    }
+  }
+
+  // the file dates only estimate the observation times; a single file has the date range [start, start]
+  @Test
+  public void testSingleFile() throws IOException {
+    File dir = tempFolder.newFolder("single");
+    writeStationFileWithHours(dir, "20150101", "1 6 12 18", "a", "b");
+
+    Formatter errlog = new Formatter();
+    MFileCollectionManager dcm = MFileCollectionManager.open("single", dir.getPath() + "/stn_#yyyyMMdd#\\.ncml$", null, errlog);
+    try (FeatureDatasetPoint fd = (FeatureDatasetPoint) CompositeDatasetFactory.factory("single", FeatureType.STATION, dcm, errlog)) {
+      CompositeStationCollection sfc = (CompositeStationCollection) fd.getPointFeatureCollectionList().get(0);
+
+      Assert.assertEquals(4, (int) countByStation(sfc, "a").get("a"));
+      Assert.assertEquals(4, count((PointFeatureCollection) sfc.findStationFeature("b")));
+      Assert.assertEquals(4, count(sfc.flatten(Arrays.asList("a"), null, null)));
+
+      CalendarDateRange afternoon = CalendarDateRange.of(CalendarDate.parseISOformat(null, "2015-01-01T10:00:00Z"),
+              CalendarDate.parseISOformat(null, "2015-01-01T20:00:00Z"));
+      StationTimeSeriesFeature stn = (StationTimeSeriesFeature) sfc.findStationFeature("a");
+      Assert.assertEquals(2, count(stn.subset(afternoon)));
+    }
+  }
+
+  private Map<String, Integer> countByStation(StationTimeSeriesFeatureCollection sfc, String... names) throws IOException {
+    List<StationFeature> wanted = new ArrayList<>();
+    for (String name : names)
+      wanted.add(sfc.findStationFeature(name));
+
+    Map<String, Integer> result = new HashMap<>();
+    for (StationTimeSeriesFeature stnFeature : sfc.subsetFeatures(wanted)) {
+      int count = 0;
+      for (PointFeature pf : stnFeature) count++;
+      result.put(stnFeature.getName(), count);
+    }
+    return result;
+  }
+
+  private int count(PointFeatureCollection pfc) throws IOException {
+    int count = 0;
+    for (PointFeature pf : pfc) count++;
+    return count;
+  }
+
+  // 4 observations per station, 6 hours apart
+  private void writeStationFile(File dir, String day, String... stations) throws IOException {
+    writeStationFileWithHours(dir, day, "0 6 12 18", stations);
+  }
+
+  private void writeStationFileWithHours(File dir, String day, String hours, String... stations) throws IOException {
+    StringBuilder lats = new StringBuilder(), lons = new StringBuilder(), names = new StringBuilder(), times = new StringBuilder();
+    for (String stn : stations) {
+      int offset = stn.charAt(0) - 'a';
+      lats.append(40 + offset).append(' ');
+      lons.append(-100 - offset).append(' ');
+      names.append(stn).append(' ');
+      times.append(hours).append(' ');
+    }
+    String date = day.substring(0, 4) + "-" + day.substring(4, 6) + "-" + day.substring(6, 8);
+
+    try (PrintWriter out = new PrintWriter(new File(dir, "stn_" + day + ".ncml"), "UTF-8")) {
+      out.printf("<?xml version='1.0' encoding='UTF-8'?>%n");
+      out.printf("<netcdf xmlns='http://www.unidata.ucar.edu/namespaces/netcdf/ncml-2.2'>%n");
+      out.printf("  <dimension name='s' length='%d'/>%n", stations.length);
+      out.printf("  <dimension name='time' length='4'/>%n");
+      out.printf("  <attribute name='featureType' value='timeSeries'/>%n");
+      out.printf("  <attribute name='Conventions' value='CF-1.6'/>%n");
+      out.printf("  <variable name='lon' shape='s' type='float'><attribute name='units' value='degrees_east'/><values>%s</values></variable>%n", lons);
+      out.printf("  <variable name='lat' shape='s' type='float'><attribute name='units' value='degrees_north'/><values>%s</values></variable>%n", lats);
+      out.printf("  <variable name='stationName' shape='s' type='string'><attribute name='cf_role' value='timeseries_id'/><values>%s</values></variable>%n", names);
+      out.printf("  <variable name='time' shape='s time' type='double'><attribute name='units' value='hours since %s 00:00:00'/><values>%s</values></variable>%n", date, times);
+      out.printf("  <variable name='temp' shape='s time' type='float'><attribute name='units' value='Celsius'/><attribute name='coordinates' value='time lon lat'/><values start='1' increment='1'/></variable>%n");
+      out.printf("</netcdf>%n");
+    }
+  }
+}
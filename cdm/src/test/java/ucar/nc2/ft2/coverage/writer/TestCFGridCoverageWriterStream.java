@@ -0,0 +1,162 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.ft2.coverage.writer;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.ArrayFloat;
+import ucar.ma2.DataType;
+import ucar.ma2.Index;
+import ucar.nc2.*;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft2.coverage.*;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.nc2.util.Optional;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.Formatter;
+
+/**
+ * Writing a subset to a stream must give the same file as writing it through a NetcdfFileWriter.
+ */
+public class TestCFGridCoverageWriterStream {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testClassic() throws Exception {
+    compareStreamToFile(false);
+  }
+
+  @Test
+  public void testLargeFile() throws Exception {
+    compareStreamToFile(true);
+  }
+
+  private void compareStreamToFile(boolean largeFile) throws Exception {
+    File org = makeGrid();
+    File fromFile = tempFolder.newFile();
+    File fromStream = tempFolder.newFile();
+
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(org.getPath())) {
+      Assert.assertNotNull(fdc);
+      CoverageCollection gcs = fdc.findCoverageDataset(FeatureType.GRID);
+      Assert.assertNotNull(gcs);
+
+      Optional<CFGridCoverageWriter2> opt = CFGridCoverageWriter2.makeSubset(gcs, Collections.singletonList("T"), new SubsetParams(), false);
+      Assert.assertTrue(opt.getErrorMessage(), opt.isPresent());
+      CFGridCoverageWriter2 writer2 = opt.get();
+      writer2.setLargeFile(largeFile);
+      writer2.write(NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, fromFile.getPath()));
+
+      opt = CFGridCoverageWriter2.makeSubset(gcs, Collections.singletonList("T"), new SubsetParams(), false);
+      Assert.assertTrue(opt.getErrorMessage(), opt.isPresent());
+      writer2 = opt.get();
+      writer2.setLargeFile(largeFile);
+      try (OutputStream out = new FileOutputStream(fromStream)) {
+        writer2.write(out);
+      }
+    }
+
+    byte version = largeFile ? (byte) 2 : (byte) 1;
+    Assert.assertEquals(version, readVersion(fromFile));
+    Assert.assertEquals(version, readVersion(fromStream));
+
+    try (NetcdfFile ncfile = NetcdfFile.open(fromFile.getPath());
+         NetcdfFile ncstream = NetcdfFile.open(fromStream.getPath())) {
+      Assert.assertNotNull(ncstream.findVariable("T"));
+      Formatter f = new Formatter();
+      CompareNetcdf2 compare = new CompareNetcdf2(f, false, false, true);
+      boolean ok = compare.compare(ncfile, ncstream, new HistoryFilter(), false, false, true);
+      Assert.assertTrue(f.toString(), ok);
+    }
+  }
+
+  // the history contains the time of writing
+  private static class HistoryFilter implements CompareNetcdf2.ObjFilter {
+    public boolean attCheckOk(Variable v, Attribute att) {
+      return !att.getShortName().equalsIgnoreCase(CDM.HISTORY);
+    }
+
+    public boolean varDataTypeCheckOk(Variable v) {
+      return true;
+    }
+  }
+
+  // the fourth byte of the magic number is the format version
+  private byte readVersion(File file) throws IOException {
+    try (InputStream in = new FileInputStream(file)) {
+      byte[] magic = new byte[4];
+      Assert.assertEquals(4, in.read(magic));
+      return magic[3];
+    }
+  }
+
+  private File makeGrid() throws Exception {
+    File file = tempFolder.newFile();
+    int ntimes = 3, nlat = 10, nlon = 12;
+    NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, file.getPath());
+    writer.addGroupAttribute(null, new Attribute("Conventions", "CF-1.6"));
+    writer.addDimension(null, "time", ntimes);
+    writer.addDimension(null, "lat", nlat);
+    writer.addDimension(null, "lon", nlon);
+
+    Variable time = writer.addVariable(null, "time", DataType.DOUBLE, "time");
+    writer.addVariableAttribute(time, new Attribute("units", "hours since 2015-01-01T00:00:00Z"));
+    Variable lat = writer.addVariable(null, "lat", DataType.FLOAT, "lat");
+    writer.addVariableAttribute(lat, new Attribute("units", "degrees_north"));
+    Variable lon = writer.addVariable(null, "lon", DataType.FLOAT, "lon");
+    writer.addVariableAttribute(lon, new Attribute("units", "degrees_east"));
+    Variable t = writer.addVariable(null, "T", DataType.FLOAT, "time lat lon");
+    writer.addVariableAttribute(t, new Attribute("units", "K"));
+    writer.create();
+
+    writer.write(time, ucar.ma2.Array.makeArray(DataType.DOUBLE, ntimes, 0, 6));
+    writer.write(lat, ucar.ma2.Array.makeArray(DataType.FLOAT, nlat, 30, 1));
+    writer.write(lon, ucar.ma2.Array.makeArray(DataType.FLOAT, nlon, -100, 1));
+    ArrayFloat.D3 data = new ArrayFloat.D3(ntimes, nlat, nlon);
+    Index ima = data.getIndex();
+    for (int i = 0; i < ntimes; i++)
+      for (int j = 0; j < nlat; j++)
+        for (int k = 0; k < nlon; k++)
+          data.setFloat(ima.set(i, j, k), 270 + i + j * .1f + k * .01f);
+    writer.write(t, data);
+    writer.close();
+    return file;
+  }
+}
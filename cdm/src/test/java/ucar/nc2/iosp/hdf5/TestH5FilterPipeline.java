@@ -0,0 +1,211 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.util.IO;
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compare H5tiledLayoutBB.FilterPipeline with stream based inflate / unshuffle.
+ * Run main() to compare their speed.
+ */
+public class TestH5FilterPipeline {
+  static private final int[] filterIds = {2, 1, 3};  // shuffle, deflate, fletcher32
+  static private final int elemSize = 4;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testShuffleDeflateFletcher() throws IOException {
+    compare(0);
+  }
+
+  @Test
+  public void testSkipShuffle() throws IOException {
+    compare(1);  // filterMask bit 0 set: shuffle was not applied to these chunks
+  }
+
+  @Test
+  public void testOddLength() throws IOException {
+    File file = tempFolder.newFile();
+    byte[] chunk = makeChunk(new Random(3), 4001);  // not a multiple of elemSize
+    long[] pos = writeChunks(file, new byte[][]{chunk}, 0);
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      H5tiledLayoutBB.FilterPipeline pipeline = makePipeline(4000);
+      ByteBuffer bb = pipeline.read(raf, pos[0], (int) (pos[1] - pos[0]), 0);
+      Assert.assertArrayEquals(chunk, toArray(bb));
+    }
+  }
+
+  private void compare(int filterMask) throws IOException {
+    File file = tempFolder.newFile();
+    Random r = new Random(17);
+    byte[][] chunks = new byte[10][];
+    for (int i = 0; i < chunks.length; i++)
+      chunks[i] = makeChunk(r, 40 * 1000);
+    chunks[chunks.length - 1] = makeChunk(r, 1000);  // a smaller one
+    long[] pos = writeChunks(file, chunks, filterMask);
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      H5tiledLayoutBB.FilterPipeline pipeline = makePipeline(40 * 1000);
+      for (int i = 0; i < chunks.length; i++) {
+        int size = (int) (pos[i + 1] - pos[i]);
+        ByteBuffer bb = pipeline.read(raf, pos[i], size, filterMask);
+        Assert.assertEquals(ByteOrder.LITTLE_ENDIAN, bb.order());
+        Assert.assertArrayEquals("chunk " + i, chunks[i], toArray(bb));
+        Assert.assertArrayEquals("chunk " + i, chunks[i], readWithStreams(raf, pos[i], size, filterMask));
+      }
+    }
+  }
+
+  static private H5tiledLayoutBB.FilterPipeline makePipeline(int chunkBytes) {
+    return new H5tiledLayoutBB.FilterPipeline(filterIds, new int[]{elemSize, 1, 1}, ByteOrder.LITTLE_ENDIAN, chunkBytes);
+  }
+
+  static private byte[] toArray(ByteBuffer bb) {
+    byte[] result = new byte[bb.remaining()];
+    bb.get(result);
+    return result;
+  }
+
+  // smooth float values, so they compress like real data
+  static private byte[] makeChunk(Random r, int nbytes) {
+    ByteBuffer bb = ByteBuffer.allocate(nbytes).order(ByteOrder.LITTLE_ENDIAN);
+    float val = 273.0f;
+    while (bb.remaining() >= 4) {
+      val += r.nextFloat() - 0.5f;
+      bb.putFloat(val);
+    }
+    while (bb.hasRemaining()) bb.put((byte) r.nextInt());
+    return bb.array();
+  }
+
+  // write each chunk with the filters applied, return the start positions and the end of file
+  static private long[] writeChunks(File file, byte[][] chunks, int filterMask) throws IOException {
+    long[] pos = new long[chunks.length + 1];
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+      long total = 0;
+      for (int i = 0; i < chunks.length; i++) {
+        pos[i] = total;
+        byte[] data = (filterMask & 1) != 0 ? chunks[i] : shuffle(chunks[i], elemSize);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (DeflaterOutputStream dout = new DeflaterOutputStream(bout)) {
+          dout.write(data);
+        }
+        bout.write(new byte[4]);  // checksum is not checked
+        out.write(bout.toByteArray());
+        total += bout.size();
+      }
+      pos[chunks.length] = total;
+    }
+    return pos;
+  }
+
+  static private byte[] shuffle(byte[] data, int n) {
+    byte[] result = data.clone();
+    int m = data.length / n;
+    for (int i = 0; i < m; i++)
+      for (int j = 0; j < n; j++)
+        result[j * m + i] = data[i * n + j];
+    return result;
+  }
+
+  // the way H5tiledLayoutBB used to do it
+  static private byte[] readWithStreams(RandomAccessFile raf, long filePos, int size, int filterMask) throws IOException {
+    byte[] data = new byte[size];
+    raf.seek(filePos);
+    raf.readFully(data);
+
+    byte[] org = data;
+    data = new byte[org.length - 4];
+    System.arraycopy(org, 0, data, 0, data.length);
+
+    InflaterInputStream inflater = new InflaterInputStream(new ByteArrayInputStream(data));
+    ByteArrayOutputStream out = new ByteArrayOutputStream(8 * data.length);
+    IO.copy(inflater, out);
+    data = out.toByteArray();
+
+    if ((filterMask & 1) == 0) {
+      int m = data.length / elemSize;
+      byte[] result = new byte[data.length];
+      for (int i = 0; i < m; i++)
+        for (int j = 0; j < elemSize; j++)
+          result[i * elemSize + j] = data[i + j * m];
+      data = result;
+    }
+    return data;
+  }
+
+  public static void main(String[] args) throws IOException {
+    int nchunks = 2000, chunkBytes = 256 * 1000;
+    File file = File.createTempFile("TestH5FilterPipeline", ".bin");
+    file.deleteOnExit();
+
+    Random r = new Random(17);
+    byte[][] chunks = new byte[nchunks][];
+    byte[] chunk = makeChunk(r, chunkBytes);
+    for (int i = 0; i < nchunks; i++) chunks[i] = chunk;
+    long[] pos = writeChunks(file, chunks, 0);
+    double mbytes = (double) nchunks * chunkBytes / 1000 / 1000;
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      for (int iter = 0; iter < 5; iter++) {
+        long start = System.nanoTime();
+        for (int i = 0; i < nchunks; i++)
+          readWithStreams(raf, pos[i], (int) (pos[i + 1] - pos[i]), 0);
+        long took = System.nanoTime() - start;
+        System.out.printf("streams  %8.1f Mb/sec%n", mbytes * 1.0e9 / took);
+
+        H5tiledLayoutBB.FilterPipeline pipeline = makePipeline(chunkBytes);
+        start = System.nanoTime();
+        for (int i = 0; i < nchunks; i++)
+          pipeline.read(raf, pos[i], (int) (pos[i + 1] - pos[i]), 0);
+        took = System.nanoTime() - start;
+        System.out.printf("pipeline %8.1f Mb/sec%n", mbytes * 1.0e9 / took);
+      }
+    }
+  }
+}
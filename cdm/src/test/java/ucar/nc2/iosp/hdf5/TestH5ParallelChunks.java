@@ -0,0 +1,132 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.unidata.test.util.TestDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Read a shuffled and deflated variable with and without H5iosp.setChunkDecodeExecutor().
+ * chunkedDeflate.h5 is chunked.h5 with the chunks rewritten through the shuffle and deflate filters.
+ */
+public class TestH5ParallelChunks {
+  static private ExecutorService exec;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @BeforeClass
+  static public void before() {
+    exec = Executors.newFixedThreadPool(3);
+  }
+
+  @AfterClass
+  static public void after() {
+    H5iosp.setChunkDecodeExecutor(null, 1, 0);
+    exec.shutdownNow();
+  }
+
+  @Test
+  public void testSerial() throws IOException, InvalidRangeException {
+    H5iosp.setChunkDecodeExecutor(null, 1, 0);
+    compare();
+  }
+
+  @Test
+  public void testParallel() throws IOException, InvalidRangeException {
+    H5iosp.setChunkDecodeExecutor(exec, 3, 2);
+    compare();
+  }
+
+  @Test
+  public void testTooFewChunks() throws IOException, InvalidRangeException {
+    H5iosp.setChunkDecodeExecutor(exec, 3, 100);
+    compare();
+  }
+
+  // a chunk that doesnt inflate must fail the read, not leave fill values in the result
+  @Test
+  public void testCorruptChunk() throws IOException, InvalidRangeException {
+    byte[] bytes = Files.readAllBytes(new File(TestDir.cdmLocalTestDataDir + "chunkedDeflate.h5").toPath());
+    bytes[4859] = (byte) 0xff; // the deflate block header of the 7th chunk, now an invalid block type
+    File corrupt = tempFolder.newFile("corrupt.h5");
+    Files.write(corrupt.toPath(), bytes);
+
+    H5iosp.setChunkDecodeExecutor(null, 1, 0);
+    readFails(corrupt);
+    H5iosp.setChunkDecodeExecutor(exec, 3, 2);
+    readFails(corrupt);
+  }
+
+  private void readFails(File file) throws IOException {
+    try (NetcdfFile ncfile = NetcdfFile.open(file.getPath())) {
+      ncfile.findVariable("data").read();
+      Assert.fail("read of a corrupt chunk succeeded");
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  private void compare() throws IOException, InvalidRangeException {
+    try (NetcdfFile plain = NetcdfFile.open(TestDir.cdmLocalTestDataDir + "chunked.h5");
+         NetcdfFile filtered = NetcdfFile.open(TestDir.cdmLocalTestDataDir + "chunkedDeflate.h5")) {
+      Variable vp = plain.findVariable("data");
+      Variable vf = filtered.findVariable("data");
+      Assert.assertNotNull(vf);
+
+      compare(vp.read(), vf.read());
+      for (String section : new String[]{"0:9,0:9", "1:9:2,0:8:3", "4:7,2", "9,9"})
+        compare(vp.read(section), vf.read(section));
+    }
+  }
+
+  private void compare(Array expect, Array got) {
+    Assert.assertArrayEquals(expect.getShape(), got.getShape());
+    Assert.assertArrayEquals((int[]) expect.copyTo1DJavaArray(), (int[]) got.copyTo1DJavaArray());
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.ncml;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compare sectioned reads of outer dimension aggregations, with and without Aggregation.setSectionReadExecutor().
+ */
+public class TestAggSectionParallel {
+  private static ExecutorService pool;
+
+  @BeforeClass
+  public static void setup() {
+    pool = Executors.newFixedThreadPool(3);
+  }
+
+  @AfterClass
+  public static void teardown() {
+    Aggregation.setSectionReadExecutor(null, 1, 0);
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void testJoinExisting() throws IOException, InvalidRangeException {
+    compare("aggExisting.xml", "T", "0:58,0:2,0:3", "25:34,0:2,0:3", "1:57:7,1:2,0:3:2", "30:31,2,3", "44:53,0:1,0:2");
+  }
+
+  @Test
+  public void testJoinNew() throws IOException, InvalidRangeException {
+    compare("aggSynthetic.xml", "T", "0:2,0:2,0:3", "1:2,0:2,0:3", "0:2:2,1:2,1:3", "1,0:2,0:3");
+  }
+
+  private void compare(String ncml, String varName, String... sections) throws IOException, InvalidRangeException {
+    String filename = "file:./" + TestNcML.topDir + ncml;
+    try (NetcdfFile ncfile = NcMLReader.readNcML(filename, null)) {
+      Variable v = ncfile.findVariable(varName);
+      Assert.assertNotNull(varName, v);
+
+      for (String spec : sections) {
+        Section section = new Section(spec);
+
+        Aggregation.setSectionReadExecutor(null, 1, 0);
+        Array serial = v.read(section);
+
+        Aggregation.setSectionReadExecutor(pool, 2, 2);
+        Array parallel = v.read(section);
+
+        Assert.assertArrayEquals(spec, serial.getShape(), parallel.getShape());
+        Assert.assertTrue(ncml + " " + spec, MAMath.equals(serial, parallel));
+      }
+    }
+  }
+}
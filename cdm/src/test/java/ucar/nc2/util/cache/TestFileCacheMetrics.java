@@ -0,0 +1,153 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.util.cache;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Formatter;
+
+/**
+ * Test FileCacheMetrics as kept by the FileCacheIF implementations.
+ */
+public class TestFileCacheMetrics {
+
+  @AfterClass
+  public static void shutdown() {
+    FileCache.shutdown();
+    FileCacheStriped.shutdown();
+  }
+
+  @Test
+  public void testFileCache() throws IOException {
+    check(new FileCache("test", 2, 4, -1, -1));
+  }
+
+  @Test
+  public void testFileCacheStriped() throws IOException {
+    check(new FileCacheStriped("test", 2, 4, -1, -1));
+  }
+
+  private void check(FileCacheIF cache) throws IOException {
+    TestFileCacheStriped.MockFactory factory = new TestFileCacheStriped.MockFactory();
+
+    FileCacheable f1 = cache.acquire(factory, TestFileCacheStriped.durl("one"));
+    FileCacheable f2 = cache.acquire(factory, TestFileCacheStriped.durl("two"));
+    f1.close();
+    cache.acquire(factory, TestFileCacheStriped.durl("one"));
+
+    FileCacheMetrics metrics = cache.getMetrics();
+    Assert.assertEquals(1, metrics.getHits());
+    Assert.assertEquals(2, metrics.getMisses());
+    Assert.assertEquals(1.0 / 3, metrics.getHitRate(), 1e-9);
+    Assert.assertEquals(2, metrics.getFilesInCache());
+    Assert.assertEquals(2, metrics.getFilesInUse());
+
+    Assert.assertEquals(1, metrics.getOpenTimes().size());
+    FileCacheMetrics.OpenTimes times = metrics.getOpenTimes().get(0);
+    Assert.assertEquals("MockFile", times.getFileType());
+    Assert.assertEquals(2, times.getCount());
+    long sum = 0;
+    for (long count : times.getHistogram()) sum += count;
+    Assert.assertEquals(2, sum);
+
+    // evict down to minElements
+    f1.close();
+    f2.close();
+    for (int i = 0; i < 4; i++)
+      cache.acquire(factory, TestFileCacheStriped.durl("file" + i)).close();
+    if (cache instanceof FileCache) ((FileCache) cache).cleanup(4);
+    else ((FileCacheStriped) cache).cleanup(4);
+    Assert.assertEquals(4, metrics.getEvictions());
+    Assert.assertEquals(2, metrics.getFilesInCache());
+    Assert.assertEquals(0, metrics.getFilesInUse());
+
+    Formatter f = new Formatter();
+    metrics.toJson(f, "");
+    String json = f.toString();
+    Assert.assertTrue(json, json.contains("\"hits\": 1,"));
+    Assert.assertTrue(json, json.contains("\"evictions\": 4,"));
+    Assert.assertTrue(json, json.contains("\"fileType\": \"MockFile\", \"count\": 6"));
+
+    // showStats reports the metrics counts
+    f = new Formatter();
+    cache.showStats(f);
+    Assert.assertTrue(f.toString(), f.toString().contains("hits= 1 miss= 6 "));
+
+    metrics.reset();
+    Assert.assertEquals(0, metrics.getHits());
+    Assert.assertEquals(0, metrics.getOpenTimes().size());
+    f = new Formatter();
+    cache.showStats(f);
+    Assert.assertTrue(f.toString(), f.toString().contains("hits= 0 miss= 0 "));
+  }
+
+  @Test
+  public void testFileCacheGuava() throws IOException {
+    FileCacheGuava cache = new FileCacheGuava("test", 2);
+    TestFileCacheStriped.MockFactory factory = new TestFileCacheStriped.MockFactory();
+
+    cache.acquire(factory, TestFileCacheStriped.durl("one"));
+    cache.acquire(factory, TestFileCacheStriped.durl("one"));
+    cache.acquire(factory, TestFileCacheStriped.durl("two"));
+    cache.acquire(factory, TestFileCacheStriped.durl("three"));
+
+    FileCacheMetrics metrics = cache.getMetrics();
+    Assert.assertEquals(1, metrics.getHits());
+    Assert.assertEquals(3, metrics.getMisses());
+    Assert.assertEquals(1, metrics.getEvictions());
+    Assert.assertEquals(2, metrics.getFilesInCache());
+    Assert.assertEquals(-1, metrics.getFilesInUse());
+  }
+
+  @Test
+  public void testHistogram() {
+    FileCacheMetrics metrics = new FileCacheMetrics("test", null, null);
+    FileCacheable file = new TestFileCacheStriped.MockFile("loc");
+    long msec = 1000 * 1000;
+    metrics.opened(file, msec / 2);       // < 1 msec
+    metrics.opened(file, msec);           // [1, 2)
+    metrics.opened(file, 3 * msec);       // [2, 4)
+    metrics.opened(file, 1000 * 1000 * msec); // longest bucket
+
+    FileCacheMetrics.OpenTimes times = metrics.getOpenTimes().get(0);
+    long[] histo = times.getHistogram();
+    Assert.assertEquals(1, histo[0]);
+    Assert.assertEquals(1, histo[1]);
+    Assert.assertEquals(1, histo[2]);
+    Assert.assertEquals(1, histo[FileCacheMetrics.NBUCKETS - 1]);
+    Assert.assertEquals(1000 * 1000.0, times.getMaxMsecs(), 1e-6);
+  }
+}
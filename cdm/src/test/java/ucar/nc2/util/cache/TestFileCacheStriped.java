@@ -0,0 +1,318 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.util.cache;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.nc2.dataset.DatasetUrl;
+import ucar.nc2.util.CancelTask;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test FileCacheStriped with a FileCacheable that does no IO.
+ * main() is a multi-threaded benchmark comparing it with the other FileCacheIF implementations.
+ */
+public class TestFileCacheStriped {
+
+  @AfterClass
+  public static void shutdown() {
+    FileCacheStriped.shutdown();
+  }
+
+  @Test
+  public void testAcquireRelease() throws IOException {
+    FileCacheStriped cache = new FileCacheStriped("test", 5, 10, -1, -1);
+    MockFactory factory = new MockFactory();
+
+    FileCacheable f1 = cache.acquire(factory, durl("one"));
+    FileCacheable f2 = cache.acquire(factory, durl("one")); // f1 is locked, so a new one is opened
+    Assert.assertNotSame(f1, f2);
+    Assert.assertEquals(2, factory.opened.get());
+
+    f1.close();
+    Assert.assertFalse(((MockFile) f1).closed);
+    Assert.assertSame(f1, cache.acquire(factory, durl("one")));
+    Assert.assertEquals(2, factory.opened.get());
+
+    f1.close();
+    f2.close();
+    Assert.assertEquals(2, cache.showCache().size());
+  }
+
+  @Test
+  public void testModified() throws IOException {
+    FileCacheStriped cache = new FileCacheStriped("test", 5, 10, -1, -1);
+    MockFactory factory = new MockFactory();
+
+    MockFile f1 = (MockFile) cache.acquire(factory, durl("one"));
+    f1.close();
+    f1.lastModified++;
+
+    FileCacheable f2 = cache.acquire(factory, durl("one"));
+    Assert.assertNotSame(f1, f2);
+    Assert.assertTrue(f1.closed);
+    Assert.assertEquals(1, cache.showCache().size());
+  }
+
+  @Test
+  public void testEjectAndClear() throws IOException {
+    FileCacheStriped cache = new FileCacheStriped("test", 5, 10, -1, -1);
+    MockFactory factory = new MockFactory();
+
+    MockFile f1 = (MockFile) cache.acquire(factory, durl("one"));
+    MockFile f2 = (MockFile) cache.acquire(factory, durl("two"));
+    MockFile f3 = (MockFile) cache.acquire(factory, durl("three"));
+    f1.close();
+    f2.close();
+
+    cache.eject("one");
+    Assert.assertTrue(f1.closed);
+    Assert.assertEquals(2, cache.showCache().size());
+
+    cache.clearCache(false); // f3 is locked
+    Assert.assertTrue(f2.closed);
+    Assert.assertFalse(f3.closed);
+    Assert.assertEquals(1, cache.showCache().size());
+
+    cache.clearCache(true);
+    Assert.assertTrue(f3.closed);
+    Assert.assertEquals(0, cache.showCache().size());
+  }
+
+  @Test
+  public void testCleanup() throws IOException {
+    FileCacheStriped cache = new FileCacheStriped("test", 5, 10, -1, -1);
+    MockFactory factory = new MockFactory();
+
+    List<FileCacheable> locked = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      FileCacheable f = cache.acquire(factory, durl("file" + i));
+      if (i < 3) locked.add(f);
+      else f.close();
+    }
+
+    cache.cleanup(10);
+    Assert.assertEquals(5, cache.showCache().size());
+    for (FileCacheable f : locked) // locked files are not removed
+      Assert.assertFalse(((MockFile) f).closed);
+  }
+
+  // release() changes lastAccessed while cleanup() sorts on it
+  @Test
+  public void testCleanupWhileReleasing() throws Exception {
+    final FileCacheStriped cache = new FileCacheStriped("test", 1000, 100000, -1, -1);
+    final AtomicBoolean done = new AtomicBoolean();
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    Future<Integer> cleanups = pool.submit(() -> {
+      int n = 0;
+      while (!done.get()) {
+        cache.cleanup(100000);
+        n++;
+      }
+      return n;
+    });
+    try {
+      Result result = stress(cache, 4, 3000, 200000, true);
+      Assert.assertEquals(0, result.errors.get());
+    } finally {
+      done.set(true);
+      Assert.assertTrue(cleanups.get() > 0); // throws if a cleanup failed
+      pool.shutdown();
+    }
+  }
+
+  // no file is ever handed to two threads at once, or handed out after it was closed
+  @Test
+  public void testConcurrent() throws Exception {
+    FileCacheStriped cache = new FileCacheStriped("test", 10, 20, 40, -1);
+    Result result = stress(cache, 8, 50, 20000, true);
+    Assert.assertEquals(0, result.errors.get());
+    Assert.assertTrue(result.hits.get() > 0);
+  }
+
+  ///////////////////////////////////////////////////////////////////////
+
+  static class Result {
+    final AtomicInteger errors = new AtomicInteger();
+    final AtomicInteger hits = new AtomicInteger();
+    long nanos;
+  }
+
+  static Result stress(final FileCacheIF cache, int nthreads, final int nkeys, final int opsPerThread, final boolean check) throws Exception {
+    final MockFactory factory = new MockFactory();
+    final Result result = new Result();
+    final CyclicBarrier barrier = new CyclicBarrier(nthreads);
+    ExecutorService pool = Executors.newFixedThreadPool(nthreads);
+
+    List<Future<Long>> futures = new ArrayList<>();
+    for (int t = 0; t < nthreads; t++) {
+      final int seed = t;
+      futures.add(pool.submit(() -> {
+        Random r = new Random(seed);
+        barrier.await();
+        long start = System.nanoTime();
+        for (int i = 0; i < opsPerThread; i++) {
+          MockFile f = (MockFile) cache.acquire(factory, durl("file" + r.nextInt(nkeys)));
+          if (check) {
+            if (f.closed || !f.inUse.compareAndSet(false, true)) result.errors.incrementAndGet();
+            if (f.useCount++ > 0) result.hits.incrementAndGet();
+            f.inUse.set(false);
+          }
+          f.close();
+        }
+        return System.nanoTime() - start;
+      }));
+    }
+
+    for (Future<Long> f : futures)
+      result.nanos = Math.max(result.nanos, f.get());
+    pool.shutdown();
+    return result;
+  }
+
+  static DatasetUrl durl(String location) {
+    return new DatasetUrl(null, location);
+  }
+
+  static class MockFactory implements FileFactory {
+    final AtomicInteger opened = new AtomicInteger();
+
+    public FileCacheable open(DatasetUrl location, int buffer_size, CancelTask cancelTask, Object iospMessage) throws IOException {
+      opened.incrementAndGet();
+      return new MockFile(location.trueurl);
+    }
+  }
+
+  static class MockFile implements FileCacheable {
+    final String location;
+    final AtomicBoolean inUse = new AtomicBoolean();
+    volatile FileCacheIF cache;
+    volatile long lastModified = 1;
+    volatile boolean closed;
+    int useCount;
+
+    MockFile(String location) {
+      this.location = location;
+    }
+
+    public String getLocation() {
+      return location;
+    }
+
+    public void close() throws IOException {
+      FileCacheIF cache = this.cache;
+      if (cache != null && cache.release(this)) return;
+      closed = true;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public void setFileCache(FileCacheIF fileCache) {
+      this.cache = fileCache;
+    }
+
+    public void release() throws IOException {
+    }
+
+    public void reacquire() throws IOException {
+    }
+  }
+
+  //////////////////////////////////////////////////////////////////////
+  // benchmark
+
+  interface CacheMaker {
+    FileCacheIF make(int min, int max);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int nkeys = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+    int ops = (args.length > 1) ? Integer.parseInt(args[1]) : 200 * 1000;
+    int min = nkeys / 4, max = nkeys / 2; // so that cleanups happen
+
+    String[] names = {"FileCache", "FileCacheARC", "FileCacheGuava", "FileCacheStriped"};
+    CacheMaker[] makers = {
+            (lo, hi) -> new FileCache("bench", lo, hi, -1, 60),
+            (lo, hi) -> new FileCacheARC("bench", lo, hi, -1, 60),
+            (lo, hi) -> new FileCacheGuava("bench", hi),
+            (lo, hi) -> new FileCacheStriped("bench", lo, hi, -1, 60)
+    };
+
+    System.out.printf("%d keys, cache [%d,%d], %d acquire/release per thread%n", nkeys, min, max, ops);
+    System.out.printf("%-18s", "threads");
+    for (String name : names) System.out.printf("%18s", name);
+    System.out.printf("%n");
+
+    int ncpus = Runtime.getRuntime().availableProcessors();
+    for (int nthreads = 1; nthreads <= 4 * ncpus; nthreads *= 2) {
+      Formatter row = new Formatter(); // FileCacheARC prints to stdout, so print the row when done
+      row.format("%-18d", nthreads);
+      for (int i = 0; i < makers.length; i++) {
+        FileCacheIF cache = makers[i].make(min, max);
+        try {
+          stress(cache, nthreads, nkeys, ops / 10, false); // warmup
+          Result result = stress(cache, nthreads, nkeys, ops, false);
+          double opsPerSec = 1.0e9 * nthreads * ops / result.nanos;
+          row.format("%18.0f", opsPerSec);
+        } catch (Throwable t) {
+          row.format("%18s", t.getClass().getSimpleName());
+        } finally {
+          cache.clearCache(true);
+        }
+      }
+      System.out.printf("%s  ops/sec%n", row);
+    }
+
+    if (args.length > 2) { // show the striped cache state after a run
+      FileCacheStriped cache = new FileCacheStriped("bench", min, max, -1, 60);
+      stress(cache, ncpus, nkeys, ops, false);
+      Formatter f = new Formatter();
+      cache.showStats(f);
+      System.out.printf("%s", f);
+    }
+
+    FileCache.shutdown();
+    FileCacheStriped.shutdown();
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.unidata.geoloc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compare GridCellIndex lookups with a brute force scan over a curvilinear grid.
+ */
+public class TestGridCellIndex {
+
+  // rotated and sheared grid, like an ocean model grid
+  static double[][] makeEdges(int nrows, int ncols) {
+    int npts = (nrows + 1) * (ncols + 1);
+    double[] lat = new double[npts];
+    double[] lon = new double[npts];
+    double angle = Math.toRadians(30);
+    for (int row = 0; row <= nrows; row++) {
+      for (int col = 0; col <= ncols; col++) {
+        double x = col * 0.05;
+        double y = row * 0.04 + 0.002 * col * Math.sin(col * 0.05);
+        lon[row * (ncols + 1) + col] = -80.0 + x * Math.cos(angle) - y * Math.sin(angle);
+        lat[row * (ncols + 1) + col] = 20.0 + x * Math.sin(angle) + y * Math.cos(angle);
+      }
+    }
+    return new double[][]{lat, lon};
+  }
+
+  // cells with missing corners arent indexed
+  private boolean findBrute(GridCellIndex index, double[][] edges, int nrows, int ncols, double lat, double lon, int[] rectIndex) {
+    for (int row = 0; row < nrows; row++) {
+      for (int col = 0; col < ncols; col++) {
+        int i1 = row * (ncols + 1) + col;
+        int i4 = i1 + ncols + 1;
+        if (Double.isNaN(edges[0][i1] + edges[0][i1 + 1] + edges[0][i4] + edges[0][i4 + 1])) continue;
+        if (Double.isNaN(edges[1][i1] + edges[1][i1 + 1] + edges[1][i4] + edges[1][i4 + 1])) continue;
+        if (index.contains(lat, lon, row, col)) {
+          rectIndex[0] = row;
+          rectIndex[1] = col;
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean boundsBrute(double[][] edges, int nrows, int ncols, double minLat, double maxLat, double minLon, double maxLon, int[] result) {
+    int minRow = Integer.MAX_VALUE, maxRow = -1, minCol = Integer.MAX_VALUE, maxCol = -1;
+    for (int row = 0; row <= nrows; row++) {
+      for (int col = 0; col <= ncols; col++) {
+        double lat = edges[0][row * (ncols + 1) + col];
+        double lon = edges[1][row * (ncols + 1) + col];
+        if ((lat >= minLat) && (lat <= maxLat) && (lon >= minLon) && (lon <= maxLon)) {
+          minRow = Math.min(minRow, row);
+          maxRow = Math.max(maxRow, row);
+          minCol = Math.min(minCol, col);
+          maxCol = Math.max(maxCol, col);
+        }
+      }
+    }
+    if (maxRow < 0) return false;
+    result[0] = minRow;
+    result[1] = maxRow;
+    result[2] = minCol;
+    result[3] = maxCol;
+    return true;
+  }
+
+  private void checkFindCell(double[][] edges, int nrows, int ncols, int minFound) {
+    GridCellIndex index = new GridCellIndex(edges[0], edges[1], nrows, ncols);
+    Random r = new Random(17);
+    int[] want = new int[2];
+    int[] got = new int[2];
+    int nfound = 0;
+    for (int i = 0; i < 2000; i++) {
+      double lat = index.getLatMin() - 1 + r.nextDouble() * (index.getLatMax() - index.getLatMin() + 2);
+      double lon = index.getLonMin() - 1 + r.nextDouble() * (index.getLonMax() - index.getLonMin() + 2);
+      boolean found = findBrute(index, edges, nrows, ncols, lat, lon, want);
+      Assert.assertEquals(lat + " " + lon, found, index.findCell(lat, lon, got));
+      if (found) {
+        Assert.assertArrayEquals(lat + " " + lon, want, got);
+        nfound++;
+      }
+    }
+    Assert.assertTrue(nfound >= minFound);
+  }
+
+  @Test
+  public void testFindCell() {
+    checkFindCell(makeEdges(60, 90), 60, 90, 100);
+  }
+
+  @Test
+  public void testFindCellMissing() {
+    int nrows = 40, ncols = 50;
+    double[][] edges = makeEdges(nrows, ncols);
+    for (int col = 10; col < 20; col++) {
+      edges[0][7 * (ncols + 1) + col] = Double.NaN;
+      edges[1][30 * (ncols + 1) + col] = Double.NaN;
+    }
+    checkFindCell(edges, nrows, ncols, 100);
+  }
+
+  @Test
+  public void testFindCellOneRow() {
+    checkFindCell(makeEdges(1, 30), 1, 30, 1);
+  }
+
+  @Test
+  public void testEdgeBounds() {
+    int nrows = 60, ncols = 90;
+    double[][] edges = makeEdges(nrows, ncols);
+    GridCellIndex index = new GridCellIndex(edges[0], edges[1], nrows, ncols);
+    Random r = new Random(23);
+    int[] want = new int[4];
+    int[] got = new int[4];
+    for (int i = 0; i < 500; i++) {
+      double lat0 = index.getLatMin() - 1 + r.nextDouble() * (index.getLatMax() - index.getLatMin() + 2);
+      double lon0 = index.getLonMin() - 1 + r.nextDouble() * (index.getLonMax() - index.getLonMin() + 2);
+      double lat1 = lat0 + r.nextDouble() * 2;
+      double lon1 = lon0 + r.nextDouble() * 2;
+      boolean found = boundsBrute(edges, nrows, ncols, lat0, lat1, lon0, lon1, want);
+      Assert.assertEquals(found, index.findEdgeBounds(lat0, lat1, lon0, lon1, got));
+      if (found)
+        Assert.assertArrayEquals(want, got);
+    }
+
+    // whole grid
+    Assert.assertTrue(index.findEdgeBounds(-90, 90, -180, 180, got));
+    Assert.assertArrayEquals(new int[]{0, nrows, 0, ncols}, got);
+  }
+
+  // timing, index vs brute force scan
+  public static void main(String[] args) {
+    int nrows = 1000, ncols = 1500;
+    double[][] edges = makeEdges(nrows, ncols);
+    long start = System.nanoTime();
+    GridCellIndex index = new GridCellIndex(edges[0], edges[1], nrows, ncols);
+    System.out.printf("build index %d x %d: %d ms%n", nrows, ncols, (System.nanoTime() - start) / 1000000);
+
+    TestGridCellIndex test = new TestGridCellIndex();
+    Random r = new Random(1);
+    int n = 20;
+    double[] lats = new double[n], lons = new double[n];
+    for (int i = 0; i < n; i++) {
+      int row = r.nextInt(nrows), col = r.nextInt(ncols);
+      lats[i] = edges[0][row * (ncols + 1) + col] + 0.001;
+      lons[i] = edges[1][row * (ncols + 1) + col] + 0.001;
+    }
+
+    int[] rectIndex = new int[2];
+    start = System.nanoTime();
+    for (int i = 0; i < n; i++) test.findBrute(index, edges, nrows, ncols, lats[i], lons[i], rectIndex);
+    long brute = System.nanoTime() - start;
+    start = System.nanoTime();
+    for (int rep = 0; rep < 1000; rep++)
+      for (int i = 0; i < n; i++) index.findCell(lats[i], lons[i], rectIndex);
+    long indexed = (System.nanoTime() - start) / 1000;
+    System.out.printf("point lookup: brute %d usecs, index %d nsecs%n", brute / n / 1000, indexed / n);
+  }
+
+}
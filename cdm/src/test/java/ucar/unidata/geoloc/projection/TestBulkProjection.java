@@ -0,0 +1,182 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.unidata.geoloc.projection;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ucar.unidata.geoloc.*;
+import ucar.unidata.geoloc.projection.proj4.*;
+import ucar.unidata.geoloc.projection.sat.Geostationary;
+import ucar.unidata.geoloc.projection.sat.MSGnavigation;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compare the bulk float[][] and double[][] conversions, serial and parallel, with the one point at a time conversions.
+ */
+public class TestBulkProjection {
+  private static ExecutorService pool;
+
+  @BeforeClass
+  public static void setup() {
+    pool = Executors.newFixedThreadPool(3);
+    ProjectionImpl.setBulkExecutor(pool, 4, 10);
+  }
+
+  @AfterClass
+  public static void teardown() {
+    ProjectionImpl.setBulkExecutor(null, 1, 1);
+    pool.shutdownNow();
+  }
+
+  private static ProjectionImpl[] projections() {
+    return new ProjectionImpl[]{
+            new AlbersEqualArea(), new FlatEarth(), new LambertAzimuthalEqualArea(), new LambertConformal(),
+            new LatLonProjection(), new Mercator(), new Orthographic(), new RotatedLatLon(-30, 15, 0),
+            new RotatedPole(37, 177), new Sinusoidal(), new Stereographic(), new TransverseMercator(),
+            new UtmProjection(13, true), new VerticalPerspectiveView(),
+            new AlbersEqualAreaEllipse(), new CylindricalEqualAreaProjection(), new EquidistantAzimuthalProjection(),
+            new LambertConformalConicEllipse(), new PolyconicProjection(), new StereographicAzimuthalProjection(),
+            new TransverseMercatorProjection(),
+            new Geostationary(-75.0), new Geostationary(0.0, false), new MSGnavigation(),
+    };
+  }
+
+  @Test
+  public void testLatLonToProj() {
+    int n = 2000;
+    double[][] latlon = new double[2][n];
+    for (int i = 0; i < n; i++) {
+      latlon[0][i] = -60 + (i % 40) * 3.0;      // -60 to 57
+      latlon[1][i] = -150 + (i / 40) * 6.0;     // -150 to 144
+    }
+    float[][] latlonF = toFloat(latlon);
+
+    for (ProjectionImpl proj : projections()) {
+      double[][] expected = new double[2][n];
+      double[][] expectedF = new double[2][n];
+      ProjectionPointImpl pp = new ProjectionPointImpl();
+      for (int i = 0; i < n; i++) {
+        proj.latLonToProj(new LatLonPointImpl(latlon[0][i], latlon[1][i]), pp);
+        expected[0][i] = pp.getX();
+        expected[1][i] = pp.getY();
+        proj.latLonToProj(new LatLonPointImpl(latlonF[0][i], latlonF[1][i]), pp);
+        expectedF[0][i] = (float) pp.getX();
+        expectedF[1][i] = (float) pp.getY();
+      }
+
+      String what = proj.getClass().getSimpleName();
+      compare(what, expected, proj.latLonToProj(latlon, new double[2][n]), false);
+      compare(what, expectedF, toDouble(proj.latLonToProj(latlonF, new float[2][n])), false);
+
+      compareExact(what, proj.latLonToProj(latlon, new double[2][n], 0, 1), proj.latLonToProjParallel(latlon, new double[2][n], 0, 1));
+      compareExact(what, toDouble(proj.latLonToProj(latlonF, new float[2][n], 0, 1)),
+              toDouble(proj.latLonToProjParallel(latlonF, new float[2][n], 0, 1)));
+    }
+  }
+
+  @Test
+  public void testProjToLatLon() {
+    int n = 2000;
+    for (ProjectionImpl proj : projections()) {
+      // a grid over the default map area
+      ProjectionRect area = proj.getDefaultMapArea();
+      double[][] xy = new double[2][n];
+      for (int i = 0; i < n; i++) {
+        xy[0][i] = area.getMinX() + (i % 40) * area.getWidth() / 40;
+        xy[1][i] = area.getMinY() + (i / 40) * area.getHeight() / 50;
+      }
+      float[][] xyF = toFloat(xy);
+
+      double[][] expected = new double[2][n];
+      double[][] expectedF = new double[2][n];
+      LatLonPointImpl llpt = new LatLonPointImpl();
+      for (int i = 0; i < n; i++) {
+        proj.projToLatLon(new ProjectionPointImpl(xy[0][i], xy[1][i]), llpt);
+        expected[0][i] = llpt.getLatitude();
+        expected[1][i] = llpt.getLongitude();
+        proj.projToLatLon(new ProjectionPointImpl(xyF[0][i], xyF[1][i]), llpt);
+        expectedF[0][i] = (float) llpt.getLatitude();
+        expectedF[1][i] = (float) llpt.getLongitude();
+      }
+
+      String what = proj.getClass().getSimpleName();
+      compare(what, expected, proj.projToLatLon(xy, new double[2][n]), true);
+      compare(what, expectedF, toDouble(proj.projToLatLon(xyF, new float[2][n])), true);
+
+      compareExact(what, proj.projToLatLon(xy, new double[2][n]), proj.projToLatLonParallel(xy, new double[2][n]));
+      compareExact(what, toDouble(proj.projToLatLon(xyF, new float[2][n])), toDouble(proj.projToLatLonParallel(xyF, new float[2][n])));
+    }
+  }
+
+  // some of the older bulk methods dont normalize longitude, and do the arithmetic in a slightly different order
+  private void compare(String what, double[][] expected, double[][] result, boolean isLatLon) {
+    for (int k = 0; k < 2; k++) {
+      for (int i = 0; i < expected[k].length; i++) {
+        double e = expected[k][i], r = result[k][i];
+        if (Double.isNaN(e) || Double.isInfinite(e)) {
+          Assert.assertEquals(what + " " + k + " " + i, e, r, 0.0);
+          continue;
+        }
+        double diff = Math.abs(e - r);
+        if (isLatLon && k == ProjectionImpl.INDEX_LON)
+          diff = Math.abs(LatLonPointImpl.lonNormal(diff));
+        Assert.assertTrue(what + " " + k + " " + i + ": " + e + " != " + r, diff <= 1.0e-5 * Math.max(1.0, Math.abs(e)));
+      }
+    }
+  }
+
+  private void compareExact(String what, double[][] expected, double[][] result) {
+    for (int k = 0; k < 2; k++)
+      Assert.assertArrayEquals(what, expected[k], result[k], 0.0);
+  }
+
+  private static float[][] toFloat(double[][] from) {
+    float[][] result = new float[2][from[0].length];
+    for (int k = 0; k < 2; k++)
+      for (int i = 0; i < from[k].length; i++)
+        result[k][i] = (float) from[k][i];
+    return result;
+  }
+
+  private static double[][] toDouble(float[][] from) {
+    double[][] result = new double[2][from[0].length];
+    for (int k = 0; k < 2; k++)
+      for (int i = 0; i < from[k].length; i++)
+        result[k][i] = from[k][i];
+    return result;
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.unidata.io;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.MAMath;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+import ucar.unidata.test.util.TestDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compare MMapRandomAccessFile with the buffered RandomAccessFile.
+ * Small segments are used, so that reads cross segment boundaries.
+ */
+public class TestMMapRandomAccessFile {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void reset() {
+    MMapRandomAccessFile.segmentShift = 30;
+    MMapRandomAccessFile.setPolicy(null, null);
+  }
+
+  @Test
+  public void testReadsMatchBuffered() throws IOException {
+    MMapRandomAccessFile.segmentShift = 12;
+    byte[] contents = new byte[50 * 1000 + 17];
+    new Random(17).nextBytes(contents);
+    String location = writeFile(contents);
+
+    try (RandomAccessFile buffered = new RandomAccessFile(location, "r");
+         RandomAccessFile mapped = new MMapRandomAccessFile(location, "r")) {
+      Assert.assertEquals(buffered.length(), mapped.length());
+
+      Random r = new Random(3);
+      for (int i = 0; i < 200; i++) {
+        long pos = r.nextInt(contents.length);
+        int len = r.nextInt(10000);
+        buffered.seek(pos);
+        mapped.seek(pos);
+
+        byte[] want = new byte[len];
+        byte[] got = new byte[len];
+        Assert.assertEquals(buffered.read(want), mapped.read(got));
+        Assert.assertArrayEquals("pos=" + pos + " len=" + len, want, got);
+        Assert.assertEquals(buffered.getFilePointer(), mapped.getFilePointer());
+        Assert.assertEquals(buffered.read(), mapped.read());
+      }
+
+      // primitives across a segment boundary
+      for (int order : new int[]{RandomAccessFile.BIG_ENDIAN, RandomAccessFile.LITTLE_ENDIAN}) {
+        buffered.order(order);
+        mapped.order(order);
+        buffered.seek(4096 - 3);
+        mapped.seek(4096 - 3);
+        Assert.assertEquals(buffered.readInt(), mapped.readInt());
+        Assert.assertEquals(buffered.readDouble(), mapped.readDouble(), 0.0);
+        Assert.assertEquals(buffered.readIntUnbuffered(8190), mapped.readIntUnbuffered(8190));
+
+        // arrays inside one segment, and across a boundary
+        for (long pos : new long[]{100, 4096 * 3 - 10}) {
+          float[] wantf = new float[300], gotf = new float[300];
+          buffered.seek(pos);
+          mapped.seek(pos);
+          buffered.readFloat(wantf, 0, 300);
+          mapped.readFloat(gotf, 0, 300);
+          Assert.assertArrayEquals(wantf, gotf, 0.0f);
+
+          short[] wants = new short[301], gots = new short[301];
+          buffered.readShort(wants, 1, 300);
+          mapped.readShort(gots, 1, 300);
+          Assert.assertArrayEquals(wants, gots);
+
+          double[] wantd = new double[50], gotd = new double[50];
+          buffered.readDouble(wantd, 0, 50);
+          mapped.readDouble(gotd, 0, 50);
+          Assert.assertArrayEquals(wantd, gotd, 0.0);
+          Assert.assertEquals(buffered.getFilePointer(), mapped.getFilePointer());
+        }
+      }
+
+      // end of file
+      mapped.seek(contents.length - 2);
+      Assert.assertEquals(2, mapped.read(new byte[10]));
+      Assert.assertEquals(-1, mapped.read());
+      Assert.assertTrue(mapped.isAtEndOfFile());
+    }
+  }
+
+  @Test
+  public void testSearchForward() throws IOException {
+    MMapRandomAccessFile.segmentShift = 12;
+    byte[] contents = new byte[30000];
+    byte[] marker = "GRIB".getBytes("US-ASCII");
+    System.arraycopy(marker, 0, contents, 20000, marker.length);
+    String location = writeFile(contents);
+
+    try (RandomAccessFile mapped = new MMapRandomAccessFile(location, "r")) {
+      mapped.seek(100);
+      Assert.assertTrue(mapped.searchForward(new KMPMatch(marker), -1));
+      Assert.assertEquals(20000, mapped.getFilePointer());
+      byte[] got = new byte[4];
+      mapped.readFully(got);
+      Assert.assertArrayEquals(marker, got);
+
+      Assert.assertFalse(mapped.searchForward(new KMPMatch(marker), -1));
+    }
+  }
+
+  @Test
+  public void testSharedMapping() throws IOException {
+    String location = writeFile(new byte[1000]);
+    int before = MMapRandomAccessFile.getMappedFileCount();
+
+    RandomAccessFile raf1 = new MMapRandomAccessFile(location, "r");
+    RandomAccessFile raf2 = new MMapRandomAccessFile(location, "r");
+    Assert.assertEquals(before + 1, MMapRandomAccessFile.getMappedFileCount());
+
+    raf1.close();
+    Assert.assertEquals(before + 1, MMapRandomAccessFile.getMappedFileCount());
+    raf2.close();
+    Assert.assertEquals(before, MMapRandomAccessFile.getMappedFileCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReadOnly() throws IOException {
+    new MMapRandomAccessFile(writeFile(new byte[10]), "rw");
+  }
+
+  @Test
+  public void testPolicy() throws IOException {
+    String location = writeFile(new byte[10]);
+    Assert.assertFalse(MMapRandomAccessFile.useFor(location));
+
+    MMapRandomAccessFile.setPolicy(Collections.singletonList(tempFolder.getRoot().getPath()), Collections.singletonList("N3iosp"));
+    Assert.assertTrue(MMapRandomAccessFile.useFor(location));
+    Assert.assertFalse(MMapRandomAccessFile.useFor(TestDir.cdmLocalTestDataDir + "jan.nc"));
+    Assert.assertTrue(MMapRandomAccessFile.useForIosp(ucar.nc2.iosp.netcdf3.N3iosp.class));
+    Assert.assertFalse(MMapRandomAccessFile.useForIosp(ucar.nc2.iosp.hdf5.H5iosp.class));
+
+    try (RandomAccessFile raf = RandomAccessFile.acquire(location)) {
+      Assert.assertTrue(raf instanceof MMapRandomAccessFile);
+    }
+  }
+
+  @Test
+  public void testOpenWithIospPolicy() throws IOException {
+    String location = TestDir.cdmLocalTestDataDir + "jan.nc";
+    Array want;
+    try (NetcdfFile ncfile = NetcdfFile.open(location)) {
+      want = ncfile.findVariable("T").read();
+    }
+
+    MMapRandomAccessFile.setPolicy(null, Collections.singletonList("N3iosp"));
+    int before = MMapRandomAccessFile.getMappedFileCount();
+    try (NetcdfFile ncfile = NetcdfFile.open(location)) {
+      Assert.assertEquals(before + 1, MMapRandomAccessFile.getMappedFileCount());
+      Assert.assertTrue(MAMath.equals(want, ncfile.findVariable("T").read()));
+    }
+    Assert.assertEquals(before, MMapRandomAccessFile.getMappedFileCount());
+
+    // a RandomAccessFile passed in belongs to the caller, so is used as is
+    RandomAccessFile raf = new RandomAccessFile(location, "r");
+    try (NetcdfFile ncfile = NetcdfFile.open(raf, location, null, null)) {
+      Assert.assertEquals(before, MMapRandomAccessFile.getMappedFileCount());
+      Assert.assertTrue(MAMath.equals(want, ncfile.findVariable("T").read()));
+      Assert.assertSame(raf, ncfile.sendIospMessage(NetcdfFile.IOSP_MESSAGE_RANDOM_ACCESS_FILE));
+    }
+  }
+
+  private String writeFile(byte[] contents) throws IOException {
+    File f = tempFolder.newFile();
+    try (FileOutputStream out = new FileOutputStream(f)) {
+      out.write(contents);
+    }
+    return f.getPath();
+  }
+
+  /////////////////////////////////////////////////////////////////////////
+  // compare read times against the buffered RandomAccessFile
+
+  public static void main(String[] args) throws Exception {
+    File n3 = File.createTempFile("mmap", ".nc");
+    n3.deleteOnExit();
+    int nrows = 4000, ncols = 8000;  // 128 Mbytes of floats
+    makeN3(n3.getPath(), nrows, ncols);
+
+    System.out.printf("%-50s %12s %12s%n", "read", "buffered", "mmap");
+    time(n3.getPath(), "N3iosp whole variable", "N3iosp", 5, nrows, false);
+    time(n3.getPath(), "N3iosp 100 row slices", "N3iosp", 5, nrows, true);
+
+    List<String> h5files = new ArrayList<>(Arrays.asList(args));
+    if (h5files.isEmpty()) {
+      h5files.add(TestDir.cdmLocalTestDataDir + "chunked.h5");
+      h5files.add(TestDir.cdmLocalTestDataDir + "testCFGridWriter.nc4");
+    }
+    for (String h5 : h5files)
+      time(h5, "H5iosp " + new File(h5).getName(), "H5iosp", 500, 0, false);
+  }
+
+  private static void makeN3(String filename, int nrows, int ncols) throws Exception {
+    try (NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, filename)) {
+      Dimension rows = writer.addDimension(null, "row", nrows);
+      Dimension cols = writer.addDimension(null, "col", ncols);
+      writer.addVariable(null, "data", DataType.FLOAT, Arrays.asList(rows, cols));
+      writer.create();
+
+      Array row = Array.factory(DataType.FLOAT, new int[]{1, ncols});
+      for (int i = 0; i < ncols; i++) row.setFloat(i, i);
+      for (int j = 0; j < nrows; j++)
+        writer.write("data", new int[]{j, 0}, row);
+    }
+  }
+
+  private static void time(String location, String what, String iosp, int ntimes, int nrows, boolean slices) throws Exception {
+    double[] secs = new double[2];
+    for (int pass = 0; pass < 3; pass++) { // first pass warms up the page cache and the jit
+      for (int mmap = 0; mmap < 2; mmap++) {
+        MMapRandomAccessFile.setPolicy(null, mmap == 0 ? null : Collections.singletonList(iosp));
+        long start = System.nanoTime();
+        for (int n = 0; n < ntimes; n++) {
+          try (NetcdfFile ncfile = NetcdfFile.open(location)) {
+            for (Variable v : ncfile.getVariables()) {
+              if (slices) {
+                for (int j = 0; j < nrows; j += 100)
+                  v.read(j + ":" + (j + 99) + ",:");
+              } else {
+                v.read();
+              }
+            }
+          }
+        }
+        if (pass > 0) secs[mmap] += (System.nanoTime() - start) * 1.0e-9;
+      }
+    }
+    System.out.printf("%-50s %11.3fs %11.3fs%n", what + " x " + ntimes, secs[0] / 2, secs[1] / 2);
+    MMapRandomAccessFile.setPolicy(null, null);
+  }
+}
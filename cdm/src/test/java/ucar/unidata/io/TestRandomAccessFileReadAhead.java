@@ -0,0 +1,195 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.unidata.io;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Test the adaptive buffer size, positional reads and per-file counters of RandomAccessFile.
+ */
+public class TestRandomAccessFileReadAhead {
+  private static final int size = 1000 * 1000 + 3;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private byte[] contents;
+  private String location;
+
+  @Before
+  public void makeFile() throws IOException {
+    contents = new byte[size];
+    new Random(11).nextBytes(contents);
+    File f = tempFolder.newFile();
+    try (FileOutputStream out = new FileOutputStream(f)) {
+      out.write(contents);
+    }
+    location = f.getPath();
+  }
+
+  @After
+  public void reset() {
+    RandomAccessFile.setMaxBufferSize(128 * 1024);
+    RandomAccessFile.setPositionalRead(false);
+  }
+
+  @Test
+  public void testSequentialGrows() throws IOException {
+    long fixedReads = scan(8092);
+
+    try (RandomAccessFile raf = new RandomAccessFile(location, "r")) {
+      for (int i = 0; i < size; i++)
+        Assert.assertEquals(contents[i] & 0xff, raf.read());
+      Assert.assertEquals(-1, raf.read());
+
+      Assert.assertEquals(128 * 1024, raf.getBufferSize());
+      Assert.assertEquals(size, raf.getBytesRead());
+      Assert.assertTrue(raf.getReadCount() + " vs " + fixedReads, raf.getReadCount() < fixedReads / 5);
+      Assert.assertEquals(1, raf.getSeekCount());
+    }
+  }
+
+  @Test
+  public void testRandomStaysSmall() throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(location, "r")) {
+      for (int i = 0; i < 20000; i++) // get the buffer big
+        raf.read();
+
+      Random r = new Random(5);
+      raf.resetCounters();
+      for (int i = 0; i < 100; i++) {
+        int pos = r.nextInt(size - 10);
+        raf.seek(pos);
+        Assert.assertEquals(contents[pos] & 0xff, raf.read());
+        Assert.assertEquals(contents[pos + 1] & 0xff, raf.read());
+      }
+      Assert.assertTrue(raf.getSeekCount() > 90);
+      Assert.assertTrue(raf.getBytesRead() + " bytes", raf.getBytesRead() <= 100 * 8092);
+    }
+  }
+
+  @Test
+  public void testSearchForward() throws IOException {
+    byte[] marker = {'B', 'U', 'F', 'R'};
+    System.arraycopy(marker, 0, contents, size - 5000, marker.length);
+    try (FileOutputStream out = new FileOutputStream(location)) {
+      out.write(contents);
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(location, "r")) {
+      Assert.assertTrue(raf.searchForward(new KMPMatch(marker), -1));
+      Assert.assertEquals(size - 5000, raf.getFilePointer());
+      Assert.assertTrue(raf.getBufferSize() > 8092);
+    }
+  }
+
+  @Test
+  public void testPositionalRead() throws IOException {
+    RandomAccessFile.setPositionalRead(true);
+    try (RandomAccessFile raf = new RandomAccessFile(location, "r")) {
+      byte[] got = new byte[size];
+      raf.readFully(got, 0, 100);
+      raf.readFully(got, 100, size - 100);
+      Assert.assertArrayEquals(contents, got);
+      Assert.assertEquals(-1, raf.read());
+
+      raf.seek(size - 4);
+      Assert.assertEquals(contents[size - 4] & 0xff, raf.read());
+    }
+  }
+
+  @Test
+  public void testReleaseShrinks() throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(location, "r");
+    byte[] got = new byte[1000];
+    for (int i = 0; i < 100; i++)
+      raf.readFully(got);
+    Assert.assertTrue(raf.getBufferSize() > 8092);
+
+    raf.release();
+    Assert.assertEquals(8092, raf.getBufferSize());
+    raf.close();
+  }
+
+  @Test
+  public void testReleaseReacquire() throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(location, "r");
+    byte[] got = new byte[size];
+    raf.readFully(got, 0, 100);
+    for (int i = 0; i < 100; i++)
+      raf.readFully(got, 100 + 1000 * i, 1000);
+    long pos = raf.getFilePointer();
+    Assert.assertTrue(raf.getBufferSize() > 8092);
+
+    raf.release();
+    raf.reacquire();
+    Assert.assertEquals(8092, raf.getBufferSize());
+    Assert.assertEquals(pos, raf.getFilePointer());
+    raf.readFully(got, (int) pos, size - (int) pos);
+    Assert.assertArrayEquals(contents, got);
+    Assert.assertEquals(-1, raf.read());
+
+    // at the end of the file, stays there
+    raf.release();
+    raf.reacquire();
+    Assert.assertEquals(size, raf.getFilePointer());
+    Assert.assertEquals(-1, raf.read());
+
+    raf.seek(size - 4);
+    Assert.assertEquals(contents[size - 4] & 0xff, raf.read());
+    raf.setFileCache(null); // not really in a cache
+    raf.close();
+  }
+
+  // number of reads from disk for a sequential scan with a fixed buffer
+  private long scan(int maxBufferSize) throws IOException {
+    RandomAccessFile.setMaxBufferSize(maxBufferSize);
+    try (RandomAccessFile raf = new RandomAccessFile(location, "r")) {
+      while (raf.read() >= 0) ;
+      Assert.assertEquals(8092, raf.getBufferSize());
+      return raf.getReadCount();
+    } finally {
+      RandomAccessFile.setMaxBufferSize(128 * 1024);
+    }
+  }
+}
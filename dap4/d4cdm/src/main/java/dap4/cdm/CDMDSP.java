@@ -1021,12 +1021,8 @@ public class CDMDSP extends AbstractDSP
             throw new DataException("Node has no cdm match: " + dap.getShortName());
         switch (dap.getSort()) {
         case ATOMICVARIABLE:
-            try {
-                Array array = cdmv.read();
-                dv = new CDMDataAtomic(this, (DapAtomicVariable) dap, array);
-            } catch (IOException ioe) {
-                throw new DataException(ioe);
-            }
+            // read on demand, see CDMDataAtomic.readSection()
+            dv = new CDMDataAtomic(this, (DapAtomicVariable) dap, cdmv);
             break;
         case STRUCTURE:
             DapStructure ds = (DapStructure) dap;
@@ -15,7 +15,12 @@ import dap4.dap4shared.AbstractDataVariable;
 import dap4.dap4shared.Dap4Util;
 import ucar.ma2.Array;
 import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.nc2.Variable;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -35,6 +40,9 @@ public class CDMDataAtomic extends AbstractDataVariable
 
     protected Array data = null;
 
+    // If not null, data is read from this variable on demand
+    protected Variable cdmvar = null;
+
     //////////////////////////////////////////////////
     // Constructors
 
@@ -49,6 +57,17 @@ public class CDMDataAtomic extends AbstractDataVariable
         this.data = array;
     }
 
+    /**
+     * Read the data from the variable as it is requested,
+     * rather than holding all of it in memory.
+     */
+    public CDMDataAtomic(CDMDSP dsp, DapAtomicVariable template, Variable cdmvar)
+            throws DataException
+    {
+        this(dsp, template, (Array) null);
+        this.cdmvar = cdmvar;
+    }
+
     //////////////////////////////////////////////////
     // DataAtomic Interface
 
@@ -76,7 +95,12 @@ public class CDMDataAtomic extends AbstractDataVariable
         //read(long start, long count, Object data, long offset)
             throws DataException
     {
-        Array array = (Array) this.data;
+        if(this.data == null && this.cdmvar != null
+                && slices.size() == this.cdmvar.getRank()) {
+            readSection(slices, data, offset);
+            return;
+        }
+        Array array = getArray();
         // If content.getDataType returns object, then we
         // really do not know its true datatype. So, as a rule,
         // we will rely on this.basetype.
@@ -146,7 +170,7 @@ public class CDMDataAtomic extends AbstractDataVariable
     {
         Object result;
         int i = (int) index;
-        Array content = (Array) this.data;
+        Array content = getArray();
         DataType datatype = content.getDataType();
         long tmp = 0;
         switch (datatype) {
@@ -206,12 +230,61 @@ public class CDMDataAtomic extends AbstractDataVariable
     //////////////////////////////////////////////////
     // Utilities
 
+    /**
+     * Get all of the data, reading it from the variable if necessary.
+     */
+    protected Array
+    getArray()
+            throws DataException
+    {
+        if(this.data == null) {
+            try {
+                synchronized (this.dsp.getNetcdfDataset()) {
+                    this.data = this.cdmvar.read();
+                }
+            } catch (IOException ioe) {
+                throw new DataException(ioe);
+            }
+        }
+        return this.data;
+    }
+
+    /**
+     * Read just the requested slices from the variable.
+     * The NetcdfDataset is shared by all requests for this DSP,
+     * so reads are serialized on it.
+     */
+    protected void
+    readSection(List<Slice> slices, Object data, long offset)
+            throws DataException
+    {
+        DataType datatype = CDMUtil.daptype2cdmtype(this.basetype);
+        if(datatype == null)
+            throw new DataException("Unknown basetype: " + this.basetype);
+        Class elementclass = CDMUtil.cdmElementClass(datatype);
+        if(elementclass == null)
+            throw new DataException("Attempt to read non-atomic value of type: " + datatype);
+        Array section;
+        try {
+            List<Range> ranges = new ArrayList<>(slices.size());
+            for(Slice slice : slices)
+                ranges.add(new Range((int) slice.getFirst(), (int) slice.getLast(), (int) slice.getStride()));
+            synchronized (this.dsp.getNetcdfDataset()) {
+                section = this.cdmvar.read(ranges);
+            }
+        } catch (IOException | InvalidRangeException e) {
+            throw new DataException(e);
+        }
+        Object content = section.get1DJavaArray(elementclass);
+        System.arraycopy(content, 0, data, (int) offset, (int) section.getSize());
+    }
+
     protected DapSort
     computesort(Array array)
             throws DataException
     {
         DapSort sort = null;
-        Array content = (Array) this.data;
+        Array content = getArray();
         switch (content.getDataType()) {
         case BOOLEAN:
         case BYTE:
@@ -115,17 +115,24 @@ abstract public class DSPFactory
     }
 
     /**
+     * The registry lock is not held while the DSP is opened,
+     * so slow opens do not block each other.
+     *
      * @param path
      * @return DSP object that can process this path
      * @throws DapException
      */
-    synchronized public DSP
+    public DSP
     create(String path)
         throws DapException
     {
-        for(int i = 0;i < dspRegistry.size();i++) {
+        List<Class> registry;
+        synchronized (this) {
+            registry = new ArrayList<Class>(dspRegistry);
+        }
+        for(int i = 0;i < registry.size();i++) {
             try {
-                Class testclass = dspRegistry.get(i);
+                Class testclass = registry.get(i);
                 Method match = testclass.getMethod("match", String.class, DapContext.class);
                 boolean ismatch = (Boolean) match.invoke(null, path, (DapContext) null);
                 if(ismatch) {
@@ -7,18 +7,27 @@ import dap4.ce.CEConstraint;
 import dap4.core.util.DapException;
 import dap4.dap4shared.DSP;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
- * Provide an LRU cache of DSPs.
- * The cache key is assumed to be the DSP object.
- * The cache is synchronized to avoid race conditions.
- * Note that we do not have to release because Java
- * uses garbage collection and entries will be purged
- * if the LRU cache is full.
+ * Provide a cache of DSPs, keyed by path.
+ * Lookups do not take a global lock; a DSP is created
+ * while holding only the lock of its own cache entry,
+ * so a slow open blocks only requests for the same path.
+ * Every open() must be matched by a release().
+ * Entries are evicted when the cache exceeds its size,
+ * when they have been idle too long, or when the
+ * underlying file has been modified. Evicted DSPs are
+ * closed once the last request using them releases them.
+ * Cleanup runs after each miss, and after a release when
+ * the cache is over its size or at most every half idle
+ * period, so idle entries are closed even when all
+ * requests are hits.
  */
 
 abstract public class DapCache
@@ -27,15 +36,48 @@ abstract public class DapCache
     //////////////////////////////////////////////////
     // Constants
 
-    static final int MAXFILES = 100; // size of the cache
+    static final int MAXFILES = 100; // default size of the cache
+
+    static final long MAXIDLE = 10 * 60 * 1000; // default idle time in msec
+
+    //////////////////////////////////////////////////
+    // Type decls
+
+    static protected class Entry
+    {
+        final String path;
+        volatile DSP dsp = null; // null until created
+        long lastModified = 0;
+        long lastUsed = 0; // msecs, for the idle limit
+        long useOrder = 0; // for least recently used; many uses can have the same lastUsed
+        int refcount = 0;
+        boolean removed = false; // no longer in the cache; close when refcount drops to zero
+
+        Entry(String path)
+        {
+            this.path = path;
+        }
+    }
 
     //////////////////////////////////////////////////
     // Instance variables
 
-    /**
-     * Define an lru cache of known DSP objects: oldest first.
-     */
-    static protected List<DSP> lru = new ArrayList<DSP>();
+    static protected ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+    // Entries that are still in use, by DSP identity
+    static protected Map<DSP, Entry> inuse = Collections.synchronizedMap(new IdentityHashMap<DSP, Entry>());
+
+    static protected int maxfiles = MAXFILES;
+    static protected long maxidle = MAXIDLE;
+
+    static protected AtomicLong hits = new AtomicLong();
+    static protected AtomicLong misses = new AtomicLong();
+    static protected AtomicLong evictions = new AtomicLong();
+    static protected AtomicLong invalidations = new AtomicLong();
+
+    static protected AtomicLong lastcleanup = new AtomicLong(); // msecs
+
+    static protected AtomicLong usecount = new AtomicLong();
 
     // This should be set by any subclass
     static protected DSPFactory factory = null;
@@ -50,45 +92,243 @@ abstract public class DapCache
         return factory;
     }
 
+    /**
+     * Set the cache limits.
+     *
+     * @param maxFiles maximum number of cached DSPs
+     * @param maxIdle  evict DSPs not used for this many msecs; <= 0 means never
+     */
+    static public void setLimits(int maxFiles, long maxIdle)
+    {
+        maxfiles = maxFiles;
+        maxidle = maxIdle;
+    }
+
     //////////////////////////////////////////////////
 
-    static public synchronized DSP open(String path)
+    /**
+     * Get the DSP for a path, creating it if necessary.
+     * The caller must call release(dsp) when done with it.
+     *
+     * @param path the dataset path
+     * @return DSP for the path
+     * @throws IOException if the DSP cannot be created
+     */
+    static public DSP open(String path)
             throws IOException
     {
-        int lrusize = lru.size();
-        for(int i = lrusize - 1; i >= 0; i--) {
-            DSP dsp = lru.get(i);
-            String dsppath = dsp.getPath();
-            if(dsppath.equals(path)) {
-                // move to the front of the queue to maintain LRU property
-                lru.remove(i);
-                lru.add(dsp);
-                return dsp;
+        for(;;) {
+            Entry entry = cache.get(path);
+            if(entry == null) {
+                Entry newentry = new Entry(path);
+                entry = cache.putIfAbsent(path, newentry);
+                if(entry == null)
+                    entry = newentry;
+            }
+            boolean created = false;
+            DSP dsp;
+            synchronized (entry) {
+                if(entry.removed)
+                    continue; // lost a race with eviction: try again
+                long lastModified = new File(path).lastModified();
+                if(entry.dsp != null && lastModified != entry.lastModified) {
+                    invalidations.incrementAndGet();
+                    remove(entry);
+                    continue;
+                }
+                if(entry.dsp == null) {
+                    misses.incrementAndGet();
+                    try {
+                        entry.dsp = factory.create(path);
+                    } catch (DapException | RuntimeException e) {
+                        remove(entry);
+                        throw e;
+                    }
+                    entry.lastModified = lastModified;
+                    created = true;
+                } else
+                    hits.incrementAndGet();
+                dsp = entry.dsp;
+                entry.refcount++;
+                entry.lastUsed = System.currentTimeMillis();
+                entry.useOrder = usecount.incrementAndGet();
+                inuse.put(dsp, entry);
             }
+            if(created)
+                cleanup();
+            return dsp;
         }
-        // No match found, create and initialize it.
-        // If cache is full, remove oldest entry
-        if(lrusize == MAXFILES) {
-            // make room
-            lru.remove(0);
-            CEConstraint.release(lru.get(0).getDMR());
+    }
+
+    /**
+     * Release a DSP obtained from open().
+     * If it has been evicted in the meantime, it is closed.
+     *
+     * @param dsp the DSP; null is ignored
+     */
+    static public void release(DSP dsp)
+    {
+        if(dsp == null)
+            return;
+        Entry entry = inuse.get(dsp);
+        if(entry == null)
+            return;
+        synchronized (entry) {
+            if(entry.refcount == 0)
+                return;
+            entry.refcount--;
+            entry.lastUsed = System.currentTimeMillis();
+            entry.useOrder = usecount.incrementAndGet();
+            if(entry.refcount == 0) {
+                inuse.remove(dsp);
+                if(entry.removed)
+                    close(entry);
+            }
         }
-        // Find dsp that can process this path
-        DSP dsp = factory.create(path);
-        lru.add(dsp);
-        return dsp;
+        // not while holding the entry lock: cleanup() locks the class, then entries
+        if(cleanupDue())
+            cleanup();
+    }
+
+    // Rate limit cleanup on release
+    static protected boolean cleanupDue()
+    {
+        if(cache.size() > maxfiles)
+            return true;
+        if(maxidle <= 0)
+            return false;
+        long last = lastcleanup.get();
+        long now = System.currentTimeMillis();
+        return now - last >= maxidle / 2 && lastcleanup.compareAndSet(last, now);
     }
 
     static synchronized public void flush() // for testing
             throws Exception
     {
-        while(lru.size() > 0) {
-            DSP dsp = lru.get(0);
+        for(Entry entry : new ArrayList<>(cache.values())) {
+            synchronized (entry) {
+                remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Evict idle entries, then the least recently used
+     * entries until the cache is within its size limit.
+     */
+    static protected synchronized void cleanup()
+    {
+        long now = System.currentTimeMillis();
+        lastcleanup.set(now);
+        List<Entry> entries = new ArrayList<>(cache.values());
+        int size = entries.size();
+        if(maxidle > 0) {
+            for(Entry entry : entries) {
+                if(entry.dsp == null)
+                    continue; // being created; do not wait for it
+                synchronized (entry) {
+                    if(!entry.removed && entry.dsp != null && entry.refcount == 0
+                            && now - entry.lastUsed > maxidle) {
+                        evictions.incrementAndGet();
+                        remove(entry);
+                        size--;
+                    }
+                }
+            }
+        }
+        if(size <= maxfiles)
+            return;
+        // oldest first; entries still being created sort last.
+        // Sort on a snapshot, since requests change useOrder while we sort
+        final Map<Entry, Long> order = new IdentityHashMap<>();
+        for(Entry entry : entries)
+            order.put(entry, entry.dsp == null ? Long.MAX_VALUE : entry.useOrder);
+        Collections.sort(entries, new Comparator<Entry>()
+        {
+            public int compare(Entry e1, Entry e2)
+            {
+                return Long.compare(order.get(e1), order.get(e2));
+            }
+        });
+        for(Entry entry : entries) {
+            if(size <= maxfiles)
+                break;
+            if(entry.dsp == null)
+                continue;
+            synchronized (entry) {
+                if(entry.removed || entry.dsp == null)
+                    continue;
+                evictions.incrementAndGet();
+                remove(entry);
+                size--;
+            }
+        }
+    }
+
+    // Must hold the entry lock
+    static protected void remove(Entry entry)
+    {
+        entry.removed = true;
+        cache.remove(entry.path, entry);
+        if(entry.refcount == 0)
+            close(entry);
+    }
+
+    // Must hold the entry lock
+    static protected void close(Entry entry)
+    {
+        DSP dsp = entry.dsp;
+        entry.dsp = null;
+        if(dsp == null)
+            return;
+        try {
             CEConstraint.release(dsp.getDMR());
             dsp.close();
-            lru.remove(0);
+        } catch (IOException e) {
+            DapLog.error("DapCache: cannot close " + entry.path + ": " + e.getMessage());
         }
     }
 
+    //////////////////////////////////////////////////
+    // Statistics
+
+    static public int size()
+    {
+        return cache.size();
+    }
+
+    static public long getHits()
+    {
+        return hits.get();
+    }
+
+    static public long getMisses()
+    {
+        return misses.get();
+    }
+
+    static public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    static public long getInvalidations()
+    {
+        return invalidations.get();
+    }
+
+    static public void resetStatistics()
+    {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+        invalidations.set(0);
+    }
+
+    static public void showStats(Formatter f)
+    {
+        f.format("DapCache: size=%d/%d hits=%d misses=%d evictions=%d invalidations=%d%n",
+                cache.size(), maxfiles, hits.get(), misses.get(), evictions.get(), invalidations.get());
+    }
 
 } // DapCache
@@ -284,6 +284,17 @@ abstract public class DapController extends HttpServlet
             throws IOException
     {
         DSP dsp = DapCache.open(drq.getResourcePath());
+        try {
+            doDMR(drq, dsp);
+        } finally {
+            DapCache.release(dsp);
+        }
+    }
+
+    protected void
+    doDMR(DapRequest drq, DSP dsp)
+            throws IOException
+    {
         DapDataset dmr = dsp.getDMR();
 
         // Process any constraint view
@@ -331,6 +342,17 @@ abstract public class DapController extends HttpServlet
         DSP dsp = DapCache.open(drq.getResourcePath());
         if(dsp == null)
             throw new IOException("No such file: " + drq.getResourcePath());
+        try {
+            doData(drq, dsp);
+        } finally {
+            DapCache.release(dsp);
+        }
+    }
+
+    protected void
+    doData(DapRequest drq, DSP dsp)
+            throws IOException
+    {
         DapDataset dmr = dsp.getDMR();
 
         // Process any constraint
@@ -16,7 +16,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * Given a DSP, serialize
@@ -25,6 +27,65 @@ import java.util.List;
 
 public class DapSerializer
 {
+    //////////////////////////////////////////////////
+    // Constants
+
+    static public final long DEFAULTCHUNKSIZE = 8 * 1000000; // bytes
+
+    //////////////////////////////////////////////////
+    // Static variables
+
+    // Dimensioned atomic variables larger than this are
+    // read and written in slabs of about this many bytes.
+    static protected long chunksize = DEFAULTCHUNKSIZE;
+
+    // Reads the next slab while the current one is written;
+    // null => read in the writing thread.
+    static protected ExecutorService readers = null;
+    static protected boolean defaultreaders = true;
+
+    /**
+     * Control the pipelined serialization of large atomic variables.
+     * Peak memory for such a variable is about three slabs.
+     *
+     * @param size     slab size in bytes; <= 0 => read each variable whole
+     * @param executor runs the slab reads; null => no read-ahead.
+     *                 The caller owns the executor.
+     */
+    static synchronized public void setPipelining(long size, ExecutorService executor)
+    {
+        chunksize = size;
+        readers = executor;
+        defaultreaders = false;
+    }
+
+    /**
+     * Go back to the default pipelining: slabs of DEFAULTCHUNKSIZE,
+     * read ahead by a shared pool of daemon threads.
+     */
+    static synchronized public void resetPipelining()
+    {
+        chunksize = DEFAULTCHUNKSIZE;
+        readers = null;
+        defaultreaders = true;
+    }
+
+    static synchronized protected ExecutorService getReaders()
+    {
+        if(readers == null && defaultreaders) {
+            readers = Executors.newCachedThreadPool(new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "DapSerializer.reader");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return readers;
+    }
+
     //////////////////////////////////////////////////
     // Instance variables
 
@@ -135,15 +196,119 @@ public class DapSerializer
                 if(slices == null)
                     throw new DataException("Unknown variable: " + dapvar.getFQN());
                 long count = DapUtil.sliceProduct(slices);
-                Object vector = Dap4Util.createVector(basetype.getPrimitiveType(), count);
-                dav.read(slices,vector,0);
-                dst.writeArray(basetype, vector);
+                long elemsize = AtomicType.getSize(basetype.getPrimitiveType()); // 0 => variable size
+                if(chunksize > 0 && elemsize > 0 && count * elemsize > chunksize) {
+                    writeAtomicSlabs(basetype, dav, slices, dst);
+                } else {
+                    Object vector = Dap4Util.createVector(basetype.getPrimitiveType(), count);
+                    dav.read(slices, vector, 0);
+                    dst.writeArray(basetype, vector);
+                }
             }
         } catch (IOException ioe) {
             throw new DataException(ioe);
         }
     }
 
+    /**
+     * Write out a large atomic variable one slab at a time,
+     * reading the next slab while the current one is
+     * encoded, checksummed and written.
+     * The output is the same as writing the whole vector.
+     *
+     * @param basetype the variable's type
+     * @param dav      the variable's data
+     * @param slices   the constrained slices
+     * @throws IOException
+     */
+    protected void
+    writeAtomicSlabs(DapType basetype, final DataAtomic dav, List<Slice> slices, SerialWriter dst)
+            throws IOException
+    {
+        final AtomicType atomtype = basetype.getPrimitiveType();
+        long maxcount = Math.max(1, chunksize / AtomicType.getSize(atomtype));
+        List<List<Slice>> slabs = new ArrayList<>();
+        splitSlices(new ArrayList<>(slices), 0, maxcount, slabs);
+
+        ExecutorService executor = getReaders();
+        Future<Object> next = null;
+        try {
+            for(int i = 0; i < slabs.size(); i++) {
+                Object vector;
+                if(next != null)
+                    vector = next.get();
+                else
+                    vector = readSlab(atomtype, dav, slabs.get(i));
+                next = null;
+                if(executor != null && i + 1 < slabs.size()) {
+                    final List<Slice> nextslab = slabs.get(i + 1);
+                    next = executor.submit(new Callable<Object>()
+                    {
+                        public Object call()
+                                throws DataException
+                        {
+                            return readSlab(atomtype, dav, nextslab);
+                        }
+                    });
+                }
+                dst.writeArray(basetype, vector);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new DataException(ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if(cause instanceof IOException)
+                throw (IOException) cause;
+            throw new DataException(cause);
+        } finally {
+            if(next != null)
+                next.cancel(true);
+        }
+    }
+
+    static protected Object
+    readSlab(AtomicType atomtype, DataAtomic dav, List<Slice> slab)
+            throws DataException
+    {
+        Object vector = Dap4Util.createVector(atomtype, DapUtil.sliceProduct(slab));
+        dav.read(slab, vector, 0);
+        return vector;
+    }
+
+    /**
+     * Split a list of slices into slabs of at most maxcount
+     * elements, in order, splitting the outer dimensions first.
+     */
+    static protected void
+    splitSlices(List<Slice> slices, int dim, long maxcount, List<List<Slice>> slabs)
+            throws DapException
+    {
+        Slice slice = slices.get(dim);
+        long inner = 1;
+        for(int i = dim + 1; i < slices.size(); i++)
+            inner *= slices.get(i).getCount();
+        long first = slice.getFirst();
+        long stride = slice.getStride();
+        long count = slice.getCount();
+        if(inner > maxcount) {
+            // a single index of this dimension is too big
+            for(long i = 0; i < count; i++) {
+                long index = first + i * stride;
+                slices.set(dim, new Slice(index, index, 1, slice.getMaxSize()));
+                splitSlices(slices, dim + 1, maxcount, slabs);
+            }
+        } else {
+            long n = Math.min(count, maxcount / inner);
+            for(long i = 0; i < count; i += n) {
+                long last = Math.min(i + n, count) - 1;
+                slices.set(dim, new Slice(first + i * stride, first + last * stride, stride, slice.getMaxSize()));
+                slabs.add(new ArrayList<>(slices));
+            }
+        }
+        slices.set(dim, slice);
+    }
+
     /* unneeded?
     static public Object
     buildAtomicArray(int product, DapType typ)
@@ -0,0 +1,256 @@
+package dap4.test;
+
+import dap4.core.data.DataDataset;
+import dap4.core.util.DapContext;
+import dap4.core.util.DapException;
+import dap4.dap4shared.AbstractDSP;
+import dap4.dap4shared.DSP;
+import dap4.servlet.DSPFactory;
+import dap4.servlet.DapCache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TestDapCache checks the DSP cache under
+ * concurrent access, eviction and file modification.
+ */
+
+public class TestDapCache
+{
+    //////////////////////////////////////////////////
+    // Type decls
+
+    static public class CountingDSP extends AbstractDSP
+    {
+        static AtomicInteger opened = new AtomicInteger();
+        static AtomicInteger closed = new AtomicInteger();
+
+        volatile boolean isclosed = false;
+
+        public DSP open(String path, DapContext context)
+                throws DapException
+        {
+            setPath(path);
+            opened.incrementAndGet();
+            return this;
+        }
+
+        public DataDataset getDataDataset()
+        {
+            return null;
+        }
+
+        public void close()
+        {
+            isclosed = true;
+            closed.incrementAndGet();
+        }
+    }
+
+    static public class SlowFactory extends DSPFactory
+    {
+        volatile long delay = 0;
+        ConcurrentHashMap<String, AtomicInteger> creates = new ConcurrentHashMap<>();
+
+        public DSP create(String path)
+                throws DapException
+        {
+            creates.putIfAbsent(path, new AtomicInteger());
+            creates.get(path).incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                throw new DapException(e);
+            }
+            return new CountingDSP().open(path);
+        }
+    }
+
+    //////////////////////////////////////////////////
+    // Instance variables
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    protected DSPFactory savefactory = null;
+    protected SlowFactory factory = null;
+
+    //////////////////////////////////////////////////
+
+    @Before
+    public void setup()
+            throws Exception
+    {
+        savefactory = DapCache.getFactory();
+        DapCache.flush();
+        DapCache.resetStatistics();
+        factory = new SlowFactory();
+        DapCache.setFactory(factory);
+        CountingDSP.opened.set(0);
+        CountingDSP.closed.set(0);
+    }
+
+    @After
+    public void teardown()
+            throws Exception
+    {
+        DapCache.flush();
+        DapCache.setLimits(100, 10 * 60 * 1000);
+        DapCache.setFactory(savefactory);
+    }
+
+    //////////////////////////////////////////////////
+    // Junit test methods
+
+    @Test
+    public void testParallelClients()
+            throws Exception
+    {
+        final int npaths = 20;
+        final int nthreads = 32;
+        final int nrequests = 200;
+        DapCache.setLimits(npaths, 0);
+        factory.delay = 20;
+
+        ExecutorService pool = Executors.newFixedThreadPool(nthreads);
+        List<Future<Integer>> results = new ArrayList<>();
+        for(int t = 0; t < nthreads; t++) {
+            final int seed = t;
+            results.add(pool.submit(new Callable<Integer>()
+            {
+                public Integer call()
+                        throws Exception
+                {
+                    Random r = new Random(seed);
+                    int errors = 0;
+                    for(int i = 0; i < nrequests; i++) {
+                        String path = "/nosuchdir/dataset" + r.nextInt(npaths);
+                        DSP dsp = DapCache.open(path);
+                        try {
+                            if(!path.equals(dsp.getPath()) || ((CountingDSP) dsp).isclosed)
+                                errors++;
+                        } finally {
+                            DapCache.release(dsp);
+                        }
+                    }
+                    return errors;
+                }
+            }));
+        }
+        for(Future<Integer> f : results)
+            Assert.assertEquals(0, (int) f.get(60, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        // each path is created exactly once, however many clients asked for it at the same time
+        Assert.assertEquals(npaths, factory.creates.size());
+        for(AtomicInteger count : factory.creates.values())
+            Assert.assertEquals(1, count.get());
+        Assert.assertEquals(npaths, DapCache.getMisses());
+        Assert.assertEquals(nthreads * nrequests - npaths, DapCache.getHits());
+        Assert.assertEquals(0, CountingDSP.closed.get());
+    }
+
+    @Test
+    public void testSlowOpenDoesNotBlockOthers()
+            throws Exception
+    {
+        factory.delay = 2000;
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<DSP> slow = pool.submit(new Callable<DSP>()
+        {
+            public DSP call()
+                    throws Exception
+            {
+                return DapCache.open("/nosuchdir/slow");
+            }
+        });
+        Thread.sleep(100);
+        factory.delay = 0;
+        long start = System.currentTimeMillis();
+        DSP fast = DapCache.open("/nosuchdir/fast");
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        DapCache.release(fast);
+        DapCache.release(slow.get(10, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testEviction()
+            throws Exception
+    {
+        DapCache.setLimits(5, 0);
+        DSP held = DapCache.open("/nosuchdir/held");
+        for(int i = 0; i < 20; i++)
+            DapCache.release(DapCache.open("/nosuchdir/dataset" + i));
+        Assert.assertTrue(DapCache.size() <= 5);
+        Assert.assertTrue(DapCache.getEvictions() >= 16);
+
+        // the DSP still in use was evicted but not closed until released
+        Assert.assertFalse(((CountingDSP) held).isclosed);
+        DapCache.release(held);
+        Assert.assertTrue(((CountingDSP) held).isclosed);
+        Assert.assertEquals(16, CountingDSP.closed.get());
+    }
+
+    @Test
+    public void testIdleEviction()
+            throws Exception
+    {
+        DapCache.setLimits(100, 50);
+        DSP dsp = DapCache.open("/nosuchdir/idle");
+        DapCache.release(dsp);
+        Thread.sleep(100);
+        DapCache.release(DapCache.open("/nosuchdir/other")); // a miss triggers cleanup
+        Assert.assertTrue(((CountingDSP) dsp).isclosed);
+        Assert.assertEquals(1, DapCache.size());
+    }
+
+    @Test
+    public void testIdleEvictionOnRelease()
+            throws Exception
+    {
+        DapCache.setLimits(100, 50);
+        DSP held = DapCache.open("/nosuchdir/held");
+        DSP dsp = DapCache.open("/nosuchdir/idle");
+        DapCache.release(dsp);
+        Thread.sleep(100);
+        DapCache.release(held); // no miss since the idle entry was released
+        Assert.assertTrue(((CountingDSP) dsp).isclosed);
+        Assert.assertFalse(((CountingDSP) held).isclosed);
+        Assert.assertEquals(1, DapCache.size());
+        Assert.assertEquals(2, DapCache.getMisses());
+    }
+
+    @Test
+    public void testFileModified()
+            throws Exception
+    {
+        File file = tempFolder.newFile("data.nc");
+        String path = file.getAbsolutePath();
+        DSP dsp1 = DapCache.open(path);
+        DapCache.release(dsp1);
+        DSP dsp2 = DapCache.open(path);
+        DapCache.release(dsp2);
+        Assert.assertSame(dsp1, dsp2);
+
+        Assert.assertTrue(file.setLastModified(file.lastModified() - 10000));
+        DSP dsp3 = DapCache.open(path);
+        DapCache.release(dsp3);
+        Assert.assertNotSame(dsp1, dsp3);
+        Assert.assertTrue(((CountingDSP) dsp1).isclosed);
+        Assert.assertEquals(1, DapCache.getInvalidations());
+        Assert.assertEquals(2, DapCache.getMisses());
+        Assert.assertEquals(1, DapCache.getHits());
+    }
+}
@@ -0,0 +1,209 @@
+package dap4.test;
+
+import dap4.cdm.CDMDSP;
+import dap4.cdm.CDMDataAtomic;
+import dap4.ce.CEAST;
+import dap4.ce.CECompiler;
+import dap4.ce.CEConstraint;
+import dap4.ce.parser.CEParser;
+import dap4.core.data.DataException;
+import dap4.core.data.DataVariable;
+import dap4.core.dmr.DapAtomicVariable;
+import dap4.core.dmr.DapDataset;
+import dap4.core.dmr.DapVariable;
+import dap4.core.util.DapContext;
+import dap4.core.util.DapException;
+import dap4.core.util.DapSort;
+import dap4.dap4shared.ChunkInputStream;
+import dap4.dap4shared.DSP;
+import dap4.dap4shared.RequestMode;
+import dap4.servlet.ChunkWriter;
+import dap4.servlet.DapSerializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * TestDapSerializer checks that serializing large
+ * variables in pipelined slabs produces the same
+ * bytes as serializing each variable whole.
+ */
+
+public class TestDapSerializer
+{
+    //////////////////////////////////////////////////
+    // Constants
+
+    static protected final String[] CONSTRAINTS = {
+            null,
+            "/temp[2:3:17][1:29][0:2:39]",
+            "/temp[5][0:29][0:39];/count[0:6][3:1000]",
+            "/count[2:2:6][0:7:1000];/height",
+    };
+
+    //////////////////////////////////////////////////
+    // Type Decls
+
+    /**
+     * Hold each atomic variable in memory, as read by
+     * Variable.read(), instead of reading it on demand.
+     */
+    static protected class InMemoryDSP extends CDMDSP
+    {
+        public InMemoryDSP(String path)
+                throws DapException
+        {
+            super(path, new DapContext());
+        }
+
+        @Override
+        protected DataVariable
+        buildData(DapVariable dap)
+                throws DataException
+        {
+            if(dap.getSort() != DapSort.ATOMICVARIABLE)
+                return super.buildData(dap);
+            Variable cdmv = (Variable) nodemap.get(dap);
+            try {
+                return new CDMDataAtomic(this, (DapAtomicVariable) dap, cdmv.read());
+            } catch (IOException ioe) {
+                throw new DataException(ioe);
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////
+    // Instance variables
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    //////////////////////////////////////////////////
+
+    @After
+    public void teardown()
+    {
+        DapSerializer.resetPipelining();
+    }
+
+    //////////////////////////////////////////////////
+    // Junit test methods
+
+    @Test
+    public void testPipelined()
+            throws Exception
+    {
+        String path = makeFile();
+        DSP memdsp = new InMemoryDSP(path);
+        DSP dsp = new CDMDSP().open(path);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for(String sce : CONSTRAINTS) {
+                DapSerializer.setPipelining(0, null);
+                byte[] whole = serialize(memdsp, sce);
+                Assert.assertArrayEquals(sce, whole, serialize(dsp, sce));
+                DapSerializer.setPipelining(100, executor);
+                Assert.assertArrayEquals(sce, whole, serialize(dsp, sce));
+                DapSerializer.setPipelining(1, executor);
+                Assert.assertArrayEquals(sce, whole, serialize(dsp, sce));
+                DapSerializer.setPipelining(1000, null);
+                Assert.assertArrayEquals(sce, whole, serialize(dsp, sce));
+                DapSerializer.resetPipelining();
+                Assert.assertArrayEquals(sce, whole, serialize(dsp, sce));
+            }
+        } finally {
+            executor.shutdown();
+            memdsp.close();
+            dsp.close();
+        }
+    }
+
+    @Test
+    public void testChunkWriter()
+            throws Exception
+    {
+        byte[] data = new byte[1000];
+        for(int i = 0; i < data.length; i++)
+            data[i] = (byte) i;
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ChunkWriter cw = new ChunkWriter(bos, RequestMode.DAP, ByteOrder.BIG_ENDIAN);
+        cw.setBufferSize(64); // the data spans many chunks
+        cw.writeDMR("<Dataset name=\"test\"/>");
+        cw.write(data, 0, 10);
+        cw.write(data, 10, data.length - 10);
+        cw.close();
+
+        ChunkInputStream in = new ChunkInputStream(new ByteArrayInputStream(bos.toByteArray()), RequestMode.DAP, ByteOrder.BIG_ENDIAN);
+        Assert.assertEquals("<Dataset name=\"test\"/>", in.readDMR().trim());
+        byte[] result = new byte[data.length];
+        int n = 0;
+        while(n < result.length) {
+            int count = in.read(result, n, result.length - n);
+            if(count <= 0)
+                break;
+            n += count;
+        }
+        Assert.assertEquals(data.length, n);
+        Assert.assertArrayEquals(data, result);
+    }
+
+    //////////////////////////////////////////////////
+
+    protected byte[]
+    serialize(DSP dsp, String sce)
+            throws Exception
+    {
+        DapDataset dmr = dsp.getDMR();
+        CEConstraint ce;
+        if(sce == null)
+            ce = CEConstraint.getUniversal(dmr);
+        else {
+            CEParser ceparser = new CEParser(dmr);
+            Assert.assertTrue(sce, ceparser.parse(sce));
+            CEAST root = ceparser.getConstraint();
+            ce = new CECompiler().compile(dmr, root);
+            ce.expand();
+            ce.finish();
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DapSerializer writer = new DapSerializer(dsp, ce, bos, ByteOrder.BIG_ENDIAN);
+        writer.write(dmr);
+        return bos.toByteArray();
+    }
+
+    protected String
+    makeFile()
+            throws Exception
+    {
+        String path = tempFolder.newFile("serial.nc").getAbsolutePath();
+        try (NetcdfFileWriter writer = NetcdfFileWriter.createNew(path, false)) {
+            writer.addDimension(null, "time", 20);
+            writer.addDimension(null, "y", 30);
+            writer.addDimension(null, "x", 40);
+            writer.addDimension(null, "n", 7);
+            writer.addDimension(null, "m", 1001);
+            writer.addVariable("temp", DataType.FLOAT, "time y x");
+            writer.addVariable("count", DataType.SHORT, "n m");
+            writer.addVariable("height", DataType.DOUBLE, "y x");
+            writer.create();
+            writer.write(writer.findVariable("temp"), Array.makeArray(DataType.FLOAT, 20 * 30 * 40, 0, 0.25).reshape(new int[]{20, 30, 40}));
+            writer.write(writer.findVariable("count"), Array.makeArray(DataType.SHORT, 7 * 1001, -3000, 1).reshape(new int[]{7, 1001}));
+            writer.write(writer.findVariable("height"), Array.makeArray(DataType.DOUBLE, 30 * 40, 10, 1.5).reshape(new int[]{30, 40}));
+        }
+        return path;
+    }
+}
@@ -37,6 +37,7 @@ import com.google.common.base.Throwables;
 import net.jcip.annotations.Immutable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
 import ucar.coord.CoordinateTime2D;
 import ucar.ma2.*;
 import ucar.nc2.ft2.coverage.CoordsSet;
@@ -54,7 +55,9 @@ import ucar.nc2.util.Misc;
 import ucar.unidata.io.RandomAccessFile;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Grib Data Reader.
@@ -76,12 +79,43 @@ public abstract class GribDataReader {
   }
 
   protected abstract float[] readData(RandomAccessFile rafData, DataRecord dr) throws IOException;
+
+  // read only the (y, x) window; return null if not possible for this record
+  protected float[] readDataWindow(RandomAccessFile rafData, DataRecord dr, RangeIterator yRange, RangeIterator xRange) throws IOException {
+    return null;
+  }
   protected abstract void show(RandomAccessFile rafData, long dataPos) throws IOException;
 
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
   static public GribDataValidator validator;
   static boolean show = false;   // debug
 
+  // optional parallel decoding of records; off unless setDecodeExecutor() is called
+  static private ExecutorService decodeExecutor;
+  static private int decodeMaxThreads = 1;      // max number of pool threads used by any one read
+  static private int decodeMinRecords = 8;      // dont bother if fewer records than this
+
+  // read only the requested (y, x) window of each record when the data template allows it
+  static private boolean windowedRead = true;
+
+  static public void setWindowedRead(boolean b) {
+    windowedRead = b;
+  }
+
+  /**
+   * Allow records to be decoded in parallel, using a shared pool.
+   * Records from the same data file are handed out in contiguous batches, so each RandomAccessFile is read sequentially.
+   *
+   * @param exec                 shared pool, or null to decode all records on the calling thread (default).
+   * @param maxThreadsPerRequest maximum number of pool threads that a single read may use.
+   * @param minRecords           only decode in parallel when at least this many records are read.
+   */
+  static public void setDecodeExecutor(ExecutorService exec, int maxThreadsPerRequest, int minRecords) {
+    decodeExecutor = exec;
+    decodeMaxThreads = Math.max(1, maxThreadsPerRequest);
+    decodeMinRecords = Math.max(2, minRecords);
+  }
+
   protected final GribCollectionImmutable gribCollection;
   private final GribCollectionImmutable.VariableIndex vindex;
   private List<DataRecord> records = new ArrayList<>();
@@ -194,13 +228,93 @@ public abstract class GribDataReader {
   // Coordinate based subsetting for Coverage
 
   public Array readData2(CoordsSet want, RangeIterator yRange, RangeIterator xRange) throws IOException, InvalidRangeException {
-    if (vindex instanceof PartitionCollectionImmutable.VariableIndexPartitioned)
-      return readDataFromPartition2((PartitionCollectionImmutable.VariableIndexPartitioned) vindex, want, yRange, xRange);
+    DataReceiverIF dataReceiver = addRecords2(want, yRange, xRange);
+    if (isPartitioned())
+      readPartitioned(dataReceiver);
+    else
+      read(dataReceiver);
+    return dataReceiver.getArray();
+  }
+
+  private boolean isPartitioned() {
+    return vindex instanceof PartitionCollectionImmutable.VariableIndexPartitioned;
+  }
+
+  /**
+   * Read the records for a list of coordinates, eg some of the elements of a CoordsSet.
+   * @param want which data do you want?
+   * @return data as an Array of shape (want.size(), yRange.length(), xRange.length())
+   */
+  public Array readData2(List<Map<String, Object>> want, RangeIterator yRange, RangeIterator xRange) throws IOException, InvalidRangeException {
+    int[] shape = new int[] {want.size(), yRange.length(), xRange.length()};
+    DataReceiverIF dataReceiver = isPartitioned() ?
+            addRecordsFromPartition2((PartitionCollectionImmutable.VariableIndexPartitioned) vindex, want, shape, yRange, xRange) :
+            addRecordsFromCollection2(vindex, want, shape, yRange, xRange);
+    if (isPartitioned())
+      readPartitioned(dataReceiver);
+    else
+      read(dataReceiver);
+    return dataReceiver.getArray();
+  }
+
+  /**
+   * Identify the record for each of the wanted coordinates, without reading any data.
+   * The key is a hash of the data file and position of the record, so it changes when the record is replaced.
+   *
+   * @param want which data do you want?
+   * @return key for each element of want, in order; 0 if there is no record.
+   */
+  public long[] getRecordKeys(Iterable<Map<String, Object>> want) throws IOException {
+    List<Long> keys = new ArrayList<>();
+    if (isPartitioned()) {
+      PartitionCollectionImmutable.VariableIndexPartitioned vindexP = (PartitionCollectionImmutable.VariableIndexPartitioned) vindex;
+      for (Map<String, Object> coords : want) {
+        PartitionCollectionImmutable.DataRecord record = vindexP.getDataRecord(coords);
+        if (record == null || record.record.pos == GribCollectionMutable.MISSING_RECORD)
+          keys.add(0L);
+        else
+          keys.add(recordKey(record.usePartition.getPartition(record.partno).getFilename() + "#" + record.record.fileno, record.record.pos));
+      }
+
+    } else {
+      vindex.readRecords();
+      for (Map<String, Object> coords : want) {
+        GribCollectionImmutable.Record record = vindex.getRecordAt(coords);
+        if (record == null || record.pos == GribCollectionMutable.MISSING_RECORD)
+          keys.add(0L);
+        else
+          keys.add(recordKey(gribCollection.getFilename(record.fileno), record.pos));
+      }
+    }
+
+    long[] result = new long[keys.size()];
+    for (int i = 0; i < result.length; i++)
+      result[i] = keys.get(i);
+    return result;
+  }
+
+  // 64 bit FNV-1a hash of the file name, mixed with the position; never 0
+  static private long recordKey(String filename, long pos) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < filename.length(); i++) {
+      h ^= filename.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= pos * 0x9E3779B97F4A7C15L;
+    return (h == 0) ? 1 : h;
+  }
+
+  // collect all the records that need to be read, and make the receiver for them
+  private DataReceiverIF addRecords2(CoordsSet want, RangeIterator yRange, RangeIterator xRange) throws IOException, InvalidRangeException {
+    int[] shape = want.getShape(yRange, xRange);
+    if (isPartitioned())
+      return addRecordsFromPartition2((PartitionCollectionImmutable.VariableIndexPartitioned) vindex, want, shape, yRange, xRange);
     else
-      return readDataFromCollection2(vindex, want, yRange, xRange);
+      return addRecordsFromCollection2(vindex, want, shape, yRange, xRange);
   }
 
-  private Array readDataFromCollection2(GribCollectionImmutable.VariableIndex vindex, CoordsSet want, RangeIterator yRange, RangeIterator xRange) throws IOException, InvalidRangeException {
+  private DataReceiverIF addRecordsFromCollection2(GribCollectionImmutable.VariableIndex vindex, Iterable<Map<String, Object>> want, int[] shape,
+                                                   RangeIterator yRange, RangeIterator xRange) throws IOException, InvalidRangeException {
     // first time, read records and keep in memory
     vindex.readRecords();
 
@@ -216,12 +330,11 @@ public abstract class GribDataReader {
       resultIndex++;
     }
 
-    DataReceiverIF dataReceiver = new DataReceiver(want.getShape(yRange, xRange), yRange, xRange );
-    read(dataReceiver);
-    return dataReceiver.getArray();
+    return new DataReceiver(shape, yRange, xRange );
   }
 
-  private Array readDataFromPartition2(PartitionCollectionImmutable.VariableIndexPartitioned vindexP, CoordsSet want, RangeIterator yRange, RangeIterator xRange) throws IOException, InvalidRangeException {
+  private DataReceiverIF addRecordsFromPartition2(PartitionCollectionImmutable.VariableIndexPartitioned vindexP, Iterable<Map<String, Object>> want, int[] shape,
+                                                  RangeIterator yRange, RangeIterator xRange) throws IOException, InvalidRangeException {
 
     // collect all the records that need to be read
     int resultPos = 0;
@@ -234,11 +347,102 @@ public abstract class GribDataReader {
       resultPos++;
     }
 
-    // sort by file and position, then read
-    DataReceiverIF dataReceiver = new DataReceiver(want.getShape(yRange, xRange), yRange, xRange );
-    readPartitioned(dataReceiver);
+    return new DataReceiver(shape, yRange, xRange );
+  }
 
-    return dataReceiver.getArray();
+  /**
+   * Read the same (y, x) subset of several variables of one collection, eg all the variables of a grid-as-point request.
+   * The records of all the variables are sorted together by file and position and read in a single pass,
+   * so each data file is opened once and read in order, rather than once for each variable.
+   *
+   * @param readers one reader for each variable, from factory(), all on the same collection.
+   * @param wants   the coordinates wanted, one for each reader.
+   * @param yRange  y subset, the same for all variables
+   * @param xRange  x subset, the same for all variables
+   * @return data as an Array, one for each reader, in the same order
+   */
+  static public List<Array> readData2(List<GribDataReader> readers, List<CoordsSet> wants, RangeIterator yRange, RangeIterator xRange) throws IOException, InvalidRangeException {
+    if (readers.size() != wants.size())
+      throw new IllegalArgumentException("must have a CoordsSet for each reader");
+
+    List<DataReceiverIF> receivers = new ArrayList<>(readers.size());
+    for (int i = 0; i < readers.size(); i++)
+      receivers.add(readers.get(i).addRecords2(wants.get(i), yRange, xRange));
+
+    if (!useSinglePass(readers)) {
+      // each variable on its own
+      for (int i = 0; i < readers.size(); i++) {
+        GribDataReader reader = readers.get(i);
+        if (reader.isPartitioned())
+          reader.readPartitioned(receivers.get(i));
+        else
+          reader.read(receivers.get(i));
+      }
+
+    } else {
+      List<MultiRecord> all = new ArrayList<>();
+      for (int i = 0; i < readers.size(); i++) {
+        for (DataRecord dr : readers.get(i).records)
+          all.add(new MultiRecord(readers.get(i), dr, receivers.get(i)));
+      }
+      Collections.sort(all);
+      readSinglePass(all, readers.get(0).isPartitioned());
+    }
+
+    List<Array> result = new ArrayList<>(receivers.size());
+    for (DataReceiverIF receiver : receivers)
+      result.add(receiver.getArray());
+    return result;
+  }
+
+  // debugging, validation and parallel decoding go through the single variable read
+  static private boolean useSinglePass(List<GribDataReader> readers) {
+    if (validator != null || show || Grib.debugIndexOnly || Grib.debugGbxIndexOnly) return false;
+    GribDataReader first = readers.get(0);
+    for (GribDataReader reader : readers) {
+      if (reader.gribCollection != first.gribCollection || reader.isPartitioned() != first.isPartitioned()) return false;
+      if (reader.useParallelDecode()) return false;
+    }
+    return true;
+  }
+
+  static private void readSinglePass(List<MultiRecord> all, boolean partitioned) throws IOException {
+    MultiRecord last = null;
+    RandomAccessFile rafData = null;
+    try {
+      for (MultiRecord mr : all) {
+        if (rafData == null || !mr.reader.sameFile(last.dr, mr.dr, partitioned)) {
+          if (rafData != null) rafData.close();
+          rafData = mr.reader.openDataRaf(mr.dr, partitioned);
+        }
+        last = mr;
+
+        if (mr.dr.record.pos == GribCollectionMutable.MISSING_RECORD) continue;
+        GdsHorizCoordSys hcs = partitioned ? mr.dr.hcs : mr.reader.vindex.group.getGdsHorizCoordSys();
+        mr.reader.readRecord(rafData, mr.dr, hcs, mr.receiver);
+      }
+
+    } finally {
+      if (rafData != null) rafData.close();  // make sure its closed even on exception
+    }
+  }
+
+  // a record of one of the variables in readData2(List), with where it goes
+  static private class MultiRecord implements Comparable<MultiRecord> {
+    final GribDataReader reader;
+    final DataRecord dr;
+    final DataReceiverIF receiver;
+
+    MultiRecord(GribDataReader reader, DataRecord dr, DataReceiverIF receiver) {
+      this.reader = reader;
+      this.dr = dr;
+      this.receiver = receiver;
+    }
+
+    @Override
+    public int compareTo(MultiRecord o) {
+      return dr.compareTo(o.dr);
+    }
   }
 
   //////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -265,6 +469,10 @@ public abstract class GribDataReader {
    */
   private void read(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
+    if (useParallelDecode()) {
+      readParallel(dataReceiver, false);
+      return;
+    }
 
     int currFile = -1;
     RandomAccessFile rafData = null;
@@ -293,9 +501,7 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
-        GdsHorizCoordSys hcs = vindex.group.getGdsHorizCoordSys();
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        readRecord(rafData, dr, vindex.group.getGdsHorizCoordSys(), dataReceiver);
       }
 
     } finally {
@@ -303,6 +509,41 @@ public abstract class GribDataReader {
     }
   }
 
+  // read one record and send it to the dataReceiver
+  private void readRecord(RandomAccessFile rafData, DataRecord dr, GdsHorizCoordSys hcs, DataReceiverIF dataReceiver) throws IOException {
+    boolean useCache = GribRecordCache.isEnabled();
+    if (useCache) {
+      float[] data = GribRecordCache.get(getCollectionName(), rafData.getLocation(), dr.record.pos);
+      if (data != null) {
+        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        return;
+      }
+    }
+
+    RangeIterator yRange = dataReceiver.getYRange();
+    RangeIterator xRange = dataReceiver.getXRange();
+
+    // only worth it when the window is a small part of the grid; windows are not cached
+    if (windowedRead && 2L * yRange.length() * xRange.length() <= (long) hcs.nx * hcs.ny) {
+      float[] window = readDataWindow(rafData, dr, yRange, xRange);
+      if (window != null) {
+        dataReceiver.addWindowData(window, dr.resultIndex);
+        return;
+      }
+    }
+
+    float[] data = readData(rafData, dr);
+    if (useCache && data != null)
+      GribRecordCache.put(getCollectionName(), rafData.getLocation(), dr.record.pos, data);
+    dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+  }
+
+  // records in the GribRecordCache are invalidated by collection name
+  private String getCollectionName() {
+    FeatureCollectionConfig config = gribCollection.config;
+    return (config == null || config.collectionName == null) ? gribCollection.getName() : config.collectionName;
+  }
+
   private void show(Map<String, Object> validation) {
     if (validation == null) return;
     System.out.printf("Coords wanted%n");
@@ -312,6 +553,10 @@ public abstract class GribDataReader {
 
   private void readPartitioned(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
+    if (useParallelDecode()) {
+      readParallel(dataReceiver, true);
+      return;
+    }
 
     PartitionCollectionImmutable.DataRecord lastRecord = null;
     RandomAccessFile rafData = null;
@@ -341,9 +586,7 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
-        GdsHorizCoordSys hcs = dr.hcs;
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        readRecord(rafData, dr, dr.hcs, dataReceiver);
       }
 
     } finally {
@@ -351,6 +594,110 @@ public abstract class GribDataReader {
     }
   }
 
+  //////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // parallel decoding
+
+  private boolean useParallelDecode() {
+    if (decodeExecutor == null || decodeMaxThreads < 2 || records.size() < decodeMinRecords) return false;
+    // debugging and validation stay on the calling thread
+    return validator == null && !show && !Grib.debugIndexOnly && !Grib.debugGbxIndexOnly;
+  }
+
+  /*
+   * The sorted records are split into batches that never span a data file, and at most decodeMaxThreads tasks
+   * are submitted to the shared pool. Each task takes batches off the queue, opens its own RandomAccessFile for the batch,
+   * and reads the records in file order. Each record goes to a distinct resultIndex, so the DataReceiver can be
+   * written concurrently.
+   */
+  private void readParallel(final DataReceiverIF dataReceiver, final boolean partitioned) throws IOException {
+    final Queue<List<DataRecord>> batches = new ConcurrentLinkedQueue<>(makeBatches(partitioned));
+    int ntasks = Math.min(decodeMaxThreads, batches.size());
+
+    List<Future<Integer>> futures = new ArrayList<>(ntasks);
+    try {
+      for (int i = 0; i < ntasks; i++) {
+        futures.add(decodeExecutor.submit(new Callable<Integer>() {
+          public Integer call() throws IOException {
+            int count = 0;
+            List<DataRecord> batch;
+            while ((batch = batches.poll()) != null) {
+              if (Thread.currentThread().isInterrupted()) break;
+              count += readBatch(batch, dataReceiver, partitioned);
+            }
+            return count;
+          }
+        }));
+      }
+
+      for (Future<Integer> f : futures)
+        f.get();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("GribDataReader interrupted");
+
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.propagateIfInstanceOf(cause, IOException.class);
+      throw Throwables.propagate(cause);
+
+    } catch (RejectedExecutionException e) {
+      throw new IOException("GribDataReader decode pool rejected task", e);
+
+    } finally {
+      batches.clear();             // stop any tasks still running
+      for (Future<Integer> f : futures)
+        f.cancel(true);
+    }
+  }
+
+  // split the (sorted) records into batches on the same file, no bigger than needed to keep decodeMaxThreads busy
+  private List<List<DataRecord>> makeBatches(boolean partitioned) {
+    int batchSize = Math.max(1, (records.size() + decodeMaxThreads - 1) / decodeMaxThreads);
+    List<List<DataRecord>> result = new ArrayList<>();
+
+    List<DataRecord> batch = null;
+    DataRecord last = null;
+    for (DataRecord dr : records) {
+      if (batch == null || batch.size() >= batchSize || !sameFile(last, dr, partitioned)) {
+        batch = new ArrayList<>(batchSize);
+        result.add(batch);
+      }
+      batch.add(dr);
+      last = dr;
+    }
+    return result;
+  }
+
+  private boolean sameFile(DataRecord last, DataRecord dr, boolean partitioned) {
+    if (last == null) return false;
+    if (partitioned)
+      return ((PartitionCollectionImmutable.DataRecord) dr).usesSameFile((PartitionCollectionImmutable.DataRecord) last);
+    return last.record.fileno == dr.record.fileno;
+  }
+
+  // all records in the batch are in the same file
+  private int readBatch(List<DataRecord> batch, DataReceiverIF dataReceiver, boolean partitioned) throws IOException {
+    int count = 0;
+    try (RandomAccessFile rafData = openDataRaf(batch.get(0), partitioned)) {
+
+      for (DataRecord dr : batch) {
+        if (dr.record.pos == GribCollectionMutable.MISSING_RECORD) continue;
+        readRecord(rafData, dr, partitioned ? dr.hcs : vindex.group.getGdsHorizCoordSys(), dataReceiver);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private RandomAccessFile openDataRaf(DataRecord dr, boolean partitioned) throws IOException {
+    if (partitioned) {
+      PartitionCollectionImmutable.DataRecord drp = (PartitionCollectionImmutable.DataRecord) dr;
+      return drp.usePartition.getRaf(drp.partno, dr.record.fileno);
+    }
+    return gribCollection.getDataRaf(dr.record.fileno);
+  }
+
   static public class DataRecord implements Comparable<DataRecord> {
     int resultIndex; // index into the result array
     GribCollectionImmutable.Record record;
@@ -378,9 +725,14 @@ public abstract class GribDataReader {
   }
 
   public interface DataReceiverIF {
+    // may be called concurrently when decoding in parallel, but never twice for the same resultIndex
     void addData(float[] data, int resultIndex, int nx) throws IOException;
+    // data has already been subset to (yRange, xRange)
+    void addWindowData(float[] window, int resultIndex) throws IOException;
     void setDataToZero(); // only used when debugging with gbx/ncx only, to fake the data
     Array getArray();
+    RangeIterator getYRange();
+    RangeIterator getXRange();
   }
 
   public static class DataReceiver implements DataReceiverIF {
@@ -417,6 +769,12 @@ public abstract class GribDataReader {
       }
     }
 
+    @Override
+    public void addWindowData(float[] window, int resultIndex) throws IOException {
+      float[] data = (float[]) dataArray.getStorage();
+      System.arraycopy(window, 0, data, resultIndex * horizSize, horizSize);
+    }
+
     // optimization
     @Override
     public void setDataToZero() {
@@ -428,6 +786,16 @@ public abstract class GribDataReader {
     public Array getArray() {
       return dataArray;
     }
+
+    @Override
+    public RangeIterator getYRange() {
+      return yRange;
+    }
+
+    @Override
+    public RangeIterator getXRange() {
+      return xRange;
+    }
   }
 
     /* public static class ChannelReceiver implements DataReceiverIF {
@@ -486,6 +854,15 @@ public abstract class GribDataReader {
               hcs.nxRaw, hcs.nyRaw, hcs.nptsInLine);
     }
 
+    @Override
+    protected float[] readDataWindow(RandomAccessFile rafData, GribDataReader.DataRecord dr, RangeIterator yRange, RangeIterator xRange) throws IOException {
+      GdsHorizCoordSys hcs = dr.hcs;
+      if (hcs.nptsInLine != null) return null; // thin grid must be expanded first
+      long dataPos = dr.record.pos + dr.record.drsOffset;
+      long bmsPos = (dr.record.bmsOffset > 0) ? dr.record.pos + dr.record.bmsOffset : 0;
+      return Grib2Record.readDataWindow(rafData, dataPos, bmsPos, hcs.gdsNumberPoints, hcs.getScanMode(), hcs.nxRaw, yRange, xRange);
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long pos) throws IOException {
       Grib2Record gr = Grib2RecordScanner.findRecordByDrspos(rafData, pos);
@@ -0,0 +1,151 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.grib.collection;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import net.jcip.annotations.Immutable;
+
+import java.util.Formatter;
+import java.util.Iterator;
+
+/**
+ * Optional memory cache of decoded GRIB records, used by GribDataReader.
+ * Keyed by collection name, data file and record position, bounded by the total size of the float arrays.
+ * Off unless enable() is called.
+ */
+public class GribRecordCache {
+  static private Cache<Key, float[]> cache;
+  static private long maxBytes;
+
+  /**
+   * Turn on the cache, discarding anything already in it.
+   * @param maxSizeBytes maximum total size of the cached records, in bytes; turned off if <= 0.
+   */
+  static public synchronized void enable(long maxSizeBytes) {
+    if (maxSizeBytes <= 0) {
+      disable();
+      return;
+    }
+    maxBytes = maxSizeBytes;
+    cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxSizeBytes)
+            .weigher((Key key, float[] data) -> 4 * data.length)
+            .recordStats()
+            .build();
+  }
+
+  static public synchronized void disable() {
+    if (cache != null) cache.invalidateAll();
+    cache = null;
+  }
+
+  static public boolean isEnabled() {
+    return cache != null;
+  }
+
+  static float[] get(String collectionName, String location, long pos) {
+    Cache<Key, float[]> c = cache;
+    return (c == null) ? null : c.getIfPresent(new Key(collectionName, location, pos));
+  }
+
+  static void put(String collectionName, String location, long pos, float[] data) {
+    Cache<Key, float[]> c = cache;
+    if (c != null) c.put(new Key(collectionName, location, pos), data);
+  }
+
+  /**
+   * Remove all records belonging to the named collection, eg when the collection has been updated.
+   * @param collectionName FeatureCollectionConfig.collectionName
+   */
+  static public void invalidate(String collectionName) {
+    Cache<Key, float[]> c = cache;
+    if (c == null) return;
+    Iterator<Key> iter = c.asMap().keySet().iterator();
+    while (iter.hasNext()) {
+      if (iter.next().collectionName.equals(collectionName))
+        iter.remove();
+    }
+  }
+
+  static public void clearCache() {
+    Cache<Key, float[]> c = cache;
+    if (c != null) c.invalidateAll();
+  }
+
+  static public void showCache(Formatter f) {
+    Cache<Key, float[]> c = cache;
+    if (c == null) {
+      f.format("GribRecordCache : turned off%n");
+      return;
+    }
+
+    long nbytes = 0;
+    for (float[] data : c.asMap().values())
+      nbytes += 4L * data.length;
+
+    CacheStats stats = c.stats();
+    f.format("GribRecordCache%n");
+    f.format("  records= %d size= %d Kb max= %d Kb%n", c.size(), nbytes / 1000, maxBytes / 1000);
+    f.format("  hits= %d misses= %d hitRate= %f evictions= %d%n", stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+  }
+
+  @Immutable
+  static private class Key {
+    final String collectionName;
+    final String location;
+    final long pos;
+
+    Key(String collectionName, String location, long pos) {
+      this.collectionName = collectionName;
+      this.location = location;
+      this.pos = pos;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key) o;
+      return pos == key.pos && location.equals(key.location) && collectionName.equals(key.collectionName);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = location.hashCode();
+      result = 31 * result + (int) (pos ^ (pos >>> 32));
+      return 31 * result + collectionName.hashCode();
+    }
+  }
+}
@@ -32,6 +32,7 @@
  */
 package ucar.nc2.grib.coverage;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -1161,12 +1162,210 @@ public class GribCoverageDataset implements CoverageReader, CoordAxisReader {
   @Override
   public GeoReferencedArray readData(Coverage coverage, SubsetParams params, boolean canonicalOrder) throws IOException, InvalidRangeException {
     GribCollectionImmutable.VariableIndex vindex = (GribCollectionImmutable.VariableIndex) coverage.getUserObject();
+    CoverageCoordSys subsetCoordSys = subsetCoordSys(coverage, params);
+    List<CoverageCoordAxis> coordsSetAxes = getCoordsSetAxes(vindex, subsetCoordSys);
+
+    List<CoverageCoordAxis> geoArrayAxes = new ArrayList<>(coordsSetAxes);  // for GeoReferencedArray
+    geoArrayAxes.add(subsetCoordSys.getYAxis());
+    geoArrayAxes.add(subsetCoordSys.getXAxis());
+    List<RangeIterator> yxRange = subsetCoordSys.getHorizCoordSys().getRanges(); // may be 2D
+
+    // iterator over all except x, y
+    CoordsSet coordIter = CoordsSet.factory(subsetCoordSys.isConstantForecast(), coordsSetAxes);
+
+    GribDataReader dataReader = GribDataReader.factory(gribCollection, vindex);
+    Array data = readFromTimeSeriesStore(coverage, dataReader, coordsSetAxes, coordIter, yxRange);
+    if (data == null)
+      data = dataReader.readData2(coordIter, yxRange.get(0), yxRange.get(1));
+
+    return new GeoReferencedArray(coverage.getName(), coverage.getDataType(), data, subsetCoordSys);
+  }
+
+  /*
+   * All the coverages are subset the same way, so usually have the same (y, x) ranges.
+   * In that case the records of all of them are read together in one pass through the data files, see GribDataReader.readData2(List).
+   */
+  @Override
+  public List<GeoReferencedArray> readData(List<Coverage> coverages, SubsetParams params, boolean canonicalOrder) throws IOException, InvalidRangeException {
+    List<CoverageCoordSys> subsetCoordSys = new ArrayList<>(coverages.size());
+    Array[] datas = new Array[coverages.size()];
+    List<Integer> toRead = new ArrayList<>(coverages.size()); // the ones not in a time series store
+    List<GribDataReader> readers = new ArrayList<>(coverages.size());
+    List<CoordsSet> wants = new ArrayList<>(coverages.size());
+    List<RangeIterator> yxRange = null;
+    boolean sameHoriz = true;
+
+    for (int i = 0; i < coverages.size(); i++) {
+      Coverage coverage = coverages.get(i);
+      GribCollectionImmutable.VariableIndex vindex = (GribCollectionImmutable.VariableIndex) coverage.getUserObject();
+      CoverageCoordSys csys = subsetCoordSys(coverage, params);
+      List<RangeIterator> ranges = csys.getHorizCoordSys().getRanges();
+      if (yxRange == null)
+        yxRange = ranges;
+      else if (!yxRange.equals(ranges))
+        sameHoriz = false;
+      subsetCoordSys.add(csys);
+
+      GribDataReader reader = GribDataReader.factory(gribCollection, vindex);
+      List<CoverageCoordAxis> coordsSetAxes = getCoordsSetAxes(vindex, csys);
+      CoordsSet want = CoordsSet.factory(csys.isConstantForecast(), coordsSetAxes);
+      datas[i] = readFromTimeSeriesStore(coverage, reader, coordsSetAxes, want, ranges);
+      if (datas[i] == null) {
+        toRead.add(i);
+        readers.add(reader);
+        wants.add(want);
+      }
+    }
+
+    List<GeoReferencedArray> result = new ArrayList<>(coverages.size());
+    if (yxRange == null)
+      return result;
+
+    if (!sameHoriz) {
+      for (int j = 0; j < toRead.size(); j++) {
+        List<RangeIterator> ranges = subsetCoordSys.get(toRead.get(j)).getHorizCoordSys().getRanges();
+        datas[toRead.get(j)] = readers.get(j).readData2(wants.get(j), ranges.get(0), ranges.get(1));
+      }
+
+    } else if (!toRead.isEmpty()) {
+      List<Array> read = GribDataReader.readData2(readers, wants, yxRange.get(0), yxRange.get(1));
+      for (int j = 0; j < toRead.size(); j++)
+        datas[toRead.get(j)] = read.get(j);
+    }
+
+    for (int i = 0; i < coverages.size(); i++) {
+      Coverage coverage = coverages.get(i);
+      result.add(new GeoReferencedArray(coverage.getName(), coverage.getDataType(), datas[i], subsetCoordSys.get(i)));
+    }
+    return result;
+  }
+
+  //////////////////////////////////////////////////////
+  // GribTimeSeriesStore
+
+  File getTimeSeriesFile(String coverageName) {
+    return GribTimeSeriesStore.getFile(gribCollection, ds, group, coverageName);
+  }
+
+  // the one time axis, if that is the only dimension besides (y, x); else null
+  private CoverageCoordAxis1D getSeriesTimeAxis(List<CoverageCoordAxis> coordsSetAxes, CoordsSet want) {
+    if (want.getRank() != 1) return null;
+    for (CoverageCoordAxis axis : coordsSetAxes) {
+      if (axis.getDependenceType() != CoverageCoordAxis.DependenceType.independent) continue;
+      if (axis.getAxisType() != AxisType.Time || !(axis instanceof CoverageCoordAxis1D)) return null;
+      return (CoverageCoordAxis1D) axis;
+    }
+    return null;
+  }
+
+  // the time key used by the store: bounds for intervals, else the coordinate twice
+  private static double getSeriesTime1(CoverageCoordAxis1D timeAxis, int index) {
+    return timeAxis.isInterval() ? timeAxis.getCoordEdge1(index) : timeAxis.getCoordMidpoint(index);
+  }
+
+  private static double getSeriesTime2(CoverageCoordAxis1D timeAxis, int index) {
+    return timeAxis.isInterval() ? timeAxis.getCoordEdge2(index) : timeAxis.getCoordMidpoint(index);
+  }
+
+  /**
+   * Describe a coverage for GribTimeSeriesStore.update().
+   * @return null if the coverage has other dimensions than time, y and x.
+   */
+  GribTimeSeriesStore.Source makeTimeSeriesSource(Coverage coverage) throws InvalidRangeException {
+    GribCollectionImmutable.VariableIndex vindex = (GribCollectionImmutable.VariableIndex) coverage.getUserObject();
+    CoverageCoordSys csys = subsetCoordSys(coverage, new SubsetParams().set(SubsetParams.timeAll, true));
+    List<CoverageCoordAxis> coordsSetAxes = getCoordsSetAxes(vindex, csys);
+    CoordsSet coordsSet = CoordsSet.factory(csys.isConstantForecast(), coordsSetAxes);
+    CoverageCoordAxis1D timeAxis = getSeriesTimeAxis(coordsSetAxes, coordsSet);
+    if (timeAxis == null || coordsSet.getShape()[0] != timeAxis.getNcoords()) return null;
+
+    List<RangeIterator> yxRange = csys.getHorizCoordSys().getRanges();
+    RangeIterator yRange = yxRange.get(0);
+    RangeIterator xRange = yxRange.get(1);
+    List<Map<String, Object>> coords = Lists.newArrayList(coordsSet);
+
+    return new GribTimeSeriesStore.Source() {
+      public int getNy() {
+        return yRange.length();
+      }
+
+      public int getNx() {
+        return xRange.length();
+      }
+
+      public String getTimeUnits() {
+        return timeAxis.getUnits();
+      }
+
+      public double[] getTimes1() {
+        double[] result = new double[timeAxis.getNcoords()];
+        for (int i = 0; i < result.length; i++) result[i] = getSeriesTime1(timeAxis, i);
+        return result;
+      }
+
+      public double[] getTimes2() {
+        double[] result = new double[timeAxis.getNcoords()];
+        for (int i = 0; i < result.length; i++) result[i] = getSeriesTime2(timeAxis, i);
+        return result;
+      }
+
+      public long[] getRecordKeys() throws IOException {
+        return GribDataReader.factory(gribCollection, vindex).getRecordKeys(coords);
+      }
+
+      public float[] readTimes(int start, int n) throws IOException, InvalidRangeException {
+        Array data = GribDataReader.factory(gribCollection, vindex).readData2(coords.subList(start, start + n), yRange, xRange);
+        return (float[]) data.get1DJavaArray(DataType.FLOAT);
+      }
+    };
+  }
+
+  /*
+   * A time series at a single point may be read from the variable's GribTimeSeriesStore, if it has one.
+   * Only if every wanted time is in the store, and was stored from the same record as the collection now has.
+   * Otherwise return null, and the records are read as usual.
+   */
+  private Array readFromTimeSeriesStore(Coverage coverage, GribDataReader dataReader, List<CoverageCoordAxis> coordsSetAxes,
+                                        CoordsSet want, List<RangeIterator> yxRange) throws IOException {
+    if (!GribTimeSeriesStore.isEnabled() || ds.getType().isTwoD()) return null;
+    if (!(yxRange.get(0) instanceof Range) || !(yxRange.get(1) instanceof Range)) return null;
+    Range yRange = (Range) yxRange.get(0);
+    Range xRange = (Range) yxRange.get(1);
+    if (yRange.length() != 1 || xRange.length() != 1) return null;
+    CoverageCoordAxis1D timeAxis = getSeriesTimeAxis(coordsSetAxes, want);
+    if (timeAxis == null) return null;
+
+    List<RangeIterator> fullRange = coverage.getCoordSys().getHorizCoordSys().getRanges();
+    try (GribTimeSeriesStore store = GribTimeSeriesStore.open(getTimeSeriesFile(coverage.getName()))) {
+      if (store == null || !store.matches(fullRange.get(0).length(), fullRange.get(1).length(), timeAxis.getUnits()))
+        return null;
+
+      int[] timeIndex = new int[timeAxis.getNcoords()];
+      for (int i = 0; i < timeIndex.length; i++) {
+        timeIndex[i] = store.findTime(getSeriesTime1(timeAxis, i), getSeriesTime2(timeAxis, i));
+        if (timeIndex[i] < 0) return null;
+      }
+      if (!store.hasRecords(timeIndex, dataReader.getRecordKeys(want)))
+        return null;
+
+      float[] data = store.readPoint(yRange.first(), xRange.first(), timeIndex);
+      return Array.factory(DataType.FLOAT, want.getShape(yRange, xRange), data);
+
+    } catch (IOException e) {
+      logger.warn("GribTimeSeriesStore failed for {}, reading records instead: {}", coverage.getName(), e.getMessage());
+      return null;
+    }
+  }
+
+  private CoverageCoordSys subsetCoordSys(Coverage coverage, SubsetParams params) throws InvalidRangeException {
     CoverageCoordSys orgCoordSys = coverage.getCoordSys();
     ucar.nc2.util.Optional<CoverageCoordSys> opt = orgCoordSys.subset(params, false, true);
     if (!opt.isPresent())
       throw new InvalidRangeException(opt.getErrorMessage());
+    return opt.get();
+  }
 
-    CoverageCoordSys subsetCoordSys = opt.get();
+  private List<CoverageCoordAxis> getCoordsSetAxes(GribCollectionImmutable.VariableIndex vindex, CoverageCoordSys subsetCoordSys) {
     List<CoverageCoordAxis> coordsSetAxes = new ArrayList<>(); // for CoordsSet.factory()
 
     // this orders the coords based on the grib coords, which also orders the iterator in CoordsSet. could be different i think
@@ -1214,18 +1413,7 @@ public class GribCoverageDataset implements CoverageReader, CoordAxisReader {
     if (!hasruntime)
       logger.warn("HEYA no runtime " + gribCollection.getName()); */
 
-    List<CoverageCoordAxis> geoArrayAxes = new ArrayList<>(coordsSetAxes);  // for GeoReferencedArray
-    geoArrayAxes.add(subsetCoordSys.getYAxis());
-    geoArrayAxes.add(subsetCoordSys.getXAxis());
-    List<RangeIterator> yxRange = subsetCoordSys.getHorizCoordSys().getRanges(); // may be 2D
-
-    // iterator over all except x, y
-    CoordsSet coordIter = CoordsSet.factory(subsetCoordSys.isConstantForecast(), coordsSetAxes);
-
-    GribDataReader dataReader = GribDataReader.factory(gribCollection, vindex);
-    Array data = dataReader.readData2(coordIter, yxRange.get(0), yxRange.get(1));
-
-    return new GeoReferencedArray(coverage.getName(), coverage.getDataType(), data, subsetCoordSys);
+    return coordsSetAxes;
   }
 
   // LOOK dependent axis could get added multiple times
@@ -0,0 +1,482 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.grib.coverage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.ft2.coverage.Coverage;
+import ucar.nc2.ft2.coverage.CoverageCollection;
+import ucar.nc2.grib.collection.GribCollectionImmutable;
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Optional persistent copy of selected GRIB variables, rechunked along time, to serve time series at a point.
+ * GRIB stores one 2D field per record, so a time series at a point otherwise decodes one record for every time.
+ * <p>
+ * There is one store file for each variable of each dataset and group, under the root directory.
+ * The data is in chunks of chunkLen times, each chunk ordered (y, x, time), so the series at a point is one
+ * short read per chunk. update() is meant to be run in the background after the collection index changes.
+ * It only rewrites the chunks whose records have changed or been added.
+ * GribCoverageDataset uses a store only when all the records of the request match the ones the store was built from,
+ * so a stale store is never used, it just isnt used until its updated.
+ * <p>
+ * File layout: magic, version, header position (16 bytes); then chunks and headers, only ever appended.
+ * Readers use the header pointed to at the time they open the file, so updating never disturbs them.
+ * When too much of the file is unused, the store is rewritten to a new file and renamed.
+ */
+public class GribTimeSeriesStore implements Closeable {
+  static private final Logger logger = LoggerFactory.getLogger(GribTimeSeriesStore.class);
+  static private final int MAGIC = 0x54535331; // "TSS1"
+  static private final int VERSION = 1;
+  static private final int SUPERBLOCK = 16;
+  static private final String SUFFIX = ".tss";
+
+  static private int maxChunkBytes = 16 * 1000 * 1000;
+  static private int maxChunkTimes = 256;
+  static private File rootDir;  // off unless enabled
+  static private ExecutorService updateExecutor;
+
+  /**
+   * Use time series stores. Off by default.
+   *
+   * @param dir      top directory for the store files.
+   * @param executor runs updateInBackground(); if null, updates are done in the calling thread.
+   */
+  static public void enable(String dir, ExecutorService executor) {
+    rootDir = new File(dir);
+    updateExecutor = executor;
+  }
+
+  static public void disable() {
+    rootDir = null;
+    updateExecutor = null;
+  }
+
+  static public boolean isEnabled() {
+    return rootDir != null;
+  }
+
+  /**
+   * Call update() with the executor passed to enable().
+   * Since a store is only used when it matches the collection, readers are not affected while this runs.
+   */
+  static public void updateInBackground(GribCollectionImmutable gc, Collection<String> varNames) {
+    if (rootDir == null || varNames == null || varNames.isEmpty()) return;
+    ExecutorService executor = updateExecutor;
+    if (executor == null) {
+      update(gc, varNames);
+      return;
+    }
+    try {
+      executor.submit(() -> update(gc, varNames));
+    } catch (RejectedExecutionException e) {
+      logger.debug("GribTimeSeriesStore: update of {} rejected", gc.getName());
+    }
+  }
+
+  /**
+   * Bring the stores of the named variables up to date with the collection.
+   * Only datasets with a single time dimension are used (eg SRC and Best, not TwoD),
+   * and only variables that vary in time and (y, x) alone.
+   *
+   * @param gc       the collection, not closed here
+   * @param varNames the coverage names to store
+   * @return number of stores that were written
+   */
+  static public synchronized int update(GribCollectionImmutable gc, Collection<String> varNames) {
+    if (rootDir == null || varNames == null || varNames.isEmpty()) return 0;
+
+    int count = 0;
+    for (GribCollectionImmutable.Dataset ds : gc.getDatasets()) {
+      if (ds.getType().isTwoD()) continue;
+      for (GribCollectionImmutable.GroupGC group : ds.getGroups()) {
+        GribCoverageDataset gribCov = new GribCoverageDataset(gc, ds, group);
+        CoverageCollection cc = gribCov.createCoverageCollection();
+        for (Coverage cov : cc.getCoverages()) {
+          if (!varNames.contains(cov.getName())) continue;
+          try {
+            Source source = gribCov.makeTimeSeriesSource(cov);
+            if (source == null) {
+              logger.info("GribTimeSeriesStore: {} in {} does not vary only in time, not stored", cov.getName(), cc.getName());
+              continue;
+            }
+            if (update(source, gribCov.getTimeSeriesFile(cov.getName())))
+              count++;
+          } catch (Exception e) { // eg collection was closed underneath us; next update will catch up
+            logger.error("GribTimeSeriesStore: failed to update " + cov.getName() + " in " + cc.getName(), e);
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  // where the store for a variable lives
+  static File getFile(GribCollectionImmutable gc, GribCollectionImmutable.Dataset ds, GribCollectionImmutable.GroupGC group, String varName) {
+    File dir = new File(new File(rootDir, cleanName(gc.getName())), cleanName(ds.getType() + "-" + group.getId()));
+    return new File(dir, cleanName(varName) + SUFFIX);
+  }
+
+  static private String cleanName(String name) {
+    return name.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  /**
+   * What the store is built from: one variable, with a single time dimension.
+   */
+  interface Source {
+    int getNy();
+
+    int getNx();
+
+    String getTimeUnits();
+
+    // time coordinate of each record: bounds for intervals, otherwise both are the coordinate
+    double[] getTimes1();
+
+    double[] getTimes2();
+
+    // GribDataReader.getRecordKeys() for each time
+    long[] getRecordKeys() throws IOException;
+
+    // read the records for times [start, start+n), in (time, y, x) order, missing are NaN
+    float[] readTimes(int start, int n) throws IOException, InvalidRangeException;
+  }
+
+  static private int chooseChunkLen(int ny, int nx) {
+    long perTime = 4L * ny * nx;
+    return (int) Math.max(1, Math.min(maxChunkTimes, maxChunkBytes / perTime));
+  }
+
+  /**
+   * Bring the store up to date with the source, reusing the chunks that have not changed.
+   *
+   * @return true if anything was written
+   */
+  static boolean update(Source source, File file) throws IOException, InvalidRangeException {
+    int ny = source.getNy();
+    int nx = source.getNx();
+    int chunkLen = chooseChunkLen(ny, nx);
+    double[] times1 = source.getTimes1();
+    double[] times2 = source.getTimes2();
+    long[] keys = source.getRecordKeys();
+    int ntimes = times1.length;
+    int nchunks = (ntimes + chunkLen - 1) / chunkLen;
+    long chunkBytes = 4L * ny * nx * chunkLen;
+
+    Header old = null;
+    if (file.exists()) {
+      try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+        old = readHeader(raf);
+      } catch (IOException e) {
+        logger.warn("GribTimeSeriesStore: cant read {}, will rebuild: {}", file, e.getMessage());
+      }
+      if (old != null && (old.ny != ny || old.nx != nx || old.chunkLen != chunkLen || !old.timeUnits.equals(source.getTimeUnits())))
+        old = null;
+    }
+
+    Header header = new Header(ny, nx, chunkLen, source.getTimeUnits(), times1, times2, keys, new long[nchunks]);
+    boolean[] reuse = new boolean[nchunks];
+    int nreuse = 0;
+    for (int c = 0; c < nchunks; c++) {
+      if (old != null && header.sameChunk(old, c)) {
+        reuse[c] = true;
+        nreuse++;
+      }
+    }
+    if (old != null && nreuse == nchunks && old.times1.length == ntimes)
+      return false; // nothing changed
+
+    long needed = SUPERBLOCK + chunkBytes * nchunks;
+    boolean rebuild = (old == null) || (file.length() + chunkBytes * (nchunks - nreuse) > 2 * needed);
+
+    if (rebuild) {
+      File dir = file.getParentFile();
+      if (!dir.exists() && !dir.mkdirs())
+        throw new IOException("Cant make directory " + dir);
+      File tmp = new File(dir, file.getName() + ".tmp");
+      try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+           FileChannel in = (old == null) ? null : FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        out.position(SUPERBLOCK);
+        for (int c = 0; c < nchunks; c++) {
+          header.chunkPos[c] = out.position();
+          if (reuse[c])
+            copyFully(in, old.chunkPos[c], chunkBytes, out);
+          else
+            writeChunk(source, header, c, out);
+        }
+        writeHeader(header, out);
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    } else {
+      try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+        out.position(out.size());
+        for (int c = 0; c < nchunks; c++) {
+          if (reuse[c]) {
+            header.chunkPos[c] = old.chunkPos[c];
+          } else {
+            header.chunkPos[c] = out.position();
+            writeChunk(source, header, c, out);
+          }
+        }
+        writeHeader(header, out);
+      }
+    }
+
+    logger.debug("GribTimeSeriesStore: {} {} chunks, {} rewritten", file, nchunks, nchunks - nreuse);
+    return true;
+  }
+
+  // read the records of one chunk and write them transposed to (y, x, time)
+  static private void writeChunk(Source source, Header header, int chunk, FileChannel out) throws IOException, InvalidRangeException {
+    int chunkLen = header.chunkLen;
+    int start = chunk * chunkLen;
+    int n = Math.min(chunkLen, header.times1.length - start);
+    float[] data = source.readTimes(start, n);
+    int npts = header.ny * header.nx;
+
+    ByteBuffer bb = ByteBuffer.allocate(4 * npts * chunkLen);
+    FloatBuffer fb = bb.asFloatBuffer();
+    for (int pt = 0; pt < npts; pt++) {
+      int base = pt * chunkLen;
+      for (int t = 0; t < n; t++)
+        fb.put(base + t, data[t * npts + pt]);
+      for (int t = n; t < chunkLen; t++)
+        fb.put(base + t, Float.NaN);
+    }
+    writeFully(bb, out);
+  }
+
+  // append the header, flush, then point the superblock at it
+  static private void writeHeader(Header header, FileChannel out) throws IOException {
+    long headerPos = out.position();
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    DataOutputStream dout = new DataOutputStream(bout);
+    dout.writeInt(header.ny);
+    dout.writeInt(header.nx);
+    dout.writeInt(header.chunkLen);
+    dout.writeUTF(header.timeUnits);
+    dout.writeInt(header.times1.length);
+    for (int i = 0; i < header.times1.length; i++) {
+      dout.writeDouble(header.times1[i]);
+      dout.writeDouble(header.times2[i]);
+      dout.writeLong(header.keys[i]);
+    }
+    dout.writeInt(header.chunkPos.length);
+    for (long pos : header.chunkPos)
+      dout.writeLong(pos);
+    dout.flush();
+    writeFully(ByteBuffer.wrap(bout.toByteArray()), out);
+    out.force(false);
+
+    ByteBuffer superblock = ByteBuffer.allocate(SUPERBLOCK);
+    superblock.putInt(MAGIC).putInt(VERSION).putLong(headerPos);
+    superblock.flip();
+    out.write(superblock, 0);
+    out.force(false);
+  }
+
+  static private Header readHeader(RandomAccessFile raf) throws IOException {
+    raf.order(RandomAccessFile.BIG_ENDIAN);
+    raf.seek(0);
+    if (raf.readInt() != MAGIC) throw new IOException("Not a time series store " + raf.getLocation());
+    int version = raf.readInt();
+    if (version != VERSION) throw new IOException("Unknown time series store version " + version);
+    raf.seek(raf.readLong());
+
+    int ny = raf.readInt();
+    int nx = raf.readInt();
+    int chunkLen = raf.readInt();
+    String timeUnits = raf.readUTF();
+    int ntimes = raf.readInt();
+    double[] times1 = new double[ntimes];
+    double[] times2 = new double[ntimes];
+    long[] keys = new long[ntimes];
+    for (int i = 0; i < ntimes; i++) {
+      times1[i] = raf.readDouble();
+      times2[i] = raf.readDouble();
+      keys[i] = raf.readLong();
+    }
+    long[] chunkPos = new long[raf.readInt()];
+    for (int c = 0; c < chunkPos.length; c++)
+      chunkPos[c] = raf.readLong();
+    return new Header(ny, nx, chunkLen, timeUnits, times1, times2, keys, chunkPos);
+  }
+
+  static private void writeFully(ByteBuffer bb, FileChannel out) throws IOException {
+    while (bb.hasRemaining())
+      out.write(bb);
+  }
+
+  static private void copyFully(FileChannel in, long pos, long count, FileChannel out) throws IOException {
+    long done = 0;
+    while (done < count) {
+      long n = in.transferTo(pos + done, count - done, out);
+      if (n <= 0) throw new EOFException("Time series store truncated");
+      done += n;
+    }
+  }
+
+  static private class Header {
+    final int ny, nx, chunkLen;
+    final String timeUnits;
+    final double[] times1, times2;
+    final long[] keys;
+    final long[] chunkPos;
+
+    Header(int ny, int nx, int chunkLen, String timeUnits, double[] times1, double[] times2, long[] keys, long[] chunkPos) {
+      this.ny = ny;
+      this.nx = nx;
+      this.chunkLen = chunkLen;
+      this.timeUnits = timeUnits;
+      this.times1 = times1;
+      this.times2 = times2;
+      this.keys = keys;
+      this.chunkPos = chunkPos;
+    }
+
+    // chunk c has the same times and records as in old
+    boolean sameChunk(Header old, int c) {
+      if (c >= old.chunkPos.length) return false;
+      int start = c * chunkLen;
+      int end = Math.min(start + chunkLen, times1.length);
+      int oldEnd = Math.min(start + chunkLen, old.times1.length);
+      if (end != oldEnd) return false;
+      for (int i = start; i < end; i++) {
+        if (times1[i] != old.times1[i] || times2[i] != old.times2[i] || keys[i] != old.keys[i]) return false;
+      }
+      return true;
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // reading
+
+  /**
+   * Open a store for reading. Must be closed.
+   *
+   * @return the store, or null if there is none for this file.
+   */
+  static GribTimeSeriesStore open(File file) throws IOException {
+    if (!file.exists()) return null;
+    RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r");
+    try {
+      return new GribTimeSeriesStore(raf, readHeader(raf));
+    } catch (IOException e) {
+      raf.close();
+      throw e;
+    }
+  }
+
+  private final RandomAccessFile raf;
+  private final Header header;
+  private Map<String, Integer> timeIndex;
+
+  private GribTimeSeriesStore(RandomAccessFile raf, Header header) {
+    this.raf = raf;
+    this.header = header;
+  }
+
+  boolean matches(int ny, int nx, String timeUnits) {
+    return header.ny == ny && header.nx == nx && header.timeUnits.equals(timeUnits);
+  }
+
+  /**
+   * Find the index of a time coordinate.
+   * @return index, or -1 if not in the store
+   */
+  int findTime(double time1, double time2) {
+    if (timeIndex == null) {
+      timeIndex = new HashMap<>(2 * header.times1.length);
+      for (int i = 0; i < header.times1.length; i++)
+        timeIndex.put(header.times1[i] + " " + header.times2[i], i);
+    }
+    Integer index = timeIndex.get(time1 + " " + time2);
+    return (index == null) ? -1 : index;
+  }
+
+  // were these times stored from exactly these records ?
+  boolean hasRecords(int[] timeIndex, long[] keys) {
+    if (timeIndex.length != keys.length) return false;
+    for (int i = 0; i < timeIndex.length; i++) {
+      if (header.keys[timeIndex[i]] != keys[i]) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Read the values at one point.
+   *
+   * @param y         y index
+   * @param x         x index
+   * @param timeIndex indices of the wanted times, from findTime()
+   * @return the values, in the order of timeIndex
+   */
+  float[] readPoint(int y, int x, int[] timeIndex) throws IOException {
+    int chunkLen = header.chunkLen;
+    float[] buff = new float[chunkLen];
+    float[] result = new float[timeIndex.length];
+    int lastChunk = -1;
+    for (int i = 0; i < timeIndex.length; i++) {
+      int chunk = timeIndex[i] / chunkLen;
+      if (chunk != lastChunk) {
+        raf.seek(header.chunkPos[chunk] + 4L * (y * header.nx + x) * chunkLen);
+        raf.readFloat(buff, 0, chunkLen);
+        lastChunk = chunk;
+      }
+      result[i] = buff[timeIndex[i] % chunkLen];
+    }
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    raf.close();
+  }
+
+}
@@ -33,6 +33,7 @@
 
 package ucar.nc2.grib.grib2;
 
+import ucar.ma2.RangeIterator;
 import ucar.nc2.grib.GribNumbers;
 import ucar.nc2.grib.GribUtils;
 import ucar.nc2.iosp.BitReader;
@@ -302,38 +303,10 @@ public class Grib2DataReader2 {
     }
 
     BitReader reader = new BitReader(raf, startPos+5);
-
-    // 6-xx  Get reference values for groups (X1's)
-    int[] X1 = new int[NG];
-    int nb = gdrs.numberOfBits;
-    if (nb != 0) {
-      for (int i = 0; i < NG; i++)
-        X1[i] = (int) reader.bits2UInt(nb);
-    }
-
-    // [xx +1 ]-yy Get number of bits used to encode each group
-    int[] NB = new int[NG];
-    nb = gdrs.bitsGroupWidths;
-    if (nb != 0) {
-      reader.incrByte();
-      for (int i = 0; i < NG; i++)
-        NB[i] = (int) reader.bits2UInt(nb);
-    }
-
-    // [yy +1 ]-zz Get the scaled group lengths using formula
-    //     Ln = ref + Kn * len_inc, where n = 1-NG,
-    //          ref = referenceGroupLength, and  len_inc = lengthIncrement
-
-    int[] L = new int[NG];
-    int ref = gdrs.referenceGroupLength;
-    int len_inc = gdrs.lengthIncrement;
-    nb = gdrs.bitsScaledGroupLength;
-
-    reader.incrByte();
-    for (int i = 0; i < NG; i++)
-      L[i] = ref + (int) reader.bits2UInt(nb) * len_inc;
-    L[NG - 1] = gdrs.lengthLastGroup; // enter Length of Last Group
-
+    ComplexGroups groups = new ComplexGroups(reader, gdrs);
+    int[] X1 = groups.X1;
+    int[] NB = groups.NB;
+    int[] L = groups.L;
 
     float[] data = new float[totalNPoints];
 
@@ -390,6 +363,46 @@ public class Grib2DataReader2 {
   }
 
 
+  // group descriptors for complex packing (template 7.2): X1, NB and L for each group
+  private static class ComplexGroups {
+    final int[] X1, NB, L;
+
+    ComplexGroups(BitReader reader, Grib2Drs.Type2 gdrs) throws IOException {
+      int NG = gdrs.numberOfGroups;
+
+      // 6-xx  Get reference values for groups (X1's)
+      X1 = new int[NG];
+      int nb = gdrs.numberOfBits;
+      if (nb != 0) {
+        for (int i = 0; i < NG; i++)
+          X1[i] = (int) reader.bits2UInt(nb);
+      }
+
+      // [xx +1 ]-yy Get number of bits used to encode each group
+      NB = new int[NG];
+      nb = gdrs.bitsGroupWidths;
+      if (nb != 0) {
+        reader.incrByte();
+        for (int i = 0; i < NG; i++)
+          NB[i] = (int) reader.bits2UInt(nb);
+      }
+
+      // [yy +1 ]-zz Get the scaled group lengths using formula
+      //     Ln = ref + Kn * len_inc, where n = 1-NG,
+      //          ref = referenceGroupLength, and  len_inc = lengthIncrement
+
+      L = new int[NG];
+      int ref = gdrs.referenceGroupLength;
+      int len_inc = gdrs.lengthIncrement;
+      nb = gdrs.bitsScaledGroupLength;
+
+      reader.incrByte();
+      for (int i = 0; i < NG; i++)
+        L[i] = ref + (int) reader.bits2UInt(nb) * len_inc;
+      L[NG - 1] = gdrs.lengthLastGroup; // enter Length of Last Group
+    }
+  }
+
   /* from wgrib unpk_complex():
 
     p = sec[5];                               // drs
@@ -1080,6 +1093,186 @@ public class Grib2DataReader2 {
          Columns have Nj grid points if points are not offset in j direction Columns have Nj-1 grid points if points are offset by Dj/2 in j direction
    */
 
+  /////////////////////////////////////////////////////////////////////////////////////////////////
+  // Windowed reads
+
+  /**
+   * Read only the points in the (y, x) window, without unpacking the whole grid.
+   * Only for simple packing (template 0) and complex packing without spatial differencing (template 2),
+   * with a scan mode that does not rearrange the rows (0 or 64).
+   *
+   * @param raf           read from here
+   * @param bitmapSection the bitmap, if any
+   * @param gdrs          data representation for this record
+   * @param yRange        y indices wanted
+   * @param xRange        x indices wanted
+   * @return data[yRange.length * xRange.length] in (y, x) order,
+   * or null if this record cannot be read by window, in which case use getData().
+   * @throws IOException on read error
+   */
+  public float[] getDataWindow(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs,
+                               RangeIterator yRange, RangeIterator xRange) throws IOException {
+    if ((scanMode != 0) && (scanMode != 64)) return null;
+    if (dataTemplate != 0 && !(dataTemplate == 2 && ((Grib2Drs.Type2) gdrs).numberOfGroups > 0)) return null;
+
+    this.bitmap = bitmapSection.getBitmap(raf);
+    this.bitmapIndicator = bitmapSection.getBitMapIndicator();
+    if (bitmap != null && bitmap.length * 8 < totalNPoints) {
+      log.warn("Bitmap section length = {} != grid length {} ({},{})", bitmap.length, totalNPoints, nx, totalNPoints/nx);
+      throw new IllegalStateException("Bitmap section length!= grid length");
+    }
+    int[] bitCount = (bitmap == null) ? null : makeBitCount(bitmap);
+
+    // the BitReader assumes nothing else moves the file pointer, so create it after reading the bitmap
+    PackedValues packed = (dataTemplate == 0) ? new SimplePacked(raf, (Grib2Drs.Type0) gdrs) : new ComplexPacked(raf, (Grib2Drs.Type2) gdrs);
+
+    float[] result = new float[yRange.length() * xRange.length()];
+    int count = 0;
+    for (int y : yRange) {
+      for (int x : xRange) {
+        int idx = y * nx + x;
+        if (bitmap == null) {
+          result[count++] = packed.get(idx);
+        } else if ((bitmap[idx / 8] & GribNumbers.bitmask[idx % 8]) != 0) {
+          result[count++] = packed.get(countBitsBefore(bitmap, bitCount, idx)); // index into the packed values
+        } else {
+          result[count++] = packed.missingValue();
+        }
+      }
+    }
+    return result;
+  }
+
+  // bitCount[i] = number of bits set in bitmap[0..i-1]
+  private static int[] makeBitCount(byte[] bitmap) {
+    int[] bitCount = new int[bitmap.length + 1];
+    for (int i = 0; i < bitmap.length; i++)
+      bitCount[i + 1] = bitCount[i] + Integer.bitCount(bitmap[i] & 0xff);
+    return bitCount;
+  }
+
+  // number of bits set in the bitmap before point idx
+  private static int countBitsBefore(byte[] bitmap, int[] bitCount, int idx) {
+    int bitsInByte = idx % 8;
+    int partial = (bitsInByte == 0) ? 0 : Integer.bitCount((bitmap[idx / 8] & 0xff) >> (8 - bitsInByte));
+    return bitCount[idx / 8] + partial;
+  }
+
+  // random access to the packed values; sequential access does not reposition the reader
+  private interface PackedValues {
+    float get(int packedIndex) throws IOException;
+    float missingValue();
+  }
+
+  private class SimplePacked implements PackedValues {
+    private final BitReader reader;
+    private final int nb;
+    private final float R, EE, DD;
+    private int next = 0;
+
+    SimplePacked(RandomAccessFile raf, Grib2Drs.Type0 gdrs) throws IOException {
+      this.reader = new BitReader(raf, startPos+5);
+      this.nb = gdrs.numberOfBits;
+      this.DD = (float) java.lang.Math.pow((double) 10, (double) gdrs.decimalScaleFactor);
+      this.R = gdrs.referenceValue;
+      this.EE = (float) java.lang.Math.pow( 2.0, (double) gdrs.binaryScaleFactor);
+    }
+
+    @Override
+    public float get(int packedIndex) throws IOException {
+      if (packedIndex != next)
+        reader.setBitOffset(packedIndex * nb);
+      next = packedIndex + 1;
+      return (R + reader.bits2UInt(nb) * EE) / DD;
+    }
+
+    @Override
+    public float missingValue() {
+      return staticMissingValue;
+    }
+  }
+
+  private class ComplexPacked implements PackedValues {
+    private final BitReader reader;
+    private final int[] X1, NB, L;
+    private final int[] groupStart;      // packed index of the first value in each group
+    private final long[] groupBitStart;  // bit offset of the first value in each group
+    private final int mvm;
+    private final float mv, R, EE, DD;
+    private int next = 0, group = 0, inGroup = 0;
+
+    ComplexPacked(RandomAccessFile raf, Grib2Drs.Type2 gdrs) throws IOException {
+      BitReader header = new BitReader(raf, startPos+5);
+      ComplexGroups groups = new ComplexGroups(header, gdrs);
+      header.incrByte();
+      long x2Start = header.getPos(); // packed values start on the next byte
+
+      this.X1 = groups.X1;
+      this.NB = groups.NB;
+      this.L = groups.L;
+      int NG = X1.length;
+      this.groupStart = new int[NG];
+      this.groupBitStart = new long[NG];
+      for (int i = 1; i < NG; i++) {
+        groupStart[i] = groupStart[i - 1] + L[i - 1];
+        groupBitStart[i] = groupBitStart[i - 1] + (long) L[i - 1] * NB[i - 1];
+      }
+
+      this.mvm = gdrs.missingValueManagement;
+      this.mv = getMissingValue(gdrs);
+      this.DD = (float) java.lang.Math.pow((double) 10, (double) gdrs.decimalScaleFactor);
+      this.R = gdrs.referenceValue;
+      this.EE = (float) java.lang.Math.pow( 2.0, (double) gdrs.binaryScaleFactor);
+
+      this.reader = new BitReader(raf, x2Start);
+      skipEmptyGroups();
+    }
+
+    @Override
+    public float get(int packedIndex) throws IOException {
+      if (packedIndex != next) {
+        group = findGroup(packedIndex);
+        inGroup = packedIndex - groupStart[group];
+        reader.setBitOffset((int) (groupBitStart[group] + (long) inGroup * NB[group]));
+      }
+
+      float result;
+      int nbits = NB[group];
+      if (nbits == 0) {
+        result = (mvm == 0) ? (R + X1[group] * EE) / DD : mv;
+      } else {
+        int X2 = (int) reader.bits2UInt(nbits);
+        // X2 is also set to missing value if all bits set to 1's
+        result = (mvm != 0 && X2 == bitsmv1[nbits]) ? mv : (R + (X1[group] + X2) * EE) / DD;
+      }
+
+      next = packedIndex + 1;
+      inGroup++;
+      skipEmptyGroups();
+      return result;
+    }
+
+    private void skipEmptyGroups() {
+      while (group < L.length - 1 && inGroup >= L[group]) {
+        group++;
+        inGroup = 0;
+      }
+    }
+
+    // last group that starts at or before packedIndex
+    private int findGroup(int packedIndex) {
+      int pos = Arrays.binarySearch(groupStart, packedIndex);
+      if (pos < 0) return -pos - 2;
+      while (pos < groupStart.length - 1 && groupStart[pos + 1] == packedIndex) pos++; // skip zero length groups
+      return pos;
+    }
+
+    @Override
+    public float missingValue() {
+      return mv;
+    }
+  }
+
   // Rearrange the data array using the scanning mode.
   // LOOK: not handling scanMode generally
   // LOOK might be wrong for a quasi regular (thin) grid ??
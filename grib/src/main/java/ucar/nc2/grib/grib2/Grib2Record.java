@@ -33,6 +33,7 @@
 
 package ucar.nc2.grib.grib2;
 
+import ucar.ma2.RangeIterator;
 import ucar.nc2.grib.GribData;
 import ucar.nc2.grib.QuasiRegular;
 import ucar.nc2.time.CalendarDate;
@@ -364,6 +365,38 @@ public class Grib2Record {
     return data;
   }
 
+  /**
+   * Read only the (y, x) window of the data array: use when you want to be independent of the GribRecord.
+   * Not all data templates can be read this way, and thin grids never are.
+   *
+   * @param raf             from this RandomAccessFile
+   * @param drsPos          Grib2SectionDataRepresentation starts here
+   * @param bmsPos          if non-zero, use the bms that starts here
+   * @param gdsNumberPoints gdss.getNumberPoints()
+   * @param scanMode        gds.scanMode
+   * @param nx              gds.nx
+   * @param yRange          y indices wanted
+   * @param xRange          x indices wanted
+   * @return data as float[yRange.length * xRange.length] array, or null if the window cannot be read directly
+   * @throws IOException on read error
+   */
+  static public float[] readDataWindow(RandomAccessFile raf, long drsPos, long bmsPos, int gdsNumberPoints, int scanMode, int nx,
+                                       RangeIterator yRange, RangeIterator xRange) throws IOException {
+    raf.seek(drsPos);
+    Grib2SectionDataRepresentation drs = new Grib2SectionDataRepresentation(raf);
+    Grib2SectionBitMap bms = new Grib2SectionBitMap(raf);
+    Grib2SectionData dataSection = new Grib2SectionData(raf);
+
+    if (bmsPos > 0)
+      bms = Grib2SectionBitMap.factory(raf, bmsPos);
+
+    Grib2DataReader2 reader = new Grib2DataReader2(drs.getDataTemplate(), gdsNumberPoints, drs.getDataPoints(),
+            scanMode, nx, dataSection.getStartingPosition(), dataSection.getMsgLength());
+
+    Grib2Drs gdrs = drs.getDrs(raf);
+    return reader.getDataWindow(raf, bms, gdrs, yRange, xRange);
+  }
+
   public void check(RandomAccessFile raf, Formatter f) throws IOException {
     long messLen = is.getMessageLength();
     long startPos = is.getStartPos();
@@ -0,0 +1,109 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.grib.collection;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Write GRIB2 files for tests, from copies of the single message in HLYA10.
+ * Each copy gets its own reference time, forecast time and parameter number.
+ * The packing reference value is shifted by the parameter number and forecast time, so the data of each record differs.
+ */
+class SyntheticGrib2 {
+  static final String testfile = "../grib/src/test/data/HLYA10";
+
+  private static byte[] message;
+
+  static synchronized byte[] getMessage() throws IOException {
+    if (message == null) {
+      byte[] b = Files.readAllBytes(Paths.get(testfile));
+      ByteBuffer bb = ByteBuffer.wrap(b);
+      int start = indexOf(b, "GRIB".getBytes());
+      long len = bb.getLong(start + 8);
+      message = new byte[(int) len];
+      System.arraycopy(b, start, message, 0, message.length);
+    }
+    return message;
+  }
+
+  /**
+   * Write ntimes records for each parameter, all with the same reference time.
+   *
+   * @param file    write to this file
+   * @param day     day of January 2014 for the reference time
+   * @param params  GRIB2 parameter numbers (discipline 0, category 0)
+   * @param ntimes  number of forecast times, every 6 hours
+   */
+  static void write(File file, int day, int[] params, int ntimes) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+      for (int time = 0; time < ntimes; time++) {
+        for (int param : params)
+          out.write(makeMessage(day, param, 6 * time));
+      }
+    }
+  }
+
+  static byte[] makeMessage(int day, int param, int forecastTime) throws IOException {
+    byte[] m = getMessage().clone();
+    ByteBuffer bb = ByteBuffer.wrap(m);
+    int pos = 16;
+    while (pos < m.length - 4) {
+      int len = bb.getInt(pos);
+      int section = m[pos + 4];
+      if (section == 1) {
+        m[pos + 14] = 1;                 // month
+        m[pos + 15] = (byte) day;        // day
+        m[pos + 16] = 0;                 // hour
+      } else if (section == 4) {
+        m[pos + 10] = (byte) param;      // parameter number
+        bb.putInt(pos + 18, forecastTime);
+      } else if (section == 5) {
+        bb.putFloat(pos + 11, bb.getFloat(pos + 11) + 1000 * param + forecastTime);
+      }
+      pos += len;
+    }
+    return m;
+  }
+
+  private static int indexOf(byte[] b, byte[] want) {
+    for (int i = 0; i <= b.length - want.length; i++) {
+      int j = 0;
+      while (j < want.length && b[i + j] == want[j]) j++;
+      if (j == want.length) return i;
+    }
+    throw new IllegalStateException("no GRIB message in " + testfile);
+  }
+}
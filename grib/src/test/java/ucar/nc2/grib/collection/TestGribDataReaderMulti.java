@@ -0,0 +1,189 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.grib.collection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.featurecollection.FeatureCollectionType;
+import thredds.inventory.CollectionUpdateType;
+import ucar.ma2.Array;
+import ucar.ma2.StructureData;
+import ucar.nc2.ft.*;
+import ucar.nc2.ft2.coverage.*;
+import ucar.nc2.ft2.coverage.writer.CoverageAsPoint;
+import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.LatLonRect;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reading several coverages in one pass, with GribDataReader.readData2(List), must give the same data as
+ * reading each coverage on its own.
+ */
+public class TestGribDataReaderMulti {
+  static private final int[] params = new int[]{0, 1, 2, 3, 4, 5};
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void turnOff() {
+    GribDataReader.setDecodeExecutor(null, 1, 8);
+  }
+
+  @Test
+  public void testCollection() throws Exception {
+    File file = new File(tempFolder.getRoot(), "multi.grib2");
+    SyntheticGrib2.write(file, 15, params, 20);
+
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(file.getPath())) {
+      Assert.assertNotNull(fdc);
+      CoverageCollection cc = fdc.getSingleCoverageCollection();
+      Assert.assertEquals(params.length, getCoverages(cc).size());
+      compareMultiToSingle(cc, makePoint());
+      compareMultiToSingle(cc, makeBB());
+    }
+  }
+
+  @Test
+  public void testPartition() throws Exception {
+    File dir = tempFolder.newFolder("partition");
+    for (int day = 15; day < 18; day++)
+      SyntheticGrib2.write(new File(dir, "day" + day + ".grib2"), day, params, 4);
+
+    FeatureCollectionConfig config = new FeatureCollectionConfig("TestMulti", "test/multi", FeatureCollectionType.GRIB2,
+            dir.getPath() + "/.*grib2$", null, null, null, "file", null);
+    GribCdmIndex.updateGribCollection(config, CollectionUpdateType.always, null);
+
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(new File(dir, "TestMulti.ncx4").getPath())) {
+      Assert.assertNotNull(fdc);
+      for (CoverageCollection cc : fdc.getCoverageCollections()) {
+        compareMultiToSingle(cc, makePoint());
+        compareMultiToSingle(cc, makeBB());
+      }
+    }
+  }
+
+  // when records are decoded in parallel, each coverage is read on its own
+  @Test
+  public void testParallelDecode() throws Exception {
+    File file = new File(tempFolder.getRoot(), "parallel.grib2");
+    SyntheticGrib2.write(file, 15, params, 10);
+
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(file.getPath())) {
+      GribDataReader.setDecodeExecutor(pool, 2, 2);
+      compareMultiToSingle(fdc.getSingleCoverageCollection(), makeBB());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCoverageAsPoint() throws Exception {
+    File file = new File(tempFolder.getRoot(), "point.grib2");
+    int ntimes = 20;
+    SyntheticGrib2.write(file, 15, params, ntimes);
+
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(file.getPath())) {
+      CoverageCollection cc = fdc.getSingleCoverageCollection();
+      List<Coverage> covs = getCoverages(cc);
+      List<String> names = new ArrayList<>();
+      List<Array> expected = new ArrayList<>();
+      for (Coverage cov : covs) {
+        names.add(cov.getName());
+        expected.add(cov.readData(makePoint()).getData());
+      }
+
+      CoverageAsPoint asPoint = new CoverageAsPoint(cc, names, makePoint());
+      FeatureDatasetPoint fdp = asPoint.asFeatureDatasetPoint();
+      StationTimeSeriesFeatureCollection stations = (StationTimeSeriesFeatureCollection) fdp.getPointFeatureCollectionList().get(0);
+
+      int count = 0;
+      for (StationTimeSeriesFeature station : stations) {
+        for (PointFeature pf : station) {
+          StructureData sdata = pf.getDataAll();
+          for (int i = 0; i < names.size(); i++)
+            Assert.assertEquals(names.get(i), expected.get(i).getFloat(count), sdata.convertScalarFloat(names.get(i)), 0.0);
+          Assert.assertFalse(Float.isNaN(sdata.convertScalarFloat(names.get(0))));
+          count++;
+        }
+      }
+      Assert.assertEquals(ntimes, count);
+    }
+  }
+
+  private void compareMultiToSingle(CoverageCollection cc, SubsetParams subset) throws Exception {
+    List<Coverage> covs = getCoverages(cc);
+    List<GeoReferencedArray> multi = cc.getReader().readData(covs, subset, false);
+    Assert.assertEquals(covs.size(), multi.size());
+
+    for (int i = 0; i < covs.size(); i++) {
+      Coverage cov = covs.get(i);
+      Array single = cov.readData(subset).getData();
+      Array data = multi.get(i).getData();
+      Assert.assertEquals(cov.getName(), multi.get(i).getCoverageName());
+      Assert.assertArrayEquals(cov.getName(), single.getShape(), data.getShape());
+      Assert.assertTrue(cov.getName(), Arrays.equals((float[]) single.get1DJavaArray(float.class), (float[]) data.get1DJavaArray(float.class)));
+    }
+  }
+
+  private List<Coverage> getCoverages(CoverageCollection cc) {
+    List<Coverage> result = new ArrayList<>();
+    for (Coverage cov : cc.getCoverages())
+      result.add(cov);
+    return result;
+  }
+
+  // a grid point where the data is not missing
+  private SubsetParams makePoint() {
+    return new SubsetParams()
+            .set(SubsetParams.timeAll, true)
+            .set(SubsetParams.latlonPoint, new LatLonPointImpl(-20, 60));
+  }
+
+  private SubsetParams makeBB() {
+    return new SubsetParams()
+            .set(SubsetParams.timeAll, true)
+            .set(SubsetParams.latlonBB, new LatLonRect(new LatLonPointImpl(10, 20), 30, 40));
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.grib.collection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.featurecollection.FeatureCollectionType;
+import thredds.inventory.CollectionUpdateType;
+import ucar.ma2.Array;
+import ucar.nc2.ft2.coverage.*;
+import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.LatLonRect;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parallel decoding in GribDataReader must give the same data as decoding on the calling thread.
+ */
+public class TestGribDataReaderParallel {
+  static private final int nthreads = 4;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private ThreadPoolExecutor pool;
+
+  @Before
+  public void startPool() {
+    pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(nthreads);
+  }
+
+  @After
+  public void stopPool() {
+    GribDataReader.setDecodeExecutor(null, 1, 8);
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void testCollection() throws Exception {
+    File file = new File(tempFolder.getRoot(), "collection.grib2");
+    SyntheticGrib2.write(file, 15, new int[]{0, 1}, 12);
+
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(file.getPath())) {
+      Assert.assertNotNull(fdc);
+      int count = 0;
+      for (CoverageCollection cc : fdc.getCoverageCollections()) {
+        for (Coverage cov : cc.getCoverages()) {
+          compareSerialParallel(cov);
+          count++;
+        }
+      }
+      Assert.assertEquals(2, count);
+    }
+  }
+
+  @Test
+  public void testPartition() throws Exception {
+    File dir = tempFolder.newFolder("partition");
+    for (int day = 15; day < 18; day++)
+      SyntheticGrib2.write(new File(dir, "day" + day + ".grib2"), day, new int[]{0}, 8);
+
+    FeatureCollectionConfig config = new FeatureCollectionConfig("TestParallel", "test/parallel", FeatureCollectionType.GRIB2,
+            dir.getPath() + "/.*grib2$", null, null, null, "file", null);
+    GribCdmIndex.updateGribCollection(config, CollectionUpdateType.always, null);
+    File index = new File(dir, "TestParallel.ncx4");
+    Assert.assertTrue(index.exists());
+
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(index.getPath())) {
+      Assert.assertNotNull(fdc);
+      int count = 0;
+      for (CoverageCollection cc : fdc.getCoverageCollections()) {
+        for (Coverage cov : cc.getCoverages()) {
+          compareSerialParallel(cov);
+          count++;
+        }
+      }
+      Assert.assertTrue(count > 0);
+    }
+  }
+
+  @Test
+  public void testBatchFails() throws Exception {
+    File file = new File(tempFolder.getRoot(), "truncated.grib2");
+    SyntheticGrib2.write(file, 15, new int[]{0}, 12);
+
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(file.getPath())) {
+      Coverage cov = fdc.getSingleCoverageCollection().getCoverages().iterator().next();
+
+      // the records in the second half of the file can no longer be read
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.setLength(raf.length() / 2);
+      }
+
+      GribDataReader.setDecodeExecutor(null, 1, 8);
+      Exception serial = readFails(cov);
+      GribDataReader.setDecodeExecutor(pool, nthreads, 1);
+      Exception parallel = readFails(cov);
+
+      // the exception from the pool thread reaches the caller unchanged
+      Assert.assertEquals(serial.getClass(), parallel.getClass());
+      Assert.assertEquals(serial.getMessage(), parallel.getMessage());
+    }
+
+    // the pool is free for the next read
+    pool.shutdown();
+    Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  private Exception readFails(Coverage cov) {
+    try {
+      cov.readData(makeSubset());
+    } catch (Exception e) {
+      return e;
+    }
+    Assert.fail("read of truncated file should fail");
+    return null;
+  }
+
+  private void compareSerialParallel(Coverage cov) throws Exception {
+    GribDataReader.setDecodeExecutor(null, 1, 8);
+    Array serial = cov.readData(makeSubset()).getData();
+
+    GribDataReader.setDecodeExecutor(pool, nthreads, 1);
+    long before = pool.getTaskCount();
+    Array parallel = cov.readData(makeSubset()).getData();
+    Assert.assertTrue(cov.getName() + " not decoded in parallel", pool.getTaskCount() > before);
+
+    Assert.assertArrayEquals(cov.getName(), serial.getShape(), parallel.getShape());
+    Assert.assertTrue(cov.getName(), Arrays.equals((float[]) serial.get1DJavaArray(float.class), (float[]) parallel.get1DJavaArray(float.class)));
+  }
+
+  private SubsetParams makeSubset() {
+    return new SubsetParams()
+            .set(SubsetParams.timeAll, true)
+            .set(SubsetParams.latlonBB, new LatLonRect(new LatLonPointImpl(10, 20), 30, 40));
+  }
+}
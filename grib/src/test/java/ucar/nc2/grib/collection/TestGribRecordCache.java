@@ -0,0 +1,91 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.grib.collection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Formatter;
+
+/**
+ * Test GribRecordCache eviction and invalidation.
+ */
+public class TestGribRecordCache {
+
+  @After
+  public void turnOff() {
+    GribRecordCache.disable();
+  }
+
+  @Test
+  public void testDisabled() {
+    GribRecordCache.disable();
+    GribRecordCache.put("coll", "file1", 100, new float[10]);
+    Assert.assertNull(GribRecordCache.get("coll", "file1", 100));
+  }
+
+  @Test
+  public void testInvalidateCollection() {
+    GribRecordCache.enable(1000 * 1000);
+    float[] data = new float[10];
+    GribRecordCache.put("coll1", "file1", 100, data);
+    GribRecordCache.put("coll1", "file1", 200, new float[10]);
+    GribRecordCache.put("coll2", "file1", 100, new float[10]);
+
+    Assert.assertSame(data, GribRecordCache.get("coll1", "file1", 100));
+    Assert.assertNull(GribRecordCache.get("coll1", "file2", 100));
+
+    GribRecordCache.invalidate("coll1");
+    Assert.assertNull(GribRecordCache.get("coll1", "file1", 100));
+    Assert.assertNull(GribRecordCache.get("coll1", "file1", 200));
+    Assert.assertNotNull(GribRecordCache.get("coll2", "file1", 100));
+
+    Formatter f = new Formatter();
+    GribRecordCache.showCache(f);
+    Assert.assertTrue(f.toString().contains("records= 1"));
+  }
+
+  @Test
+  public void testMaxSize() {
+    GribRecordCache.enable(4000);  // 1000 floats
+    for (int i = 0; i < 20; i++)
+      GribRecordCache.put("coll", "file", i, new float[100]);
+
+    int count = 0;
+    for (int i = 0; i < 20; i++)
+      if (GribRecordCache.get("coll", "file", i) != null) count++;
+    Assert.assertTrue(count > 0);
+    Assert.assertTrue(count <= 10);
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.grib.coverage;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Test GribTimeSeriesStore building, incremental update and point reads, with a made up source.
+ */
+public class TestGribTimeSeriesStore {
+  private static final int ny = 5, nx = 7;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testBuildAndRead() throws Exception {
+    File file = new File(tempFolder.getRoot(), "var.tss");
+    FakeSource source = new FakeSource(600);
+    Assert.assertTrue(GribTimeSeriesStore.update(source, file));
+    Assert.assertEquals(600, source.timesRead);
+    check(file, source);
+
+    // nothing changed
+    source.timesRead = 0;
+    Assert.assertFalse(GribTimeSeriesStore.update(source, file));
+    Assert.assertEquals(0, source.timesRead);
+  }
+
+  @Test
+  public void testIncremental() throws Exception {
+    File file = new File(tempFolder.getRoot(), "var.tss");
+    GribTimeSeriesStore.update(new FakeSource(600), file);
+
+    // more times, and one record replaced: only the changed chunks are read again
+    FakeSource source = new FakeSource(700);
+    source.replaced = 10;
+    Assert.assertTrue(GribTimeSeriesStore.update(source, file));
+    Assert.assertTrue(source.timesRead < 700);
+    check(file, source);
+  }
+
+  @Test
+  public void testStaleRecords() throws Exception {
+    File file = new File(tempFolder.getRoot(), "var.tss");
+    FakeSource source = new FakeSource(100);
+    GribTimeSeriesStore.update(source, file);
+
+    try (GribTimeSeriesStore store = GribTimeSeriesStore.open(file)) {
+      Assert.assertTrue(store.matches(ny, nx, FakeSource.units));
+      Assert.assertFalse(store.matches(ny + 1, nx, FakeSource.units));
+      Assert.assertEquals(-1, store.findTime(-1.0, -1.0));
+
+      int[] timeIndex = {store.findTime(3.0, 6.0), store.findTime(4.0, 7.0)};
+      Assert.assertTrue(store.hasRecords(timeIndex, new long[]{source.key(3), source.key(4)}));
+      source.replaced = 4;
+      Assert.assertFalse(store.hasRecords(timeIndex, new long[]{source.key(3), source.key(4)}));
+    }
+  }
+
+  @Test
+  public void testNoStore() throws IOException {
+    Assert.assertNull(GribTimeSeriesStore.open(new File(tempFolder.getRoot(), "none.tss")));
+  }
+
+  private void check(File file, FakeSource source) throws IOException {
+    int ntimes = source.getTimes1().length;
+    try (GribTimeSeriesStore store = GribTimeSeriesStore.open(file)) {
+      Assert.assertNotNull(store);
+      int[] timeIndex = new int[ntimes];
+      for (int t = 0; t < ntimes; t++) {
+        timeIndex[t] = store.findTime(t, t + 3);
+        Assert.assertEquals(t, timeIndex[t]);
+      }
+      Assert.assertTrue(store.hasRecords(timeIndex, source.getRecordKeys()));
+
+      for (int y = 0; y < ny; y += 2) {
+        for (int x = 0; x < nx; x += 3) {
+          float[] data = store.readPoint(y, x, timeIndex);
+          for (int t = 0; t < ntimes; t++)
+            Assert.assertEquals("t=" + t + " y=" + y + " x=" + x, source.value(t, y, x), data[t], 0.0);
+        }
+      }
+    }
+  }
+
+  private static class FakeSource implements GribTimeSeriesStore.Source {
+    static final String units = "hours since 2015-01-01T00:00Z";
+    final int ntimes;
+    int replaced = -1;
+    int timesRead;
+
+    FakeSource(int ntimes) {
+      this.ntimes = ntimes;
+    }
+
+    float value(int t, int y, int x) {
+      return (t == replaced ? -1 : 1) * (t * 100 + y * 10 + x);
+    }
+
+    long key(int t) {
+      return (t == replaced) ? -t - 1 : t + 1;
+    }
+
+    public int getNy() {
+      return ny;
+    }
+
+    public int getNx() {
+      return nx;
+    }
+
+    public String getTimeUnits() {
+      return units;
+    }
+
+    public double[] getTimes1() {
+      double[] result = new double[ntimes];
+      for (int t = 0; t < ntimes; t++) result[t] = t;
+      return result;
+    }
+
+    public double[] getTimes2() {
+      double[] result = new double[ntimes];
+      for (int t = 0; t < ntimes; t++) result[t] = t + 3;
+      return result;
+    }
+
+    public long[] getRecordKeys() {
+      long[] result = new long[ntimes];
+      for (int t = 0; t < ntimes; t++) result[t] = key(t);
+      return result;
+    }
+
+    public float[] readTimes(int start, int n) {
+      timesRead += n;
+      float[] result = new float[n * ny * nx];
+      int count = 0;
+      for (int t = start; t < start + n; t++)
+        for (int y = 0; y < ny; y++)
+          for (int x = 0; x < nx; x++)
+            result[count++] = value(t, y, x);
+      return result;
+    }
+  }
+}
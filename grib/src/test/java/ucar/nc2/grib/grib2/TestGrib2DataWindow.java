@@ -0,0 +1,226 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ * Portions of this software were developed by the Unidata Program at the
+ * University Corporation for Atmospheric Research.
+ *
+ * Access and use of this software shall impose the following obligations
+ * and understandings on the user. The user is granted the right, without
+ * any fee or cost, to use, copy, modify, alter, enhance and distribute
+ * this software, and any derivative works thereof, and its supporting
+ * documentation for any purpose whatsoever, provided that this entire
+ * notice appears in all copies of the software, derivative works and
+ * supporting documentation.  Further, UCAR requests that the user credit
+ * UCAR/Unidata in any publications that result from the use of this
+ * software or in any product that includes this software. The names UCAR
+ * and/or Unidata, however, may not be used in any advertising or publicity
+ * to endorse or promote any products or commercial entity unless specific
+ * written permission is obtained from UCAR/Unidata. The user also
+ * understands that UCAR/Unidata is not obligated to provide the user with
+ * any support, consulting, training or assistance of any kind with regard
+ * to the use, operation and performance of this software nor to provide
+ * the user with any updates, revisions, new versions or "bug fixes."
+ *
+ * THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ * INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ * FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ * NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ * WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.grib.grib2;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.unidata.io.InMemoryRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Compare Grib2Record.readDataWindow() with the full unpacking in Grib2Record.readData(),
+ * using data/bitmap sections built in memory.
+ */
+public class TestGrib2DataWindow {
+  private static final int nx = 37, ny = 23;
+
+  @Test
+  public void testSimplePacking() throws IOException, InvalidRangeException {
+    compare(makeSimple(false));
+  }
+
+  @Test
+  public void testSimplePackingBitmap() throws IOException, InvalidRangeException {
+    compare(makeSimple(true));
+  }
+
+  @Test
+  public void testComplexPacking() throws IOException, InvalidRangeException {
+    compare(makeComplex(false));
+  }
+
+  @Test
+  public void testComplexPackingBitmap() throws IOException, InvalidRangeException {
+    compare(makeComplex(true));
+  }
+
+  @Test
+  public void testScanModeNotSupported() throws IOException, InvalidRangeException {
+    try (RandomAccessFile raf = new InMemoryRandomAccessFile("simple", makeSimple(false))) {
+      Assert.assertNull(Grib2Record.readDataWindow(raf, 0, 0, nx * ny, 128, nx, new Range(0, 1), new Range(0, 1)));
+    }
+  }
+
+  private void compare(byte[] sections) throws IOException, InvalidRangeException {
+    try (RandomAccessFile raf = new InMemoryRandomAccessFile("test", sections)) {
+      float[] full = Grib2Record.readData(raf, 0, 0, nx * ny, 0, nx, ny, null);
+
+      compare(raf, full, new Range(0, ny - 1), new Range(0, nx - 1));
+      compare(raf, full, new Range(5, 5), new Range(17, 17));
+      compare(raf, full, new Range(3, 12), new Range(30, 36));
+      compare(raf, full, new Range(1, 21, 4), new Range(2, 35, 3));
+      compare(raf, full, new Range(ny - 1, ny - 1), new Range(0, nx - 1));
+    }
+  }
+
+  private void compare(RandomAccessFile raf, float[] full, Range yRange, Range xRange) throws IOException {
+    float[] window = Grib2Record.readDataWindow(raf, 0, 0, nx * ny, 0, nx, yRange, xRange);
+    Assert.assertNotNull(window);
+    Assert.assertEquals(yRange.length() * xRange.length(), window.length);
+
+    int count = 0;
+    for (int y : yRange) {
+      for (int x : xRange) {
+        Assert.assertEquals("y=" + y + " x=" + x, full[y * nx + x], window[count++], 0.0);
+      }
+    }
+  }
+
+  //////////////////////////////////////////////////////////////
+  // build section 5, 6 and 7
+
+  // template 5.0 / 7.0
+  private byte[] makeSimple(boolean useBitmap) throws IOException {
+    Random r = new Random(7);
+    byte[] bitmap = useBitmap ? makeBitmap(r) : null;
+    int npacked = countPacked(bitmap);
+    int nbits = 11;
+
+    BitWriter data = new BitWriter();
+    for (int i = 0; i < npacked; i++)
+      data.write(r.nextInt(1 << nbits), nbits);
+
+    ByteBuffer drs = ByteBuffer.allocate(21);
+    drs.putInt(21).put((byte) 5).putInt(npacked).putShort((short) 0);
+    drs.putFloat(273.0f).putShort((short) 0).putShort((short) 1).put((byte) nbits).put((byte) 0);
+
+    return makeSections(drs.array(), bitmap, data.toByteArray());
+  }
+
+  // template 5.2 / 7.2, no spatial differencing
+  private byte[] makeComplex(boolean useBitmap) throws IOException {
+    Random r = new Random(11);
+    byte[] bitmap = useBitmap ? makeBitmap(r) : null;
+    int npacked = countPacked(bitmap);
+
+    // groups of varying length and width, including constant (width 0) groups
+    int ngroups = 0;
+    int[] len = new int[npacked];
+    int[] width = new int[npacked];
+    int[] ref = new int[npacked];
+    int remaining = npacked;
+    while (remaining > 0) {
+      int n = Math.min(remaining, 1 + r.nextInt(40));
+      len[ngroups] = n;
+      width[ngroups] = (ngroups % 5 == 2) ? 0 : 1 + r.nextInt(9);
+      ref[ngroups] = r.nextInt(200);
+      remaining -= n;
+      ngroups++;
+    }
+
+    int refBits = 8, widthBits = 4, lenBits = 6;
+    BitWriter data = new BitWriter();
+    for (int i = 0; i < ngroups; i++) data.write(ref[i], refBits);
+    data.pad();
+    for (int i = 0; i < ngroups; i++) data.write(width[i], widthBits);
+    data.pad();
+    for (int i = 0; i < ngroups; i++) data.write(len[i] - 1, lenBits); // referenceGroupLength = 1, lengthIncrement = 1
+    data.pad();
+    for (int i = 0; i < ngroups; i++) {
+      for (int j = 0; j < len[i]; j++) {
+        if (width[i] > 0) data.write(r.nextInt(1 << width[i]), width[i]);
+      }
+    }
+
+    ByteBuffer drs = ByteBuffer.allocate(47);
+    drs.putInt(47).put((byte) 5).putInt(npacked).putShort((short) 2);
+    drs.putFloat(-10.0f).putShort((short) 0).putShort((short) 1).put((byte) refBits).put((byte) 0);
+    drs.put((byte) 1).put((byte) 0).putFloat(0).putFloat(0);  // splitting method, missing value management
+    drs.putInt(ngroups).put((byte) 0).put((byte) widthBits);
+    drs.putInt(1).put((byte) 1).putInt(len[ngroups - 1]).put((byte) lenBits);
+
+    return makeSections(drs.array(), bitmap, data.toByteArray());
+  }
+
+  private byte[] makeBitmap(Random r) {
+    byte[] bitmap = new byte[(nx * ny + 7) / 8];
+    r.nextBytes(bitmap);
+    return bitmap;
+  }
+
+  private int countPacked(byte[] bitmap) {
+    if (bitmap == null) return nx * ny;
+    int count = 0;
+    for (int i = 0; i < nx * ny; i++)
+      if ((bitmap[i / 8] & (128 >> (i % 8))) != 0) count++;
+    return count;
+  }
+
+  private byte[] makeSections(byte[] drs, byte[] bitmap, byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(drs);
+
+    int bmsLen = 6 + (bitmap == null ? 0 : bitmap.length);
+    out.write(ByteBuffer.allocate(6).putInt(bmsLen).put((byte) 6).put((byte) (bitmap == null ? 255 : 0)).array());
+    if (bitmap != null) out.write(bitmap);
+
+    out.write(ByteBuffer.allocate(5).putInt(5 + data.length).put((byte) 7).array());
+    out.write(data);
+    out.write("7777".getBytes(StandardCharsets.US_ASCII)); // end of message
+    return out.toByteArray();
+  }
+
+  private static class BitWriter {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private int current, nbits;
+
+    void write(int value, int width) {
+      for (int i = width - 1; i >= 0; i--) {
+        current = (current << 1) | ((value >> i) & 1);
+        if (++nbits == 8) {
+          out.write(current);
+          current = 0;
+          nbits = 0;
+        }
+      }
+    }
+
+    void pad() {
+      if (nbits > 0) write(0, 8 - nbits);
+    }
+
+    byte[] toByteArray() {
+      pad();
+      out.write(0); // slop
+      return out.toByteArray();
+    }
+  }
+}
@@ -41,6 +41,7 @@ package thredds.util;
  */
 public class Constants {
   public static final String Content_Disposition = "Content-Disposition";
+  public static final String Estimated_Size = "X-Estimated-Size"; // estimated response size in bytes, when known before writing
 
   //       res.setHeader("Content-Disposition", "attachment; filename=" + path + ".nc");
   public static String setContentDispositionValue(String filename) {
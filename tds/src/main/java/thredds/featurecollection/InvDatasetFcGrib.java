@@ -48,6 +48,7 @@ import ucar.nc2.dt.grid.GridCoordSys;
 import ucar.nc2.ft2.coverage.CoverageCollection;
 import ucar.nc2.grib.GdsHorizCoordSys;
 import ucar.nc2.grib.collection.*;
+import ucar.nc2.grib.coverage.GribTimeSeriesStore;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.units.DateRange;
@@ -165,8 +166,13 @@ public class InvDatasetFcGrib extends InvDatasetFeatureCollection {
 
       localState.latest = null; // will get updated next time its asked for
       localState.gribCollection = GribCdmIndex.openGribCollection(this.config, force, logger);
-      if (localState.gribCollection == null)
+      if (localState.gribCollection == null) {
         logger.error("InvDatasetFcGrib.updateCollection failed " + this.config);
+      } else {
+        GribRecordCache.invalidate(config.collectionName);  // records may have been rewritten, even on the first update
+        if (config.gribConfig.timeSeriesVars != null)
+          GribTimeSeriesStore.updateInBackground(localState.gribCollection, config.gribConfig.timeSeriesVars);
+      }
 
       logger.debug("{}: GribCollection object was recreated", name);
       if (previous != null)
@@ -84,6 +84,7 @@ public class AdminDebugController {
     pw.println("<br><a href='dir/logs/'>Show Tomcat Logs</a>");
     pw.println("<br><a href='dir/catalogs/'>Show Config Catalogs</a>");
     pw.println("<br><a href='spring/showControllers'>Show Spring Controllers</a>");
+    pw.println("<br><a href='debug/fileCacheMetrics'>Show File Cache Metrics (JSON)</a>");
     pw.println("<h2>Debug Actions</h2>");
     pw.println("<pre>");
 
@@ -134,6 +135,19 @@ public class AdminDebugController {
     responsePS.flush();
   }
 
+  @RequestMapping(value = "/fileCacheMetrics", method = RequestMethod.GET)
+  protected void showFileCacheMetrics(HttpServletResponse response) throws IOException {
+    response.setContentType(ContentType.json.getContentHeader());
+
+    Formatter f = new Formatter();
+    debugCommands.showFileCacheMetricsJson(f);
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    PrintWriter responsePS = response.getWriter();
+    responsePS.write(f.toString());
+    responsePS.flush();
+  }
+
   private void showDebugActions(HttpServletRequest req, PrintStream pw) {
     for (DebugCommands.Category dh : debugCommands.getCategories()) {
       pw.println("<h2>" + dh.name + "</h2>");
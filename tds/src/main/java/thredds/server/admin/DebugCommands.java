@@ -36,6 +36,7 @@ package thredds.server.admin;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import dap4.servlet.DapCache;
 import thredds.server.config.TdsContext;
 import thredds.servlet.ServletUtil;
 import ucar.nc2.dataset.NetcdfDataset;
@@ -48,7 +49,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import ucar.nc2.grib.collection.GribCdmIndex;
+import ucar.nc2.grib.collection.GribRecordCache;
 import ucar.nc2.util.cache.FileCacheIF;
+import ucar.nc2.util.cache.FileCacheMetrics;
 import ucar.unidata.io.RandomAccessFile;
 
 /**
@@ -163,6 +166,12 @@ public class DebugCommands {
           fc.showCache(f);
         }
 
+        f.format("%n%n");
+        GribRecordCache.showCache(f);
+
+        f.format("%n%n");
+        DapCache.showStats(f);
+
         e.pw.flush();
       }
     };
@@ -174,6 +183,7 @@ public class DebugCommands {
          RandomAccessFile.getGlobalFileCache().clearCache(false);
          FileCacheIF fc = GribCdmIndex.gribCollectionCache;
          if (fc != null) fc.clearCache(false);
+         GribRecordCache.clearCache();
          e.pw.println("  ClearCache ok");
        }
      };
@@ -229,6 +239,84 @@ public class DebugCommands {
     };
     debugHandler.addAction(act);
 
+    act = new Action("showCacheMetrics", "Show File Object Cache Metrics") {
+      public void doAction(Event e) {
+        Formatter f = new Formatter(e.pw);
+        for (FileCacheIF fc : getFileCaches()) {
+          FileCacheMetrics metrics = fc.getMetrics();
+          if (metrics != null) metrics.show(f);
+        }
+        e.pw.println("  <a href='debug/fileCacheMetrics'>as JSON</a>");
+        e.pw.flush();
+      }
+    };
+    debugHandler.addAction(act);
+
+    act = new Action("resetCacheMetrics", "Reset File Object Cache Metrics") {
+      public void doAction(Event e) {
+        for (FileCacheIF fc : getFileCaches()) {
+          FileCacheMetrics metrics = fc.getMetrics();
+          if (metrics != null) metrics.reset();
+        }
+        e.pw.println("  reset cache metrics done");
+      }
+    };
+    debugHandler.addAction(act);
+
+    act = new Action("showGribRecordCache", "Show Grib Record Cache") {
+      public void doAction(Event e) {
+        Formatter f = new Formatter(e.pw);
+        GribRecordCache.showCache(f);
+        e.pw.flush();
+      }
+    };
+    debugHandler.addAction(act);
+
+    act = new Action("clearGribRecordCache", "Clear Grib Record Cache") {
+      public void doAction(Event e) {
+        GribRecordCache.clearCache();
+        e.pw.println("  GribRecordCache clearCache done");
+      }
+    };
+    debugHandler.addAction(act);
+
+    act = new Action("showDap4Cache", "Show Dap4 DSP Cache") {
+      public void doAction(Event e) {
+        Formatter f = new Formatter(e.pw);
+        DapCache.showStats(f);
+        e.pw.flush();
+      }
+    };
+    debugHandler.addAction(act);
+
+  }
+
+  // the file object caches that are turned on
+  private List<FileCacheIF> getFileCaches() {
+    List<FileCacheIF> result = new ArrayList<>();
+    if (RandomAccessFile.getGlobalFileCache() != null) result.add(RandomAccessFile.getGlobalFileCache());
+    if (NetcdfDataset.getNetcdfFileCache() != null) result.add(NetcdfDataset.getNetcdfFileCache());
+    if (GribCdmIndex.gribCollectionCache != null) result.add(GribCdmIndex.gribCollectionCache);
+    return result;
+  }
+
+  /**
+   * Write the metrics of the file object caches as JSON.
+   * @param f write to this
+   */
+  public void showFileCacheMetricsJson(Formatter f) {
+    f.format("{%n  \"openTimeBucketsMsecs\": [0"); // lower bound of each histogram bucket
+    for (int i = 1; i < FileCacheMetrics.NBUCKETS; i++)
+      f.format(", %d", 1 << (i - 1));
+    f.format("],%n  \"caches\": [%n");
+    int count = 0;
+    for (FileCacheIF fc : getFileCaches()) {
+      FileCacheMetrics metrics = fc.getMetrics();
+      if (metrics == null) continue;
+      if (count++ > 0) f.format(",%n");
+      metrics.toJson(f, "    ");
+    }
+    f.format("%n  ]%n}%n");
   }
 
   protected void makeDebugActions() {
@@ -66,6 +66,7 @@ import java.io.*;
 import java.util.StringTokenizer;
 
 import ucar.ma2.InvalidRangeException;
+import ucar.nc2.iosp.netcdf3.N3iosp;
 import ucar.nc2.stream.NcStreamWriter;
 import ucar.nc2.constants.FeatureType;
 import ucar.nc2.NetcdfFile;
@@ -251,7 +252,10 @@ public class CdmRemoteController implements LastModified {
       while (stoke.hasMoreTokens()) {
         ParsedSectionSpec cer = ParsedSectionSpec.parseVariableSection(ncfile, stoke.nextToken());
         // size += ncWriter.sendData(cer.v, cer.section, out, qb.getCompression());
-        size += ncWriter.sendData2(cer.v, cer.section, out, qb.getCompression());
+        if (N3iosp.isDirectTransfer(cer.v, cer.section) && cer.section.computeSize() * cer.v.getElementSize() < Integer.MAX_VALUE)
+          size += ncWriter.sendDataDirect(cer.v, cer.section, out);  // netcdf-3 file bytes go out as they are
+        else
+          size += ncWriter.sendData2(cer.v, cer.section, out, qb.getCompression());
         // size += ncWriter.sendData3(cer.v, cer.section, out, qb.getCompression());
       }
       out.flush();
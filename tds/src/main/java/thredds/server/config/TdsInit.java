@@ -42,6 +42,8 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.stereotype.Component;
 
+import dap4.servlet.DapCache;
+
 import thredds.client.catalog.tools.CatalogXmlWriter;
 import thredds.client.catalog.tools.DataFactory;
 import thredds.core.AllowedServices;
@@ -58,14 +60,21 @@ import thredds.server.ncss.format.SupportedFormat;
 import thredds.util.LoggerFactorySpecial;
 
 import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.ft.point.collection.CompositeStationIndex;
 import ucar.nc2.grib.GribIndexCache;
 import ucar.nc2.grib.collection.GribCdmIndex;
+import ucar.nc2.grib.collection.GribDataReader;
+import ucar.nc2.grib.collection.GribRecordCache;
+import ucar.nc2.grib.coverage.GribTimeSeriesStore;
+import ucar.nc2.iosp.hdf5.H5iosp;
 import ucar.nc2.jni.netcdf.Nc4Iosp;
 import ucar.nc2.ncml.Aggregation;
 import ucar.nc2.util.DiskCache;
 import ucar.nc2.util.DiskCache2;
 import ucar.nc2.util.cache.FileCache;
+import ucar.nc2.util.cache.FileCacheStriped;
 import ucar.nc2.util.log.LoggerFactory;
+import ucar.unidata.io.MMapRandomAccessFile;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.util.prefs.PreferencesExt;
 import ucar.util.prefs.XMLStore;
@@ -74,6 +83,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * A Singleton class to initialize and shutdown the CDM/TDS
@@ -112,6 +122,10 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
   @Autowired
   @Qualifier("fcTriggerExecutor")
   private ExecutorService executor;  // need this so we can shut it down
+  private ExecutorService gribDecodeExecutor;  // optional, for GribDataReader
+  private ExecutorService gribTimeSeriesExecutor;  // optional, for GribTimeSeriesStore
+  private ExecutorService h5DecodeExecutor;    // optional, for H5iosp
+  private ExecutorService aggReadExecutor;     // optional, for AggregationOuterDimension
 
   @Autowired
   private AllowedServices allowedServices;
@@ -328,6 +342,14 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
     GribIndexCache.setDiskCache2(gribCache);
     startupLog.info("TdsInit: GribIndex=" + gribCache);
 
+    // station index (.stnx) of point feature collections, same placement as the grib indexes
+    String stnIndexDir = ThreddsConfig.get("StationIndex.dir", new File(tdsContext.getThreddsDirectory(), "/cache/station/").getPath());
+    boolean stnIndexAlwaysUse = ThreddsConfig.getBoolean("StationIndex.alwaysUse", false);
+    DiskCache2 stnIndexCache = new DiskCache2(stnIndexDir, false, gribIndexMaxAgeSecs / 60, 0);
+    stnIndexCache.setAlwaysUseCache(stnIndexAlwaysUse);
+    CompositeStationIndex.setDiskCache2(stnIndexCache);
+    startupLog.info("TdsInit: StationIndex=" + stnIndexCache);
+
     // LOOK just create the diskCache here and send it in
     ncssDiskCache.init();
 
@@ -369,23 +391,45 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
     ///////////////////////////////////////////////
     // Object caching
     int min, max, secs;
+    boolean striped;
 
     // RandomAccessFile: default is allow 400 - 500 open files, cleanup every 11 minutes
     min = ThreddsConfig.getInt("RandomAccessFile.minFiles", 400);
     max = ThreddsConfig.getInt("RandomAccessFile.maxFiles", 500);
     secs = ThreddsConfig.getSeconds("RandomAccessFile.scour", 11 * 60);
+    striped = ThreddsConfig.getBoolean("RandomAccessFile.striped", false);
     if (max > 0) {
-      RandomAccessFile.setGlobalFileCache(new FileCache("RandomAccessFile", min, max, -1, secs));
-      startupLog.info("TdsInit: RandomAccessFile.initPartitionCache= [" + min + "," + max + "] scour = " + secs);
+      RandomAccessFile.setGlobalFileCache(striped ? new FileCacheStriped("RandomAccessFile", min, max, -1, secs) :
+              new FileCache("RandomAccessFile", min, max, -1, secs));
+      startupLog.info("TdsInit: RandomAccessFile.initPartitionCache= [" + min + "," + max + "] scour = " + secs + " striped = " + striped);
+    }
+
+    // read-ahead for sequential reads, and positional reads
+    long maxBufferSize = ThreddsConfig.getBytes("RandomAccessFile.maxBufferSize", RandomAccessFile.getMaxBufferSize());
+    boolean positionalRead = ThreddsConfig.getBoolean("RandomAccessFile.positionalRead", false);
+    RandomAccessFile.setMaxBufferSize((int) maxBufferSize);
+    RandomAccessFile.setPositionalRead(positionalRead);
+    startupLog.info("TdsInit: RandomAccessFile.maxBufferSize= " + maxBufferSize + " positionalRead= " + positionalRead);
+
+    // memory mapped files, off by default
+    String mmapLocations = ThreddsConfig.get("RandomAccessFile.mmapLocations", null);
+    String mmapIosps = ThreddsConfig.get("RandomAccessFile.mmapIosps", null);
+    if (mmapLocations != null || mmapIosps != null) {
+      MMapRandomAccessFile.setPolicy(MMapRandomAccessFile.split(mmapLocations), MMapRandomAccessFile.split(mmapIosps));
+      startupLog.info("TdsInit: MMapRandomAccessFile.setPolicy locations= " + mmapLocations + " iosps= " + mmapIosps);
     }
 
     // NetcdfFileCache : default is allow 100 - 150 open files, cleanup every 12 minutes
     min = ThreddsConfig.getInt("NetcdfFileCache.minFiles", 100);
     max = ThreddsConfig.getInt("NetcdfFileCache.maxFiles", 150);
     secs = ThreddsConfig.getSeconds("NetcdfFileCache.scour", 12 * 60);
+    striped = ThreddsConfig.getBoolean("NetcdfFileCache.striped", false);
     if (max > 0) {
-      NetcdfDataset.initNetcdfFileCache(min, max, secs);
-      startupLog.info("NetcdfDataset.initNetcdfFileCache= [" + min + "," + max + "] scour = " + secs);
+      if (striped)
+        NetcdfDataset.initNetcdfFileCache(new FileCacheStriped("NetcdfFileCache ", min, max, -1, secs));
+      else
+        NetcdfDataset.initNetcdfFileCache(min, max, secs);
+      startupLog.info("NetcdfDataset.initNetcdfFileCache= [" + min + "," + max + "] scour = " + secs + " striped = " + striped);
     }
 
     // GribCollection partitions: default is allow 100 - 150 objects, cleanup every 13 minutes
@@ -397,6 +441,54 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
       startupLog.info("TdsInit: GribCdmIndex.initDefaultCollectionCache= [" + min + "," + max + "] scour = " + secs);
     }
 
+    // Dap4 DSP cache: default is allow 100 open datasets, close them after 10 minutes idle
+    max = ThreddsConfig.getInt("Dap4Cache.maxFiles", 100);
+    secs = ThreddsConfig.getSeconds("Dap4Cache.maxIdle", 10 * 60);
+    DapCache.setLimits(max, 1000L * secs);
+    startupLog.info("TdsInit: DapCache.setLimits maxFiles= " + max + " maxIdle = " + secs);
+
+    // GribDataReader: parallel decoding of records, off by default
+    int gribDecodeThreads = ThreddsConfig.getInt("GribDecode.threads", 0);
+    if (gribDecodeThreads > 1) {
+      int perRequest = ThreddsConfig.getInt("GribDecode.maxThreadsPerRequest", 4);
+      int minRecords = ThreddsConfig.getInt("GribDecode.minRecords", 8);
+      gribDecodeExecutor = Executors.newFixedThreadPool(gribDecodeThreads);
+      GribDataReader.setDecodeExecutor(gribDecodeExecutor, perRequest, minRecords);
+      startupLog.info("TdsInit: GribDataReader.setDecodeExecutor threads= " + gribDecodeThreads + " perRequest= " + perRequest + " minRecords= " + minRecords);
+    }
+
+    int h5DecodeThreads = ThreddsConfig.getInt("Hdf5Decode.threads", 0);
+    if (h5DecodeThreads > 1) {
+      int perRequest = ThreddsConfig.getInt("Hdf5Decode.maxThreadsPerRequest", 4);
+      int minChunks = ThreddsConfig.getInt("Hdf5Decode.minChunks", 8);
+      h5DecodeExecutor = Executors.newFixedThreadPool(h5DecodeThreads);
+      H5iosp.setChunkDecodeExecutor(h5DecodeExecutor, perRequest, minChunks);
+      startupLog.info("TdsInit: H5iosp.setChunkDecodeExecutor threads= " + h5DecodeThreads + " perRequest= " + perRequest + " minChunks= " + minChunks);
+    }
+
+    int aggReadThreads = ThreddsConfig.getInt("AggregationRead.threads", 0);
+    if (aggReadThreads > 1) {
+      int perRequest = ThreddsConfig.getInt("AggregationRead.maxThreadsPerRequest", 4);
+      int minDatasets = ThreddsConfig.getInt("AggregationRead.minDatasets", 2);
+      aggReadExecutor = Executors.newFixedThreadPool(aggReadThreads);
+      Aggregation.setSectionReadExecutor(aggReadExecutor, perRequest, minDatasets);
+      startupLog.info("TdsInit: Aggregation.setSectionReadExecutor threads= " + aggReadThreads + " perRequest= " + perRequest + " minDatasets= " + minDatasets);
+    }
+
+    long gribRecordCacheSize = ThreddsConfig.getBytes("GribDecode.recordCacheSize", 0);
+    if (gribRecordCacheSize > 0) {
+      GribRecordCache.enable(gribRecordCacheSize);
+      startupLog.info("TdsInit: GribRecordCache.enable maxSize= " + gribRecordCacheSize);
+    }
+
+    // GribTimeSeriesStore: point time series for the variables named in a collection's <timeSeriesCache>, off by default
+    String gribTimeSeriesDir = ThreddsConfig.get("GribTimeSeries.dir", null);
+    if (gribTimeSeriesDir != null) {
+      gribTimeSeriesExecutor = Executors.newSingleThreadExecutor();
+      GribTimeSeriesStore.enable(gribTimeSeriesDir, gribTimeSeriesExecutor);
+      startupLog.info("TdsInit: GribTimeSeriesStore.enable dir= " + gribTimeSeriesDir);
+    }
+
     //RandomAccessFile.enableDefaultGlobalFileCache();
     //RandomAccessFile.setDebugLeaks(true);
 
@@ -452,9 +544,27 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
     if (cdmDiskCacheTimer != null)
       cdmDiskCacheTimer.cancel();
     FileCache.shutdown();              // this handles background threads for all instances of FileCache
+    FileCacheStriped.shutdown();       // and FileCacheStriped
     DiskCache2.exit();                // this handles background threads for all instances of DiskCache2
     thredds.inventory.bdb.MetadataManager.closeAll();
     executor.shutdownNow();
+    if (gribDecodeExecutor != null) {
+      GribDataReader.setDecodeExecutor(null, 1, 0);
+      gribDecodeExecutor.shutdownNow();
+    }
+    if (h5DecodeExecutor != null) {
+      H5iosp.setChunkDecodeExecutor(null, 1, 0);
+      h5DecodeExecutor.shutdownNow();
+    }
+    if (aggReadExecutor != null) {
+      Aggregation.setSectionReadExecutor(null, 1, 0);
+      aggReadExecutor.shutdownNow();
+    }
+    GribRecordCache.disable();
+    if (gribTimeSeriesExecutor != null) {
+      GribTimeSeriesStore.disable();
+      gribTimeSeriesExecutor.shutdownNow();
+    }
 
     /* try {
       catalogWatcher.close();
@@ -137,9 +137,6 @@ public class NcssGridController extends AbstractNcssController {
                 " have different vertical levels. Grid requests with vertCoord must have variables with same vertical levels.");
       }
 
-    String responseFile = getResponseFileName(datasetPath, version);
-    File netcdfResult = makeCFNetcdfFile(gcd, responseFile, params, version);
-
     // filename download attachment
     String suffix = version.getSuffix();
     int pos = datasetPath.lastIndexOf("/");
@@ -148,45 +145,61 @@ public class NcssGridController extends AbstractNcssController {
       filename += suffix;
     }
 
+    // subset once, used for both the size check and the write
+    Optional<CFGridCoverageWriter2> opt = CFGridCoverageWriter2.makeSubset(gcd, params.getVar(), params.makeSubset(gcd), params.isAddLatLon());
+    if (!opt.isPresent())
+      throw new InvalidRangeException("Request contains no data: " + opt.getErrorMessage());
+    CFGridCoverageWriter2 writer2 = opt.get();
+    long estimatedSize = checkFileDownloadSize(writer2, version);
+
     // Headers...
     HttpHeaders httpHeaders = new HttpHeaders();
     httpHeaders.set(ContentType.HEADER, sf.getMimeType());
     httpHeaders.set(Constants.Content_Disposition, Constants.setContentDispositionValue(filename));
-    setResponseHeaders(res, httpHeaders);
+    httpHeaders.set(Constants.Estimated_Size, Long.toString(estimatedSize));
+
+    if (version == NetcdfFileWriter.Version.netcdf3) {
+      // netcdf-3 layout can be computed from the subset, so write straight to the response
+      setResponseHeaders(res, httpHeaders);
+      writer2.write(res.getOutputStream());
+
+    } else {
+      String responseFile = getResponseFileName(datasetPath, version);
+      File netcdfResult = makeCFNetcdfFile(writer2, responseFile, version);
+
+      setResponseHeaders(res, httpHeaders);
+      IO.copyFileB(netcdfResult, res.getOutputStream(), 60000);
+    }
 
-    IO.copyFileB(netcdfResult, res.getOutputStream(), 60000);
     res.flushBuffer();
     res.getOutputStream().close();
     res.setStatus(HttpServletResponse.SC_OK);
   }
 
-  File makeCFNetcdfFile(CoverageCollection gcd, String responseFilename, NcssGridParamsBean params, NetcdfFileWriter.Version version)
-          throws NcssException, InvalidRangeException, ParseException, IOException {
+  File makeCFNetcdfFile(CFGridCoverageWriter2 writer2, String responseFilename, NetcdfFileWriter.Version version)
+          throws InvalidRangeException, IOException {
 
     NetcdfFileWriter writer = NetcdfFileWriter.createNew(version, responseFilename, null); // default chunking - let user control at some point
-    SubsetParams subset = params.makeSubset(gcd);
+    writer2.write(writer);
+    return new File(responseFilename);
+  }
 
-    // Test maxFileDownloadSize
+  // Test maxFileDownloadSize, return the estimated size of the response
+  private long checkFileDownloadSize(CFGridCoverageWriter2 writer2, NetcdfFileWriter.Version version) {
     long maxFileDownloadSize = ThreddsConfig.getBytes("NetcdfSubsetService.maxFileDownloadSize", -1L);
-    if (maxFileDownloadSize > 0) {
-      Optional<Long> estimatedSizeo = CFGridCoverageWriter2.writeOrTestSize(gcd, params.getVar(), subset, params.isAddLatLon(), true, writer);
-      if (!estimatedSizeo.isPresent())
-        throw new InvalidRangeException("Request contains no data: " + estimatedSizeo.getErrorMessage());
-
-      long estimatedSize = estimatedSizeo.get();
-      if (version == NetcdfFileWriter.Version.netcdf4)
-        estimatedSize /= ESTIMATED_COMPRESION_RATE;
+    return checkFileDownloadSize(writer2, version, maxFileDownloadSize);
+  }
 
-      if (estimatedSize > maxFileDownloadSize)
-        throw new RequestTooLargeException("NCSS response too large = " + estimatedSize + " max = " + maxFileDownloadSize);
-    }
+  // maxFileDownloadSize <= 0 means no limit
+  static long checkFileDownloadSize(CFGridCoverageWriter2 writer2, NetcdfFileWriter.Version version, long maxFileDownloadSize) {
+    long estimatedSize = writer2.getSizeInBytes();
+    if (version == NetcdfFileWriter.Version.netcdf4)
+      estimatedSize /= ESTIMATED_COMPRESION_RATE;
 
-    // write the file
-    Optional<Long> estimatedSizeo = CFGridCoverageWriter2.writeOrTestSize(gcd, params.getVar(), subset, params.isAddLatLon(), false, writer);
-    if (!estimatedSizeo.isPresent())
-      throw new InvalidRangeException("Request contains no data: " + estimatedSizeo.getErrorMessage());
+    if (maxFileDownloadSize > 0 && estimatedSize > maxFileDownloadSize)
+      throw new RequestTooLargeException("NCSS response too large = " + estimatedSize + " max = " + maxFileDownloadSize);
 
-    return new File(responseFilename);
+    return estimatedSize;
   }
 
   private String getResponseFileName(String requestPathInfo, NetcdfFileWriter.Version version) {
@@ -34,8 +34,10 @@
 package thredds.server.opendap;
 
 import opendap.dap.InvalidDimensionException;
+import opendap.dap.NoSuchVariableException;
 import ucar.ma2.*;
 import ucar.nc2.*;
+import ucar.nc2.iosp.netcdf3.N3iosp;
 
 import opendap.servers.*;
 import opendap.dap.BaseType;
@@ -45,6 +47,8 @@ import opendap.dap.PrimitiveVector;
 import java.io.IOException;
 import java.io.EOFException;
 import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -59,6 +63,23 @@ public class NcSDArray extends SDArray implements HasNetcdfVariable {
   static private org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(NcSDArray.class);
 
   private static final boolean debug = false, debugRead = false;
+
+  // requested sections larger than this (bytes) are sent in chunks instead of being read into memory
+  static private long streamThreshold = 50 * 1000 * 1000;
+  static private long streamChunkSize = 8 * 1000 * 1000;
+
+  /**
+   * Set how large numeric variables are sent in .dods responses.
+   *
+   * @param maxMemory a requested section larger than this many bytes is read and sent in chunks,
+   *                  so it is never held in memory all at once. 0 means never.
+   * @param chunkSize the size in bytes of each chunk
+   */
+  static public void setStreaming(long maxMemory, long chunkSize) {
+    streamThreshold = maxMemory;
+    streamChunkSize = Math.max(chunkSize, 1);
+  }
+
   private Variable ncVar = null;
   //ignore protected BaseType elemType;
 
@@ -144,6 +165,132 @@ public class NcSDArray extends SDArray implements HasNetcdfVariable {
     return (false);
   }
 
+  /**
+   * Send the data. A netCDF-3 variable whose values are 4 or 8 bytes already has the XDR encoding in the file,
+   * so when N3iosp.isDirectTransfer() allows, the bytes are copied from the file to the sink without reading into an Array.
+   * Otherwise a large numeric section is read and sent in chunks along its outer dimensions, see setStreaming().
+   */
+  @Override
+  public void serialize(String dataset, DataOutputStream sink, CEEvaluator ce, Object specialO)
+          throws NoSuchVariableException, DAP2ServerSideException, IOException {
+    if (isRead() || !ce.evalClauses(specialO)) {
+      super.serialize(dataset, sink, ce, specialO);
+      return;
+    }
+
+    DataType dt = ncVar.getDataType();
+    boolean xdrLayout = (dt == DataType.FLOAT || dt == DataType.INT || dt == DataType.UINT || dt == DataType.DOUBLE);
+    boolean streamable = xdrLayout || dt == DataType.SHORT || dt == DataType.USHORT || dt == DataType.BYTE || dt == DataType.UBYTE;
+    if (!streamable) {
+      super.serialize(dataset, sink, ce, specialO);
+      return;
+    }
+
+    Section section;
+    try {
+      int n = numDimensions();
+      List<Range> ranges = new ArrayList<>(n);
+      for (int i = 0; i < n; i++)
+        ranges.add(new Range(getStart(i), getStop(i), getStride(i)));
+      section = new Section(ranges);
+    } catch (InvalidDimensionException | InvalidRangeException e) {
+      super.serialize(dataset, sink, ce, specialO); // let the usual path report it
+      return;
+    }
+    long size = section.computeSize();
+    boolean direct = xdrLayout && N3iosp.isDirectTransfer(ncVar, section);
+    boolean stream = streamThreshold > 0 && size * ncVar.getElementSize() > streamThreshold;
+    if ((!direct && !stream) || size > Integer.MAX_VALUE) {
+      super.serialize(dataset, sink, ce, specialO);
+      return;
+    }
+
+    // the length is written twice, see SDArray.serialize()
+    int length = (int) size;
+    sink.writeInt(length);
+    sink.writeInt(length);
+    try {
+      if (direct) {
+        long count = ncVar.readToByteChannel(section, Channels.newChannel(sink));
+        if (count != length * (long) ncVar.getElementSize())
+          throw new IOException("NcSDArray direct transfer of " + ncVar.getFullName() + " sent " + count + " bytes");
+
+      } else {
+        long maxElems = Math.max(1, streamChunkSize / ncVar.getElementSize());
+        long count = writeChunks(new ArrayList<>(section.getRanges()), 0, maxElems, sink);
+        if (count != length)
+          throw new IOException("NcSDArray streaming of " + ncVar.getFullName() + " sent " + count + " values");
+        if (dt == DataType.BYTE || dt == DataType.UBYTE) {
+          for (int i = length; i % 4 != 0; i++) // pad to a multiple of four bytes, as BytePrimitiveVector does
+            sink.writeByte(0);
+        }
+      }
+    } catch (InvalidRangeException e) {
+      log.error(getRequestedRange(), e);
+      throw new IllegalStateException("NcSDArray InvalidRangeException=" + e.getMessage());
+    }
+  }
+
+  // Read and send the section in pieces of at most maxElems values, splitting the outer dimensions first.
+  // Return the number of values sent.
+  private long writeChunks(List<Range> ranges, int dim, long maxElems, DataOutputStream sink) throws IOException, InvalidRangeException {
+    Range r = ranges.get(dim);
+    long inner = 1;
+    for (int i = dim + 1; i < ranges.size(); i++)
+      inner *= ranges.get(i).length();
+
+    long count = 0;
+    if (inner > maxElems) {  // a single index of this dimension is too big, go one dimension in
+      for (int i = 0; i < r.length(); i++) {
+        int idx = r.element(i);
+        ranges.set(dim, new Range(idx, idx));
+        count += writeChunks(ranges, dim + 1, maxElems, sink);
+      }
+    } else {
+      int n = (int) Math.min(r.length(), maxElems / inner);
+      for (int i = 0; i < r.length(); i += n) {
+        int last = Math.min(i + n, r.length()) - 1;
+        ranges.set(dim, new Range(r.element(i), r.element(last), r.stride()));
+        count += writeXdr(ncVar.read(ranges), sink);
+      }
+    }
+    ranges.set(dim, r);
+    return count;
+  }
+
+  // write the values the way the PrimitiveVector for this type externalizes them
+  private int writeXdr(Array data, DataOutputStream sink) throws IOException {
+    int n = (int) data.getSize();
+    ByteBuffer bb;
+    switch (ncVar.getDataType()) {
+      case DOUBLE:
+        bb = ByteBuffer.allocate(8 * n);
+        bb.asDoubleBuffer().put((double[]) data.get1DJavaArray(double.class));
+        break;
+      case FLOAT:
+        bb = ByteBuffer.allocate(4 * n);
+        bb.asFloatBuffer().put((float[]) data.get1DJavaArray(float.class));
+        break;
+      case INT:
+      case UINT:
+        bb = ByteBuffer.allocate(4 * n);
+        bb.asIntBuffer().put((int[]) data.get1DJavaArray(int.class));
+        break;
+      case SHORT:
+      case USHORT:
+        bb = ByteBuffer.allocate(4 * n);
+        IndexIterator ii = data.getIndexIterator();
+        while (ii.hasNext())
+          bb.putInt(ii.getShortNext());
+        break;
+      default: // BYTE, UBYTE are not padded until the end
+        sink.write((byte[]) data.get1DJavaArray(byte.class));
+        return n;
+    }
+    sink.write(bb.array());
+    return n;
+  }
+
   private String getRequestedRange() {
     try {
       StringBuilder sbuff = new StringBuilder();
@@ -41,6 +41,7 @@ import opendap.dap.BaseType;
 import opendap.dap.NoSuchVariableException;
 import ucar.nc2.Variable;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -76,4 +77,15 @@ public class NcSDGrid extends SDGrid {
     setRead(true);
     return(false);
   }
+
+  /**
+   * Skip read(): each projected member array reads its own data when it is serialized,
+   * so a large NcSDArray can be sent in chunks.
+   */
+  @Override
+  public void serialize(String dataset, DataOutputStream sink, CEEvaluator ce, Object specialO)
+          throws NoSuchVariableException, DAP2ServerSideException, IOException {
+    setRead(true);
+    super.serialize(dataset, sink, ce, specialO);
+  }
 }
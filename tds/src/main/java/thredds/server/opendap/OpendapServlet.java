@@ -93,6 +93,8 @@ public class OpendapServlet extends AbstractServlet {
 
   private int ascLimit = 50;
   private int binLimit = 500;
+  private int streamLimit = 50;
+  private int streamChunkSize = 8;
 
   private boolean debugSession = false;
 
@@ -104,9 +106,13 @@ public class OpendapServlet extends AbstractServlet {
 
     this.ascLimit = ThreddsConfig.getInt("Opendap.ascLimit", ascLimit);  // LOOK how the hell can OpendapServlet call something in the tds module ??
     this.binLimit = ThreddsConfig.getInt("Opendap.binLimit", binLimit);
+    this.streamLimit = ThreddsConfig.getInt("Opendap.streamLimit", streamLimit);
+    this.streamChunkSize = ThreddsConfig.getInt("Opendap.streamChunkSize", streamChunkSize);
+    NcSDArray.setStreaming(streamLimit * 1000L * 1000L, streamChunkSize * 1000L * 1000L); // Mbytes
 
     this.odapVersionString = ThreddsConfig.get("Opendap.serverVersion", odapVersionString);
-    logServerStartup.info(getClass().getName() + " version= " + odapVersionString + " ascLimit = " + ascLimit + " binLimit = " + binLimit);
+    logServerStartup.info(getClass().getName() + " version= " + odapVersionString + " ascLimit = " + ascLimit + " binLimit = " + binLimit +
+            " streamLimit = " + streamLimit + " streamChunkSize = " + streamChunkSize);
 
     if (tdsContext != null) // LOOK not set in mock testing enviro ?
       setRootpath(tdsContext.getServletRootDirectory().getPath());
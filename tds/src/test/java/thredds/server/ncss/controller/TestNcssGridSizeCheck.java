@@ -0,0 +1,174 @@
+package thredds.server.ncss.controller;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.server.exception.RequestTooLargeException;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft2.coverage.*;
+import ucar.nc2.ft2.coverage.writer.CFGridCoverageWriter2;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.nc2.util.Optional;
+import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.LatLonRect;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Formatter;
+import java.util.List;
+
+/**
+ * The grid controller subsets once, checks the size of the subset, then writes it with the same CFGridCoverageWriter2.
+ */
+public class TestNcssGridSizeCheck {
+  static private final List<String> vars = Collections.singletonList("T");
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testReusedWriterMatchesFreshWrite() throws Exception {
+    File org = makeGrid();
+    File fresh = tempFolder.newFile();
+    File reusedStream = tempFolder.newFile();
+    File reusedFile = new File(tempFolder.getRoot(), "reused.nc");
+
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(org.getPath())) {
+      CoverageCollection gcs = fdc.findCoverageDataset(FeatureType.GRID);
+      Assert.assertNotNull(gcs);
+
+      // the old way: subset and write in one call
+      Optional<Long> size = CFGridCoverageWriter2.writeOrTestSize(gcs, vars, makeSubset(), false, false,
+              NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, fresh.getPath()));
+      Assert.assertTrue(size.getErrorMessage(), size.isPresent());
+
+      // the controller: size check, then write to the response stream
+      CFGridCoverageWriter2 writer2 = makeWriter(gcs);
+      Assert.assertEquals(size.get().longValue(), NcssGridController.checkFileDownloadSize(writer2, NetcdfFileWriter.Version.netcdf3, -1));
+      try (OutputStream out = new FileOutputStream(reusedStream)) {
+        writer2.write(out);
+      }
+
+      // the controller: size check, then write to a file
+      writer2 = makeWriter(gcs);
+      Assert.assertEquals(size.get().longValue(), NcssGridController.checkFileDownloadSize(writer2, NetcdfFileWriter.Version.netcdf3, -1));
+      File result = new NcssGridController().makeCFNetcdfFile(writer2, reusedFile.getPath(), NetcdfFileWriter.Version.netcdf3);
+      Assert.assertEquals(reusedFile, result);
+    }
+
+    compare(fresh, reusedStream);
+    compare(fresh, reusedFile);
+  }
+
+  @Test
+  public void testSizeLimit() throws Exception {
+    File org = makeGrid();
+
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(org.getPath())) {
+      CoverageCollection gcs = fdc.findCoverageDataset(FeatureType.GRID);
+      CFGridCoverageWriter2 writer2 = makeWriter(gcs);
+      long size = writer2.getSizeInBytes();
+      Assert.assertTrue(size > 0);
+
+      Assert.assertEquals(size, NcssGridController.checkFileDownloadSize(writer2, NetcdfFileWriter.Version.netcdf3, size));
+      Assert.assertEquals(size, NcssGridController.checkFileDownloadSize(writer2, NetcdfFileWriter.Version.netcdf3, 0));
+      try {
+        NcssGridController.checkFileDownloadSize(writer2, NetcdfFileWriter.Version.netcdf3, size - 1);
+        Assert.fail("size limit not enforced");
+      } catch (RequestTooLargeException e) {
+        Assert.assertTrue(e.getMessage(), e.getMessage().contains(Long.toString(size)));
+      }
+
+      // netcdf-4 is expected to compress
+      long size4 = NcssGridController.checkFileDownloadSize(writer2, NetcdfFileWriter.Version.netcdf4, size - 1);
+      Assert.assertTrue(size4 < size);
+      try {
+        NcssGridController.checkFileDownloadSize(writer2, NetcdfFileWriter.Version.netcdf4, size4 - 1);
+        Assert.fail("size limit not enforced");
+      } catch (RequestTooLargeException e) {
+        // expected
+      }
+
+      // the size check does not use up the subset
+      File out = tempFolder.newFile();
+      try (OutputStream os = new FileOutputStream(out)) {
+        writer2.write(os);
+      }
+      Assert.assertTrue(out.length() >= size);
+    }
+  }
+
+  private CFGridCoverageWriter2 makeWriter(CoverageCollection gcs) throws Exception {
+    Optional<CFGridCoverageWriter2> opt = CFGridCoverageWriter2.makeSubset(gcs, vars, makeSubset(), false);
+    Assert.assertTrue(opt.getErrorMessage(), opt.isPresent());
+    return opt.get();
+  }
+
+  private SubsetParams makeSubset() {
+    return new SubsetParams()
+            .set(SubsetParams.timeAll, true)
+            .set(SubsetParams.latlonBB, new LatLonRect(new LatLonPointImpl(32, -98), 4, 5));
+  }
+
+  private void compare(File expected, File actual) throws Exception {
+    try (NetcdfFile ncExpected = NetcdfFile.open(expected.getPath());
+         NetcdfFile ncActual = NetcdfFile.open(actual.getPath())) {
+      Variable v = ncActual.findVariable("T");
+      Assert.assertNotNull(v);
+      Assert.assertArrayEquals(new int[]{3, 5, 6}, v.getShape());
+
+      Formatter f = new Formatter();
+      CompareNetcdf2 compare = new CompareNetcdf2(f, false, false, true);
+      boolean ok = compare.compare(ncExpected, ncActual, new HistoryFilter(), false, false, true);
+      Assert.assertTrue(f.toString(), ok);
+    }
+  }
+
+  // the history contains the time of writing
+  private static class HistoryFilter implements CompareNetcdf2.ObjFilter {
+    public boolean attCheckOk(Variable v, Attribute att) {
+      return !att.getShortName().equalsIgnoreCase(CDM.HISTORY);
+    }
+
+    public boolean varDataTypeCheckOk(Variable v) {
+      return true;
+    }
+  }
+
+  private File makeGrid() throws Exception {
+    File file = tempFolder.newFile();
+    int ntimes = 3, nlat = 10, nlon = 12;
+    NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, file.getPath());
+    writer.addGroupAttribute(null, new Attribute("Conventions", "CF-1.6"));
+    writer.addDimension(null, "time", ntimes);
+    writer.addDimension(null, "lat", nlat);
+    writer.addDimension(null, "lon", nlon);
+
+    Variable time = writer.addVariable(null, "time", DataType.DOUBLE, "time");
+    writer.addVariableAttribute(time, new Attribute("units", "hours since 2015-01-01T00:00:00Z"));
+    Variable lat = writer.addVariable(null, "lat", DataType.FLOAT, "lat");
+    writer.addVariableAttribute(lat, new Attribute("units", "degrees_north"));
+    Variable lon = writer.addVariable(null, "lon", DataType.FLOAT, "lon");
+    writer.addVariableAttribute(lon, new Attribute("units", "degrees_east"));
+    Variable t = writer.addVariable(null, "T", DataType.FLOAT, "time lat lon");
+    writer.addVariableAttribute(t, new Attribute("units", "K"));
+    writer.create();
+
+    writer.write(time, Array.makeArray(DataType.DOUBLE, ntimes, 0, 6));
+    writer.write(lat, Array.makeArray(DataType.FLOAT, nlat, 30, 1));
+    writer.write(lon, Array.makeArray(DataType.FLOAT, nlon, -100, 1));
+    writer.write(t, Array.makeArray(DataType.FLOAT, ntimes * nlat * nlon, 270, .01).reshape(new int[]{ntimes, nlat, nlon}));
+    writer.close();
+    return file;
+  }
+}
@@ -0,0 +1,123 @@
+package thredds.server.ncss.controller.grid;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import thredds.mock.web.MockTdsContextLoader;
+import thredds.server.ncss.params.NcssGridParamsBean;
+import thredds.util.Constants;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.ft2.coverage.CoverageCollection;
+import ucar.nc2.ft2.coverage.CoverageDatasetFactory;
+import ucar.nc2.ft2.coverage.FeatureDatasetCoverage;
+import ucar.nc2.ft2.coverage.writer.CFGridCoverageWriter2;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.nc2.util.Optional;
+import ucar.unidata.test.util.NeedsCdmUnitTest;
+import ucar.unidata.test.util.TestDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.Formatter;
+
+/**
+ * The grid response is written with the subset used for the size check, and sends the estimated size as a header.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration(locations = {"/WEB-INF/applicationContext.xml"}, loader = MockTdsContextLoader.class)
+@Category(NeedsCdmUnitTest.class)
+public class GridEstimatedSizeTest {
+  private static final String pathInfo = "/ncss/grid/scanCdmUnitTests/tds/ncep/RR_CONUS_13km_20121028_0000.grib2";
+  private static final String dataset = TestDir.cdmUnitTestDir + "tds/ncep/RR_CONUS_13km_20121028_0000.grib2";
+  private static final String var = "Pressure_surface";
+
+  @Autowired
+  private WebApplicationContext wac;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private MockMvc mockMvc;
+
+  @Before
+  public void setUp() {
+    mockMvc = MockMvcBuilders.webAppContextSetup(this.wac).build();
+  }
+
+  @Test
+  public void shouldMatchFreshWrite() throws Exception {
+    RequestBuilder requestBuilder = MockMvcRequestBuilders.get(pathInfo).servletPath(pathInfo)
+            .param("var", var)
+            .param("north", "45.0")
+            .param("south", "35.0")
+            .param("east", "-95.0")
+            .param("west", "-105.0");
+
+    MvcResult mvc = this.mockMvc.perform(requestBuilder).andReturn();
+    Assert.assertEquals(mvc.getResponse().getContentAsString(), 200, mvc.getResponse().getStatus());
+    String estimated = mvc.getResponse().getHeader(Constants.Estimated_Size);
+    Assert.assertNotNull(Constants.Estimated_Size, estimated);
+
+    File response = tempFolder.newFile();
+    try (FileOutputStream fout = new FileOutputStream(response)) {
+      fout.write(mvc.getResponse().getContentAsByteArray());
+    }
+
+    // the same subset, written the old way
+    NcssGridParamsBean params = new NcssGridParamsBean();
+    params.setVar(Collections.singletonList(var));
+    params.setNorth(45.0);
+    params.setSouth(35.0);
+    params.setEast(-95.0);
+    params.setWest(-105.0);
+
+    File fresh = tempFolder.newFile();
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(dataset)) {
+      CoverageCollection gcd = fdc.getSingleCoverageCollection();
+      Optional<Long> size = CFGridCoverageWriter2.writeOrTestSize(gcd, params.getVar(), params.makeSubset(gcd), false, false,
+              NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, fresh.getPath()));
+      Assert.assertTrue(size.getErrorMessage(), size.isPresent());
+      Assert.assertEquals(size.get().toString(), estimated);
+    }
+
+    try (NetcdfFile ncfresh = NetcdfFile.open(fresh.getPath());
+         NetcdfFile ncresponse = NetcdfFile.open(response.getPath())) {
+      Assert.assertNotNull(ncresponse.findVariable(var));
+      Formatter f = new Formatter();
+      CompareNetcdf2 compare = new CompareNetcdf2(f, false, false, true);
+      boolean ok = compare.compare(ncfresh, ncresponse, new HistoryFilter(), false, false, true);
+      Assert.assertTrue(f.toString(), ok);
+    }
+  }
+
+  // the history contains the time of writing
+  private static class HistoryFilter implements CompareNetcdf2.ObjFilter {
+    public boolean attCheckOk(Variable v, Attribute att) {
+      return !att.getShortName().equalsIgnoreCase(CDM.HISTORY);
+    }
+
+    public boolean varDataTypeCheckOk(Variable v) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package thredds.server.opendap;
+
+import opendap.servers.CEEvaluator;
+import opendap.servers.ServerDDS;
+import opendap.servlet.GuardedDataset;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+
+/**
+ * Compare the .dods data sent by NcSDArray in chunks with the data sent after reading the whole section.
+ */
+public class TestNcSDArrayStreaming {
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void reset() {
+    NcSDArray.setStreaming(50 * 1000 * 1000, 8 * 1000 * 1000);
+  }
+
+  @Test
+  public void testStreaming() throws Exception {
+    String filename = tempFolder.newFile("stream.nc").getAbsolutePath();
+    try (NetcdfFileWriter writer = NetcdfFileWriter.createNew(filename, false)) {
+      writer.addUnlimitedDimension("time");
+      writer.addDimension(null, "lat", 31);
+      writer.addDimension(null, "lon", 47);
+      writer.addVariable("time", DataType.DOUBLE, "time");
+      writer.addVariable("lat", DataType.FLOAT, "lat");
+      writer.addVariable("lon", DataType.FLOAT, "lon");
+      writer.addVariable("temp", DataType.FLOAT, "time lat lon");
+      writer.addVariable("count", DataType.SHORT, "time lat lon");
+      writer.addVariable("flag", DataType.BYTE, "time lat lon");
+      writer.addVariable("pres", DataType.DOUBLE, "time lat lon");
+      writer.addVariable("code", DataType.INT, "time lat lon");
+      writer.addVariable("height", DataType.DOUBLE, "lat lon");  // not a record variable, so sent directly
+      writer.create();
+
+      int n = 5 * 31 * 47;
+      writer.write(writer.findVariable("time"), Array.makeArray(DataType.DOUBLE, 5, 0, 6));
+      writer.write(writer.findVariable("lat"), Array.makeArray(DataType.FLOAT, 31, -15, 1));
+      writer.write(writer.findVariable("lon"), Array.makeArray(DataType.FLOAT, 47, 100, 1));
+      writer.write(writer.findVariable("temp"), Array.makeArray(DataType.FLOAT, n, 200, 0.01).reshape(new int[]{5, 31, 47}));
+      writer.write(writer.findVariable("count"), Array.makeArray(DataType.SHORT, n, -3000, 1).reshape(new int[]{5, 31, 47}));
+      writer.write(writer.findVariable("flag"), Array.makeArray(DataType.BYTE, n, 0, 1).reshape(new int[]{5, 31, 47}));
+      writer.write(writer.findVariable("pres"), Array.makeArray(DataType.DOUBLE, n, 1000, -0.125).reshape(new int[]{5, 31, 47}));
+      writer.write(writer.findVariable("code"), Array.makeArray(DataType.INT, n, -100000, 7).reshape(new int[]{5, 31, 47}));
+      writer.write(writer.findVariable("height"), Array.makeArray(DataType.DOUBLE, 31 * 47, 0, 1.5).reshape(new int[]{31, 47}));
+    }
+
+    try (NetcdfFile ncfile = NetcdfFile.open(filename)) {
+      String[] constraints = {
+              "temp,count,flag,pres,code,height",
+              "time",
+              "pres[0:4][0:30][0:46]",
+              "pres[1:2:4][3:7][5:2:40],code[0:4][0:30][0:46]",
+              "code[3][0:2:30][11]",
+              "temp[1:3][0:30][0:46]",
+              "temp.temp[0:4][2:2:29][3:5:46]",
+              "count[0:1:4][7][0:46],flag[1:4][3:30][0:3:46]",
+              "flag[2][5][9]",
+              "height[0:30][1:45]",
+      };
+      for (String constraint : constraints) {
+        NcSDArray.setStreaming(0, 0);
+        byte[] expected = send(filename, ncfile, constraint);
+        NcSDArray.setStreaming(1, 100);  // every section is streamed, 100 bytes at a time
+        byte[] streamed = send(filename, ncfile, constraint);
+        Assert.assertArrayEquals(constraint, expected, streamed);
+        NcSDArray.setStreaming(1, 10 * 1000);
+        Assert.assertArrayEquals(constraint, expected, send(filename, ncfile, constraint));
+      }
+    }
+  }
+
+  private byte[] send(String path, NetcdfFile ncfile, String constraint) throws Exception {
+    GuardedDataset ds = new GuardedDatasetCacheAndClone(path, ncfile, false);
+    ServerDDS dds = ds.getDDS();
+    CEEvaluator ce = new CEEvaluator(dds);
+    ce.parseConstraint(constraint, null);
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream sink = new DataOutputStream(bos);
+    ce.send(dds.getEncodedName(), sink, ds);
+    sink.flush();
+    return bos.toByteArray();
+  }
+}